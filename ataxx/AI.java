@@ -1,7 +1,8 @@
 package ataxx;
 
-import java.util.ArrayList;
-import java.util.Random;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 import static ataxx.PieceColor.*;
 
@@ -10,13 +11,24 @@ import static ataxx.PieceColor.*;
  */
 class AI extends Player {
 
-    /** Maximum minimax search depth before going to static evaluation. */
-    private static final int MAX_DEPTH = 3;
-    /** A position magnitude indicating a win (for red if positive, blue
-     *  if negative). */
-    private static final int WINNING_VALUE = Integer.MAX_VALUE - 1;
-    /** A magnitude greater than a normal value. */
-    private static final int INFTY = Integer.MAX_VALUE;
+    /** Depth of the middle-game search. */
+    static final int SEARCH_DEPTH = 4;
+    /** Log2 of the number of entries in the middle-game search's table. */
+    private static final int SEARCH_TABLE_BITS = 18;
+    /** Most nodes the endgame solver may visit for one move. */
+    private static final long SOLVER_NODES = 1000000;
+    /** Log2 of the number of entries in the endgame solver's table. */
+    private static final int SOLVER_TABLE_BITS = 20;
+    /** Least lead in pieces at which I look for a forced win. */
+    private static final int PROOF_MARGIN = 15;
+    /** Most nodes the proof search may expand for each goal. */
+    private static final long PROOF_NODES = 20000;
+    /** Log2 of the number of entries in the proof search's table. */
+    private static final int PROOF_TABLE_BITS = 18;
+    /** Goals for the proof search, in the order tried. */
+    private static final ProofSearch.Goal[] PROOF_GOALS = {
+        ProofSearch.Goal.ELIMINATION, ProofSearch.Goal.WIN
+    };
 
     /** A new AI for GAME that will play MYCOLOR. */
     AI(Game game, PieceColor myColor) {
@@ -32,175 +44,211 @@ class AI extends Player {
         } else {
             color = "Red";
         }
+        long start = System.nanoTime();
         Move move = findMove();
+        Metrics.AI_MOVE.record(System.nanoTime() - start);
         if (move == Move.PASS || !board().canMove(original)) {
-            System.out.println(color + " passes.");
+            game().reportMove("%s passes.", color);
             move = Move.PASS;
         } else {
-            System.out.println(color + " moves " + move.toString() + ".");
+            game().reportMove("%s moves %s.", color, move);
         }
         return move;
     }
 
-    /**Style tbh. @return move . **/
-    private Move dumbMove() {
-        ArrayList<Integer> thisColor = game().board().piecesOfColor(myColor());
-        Random rand = new Random();
-        int fromSQ = thisColor.get(rand.nextInt(thisColor.size()));
-        while (!board().canMoveHelper(game().board().sqtoCol(fromSQ),
-                game().board().sqtoRow(fromSQ))) {
-            fromSQ = thisColor.get(rand.nextInt(thisColor.size()));
+    /** Return a move for me from the current position, assuming there
+     *  is a move.  Record its choice as an Events.AIMove. */
+    private Move findMove() {
+        Events.AIMove event = new Events.AIMove();
+        event.begin();
+        Move move = BitBoard.toMove(chooseMove(event));
+        event.end();
+        if (event.shouldCommit()) {
+            event.color = myColor().toString();
+            event.move = move.toString();
+            event.commit();
         }
-        ArrayList<Integer> extendio =
-                game().board().availableExtendNeighbours(fromSQ);
-        ArrayList<Integer> jumpio =
-                game().board().availableJumpNeighbours(fromSQ);
-        int toSQ;
-        if (extendio.size() == 0) {
-            toSQ = jumpio.get(rand.nextInt(jumpio.size()));
-        } else {
-            toSQ = extendio.get(rand.nextInt(extendio.size()));
+        return move;
+    }
+
+    /** Return an encoded move for me from the current position, assuming
+     *  there is a move, and note in EVENT how it was found. */
+    private int chooseMove(Events.AIMove event) {
+        Book book = game().book();
+        if (book != null) {
+            int move = book.bestMove(new BitBoard(board()));
+            if (move != BitBoard.NO_MOVE) {
+                event.source = "book";
+                return move;
+            }
+        }
+        Tablebase tablebase = game().tablebase();
+        if (tablebase != null) {
+            int move = tablebase.bestMove(new BitBoard(board()));
+            if (move != BitBoard.NO_MOVE) {
+                event.source = "tablebase";
+                return move;
+            }
         }
-        return Move.move(game().board().sqtoCol(fromSQ),
-                game().board().sqtoRow(fromSQ),
-                game().board().sqtoCol(toSQ),
-                game().board().sqtoRow(toSQ));
+        BitBoard pos = new BitBoard(board());
+        if (pos.numEmpty() < game().endgameThreshold()
+            && pos.numEmpty() < _unsolved) {
+            int move = solveEndgame(pos);
+            if (move != BitBoard.NO_MOVE) {
+                event.source = "endgame";
+                event.nodes = SOLVER.get().nodes();
+                return move;
+            }
+        }
+        if (pos.margin() >= PROOF_MARGIN) {
+            int move = proveWin(pos);
+            if (move != BitBoard.NO_MOVE) {
+                event.source = "proof";
+                event.nodes = PROVER.get().nodes();
+                return move;
+            }
+        }
+        Search search = SEARCH.get();
+        int move = search.search(pos, SEARCH_DEPTH);
+        SearchStats stats = search.stats();
+        game().addSearchStats(stats);
+        event.source = "search";
+        event.depth = search.depth();
+        event.nodes = stats.get(SearchStats.NODES);
+        event.score = search.value();
+        event.hitRate = stats.hitRate();
+        return move;
     }
 
-    /**Style tbh @return move .**/
-    private Move stupidMove() {
-        Board b = new Board(board());
-        return simpleFindMax(b, -INFTY, INFTY);
+    /** Forget the positions in the tables of the searchers of the
+     *  current thread, so that what it finds next does not depend on
+     *  what it searched before. */
+    static void clearTables() {
+        SEARCH.get().clear();
+        SOLVER.get().clear();
+        PROVER.get().clear();
     }
 
-    /** Return a move for me from the current position, assuming there
-     *  is a move. */
-    private Move findMove() {
-        Board b = new Board(board());
-        if (myColor() == RED) {
-            findMove(b, MAX_DEPTH, true, 1, -INFTY, INFTY);
-        } else {
-            findMove(b, MAX_DEPTH, true, -1, -INFTY, INFTY);
+    /** Return the average fraction of the tables of the middle-game
+     *  searchers of all live threads that are in use (see Search.fill),
+     *  or 0 if there are none. */
+    static double tableFill() {
+        double sum = 0;
+        int n = 0;
+        synchronized (SEARCHES) {
+            prune();
+            for (Search search : SEARCHES.values()) {
+                sum += search.fill();
+                n += 1;
+            }
         }
-        return _lastFoundMove;
+        return n == 0 ? 0 : sum / n;
     }
 
-    /** Used to communicate best moves found by findMove, when asked for. */
-    private Move _lastFoundMove;
-
-    /** Find a move from position BOARD and return its value, recording
-     *  the move found in _lastFoundMove iff SAVEMOVE. The move
-     *  should have maximal value or have value >= BETA if SENSE==1,
-     *  and minimal value or value <= ALPHA if SENSE==-1. Searches up to
-     *  DEPTH levels before using a static estimate. */
-    private int findMove(Board board, int depth, boolean saveMove, int sense,
-                         int alpha, int beta) {
-        if (saveMove) {
-            _lastFoundMove = findMax(board, depth, alpha, beta);
+    /** Return the number of live threads with middle-game searchers. */
+    static int searchers() {
+        synchronized (SEARCHES) {
+            prune();
+            return SEARCHES.size();
         }
-        return 0;
     }
 
-    /**Style tbh.
-     * @param alpha a.
-     * @param beta b.
-     * @param board bf.
-     * @return Move .**/
-    private Move simpleFindMax(Board board, int alpha, int beta) {
-        ArrayList<Move> chooseFrom = new ArrayList<>();
-        Random rand = new Random();
-        chooseFrom.add(Move.pass());
-        ArrayList<Integer> thisColor = board.piecesOfColor(board.whoseMove());
-        for (int fromSQ: thisColor) {
-            ArrayList<Integer> availableMoveSQs = new ArrayList<>();
-            availableMoveSQs.addAll(board.availableExtendNeighbours(fromSQ));
-            availableMoveSQs.addAll(board.availableJumpNeighbours(fromSQ));
-            for (int toSQ: availableMoveSQs) {
-                Move attempt = Move.move(board.sqtoCol(fromSQ),
-                        board.sqtoRow(fromSQ),
-                        board.sqtoCol(toSQ), board.sqtoRow(toSQ));
-                board.makeMove(attempt);
-                if (board.gameOver()) {
-                    board.undo();
-                    return attempt;
-                }
-                if (board.numPieces(board.whoseMove().opposite()) > alpha) {
-                    chooseFrom.clear();
-                    chooseFrom.add(attempt);
-                    alpha = board.numPieces(board.whoseMove().opposite());
-                } else if (board.numPieces(board.whoseMove().opposite())
-                        == alpha) {
-                    chooseFrom.add(attempt);
-                }
-                board.undo();
-            }
+    /** Return a new middle-game searcher for the current thread,
+     *  forgetting those of threads that have ended. */
+    private static Search newSearch() {
+        Search search = new Search(SEARCH_TABLE_BITS);
+        synchronized (SEARCHES) {
+            prune();
+            SEARCHES.put(Thread.currentThread(), search);
         }
-        Move rslt = chooseFrom.get(rand.nextInt(chooseFrom.size()));
-        while (chooseFrom.size() != 1 && rslt == Move.PASS) {
-            rslt = chooseFrom.get(rand.nextInt(chooseFrom.size()));
+        return search;
+    }
+
+    /** Remove the searchers of threads that have ended from SEARCHES,
+     *  whose lock I hold. */
+    private static void prune() {
+        Iterator<Map.Entry<Thread, Search>> entries =
+            SEARCHES.entrySet().iterator();
+        while (entries.hasNext()) {
+            if (!entries.next().getKey().isAlive()) {
+                entries.remove();
+            }
         }
-        return rslt;
     }
 
-    /**Style tbh.
-     * @param board b
-     * @param depth d
-     * @param alpha a
-     * @param beta bbb
-     * @return m.**/
-    Move findMax(Board board, int depth, int alpha, int beta) {
-        if (depth == 0 || board.numEmpty() >= 5) {
-            return simpleFindMax(board, alpha, beta);
+    /** Return an encoded winning or drawing move from POS found by the
+     *  endgame solver, or BitBoard.NO_MOVE if POS is lost or the solver
+     *  gives up.  If it gives up, I do not try again until fewer squares
+     *  are empty, since jumps can keep the tree too large for many moves
+     *  and a failed solve only delays the search.  Reports the outcome
+     *  on the standard error. */
+    private int solveEndgame(BitBoard pos) {
+        EndgameSolver solver = SOLVER.get();
+        solver.setTablebase(game().tablebase());
+        int move = solver.solve(pos, false, SOLVER_NODES);
+        String outcome;
+        if (move == BitBoard.NO_MOVE) {
+            outcome = "unsolved";
+            _unsolved = pos.numEmpty();
+        } else if (solver.value() > 0) {
+            outcome = "won";
+        } else if (solver.value() == 0) {
+            outcome = "drawn";
+        } else {
+            outcome = "lost";
+            move = BitBoard.NO_MOVE;
         }
-        ArrayList<Move> chooseFrom = new ArrayList<>();
-        ArrayList<Integer> thisColor = board.piecesOfColor(board.whoseMove());
-        for (int fromSQ : thisColor) {
-            ArrayList<Integer> availableMoveSQs = new ArrayList<>();
-            availableMoveSQs.addAll(board.availableExtendNeighbours(fromSQ));
-            availableMoveSQs.addAll(board.availableJumpNeighbours(fromSQ));
-            for (int toSQ : availableMoveSQs) {
-                Move movin = Move.move(board.sqtoCol(fromSQ),
-                        board.sqtoRow(fromSQ),
-                        board.sqtoCol(toSQ), board.sqtoRow(toSQ));
-                if (!board.legalMove(movin)) {
-                    board.changeWhoseMoveTo(myColor());
-                }
-                assert board.legalMove(movin);
-                board.makeMove(movin);
-                if (board.gameOver()) {
-                    board.undo();
-                    return movin;
-                }
-                setColor(myColor().opposite());
-                Board b2 = new Board(board);
-                Move response = findMax(b2, depth - 1, 0, beta);
-                if (!board.legalMove(response)) {
-                    response = simpleFindMax(board, -INFTY, INFTY);
-                }
-                assert board.legalMove(response);
-                board.makeMove(response);
-                setColor(myColor().opposite());
-                if (board.numPieces(myColor()) > alpha) {
-                    chooseFrom.clear();
-                    chooseFrom.add(movin);
-                    alpha = board.numPieces(myColor());
-                } else if (board.numPieces(myColor()) == alpha) {
-                    chooseFrom.add(movin);
+        game().reportNote("Endgame with %d empty squares %s for %s"
+                          + " (%d nodes, %.1f ms).", pos.numEmpty(),
+                          outcome, myColor(), solver.nodes(),
+                          solver.nanos() * 1e-6);
+        return move;
+    }
+
+    /** Return the first move of a proof that I can eliminate my
+     *  opponent or, failing that, win from POS, or BitBoard.NO_MOVE if
+     *  the proof search finds neither.  Reports proofs on the standard
+     *  error. */
+    private int proveWin(BitBoard pos) {
+        ProofSearch prover = PROVER.get();
+        for (ProofSearch.Goal g : PROOF_GOALS) {
+            if (prover.prove(pos, g, PROOF_NODES)
+                == ProofSearch.Result.PROVEN) {
+                int[] proof = prover.sequence();
+                game().reportNote("Proved %s for %s in %d moves"
+                                  + " (%d nodes, %.1f ms).",
+                                  g == ProofSearch.Goal.WIN ? "a win"
+                                  : "elimination", myColor(),
+                                  (proof.length + 1) / 2, prover.nodes(),
+                                  prover.nanos() * 1e-6);
+                if (proof.length > 0) {
+                    return proof[0];
                 }
-                board.undo();
-                board.undo();
             }
         }
-        Random rand = new Random();
-        if (chooseFrom.size() == 0) {
-            return stupidMove();
-        }
-        Move random = chooseFrom.get(rand.nextInt(chooseFrom.size()));
-        return random;
+        return BitBoard.NO_MOVE;
     }
 
-    /** Return a heuristic value for BOARD. */
-    private int staticScore(Board board) {
-        return 0;
-    }
+    /** The searchers in SEARCH, by thread.  Threads are held weakly, and
+     *  removed when they end (see prune), so that the tables of threads
+     *  that come and go, as in the pools of the daemon and of
+     *  tournaments, are not kept.  Guarded by itself. */
+    private static final WeakHashMap<Thread, Search> SEARCHES =
+        new WeakHashMap<>();
+    /** Searchers of the middle game, one for each thread, shared by the
+     *  AIs moving on it (so that many games on few threads need few
+     *  tables).  Their tables hold only facts about positions, which
+     *  remain true from game to game. */
+    private static final ThreadLocal<Search> SEARCH =
+        ThreadLocal.withInitial(AI::newSearch);
+    /** Endgame solvers, one for each thread. */
+    private static final ThreadLocal<EndgameSolver> SOLVER =
+        ThreadLocal.withInitial(() -> new EndgameSolver(SOLVER_TABLE_BITS));
+    /** Proof searchers, one for each thread. */
+    private static final ThreadLocal<ProofSearch> PROVER =
+        ThreadLocal.withInitial(() -> new ProofSearch(PROOF_TABLE_BITS));
+
+    /** Number of empty squares at which the endgame solver last gave up
+     *  in this game: it is not tried again until there are fewer. */
+    private int _unsolved = Integer.MAX_VALUE;
 }
@@ -0,0 +1,151 @@
+package ataxx;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static ataxx.BitBoard.*;
+
+/** Multi-PV analysis: the best few moves from a position, each with its
+ *  exact value and principal variation, found by one search (see
+ *  Search).  The search deepens iteratively; at each depth it finds the
+ *  best move, then the best of the others, and so on, each search
+ *  excluding the root moves already reported at that depth.  All of
+ *  them share one table, so each line and each depth profits from what
+ *  the others found, and reviewing N moves costs far less than N
+ *  separate searches.  Values are piece margins for the player on move,
+ *  Search.WIN_VALUE beyond the margin if the game ends in the line.
+ *  @author Yevgen Vasylenko
+ */
+class Analyzer {
+
+    /** Default depth of an analysis. */
+    static final int DEFAULT_DEPTH = 5;
+    /** Default log2 of the number of entries in the table. */
+    static final int DEFAULT_TABLE_BITS = 20;
+
+    /** One line of an analysis: a move, its value and the principal
+     *  variation it starts. */
+    static class Line {
+
+        /** A line searched to DEPTH plies with value VALUE and principal
+         *  variation PV (encoded moves, the first being the move
+         *  analyzed). */
+        Line(int depth, int value, int[] pv) {
+            _depth = depth;
+            _value = value;
+            _pv = pv.clone();
+        }
+
+        /** Return the encoded move analyzed. */
+        int move() {
+            return _pv[0];
+        }
+
+        /** Return its value for the player making it. */
+        int value() {
+            return _value;
+        }
+
+        /** Return the depth to which it was searched. */
+        int depth() {
+            return _depth;
+        }
+
+        /** Return its principal variation, as encoded moves. */
+        int[] pv() {
+            return _pv.clone();
+        }
+
+        /** Return me as text: the move, its value and its principal
+         *  variation, with moves as for the move commands. */
+        @Override
+        public String toString() {
+            StringBuilder out =
+                new StringBuilder(String.format("%-5s %+5d  depth %d  pv",
+                                                toMove(move()), _value,
+                                                _depth));
+            for (int move : _pv) {
+                out.append(' ').append(toMove(move));
+            }
+            return out.toString();
+        }
+
+        /** Depth searched. */
+        private final int _depth;
+        /** Value of the move. */
+        private final int _value;
+        /** Principal variation. */
+        private final int[] _pv;
+    }
+
+    /** An analyzer whose table has 2^TABLEBITS entries. */
+    Analyzer(int tableBits) {
+        _search = new Search(tableBits);
+    }
+
+    /** Return the best LINES moves from POS (or all of them, if fewer),
+     *  best first, searched to DEPTH plies (1 <= DEPTH <=
+     *  Search.MAX_DEPTH).  After each depth, pass the lines found at it
+     *  to INFO (unless null).  If stopped, return the lines of the last
+     *  depth completed; the first depth always completes. */
+    List<Line> analyze(BitBoard pos, int lines, int depth,
+                       Consumer<List<Line>> info) {
+        if (pos.gameOver()) {
+            throw GameException.error("game is over");
+        }
+        _search.clearStop();
+        _nodes = 0;
+        List<Line> result = Collections.emptyList();
+        for (int d = 1; d <= depth; d += 1) {
+            List<Line> found = new ArrayList<>();
+            int[] excluded = new int[0];
+            while (found.size() < lines) {
+                int move = _search.search(pos, d, excluded, d > 1);
+                _nodes += _search.nodes();
+                if (move == NO_MOVE) {
+                    break;
+                }
+                found.add(new Line(d, _search.value(), _search.pv()));
+                excluded = Arrays.copyOf(excluded, excluded.length + 1);
+                excluded[excluded.length - 1] = move;
+            }
+            if (found.size() < lines && found.size() < numMoves(pos)) {
+                break;
+            }
+            result = Collections.unmodifiableList(found);
+            if (info != null) {
+                info.accept(result);
+            }
+        }
+        return result;
+    }
+
+    /** Cause the current analysis (from any thread) to stop as soon as
+     *  it may, returning the lines of the last depth completed. */
+    void stop() {
+        _search.stop();
+    }
+
+    /** Forget all analyzed positions. */
+    void clear() {
+        _search.clear();
+    }
+
+    /** Return the number of nodes visited by the last analysis. */
+    long nodes() {
+        return _nodes;
+    }
+
+    /** Return the number of distinct moves from POS. */
+    private static int numMoves(BitBoard pos) {
+        return pos.generateDistinct(new int[MAX_MOVES], 0);
+    }
+
+    /** The search performing my analyses. */
+    private final Search _search;
+    /** Nodes visited by the current or last analysis. */
+    private long _nodes;
+}
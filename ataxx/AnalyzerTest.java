@@ -0,0 +1,60 @@
+package ataxx;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/** Tests of multi-PV analysis.
+ *  @author Yevgen Vasylenko
+ */
+public class AnalyzerTest {
+
+    /** A position after a few moves, with blocks. */
+    private static final String POSITION = "r5b/1r5/2X1X2/7/2X1X2/b6/b5r r";
+
+    @Test public void testLines() {
+        BitBoard pos = BitBoard.parse(POSITION);
+        List<Analyzer.Line> lines =
+            new Analyzer(16).analyze(pos, 4, 3, null);
+        assertEquals(4, lines.size());
+        HashSet<Integer> moves = new HashSet<>();
+        for (int i = 0; i < lines.size(); i += 1) {
+            Analyzer.Line line = lines.get(i);
+            assertTrue(moves.add(line.move()));
+            assertEquals(3, line.depth());
+            if (i > 0) {
+                assertTrue(line.value() <= lines.get(i - 1).value());
+            }
+            BitBoard b = new BitBoard(pos);
+            for (int move : line.pv()) {
+                assertTrue(b.legal(move));
+                b.makeMove(move);
+            }
+            b = new BitBoard(pos);
+            b.makeMove(line.move());
+            Search child = new Search(16);
+            child.search(b, 2);
+            assertEquals(line.toString(), -child.value(), line.value());
+        }
+        Search whole = new Search(16);
+        assertEquals(whole.search(pos, 3), lines.get(0).move());
+        assertEquals(whole.value(), lines.get(0).value());
+    }
+
+    @Test public void testAllMoves() {
+        BitBoard pos = new BitBoard();
+        int n = pos.generateDistinct(new int[BitBoard.MAX_MOVES], 0);
+        ArrayList<Integer> depths = new ArrayList<>();
+        List<Analyzer.Line> lines =
+            new Analyzer(16).analyze(pos, 100, 2,
+                                     found -> depths.add(found.get(0)
+                                                         .depth()));
+        assertEquals(n, lines.size());
+        assertEquals("[1, 2]", depths.toString());
+    }
+
+}
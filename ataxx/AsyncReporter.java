@@ -0,0 +1,243 @@
+package ataxx;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.Formatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/** A Reporter that writes messages from a background thread, so that
+ *  the threads reporting them never wait on the console (unless they
+ *  get a whole ring ahead of it).  Messages go to one channel and
+ *  diagnostics to another, as for TextReporter.
+ *
+ *  Messages pass through a ring of RING_SIZE slots, each with its own
+ *  StringBuilder and Formatter, which are reused, so reporting a message
+ *  allocates nothing beyond what formatting its arguments does.  Any
+ *  number of threads may report at once: a reporter claims a slot by
+ *  advancing the ring's tail with a compare-and-set, formats into it,
+ *  and publishes it by setting its sequence number (the scheme of a
+ *  bounded queue by D. Vyukov).  The writer thread takes the published
+ *  slots in order, encodes as many as are ready into one buffer for each
+ *  channel, frees the slots, and writes each buffer with one call.  It
+ *  sleeps while the ring is empty, and reporters wake it only when it
+ *  does.  Messages from one thread appear in the order reported;
+ *  messages and diagnostics may be interleaved differently than they
+ *  were reported, as with any two streams.
+ *  @author Yevgen Vasylenko
+ */
+class AsyncReporter implements Reporter, AutoCloseable {
+
+    /** Number of slots in the ring (a power of two). */
+    static final int RING_SIZE = 1024;
+    /** Size of the writer's buffers in bytes. */
+    static final int BUFFER_SIZE = 1 << 16;
+
+    /** A reporter writing messages to OUT and diagnostics to ERR. */
+    AsyncReporter(WritableByteChannel out, WritableByteChannel err) {
+        _out = out;
+        _err = err;
+        for (int i = 0; i < RING_SIZE; i += 1) {
+            _text[i] = new StringBuilder();
+            _formatters[i] = new Formatter(_text[i]);
+            _sequence.set(i, i);
+        }
+        _writer = new Thread(this::drain, "async-reporter");
+        _writer.setDaemon(true);
+        _writer.start();
+    }
+
+    /** A reporter writing messages to the standard output and
+     *  diagnostics to the standard error. */
+    AsyncReporter() {
+        this(new FileOutputStream(FileDescriptor.out).getChannel(),
+             new FileOutputStream(FileDescriptor.err).getChannel());
+    }
+
+    @Override
+    public void errMsg(String format, Object... args) {
+        report(OUT_LINE, format, args);
+    }
+
+    @Override
+    public void outcomeMsg(String format, Object... args) {
+        report(OUT_LINE, format, args);
+    }
+
+    @Override
+    public void moveMsg(String format, Object... args) {
+        report(OUT_LINE, format, args);
+    }
+
+    @Override
+    public void noteMsg(String format, Object... args) {
+        report(ERR_LINE, format, args);
+    }
+
+    @Override
+    public void promptMsg(String prompt) {
+        report(OUT_TEXT, "%s", prompt);
+    }
+
+    /** Wait until all messages reported so far (by any thread) have been
+     *  written. */
+    @Override
+    public void flush() {
+        long target = _tail.get();
+        LockSupport.unpark(_writer);
+        while (_written < target && _writer.isAlive()) {
+            LockSupport.parkNanos(FLUSH_WAIT);
+        }
+    }
+
+    /** Write all messages reported so far and stop the writer. */
+    @Override
+    public void close() {
+        flush();
+        _closed = true;
+        LockSupport.unpark(_writer);
+        try {
+            _writer.join();
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Add the message formed from FORMAT and ARGS as for String.format
+     *  to the ring, of kind KIND. */
+    private void report(int kind, String format, Object... args) {
+        long pos;
+        int slot;
+        while (true) {
+            pos = _tail.get();
+            slot = (int) pos & MASK;
+            long diff = _sequence.get(slot) - pos;
+            if (diff == 0) {
+                if (_tail.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+            } else if (diff < 0) {
+                LockSupport.unpark(_writer);
+                Thread.yield();
+            }
+        }
+        _text[slot].setLength(0);
+        _formatters[slot].format(format, args);
+        if (kind != OUT_TEXT) {
+            _text[slot].append('\n');
+        }
+        _kinds[slot] = kind;
+        _sequence.set(slot, pos + 1);
+        if (_sleeping) {
+            LockSupport.unpark(_writer);
+        }
+    }
+
+    /** Write out messages as they are published, until closed. */
+    private void drain() {
+        ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE),
+            err = ByteBuffer.allocate(BUFFER_SIZE);
+        long head = 0;
+        while (true) {
+            int slot = (int) head & MASK;
+            if (_sequence.get(slot) == head + 1) {
+                ByteBuffer buf = _kinds[slot] == ERR_LINE ? err : out;
+                encode(_text[slot], buf,
+                       buf == err ? _err : _out);
+                _sequence.set(slot, head + RING_SIZE);
+                head += 1;
+                continue;
+            }
+            write(out, _out);
+            write(err, _err);
+            _written = head;
+            if (_closed) {
+                return;
+            }
+            _sleeping = true;
+            if (_sequence.get(slot) != head + 1) {
+                LockSupport.park(this);
+            }
+            _sleeping = false;
+        }
+    }
+
+    /** Encode TEXT into BUF, writing BUF to CHANNEL whenever it fills. */
+    private void encode(StringBuilder text, ByteBuffer buf,
+                        WritableByteChannel channel) {
+        CharBuffer chars = CharBuffer.wrap(text);
+        _encoder.reset();
+        while (true) {
+            CoderResult r = _encoder.encode(chars, buf, true);
+            if (r.isOverflow()) {
+                write(buf, channel);
+            } else {
+                break;
+            }
+        }
+        while (_encoder.flush(buf).isOverflow()) {
+            write(buf, channel);
+        }
+    }
+
+    /** Write the contents of BUF to CHANNEL and clear BUF.  Errors in
+     *  writing are ignored, as they are by System.out. */
+    private void write(ByteBuffer buf, WritableByteChannel channel) {
+        buf.flip();
+        try {
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+        } catch (IOException excp) {
+            /* Ignore IOException */
+        }
+        buf.clear();
+    }
+
+    /** Kind of a message written to _out with a line ending. */
+    private static final int OUT_LINE = 0;
+    /** Kind of a message written to _err with a line ending. */
+    private static final int ERR_LINE = 1;
+    /** Kind of text (a prompt) written to _out as is. */
+    private static final int OUT_TEXT = 2;
+    /** Selects a slot from a position in the ring. */
+    private static final int MASK = RING_SIZE - 1;
+    /** Time between checks while waiting for a flush (ns). */
+    private static final long FLUSH_WAIT = 50000;
+
+    /** Destination of messages. */
+    private final WritableByteChannel _out;
+    /** Destination of diagnostics. */
+    private final WritableByteChannel _err;
+    /** The text of the message in each slot. */
+    private final StringBuilder[] _text = new StringBuilder[RING_SIZE];
+    /** Formatters into _text. */
+    private final Formatter[] _formatters = new Formatter[RING_SIZE];
+    /** The kind of the message in each slot. */
+    private final int[] _kinds = new int[RING_SIZE];
+    /** Sequence numbers of the slots: a slot at position P of the ring
+     *  is free for a reporter when its number is P, and published to
+     *  the writer when it is P + 1. */
+    private final AtomicLongArray _sequence = new AtomicLongArray(RING_SIZE);
+    /** Position of the next slot to be claimed. */
+    private final AtomicLong _tail = new AtomicLong();
+    /** Number of messages written. */
+    private volatile long _written;
+    /** True while the writer may be parked. */
+    private volatile boolean _sleeping;
+    /** True once closed. */
+    private volatile boolean _closed;
+    /** Encodes messages (used only by the writer). */
+    private final CharsetEncoder _encoder =
+        StandardCharsets.UTF_8.newEncoder();
+    /** The writer thread. */
+    private final Thread _writer;
+}
@@ -0,0 +1,69 @@
+package ataxx;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/** Tests of the asynchronous reporter.
+ *  @author Yevgen Vasylenko
+ */
+public class AsyncReporterTest {
+
+    @Test public void testOrder() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(),
+            err = new ByteArrayOutputStream();
+        AsyncReporter reporter =
+            new AsyncReporter(Channels.newChannel(out),
+                              Channels.newChannel(err));
+        reporter.moveMsg("Red moves %s.", "a7-b6");
+        reporter.noteMsg("%d nodes", 42);
+        reporter.promptMsg("Blue: ");
+        reporter.errMsg("Try again.");
+        reporter.outcomeMsg("Red wins.");
+        reporter.flush();
+        assertEquals("Red moves a7-b6.\nBlue: Try again.\nRed wins.\n",
+                     out.toString());
+        assertEquals("42 nodes\n", err.toString());
+        reporter.moveMsg("\u00e9t\u00e9");
+        reporter.close();
+        assertTrue(new String(out.toByteArray(), StandardCharsets.UTF_8)
+                   .endsWith("\u00e9t\u00e9\n"));
+    }
+
+    @Test public void testThreads() throws InterruptedException {
+        final int threads = 4, messages = 3 * AsyncReporter.RING_SIZE;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AsyncReporter reporter =
+            new AsyncReporter(Channels.newChannel(out),
+                              Channels.newChannel(out));
+        Thread[] reporters = new Thread[threads];
+        for (int t = 0; t < threads; t += 1) {
+            final int id = t;
+            reporters[t] = new Thread(() -> {
+                for (int i = 0; i < messages; i += 1) {
+                    reporter.moveMsg("%d %d", id, i);
+                }
+            });
+            reporters[t].start();
+        }
+        for (Thread t : reporters) {
+            t.join();
+        }
+        reporter.flush();
+        String[] lines = out.toString().split("\n");
+        assertEquals(threads * messages, lines.length);
+        int[] next = new int[threads];
+        for (String line : lines) {
+            String[] fields = line.split(" ");
+            int id = Integer.parseInt(fields[0]);
+            assertEquals(next[id], Integer.parseInt(fields[1]));
+            next[id] += 1;
+        }
+        reporter.close();
+    }
+
+}
@@ -2,37 +2,22 @@ package ataxx;
 
 import ucb.gui2.Pad;
 
-import java.awt.Color;
 import java.awt.Graphics2D;
-import java.awt.BasicStroke;
-import java.util.Observer;
-import java.util.Observable;
 
 import java.awt.event.MouseEvent;
+import java.util.function.Consumer;
 
 import static ataxx.PieceColor.*;
 
 /** Widget for displaying an Ataxx board.
  *  @author Yevgen Vasylenko
  */
-class AtaxxBoardWidget extends Pad implements Observer {
+class AtaxxBoardWidget extends Pad implements BoardListener {
 
     /** Length of side of one square, in pixels. */
-    static final int SQDIM = 50;
+    static final int SQDIM = BoardRenderer.DEFAULT_SQUARE;
     /** Number of squares on a side. */
     static final int SIDE = Board.SIDE;
-    /** Radius of circle representing a piece. */
-    static final int PIECE_RADIUS = 15;
-
-    /** Color of red pieces. */
-    private static final Color RED_COLOR = Color.RED;
-    /** Color of blue pieces. */
-    private static final Color BLUE_COLOR = Color.BLUE;
-    /** Color of blank squares. */
-    private static final Color BLANK_COLOR = Color.WHITE;
-
-    /** Stroke for lines. */
-    private static final BasicStroke LINE_STROKE = new BasicStroke(1.0f);
 
 
     /** Model being displayed. */
@@ -44,20 +29,23 @@ class AtaxxBoardWidget extends Pad implements Observer {
         setMouseHandler("click", this::readMove);
         _dim = SQDIM * SIDE;
         setPreferredSize(_dim, _dim);
+        _renderer.draw(new BitBoard(model));
+        model.addListener(new BoardDispatcher(this));
     }
 
     @Override
     public synchronized void paintComponent(Graphics2D g) {
-        g.setColor(BLANK_COLOR);
-        g.fillRect(0, 0, _dim, _dim);
-
+        g.drawImage(_renderer.image(), 0, 0, null);
     }
 
-    /** Draw a block centered at (CX, CY) on G. */
-    void drawBlock(Graphics2D g, int cx, int cy) {
+    /** Have HANDLER receive the square (such as "b6") of each click on
+     *  the board. */
+    void setClickHandler(Consumer<String> handler) {
+        _clicked = handler;
     }
 
-    /** Notify observers of mouse's current position from click event WHERE. */
+    /** Pass the square clicked in click event WHERE to the click
+     *  handler, if any. */
     private void readMove(String unused, MouseEvent where) {
         int x = where.getX(), y = where.getY();
         char mouseCol, mouseRow;
@@ -66,19 +54,26 @@ class AtaxxBoardWidget extends Pad implements Observer {
             mouseRow = (char) ((SQDIM * SIDE - y) / SQDIM + '1');
             if (mouseCol >= 'a' && mouseCol <= 'g'
                 && mouseRow >= '1' && mouseRow <= '7') {
-                setChanged();
-                notifyObservers("" + mouseCol + mouseRow);
+                if (_clicked != null) {
+                    _clicked.accept("" + mouseCol + mouseRow);
+                }
             }
         }
     }
 
+    /** Redraw the squares of the model that DELTA changed. */
     @Override
-    public synchronized void update(Observable model, Object arg) {
+    public synchronized void boardChanged(Board board, MoveDelta delta) {
+        _renderer.update(delta);
         repaint();
     }
 
     /** Dimension of current drawing surface in pixels. */
     private int _dim;
+    /** Draws the board. */
+    private final BoardRenderer _renderer = new BoardRenderer(SQDIM);
+    /** Receives the squares clicked, or null. */
+    private Consumer<String> _clicked;
 
 
 }
@@ -3,25 +3,22 @@ package ataxx;
 import ucb.gui2.TopLevel;
 import ucb.gui2.LayoutSpec;
 
-import java.util.Observable;
-import java.util.Observer;
-
 import java.io.Writer;
 import java.io.PrintWriter;
 
 /** The GUI for the Ataxx game.
  *  @author Yevgen Vasylenko
  */
-class AtaxxGUI extends TopLevel implements Observer, Reporter {
+class AtaxxGUI extends TopLevel implements Reporter {
 
     /* The implementation strategy applied here is to make it as
      * unnecessary as possible for the rest of the program to know that it
      * is interacting with a GUI as opposed to a terminal.
      *
-     * To this end, we first have made Board observable, so that the
-     * GUI gets notified of changes to a Game's board and can interrogate
-     * it as needed, while the Game and Board themselves need not be aware
-     * that it is being watched.
+     * To this end, we first have made Board tell listeners of its changes
+     * (see BoardListener), so that the board widget gets notified of
+     * changes to a Game's board, with what changed, while the Game and
+     * Board themselves need not be aware that it is being watched.
      *
      * Second, instead of creating a new API by which the GUI communicates
      * with a Game, we instead simply arrange to make the GUI's input look
@@ -55,8 +52,7 @@ class AtaxxGUI extends TopLevel implements Observer, Reporter {
                            "ileft", 5, "itop", 5, "iright", 5,
                            "ibottom", 5));
         setMinimumSize(MIN_SIZE, MIN_SIZE);
-        _widget.addObserver(this);
-        _model.addObserver(this);
+        _widget.setClickHandler(this::movePiece);
     }
 
     /** Execute the "Quit" button function. */
@@ -92,12 +88,7 @@ class AtaxxGUI extends TopLevel implements Observer, Reporter {
     }
 
     @Override
-    public void update(Observable obs, Object arg) {
-        if (obs == _model) {
-            int i;
-        } else if (obs == _widget) {
-            int b;
-        }
+    public void noteMsg(String format, Object... args) {
     }
 
     /** Respond to a click on SQ while in "play" mode. */
@@ -0,0 +1,146 @@
+package ataxx;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** A standard benchmark of the engine's search: a fixed suite of
+ *  positions (openings, block layouts, middle games and near-endgames,
+ *  as strings for BitBoard.parse) each searched to a fixed depth from an
+ *  empty table.  Since Search is deterministic, the total number of nodes
+ *  is a signature of its behavior, the same on every machine and for any
+ *  number of threads: a change that alters it changes the search, and
+ *  one that does not, probably doesn't.  The nodes per second compare
+ *  machines and builds.
+ *  @author Yevgen Vasylenko
+ */
+class Bench {
+
+    /** Depth searched if none is given. */
+    static final int DEFAULT_DEPTH = 5;
+    /** Log2 of the number of entries in each searcher's table. */
+    static final int TABLE_BITS = 20;
+
+    /** The positions searched. */
+    static final String[] POSITIONS = {
+        "r5b/4b2/7/7/6r/5r1/b6 r 1",
+        "6b/2b4/1b5/7/1b3rr/bb3rr/b2bbrr r 1",
+        "rr3bb/7/7/7/bbbrbbr/1bbbbrr/2r1rr1 r 1",
+        "bb5/2bb1b1/3bbb1/6b/6b/2r1bbb/rr2bb1 r 2",
+        "7/bb1bbr1/rrbbbrb/rrbbbrr/rrbbbrr/bbbbbbb/rr1bbbb b 1",
+        "r3b2/7/2X1X2/7/2X1X2/b3r2/b3r2 r 0",
+        "2r4/7/2X1Xbb/5bb/2X1Xb1/b3bb1/bb5 r 2",
+        "r6/7/2X1Xr1/1r3r1/rrXbXr1/bbbbb1r/rrbrr2 r 0",
+        "b5b/r6/rrX1X2/rr5/1rXrXbb/bbbrbbb/bb1rrr1 r 2",
+        "2bbrrr/rrbbrrr/bbXbXb1/bbbbrrr/bbXbX2/bbbb3/bbbrr2 b 0",
+        "r5b/7/1X3X1/7/1X3X1/b4r1/bb3rr r 0",
+        "2r4/r6/1X3Xb/6b/bX3X1/bb5/bbb2rr r 2",
+        "b5r/b4rr/1X3X1/b5r/bX3Xr/bbbbbbr/3bb2 r 1",
+        "bbr4/bbr4/1X3Xb/5b1/rXrrbX1/1rr4/1r5 r 8",
+        "b3bbr/2bbrrr/rXbbbXb/rb3bb/rXrr1Xb/rbbrrrr/rbrrrrr r 1",
+        "r5b/7/7/3X3/7/b4r1/bb3rr r 0",
+        "6b/7/b6/b2X3/1b3br/b3bbr/1b3br r 3",
+        "7/6r/5rr/3Xrr1/b3rb1/b5b/bb4b r 0",
+        "r3r1b/5bb/4bbb/3X3/1bbb3/rbrbb2/rbrb2r r 0",
+        "1r1bbrb/1rbbbrb/bbbbbbb/rrbXbbb/rr2bbb/b2rrbb/3rrrr r 0",
+        "r5b/7/3X3/2X1X2/3X1r1/b4r1/bb5 r 0",
+        "r5b/7/3X3/2XbX2/r1rXb2/rr3b1/r5b r 1",
+        "r5r/rr3r1/bbbX3/1bX1X2/bbbX1bb/bb3bb/bb3bb r 0",
+        "1r5/4r1r/rr1Xrrr/rrXrXrr/rrrXrrb/bbrbbbb/bbrbbbb r 0",
+        "bbbbb2/bbbbrr1/bbbXrr1/rrXrX2/brbXbb1/rrrrbb1/brrrb2 r 3",
+        "r5b/1X3X1/7/3X3/6r/1X3X1/bbb3r r 0",
+        "rr3b1/1X3X1/6b/3X3/bb3rr/bX2rXr/b2rrrr r 1",
+        "7/1X3Xr/rbb3r/rbbX3/1b3rr/rX2rXb/1b3bb r 3",
+        "7/1X1r1Xr/1rr2r1/rrrX1rr/1rbb2r/bXbbbX1/rr1b2b r 2",
+        "1r4r/rXrbbXb/rr1bbrr/bbrXrrr/2rrrrr/1XrrrXb/1rrrrbb b 2",
+        "r5b/7/2X1X2/2X1X2/2X1X2/4b2/4bb1 r 3",
+        "4bbb/3rbbb/2XbX2/2X1X2/2X1X2/5rr/bb3rr r 0",
+        "bb1bbbb/1b1bbbb/2X1X2/2X1Xr1/2X1X2/6r/rrrr2r r 0",
+        "3r3/r1rrr2/1rXrX2/bbXrXb1/bbX1Xbb/bbrbbbb/1bbbrr1 r 3",
+        "2bb3/2bbbrr/1bXbXrr/bbXbX1r/bbXbXrr/bbbrrrr/bbbrrbb b 2",
+        "r5b/3X3/7/X5X/7/b2X1r1/bb3rr r 0",
+        "r5b/r2X3/r6/X5X/7/bbrX3/bbr3r r 2",
+        "rr3b1/3X3/7/X3bbX/1rr1bbr/brrX1rr/bbrrrrr r 3",
+        "6b/brrX3/bbbb3/Xbbb2X/5rb/3Xrbb/1bbbbbb r 1",
+        "3r1bb/1b1X1bb/1rr1bbr/XbbbbbX/bbbbrrr/bbbXrrb/bbrrrrb r 1",
+        "6b/2X1X2/2r4/1X1X1X1/1b5/2X1X2/b4rr r 2",
+        "6b/2XbX2/2bb3/1XrX1X1/1bb3r/bbX1X1r/b4rr r 1",
+        "2b1rrb/bbXbXbr/3rrrr/1X1XbX1/1b5/b1X1X2/bb5 r 1",
+        "1r2brr/2XbXrb/4bbb/rX1X1X1/5rr/r1XbXrr/rrbbbbb r 0",
+        "r6/1rX1Xr1/1rrrrrr/bXbXbXr/rrbbbrr/rbXbXrr/bbrbbrr b 0",
+        "r5b/7/1X1X1X1/7/1X1X1X1/b5r/bb3rr r 0",
+        "rrr3b/1r3bb/1X1X1Xb/7/1X1X1X1/bb3rr/bb3rr r 2",
+        "r5r/3r3/1X1XrX1/3bbb1/1X1X1X1/1b2bbb/bb1bbbb r 0",
+        "3rbb1/3rrrb/1X1XrXr/3rrrr/1X1XbXr/bb1bbrb/b3brr r 1",
+        "bbbbbbb/1rbbbbb/rXbXbXb/1rbbbbr/1XrXbXr/rrr2rb/1r3rr b 1"
+    };
+
+    /** Search each of POSITIONS to DEPTH plies on THREADS threads, and
+     *  return the numbers of nodes visited for each. */
+    static long[] run(int depth, int threads) {
+        long[] nodes = new long[POSITIONS.length];
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t += 1) {
+            pool.execute(() -> {
+                Search search = new Search(TABLE_BITS);
+                for (int i = next.getAndIncrement(); i < POSITIONS.length;
+                     i = next.getAndIncrement()) {
+                    search.clear();
+                    search.search(BitBoard.parse(POSITIONS[i]), depth);
+                    nodes[i] = search.nodes();
+                }
+            });
+        }
+        pool.shutdown();
+        try {
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException excp) {
+            throw new IllegalStateException(excp);
+        }
+        return nodes;
+    }
+
+    /** Run the benchmark and report the nodes for each position (on the
+     *  standard error) and the total nodes, time and speed.  ARGS are
+     *  [DEPTH [THREADS]], by default DEFAULT_DEPTH and 1. */
+    public static void main(String[] args) {
+        int depth = DEFAULT_DEPTH, threads = 1;
+        try {
+            if (args.length > 2) {
+                usage();
+            }
+            if (args.length > 0) {
+                depth = Integer.parseInt(args[0]);
+            }
+            if (args.length > 1) {
+                threads = Integer.parseInt(args[1]);
+            }
+        } catch (NumberFormatException excp) {
+            usage();
+        }
+        if (depth < 1 || depth > Search.MAX_DEPTH || threads < 1) {
+            usage();
+        }
+        long start = System.nanoTime();
+        long[] nodes = run(depth, threads);
+        long millis = Math.max(1, (System.nanoTime() - start) / 1000000);
+        long total = 0;
+        for (int i = 0; i < nodes.length; i += 1) {
+            System.err.printf("Position %d/%d: %d nodes%n", i + 1,
+                              nodes.length, nodes[i]);
+            total += nodes[i];
+        }
+        System.out.printf("Depth %d, %d threads%n", depth, threads);
+        System.out.printf("Total time (ms) : %d%n", millis);
+        System.out.printf("Nodes searched  : %d%n", total);
+        System.out.printf("Nodes/second    : %d%n", total * 1000 / millis);
+    }
+
+    /** Give usage message and exit. */
+    private static void usage() {
+        System.err.println("Usage: java ataxx.Main bench [DEPTH [THREADS]]");
+        System.exit(1);
+    }
+}
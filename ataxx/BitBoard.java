@@ -0,0 +1,566 @@
+package ataxx;
+
+import java.util.Arrays;
+
+import static ataxx.PieceColor.*;
+import static ataxx.GameException.error;
+
+/** A compact Ataxx position used by the searchers.  Each of red, blue and
+ *  blocked squares is a 49-bit mask in which bit SQ denotes the square in
+ *  row SQ / 7 and column SQ % 7 (so bit 0 is a1 and bit 48 is g7).  Moves
+ *  are encoded as ints (FROM << 6) | TO, with PASS standing for a pass.
+ *  Unlike Board, a BitBoard has no listeners, allocates nothing while
+ *  making and undoing moves, and treats passes as undoable moves.
+ *  @author Yevgen Vasylenko
+ */
+final class BitBoard {
+
+    /** Number of squares on a side of the board. */
+    static final int SIDE = Board.SIDE;
+    /** Number of squares on the board. */
+    static final int SQUARES = SIDE * SIDE;
+    /** Mask of all squares on the board. */
+    static final long FULL = (1L << SQUARES) - 1;
+    /** Encoding of a pass. */
+    static final int PASS = 0xFFF;
+    /** Encoding of "no move", e.g. for an empty table entry. */
+    static final int NO_MOVE = -1;
+    /** Maximum number of moves (counting each extend from each source
+     *  separately) from any position. */
+    static final int MAX_MOVES = SQUARES * 24;
+
+    /** A new board in the initial position with no blocks. */
+    BitBoard() {
+        this(bit(0, 6) | bit(6, 0), bit(0, 0) | bit(6, 6), 0, RED, 0);
+    }
+
+    /** A position with RED, BLUE and BLOCKS occupied, WHOSEMOVE on move,
+     *  after JUMPS consecutive jumps. */
+    BitBoard(long red, long blue, long blocks, PieceColor whoseMove,
+             int jumps) {
+        _red = red;
+        _blue = blue;
+        _blocks = blocks;
+        _redToMove = whoseMove == RED;
+        _jumps = jumps;
+    }
+
+    /** The position currently on B, with none of its history. */
+    BitBoard(Board b) {
+        for (int sq = 0; sq < SQUARES; sq += 1) {
+            switch (b.get(extendedIndex(sq))) {
+            case RED:
+                _red |= 1L << sq;
+                break;
+            case BLUE:
+                _blue |= 1L << sq;
+                break;
+            case BLOCKED:
+                _blocks |= 1L << sq;
+                break;
+            default:
+                break;
+            }
+        }
+        _redToMove = b.whoseMove() == RED;
+        _jumps = b.numJumps();
+        Events.BoardCopy event = new Events.BoardCopy();
+        if (event.shouldCommit()) {
+            event.kind = "BitBoard";
+            event.commit();
+        }
+    }
+
+    /** A copy of the position on B, with none of its history. */
+    BitBoard(BitBoard b) {
+        this(b._red, b._blue, b._blocks, b.whoseMove(), b._jumps);
+    }
+
+    /** Make me the position with RED, BLUE and BLOCKS occupied, red on
+     *  move iff REDTOMOVE, after JUMPS consecutive jumps, with no moves on
+     *  my undo stack (whose storage I keep). */
+    void reset(long red, long blue, long blocks, boolean redToMove,
+               int jumps) {
+        _red = red;
+        _blue = blue;
+        _blocks = blocks;
+        _redToMove = redToMove;
+        _jumps = jumps;
+        _ply = 0;
+    }
+
+    /** Return the square in column COL ('a'-'g') and row ROW ('1'-'7'). */
+    static int square(char col, char row) {
+        return (row - '1') * SIDE + (col - 'a');
+    }
+
+    /** Return the mask of the square in column C and row R, 0 <= C, R < 7. */
+    static long bit(int c, int r) {
+        return 1L << (r * SIDE + c);
+    }
+
+    /** Return the Board linearized index of square SQ. */
+    static int extendedIndex(int sq) {
+        return Board.index((char) ('a' + sq % SIDE),
+                           (char) ('1' + sq / SIDE));
+    }
+
+    /** Return the square with Board linearized index INDEX, or -1 if
+     *  INDEX is in the border. */
+    static int fromExtended(int index) {
+        int c = index % Board.EXTENDED_SIDE - 2,
+            r = index / Board.EXTENDED_SIDE - 2;
+        if (c < 0 || c >= SIDE || r < 0 || r >= SIDE) {
+            return -1;
+        }
+        return r * SIDE + c;
+    }
+
+    /** Return the encoding of the move FROM-TO. */
+    static int encode(int from, int to) {
+        return (from << 6) | to;
+    }
+
+    /** Return the encoding of MOVE. */
+    static int encode(Move move) {
+        if (move.isPass()) {
+            return PASS;
+        }
+        return encode(fromExtended(move.fromIndex()),
+                      fromExtended(move.toIndex()));
+    }
+
+    /** Return the 'from' square of encoded MOVE. */
+    static int from(int move) {
+        return move >>> 6;
+    }
+
+    /** Return the 'to' square of encoded MOVE. */
+    static int to(int move) {
+        return move & 63;
+    }
+
+    /** Return the Move denoted by encoded MOVE. */
+    static Move toMove(int move) {
+        if (move == PASS) {
+            return Move.pass();
+        }
+        int from = from(move), to = to(move);
+        return Move.move((char) ('a' + from % SIDE),
+                         (char) ('1' + from / SIDE),
+                         (char) ('a' + to % SIDE),
+                         (char) ('1' + to / SIDE));
+    }
+
+    /** Return true iff encoded MOVE is an extend (and not a pass). */
+    static boolean isExtend(int move) {
+        return move != PASS
+            && (ADJACENT[from(move)] & (1L << to(move))) != 0;
+    }
+
+    /** Return the squares within one step of the squares in BITS,
+     *  including BITS themselves. */
+    static long grow(long bits) {
+        long h = (bits | ((bits << 1) & ~COL_A) | ((bits >>> 1) & ~COL_G))
+            & FULL;
+        return (h | (h << SIDE) | (h >>> SIDE)) & FULL;
+    }
+
+    /** Return the mask of red pieces. */
+    long red() {
+        return _red;
+    }
+
+    /** Return the mask of blue pieces. */
+    long blue() {
+        return _blue;
+    }
+
+    /** Return the mask of blocked squares. */
+    long blocks() {
+        return _blocks;
+    }
+
+    /** Return the mask of empty squares. */
+    long empty() {
+        return FULL & ~(_red | _blue | _blocks);
+    }
+
+    /** Return the mask of the pieces of the player on move. */
+    long own() {
+        return _redToMove ? _red : _blue;
+    }
+
+    /** Return the mask of the pieces of the player not on move. */
+    long opponent() {
+        return _redToMove ? _blue : _red;
+    }
+
+    /** Return the color of the player on move. */
+    PieceColor whoseMove() {
+        return _redToMove ? RED : BLUE;
+    }
+
+    /** Return the number of consecutive jumps made so far. */
+    int numJumps() {
+        return _jumps;
+    }
+
+    /** Return the number of empty squares. */
+    int numEmpty() {
+        return Long.bitCount(empty());
+    }
+
+    /** Return the number of COLOR pieces. */
+    int numPieces(PieceColor color) {
+        return Long.bitCount(color == RED ? _red : _blue);
+    }
+
+    /** Return my piece count minus my opponent's, from the point of view
+     *  of the player on move. */
+    int margin() {
+        return Long.bitCount(own()) - Long.bitCount(opponent());
+    }
+
+    /** Return the number of moves made on me that have not been undone. */
+    int ply() {
+        return _ply;
+    }
+
+    /** Return true iff WHO has a move, ignoring whose move it is. */
+    boolean canMove(PieceColor who) {
+        long pieces = who == RED ? _red : _blue;
+        return (grow(grow(pieces)) & empty()) != 0;
+    }
+
+    /** Return true iff the player on move has a move other than a pass. */
+    boolean canMove() {
+        return (grow(grow(own())) & empty()) != 0;
+    }
+
+    /** Return true iff the game is over, by the same rules as
+     *  Board.gameOver. */
+    boolean gameOver() {
+        return _red == 0 || _blue == 0 || _jumps > Board.JUMP_LIMIT
+            || (grow(grow(_red | _blue)) & empty()) == 0;
+    }
+
+    /** Store the legal moves from this position in MOVES, starting at
+     *  index START, and return the index after the last one stored.  As
+     *  on Board, an extend to a given square from each of several pieces
+     *  counts as a separate move.  A pass is generated iff it is the only
+     *  legal move.  Assumes !gameOver(). */
+    int generate(int[] moves, int start) {
+        long empty = empty();
+        int k = start;
+        for (long own = own(); own != 0; own &= own - 1) {
+            int from = Long.numberOfTrailingZeros(own);
+            for (long to = (ADJACENT[from] | JUMPS[from]) & empty; to != 0;
+                 to &= to - 1) {
+                moves[k++] = encode(from, Long.numberOfTrailingZeros(to));
+            }
+        }
+        if (k == start) {
+            moves[k++] = PASS;
+        }
+        return k;
+    }
+
+    /** As for generate, but storing only one extend to each empty square,
+     *  since all extends to a square yield the same position.  Extends
+     *  come first. */
+    int generateDistinct(int[] moves, int start) {
+        long empty = empty(), own = own();
+        int k = start;
+        for (long to = grow(own) & empty; to != 0; to &= to - 1) {
+            int sq = Long.numberOfTrailingZeros(to);
+            moves[k++] = encode(Long.numberOfTrailingZeros(ADJACENT[sq] & own),
+                                sq);
+        }
+        for (; own != 0; own &= own - 1) {
+            int from = Long.numberOfTrailingZeros(own);
+            for (long to = JUMPS[from] & empty; to != 0; to &= to - 1) {
+                moves[k++] = encode(from, Long.numberOfTrailingZeros(to));
+            }
+        }
+        if (k == start) {
+            moves[k++] = PASS;
+        }
+        return k;
+    }
+
+    /** Return true iff encoded MOVE is legal in this position. */
+    boolean legal(int move) {
+        if (move == PASS) {
+            return !canMove() && !gameOver();
+        }
+        int from = from(move), to = to(move);
+        return from < SQUARES && to < SQUARES
+            && (own() & (1L << from)) != 0
+            && (empty() & (1L << to)) != 0
+            && ((ADJACENT[from] | JUMPS[from]) & (1L << to)) != 0;
+    }
+
+    /** Make encoded MOVE, assuming it is legal. */
+    void makeMove(int move) {
+        if (_ply == _moves.length) {
+            expandStack();
+        }
+        _moves[_ply] = move;
+        _savedJumps[_ply] = _jumps;
+        long flipped = 0;
+        if (move != PASS) {
+            int from = from(move), to = to(move);
+            long toBit = 1L << to;
+            long own = own(), opp = opponent();
+            if ((ADJACENT[from] & toBit) != 0) {
+                _jumps = 0;
+            } else {
+                own ^= 1L << from;
+                _jumps += 1;
+            }
+            flipped = ADJACENT[to] & opp;
+            own |= toBit | flipped;
+            opp ^= flipped;
+            setSides(own, opp);
+        }
+        _flipped[_ply] = flipped;
+        _ply += 1;
+        _redToMove = !_redToMove;
+    }
+
+    /** Undo the last move made by makeMove. */
+    void undo() {
+        _ply -= 1;
+        _redToMove = !_redToMove;
+        int move = _moves[_ply];
+        _jumps = _savedJumps[_ply];
+        if (move != PASS) {
+            int from = from(move), to = to(move);
+            long flipped = _flipped[_ply];
+            long own = own(), opp = opponent();
+            own &= ~((1L << to) | flipped);
+            opp |= flipped;
+            if ((ADJACENT[from] & (1L << to)) == 0) {
+                own |= 1L << from;
+            }
+            setSides(own, opp);
+        }
+    }
+
+    /** Return the squares flipped by the last move made. */
+    long lastFlipped() {
+        return _flipped[_ply - 1];
+    }
+
+    /** Return a 64-bit hash of this position (pieces, blocks and side to
+     *  move, but not the jump count).  Keys are the same from run to run,
+     *  so they may be stored in files. */
+    long key() {
+        return key(_red, _blue, _blocks, _redToMove);
+    }
+
+    /** Return a 64-bit hash of this position including its jump count,
+     *  for tables of search results (whose values depend on it). */
+    long searchKey() {
+        return key() ^ (_jumps * JUMP_KEY);
+    }
+
+    /** Return the key of the position with RED, BLUE and BLOCKS, red to
+     *  move iff REDTOMOVE. */
+    static long key(long red, long blue, long blocks, boolean redToMove) {
+        long h = mix(blocks ^ (redToMove ? RED_TO_MOVE : 0));
+        h = mix(h ^ blue);
+        return mix(h + red);
+    }
+
+    /** Return my position as a string, rows 7 to 1 separated by '/',
+     *  each giving its squares from column a as 'r' (red), 'b' (blue),
+     *  'X' (blocked) or a digit counting consecutive empty squares,
+     *  followed by the player on move ('r' or 'b') and the number of
+     *  consecutive jumps.  The initial position is "r5b/7/7/7/7/7/b5r r
+     *  0".  The inverse of parse. */
+    String fen() {
+        StringBuilder out = new StringBuilder();
+        for (int r = SIDE - 1; r >= 0; r -= 1) {
+            int empty = 0;
+            for (int c = 0; c < SIDE; c += 1) {
+                long b = bit(c, r);
+                char ch = (_red & b) != 0 ? 'r' : (_blue & b) != 0 ? 'b'
+                    : (_blocks & b) != 0 ? 'X' : '1';
+                if (ch == '1') {
+                    empty += 1;
+                    continue;
+                }
+                if (empty > 0) {
+                    out.append(empty);
+                    empty = 0;
+                }
+                out.append(ch);
+            }
+            if (empty > 0) {
+                out.append(empty);
+            }
+            out.append(r == 0 ? ' ' : '/');
+        }
+        out.append(_redToMove ? 'r' : 'b').append(' ').append(_jumps);
+        return out.toString();
+    }
+
+    /** Return the position described by FEN, as written by fen().  The
+     *  jump count may be omitted, and is then 0.  The notation of other
+     *  Ataxx programs, which writes 'x' for red, 'o' for blue and '-' for
+     *  a block and may end with a move number (which is ignored), is also
+     *  accepted. */
+    static BitBoard parse(String fen) {
+        String[] fields = fen.trim().split("\\s+");
+        String[] rows = fields[0].split("/", -1);
+        if (fields.length < 2 || fields.length > 4 || rows.length != SIDE
+            || !fields[1].matches("[rbxo]")) {
+            throw error("bad position: %s", fen);
+        }
+        long red = 0, blue = 0, blocks = 0;
+        for (int i = 0; i < SIDE; i += 1) {
+            int r = SIDE - 1 - i, c = 0;
+            for (char ch : rows[i].toCharArray()) {
+                if (ch >= '1' && ch <= '7') {
+                    c += ch - '0';
+                    continue;
+                } else if (c >= SIDE) {
+                    throw error("bad position: %s", fen);
+                }
+                switch (ch) {
+                case 'r':
+                case 'x':
+                    red |= bit(c, r);
+                    break;
+                case 'b':
+                case 'o':
+                    blue |= bit(c, r);
+                    break;
+                case 'X':
+                case '-':
+                    blocks |= bit(c, r);
+                    break;
+                default:
+                    throw error("bad position: %s", fen);
+                }
+                c += 1;
+            }
+            if (c != SIDE) {
+                throw error("bad position: %s", fen);
+            }
+        }
+        int jumps = 0;
+        if (fields.length >= 3) {
+            if (!fields[2].matches("[0-9]{1,2}")
+                || fields.length == 4 && !fields[3].matches("[0-9]{1,9}")) {
+                throw error("bad position: %s", fen);
+            }
+            jumps = Integer.parseInt(fields[2]);
+        }
+        return new BitBoard(red, blue, blocks,
+                            fields[1].matches("[rx]") ? RED : BLUE, jumps);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof BitBoard)) {
+            return false;
+        }
+        BitBoard b = (BitBoard) obj;
+        return _red == b._red && _blue == b._blue && _blocks == b._blocks
+            && _redToMove == b._redToMove && _jumps == b._jumps;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(key());
+    }
+
+    /** Set the pieces of the player on move to OWN and of the other
+     *  player to OPP. */
+    private void setSides(long own, long opp) {
+        if (_redToMove) {
+            _red = own;
+            _blue = opp;
+        } else {
+            _blue = own;
+            _red = opp;
+        }
+    }
+
+    /** Double the capacity of the undo stack. */
+    private void expandStack() {
+        int n = Math.max(16, 2 * _moves.length);
+        _moves = Arrays.copyOf(_moves, n);
+        _savedJumps = Arrays.copyOf(_savedJumps, n);
+        _flipped = Arrays.copyOf(_flipped, n);
+    }
+
+    /** Return a well-scrambled function of Z (the MurmurHash3 finalizer). */
+    static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
+    /** Mask of column a. */
+    static final long COL_A;
+    /** Mask of column g. */
+    static final long COL_G;
+    /** ADJACENT[SQ] is the mask of the squares one step from SQ. */
+    static final long[] ADJACENT = new long[SQUARES];
+    /** JUMPS[SQ] is the mask of the squares exactly two steps from SQ. */
+    static final long[] JUMPS = new long[SQUARES];
+    /** Added into keys of positions with red to move. */
+    private static final long RED_TO_MOVE = 0x9e3779b97f4a7c15L;
+    /** Multiplier of the jump count in search keys. */
+    private static final long JUMP_KEY = 0x2545f4914f6cdd1dL;
+
+    static {
+        long a = 0, g = 0;
+        for (int r = 0; r < SIDE; r += 1) {
+            a |= bit(0, r);
+            g |= bit(SIDE - 1, r);
+        }
+        COL_A = a;
+        COL_G = g;
+        for (int sq = 0; sq < SQUARES; sq += 1) {
+            int c = sq % SIDE, r = sq / SIDE;
+            for (int dc = -2; dc <= 2; dc += 1) {
+                for (int dr = -2; dr <= 2; dr += 1) {
+                    int c1 = c + dc, r1 = r + dr;
+                    if ((dc == 0 && dr == 0) || c1 < 0 || c1 >= SIDE
+                        || r1 < 0 || r1 >= SIDE) {
+                        continue;
+                    }
+                    if (Math.abs(dc) <= 1 && Math.abs(dr) <= 1) {
+                        ADJACENT[sq] |= bit(c1, r1);
+                    } else {
+                        JUMPS[sq] |= bit(c1, r1);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Red pieces. */
+    private long _red;
+    /** Blue pieces. */
+    private long _blue;
+    /** Blocked squares. */
+    private long _blocks;
+    /** True iff red is on move. */
+    private boolean _redToMove;
+    /** Number of consecutive jumps. */
+    private int _jumps;
+    /** Number of moves on the undo stack. */
+    private int _ply;
+    /** Undo stack: moves made. */
+    private int[] _moves = new int[0];
+    /** Undo stack: jump counts before each move. */
+    private int[] _savedJumps = new int[0];
+    /** Undo stack: squares flipped by each move. */
+    private long[] _flipped = new long[0];
+}
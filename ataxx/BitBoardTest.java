@@ -0,0 +1,104 @@
+package ataxx;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/** Tests of the BitBoard class, mostly against Board.
+ *  @author Yevgen Vasylenko
+ */
+public class BitBoardTest {
+
+    /** Return the number of legal non-pass moves on B, counted as the
+     *  AI does. */
+    private static int countMoves(Board b) {
+        int n = 0;
+        for (int sq : b.piecesOfColor(b.whoseMove())) {
+            n += b.availableExtendNeighbours(sq).size()
+                + b.availableJumpNeighbours(sq).size();
+        }
+        return n;
+    }
+
+    @Test public void testStart() {
+        BitBoard pos = new BitBoard();
+        assertEquals("wrong start position", new BitBoard(new Board()), pos);
+        assertEquals(2, pos.numPieces(PieceColor.RED));
+        assertEquals(45, pos.numEmpty());
+        int[] moves = new int[BitBoard.MAX_MOVES];
+        assertEquals("wrong number of opening moves", 16,
+                     pos.generate(moves, 0));
+    }
+
+    @Test public void testEncoding() {
+        Move m = Move.move('c', '3', 'e', '4');
+        assertSame(m, BitBoard.toMove(BitBoard.encode(m)));
+        assertSame(Move.pass(), BitBoard.toMove(BitBoard.PASS));
+        assertFalse(BitBoard.isExtend(BitBoard.encode(m)));
+        assertTrue(BitBoard.isExtend(BitBoard.encode(Move.move('c', '3',
+                                                               'd', '4'))));
+    }
+
+    @Test public void testAgainstBoard() {
+        Random rand = new Random(42);
+        int[] moves = new int[BitBoard.MAX_MOVES];
+        for (int game = 0; game < 20; game += 1) {
+            Board b = blockedStart();
+            BitBoard pos = new BitBoard(b);
+            while (!b.gameOver()) {
+                assertEquals("move generation differs", countMoves(b),
+                             b.canMove(b.whoseMove())
+                             ? pos.generate(moves, 0) : 0);
+                if (!b.canMove(b.whoseMove())) {
+                    b.pass();
+                    pos.makeMove(BitBoard.PASS);
+                } else {
+                    int n = pos.generate(moves, 0);
+                    int move = moves[rand.nextInt(n)];
+                    assertTrue(pos.legal(move));
+                    b.makeMove(BitBoard.toMove(move));
+                    pos.makeMove(move);
+                }
+                assertEquals("positions differ", new BitBoard(b), pos);
+                assertEquals(b.redPieces(), pos.numPieces(PieceColor.RED));
+            }
+            assertTrue("game should be over", pos.gameOver());
+            BitBoard copy = new BitBoard(pos);
+            while (pos.ply() > 0) {
+                pos.undo();
+            }
+            assertEquals("undo failed", new BitBoard(blockedStart()), pos);
+            assertFalse("copy shares state", copy.equals(pos));
+        }
+    }
+
+    @Test public void testFen() {
+        assertEquals("r5b/7/7/7/7/7/b5r r 0", new BitBoard().fen());
+        Board b = blockedStart();
+        b.makeMove(Move.move('a', '7', 'b', '5'));
+        BitBoard pos = new BitBoard(b);
+        assertEquals("6b/7/1rX1X2/7/2X1X2/7/b5r b 1", pos.fen());
+        assertEquals(pos, BitBoard.parse(pos.fen()));
+        for (String bad : new String[] { "r5b/7/7/7/7/7 r",
+                                         "r5b/7/7/7/7/7/b6r r",
+                                         "r5b/7/7/7/7/7/b5r q",
+                                         "r5b/7/7/7/7/7/b5q r 0" }) {
+            try {
+                BitBoard.parse(bad);
+                fail("accepted " + bad);
+            } catch (GameException excp) {
+                /* Expected. */
+            }
+        }
+    }
+
+    /** Return a new board with a block at c3. */
+    private static Board blockedStart() {
+        Board b = new Board();
+        b.setBlock("c3");
+        return b;
+    }
+
+}
@@ -5,9 +5,11 @@ package ataxx;
 
 import static ataxx.PieceColor.*;
 import static ataxx.GameException.error;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Stack;
-import java.util.Observable;
 import java.util.LinkedList;
 import java.util.Arrays;
 
@@ -34,7 +36,7 @@ import java.util.Arrays;
  *  Moves on this board are denoted by Moves.
  *  @author Yevgen Vasylenko
  */
-class Board extends Observable {
+class Board {
 
     /** For reasons of efficiency in copying the board,
      *  we use a 1D array to represent it, using the usual access
@@ -76,6 +78,19 @@ class Board extends Observable {
 
     /** Number of non-extending moves before game ends. */
     static final int JUMP_LIMIT = 25;
+    /** Most moves other than passes in a game: one extend to each
+     *  square, and before each extend and after the last, up to
+     *  JUMP_LIMIT + 1 jumps. */
+    static final int MAX_HISTORY =
+        BitBoard.SQUARES + (BitBoard.SQUARES + 1) * (JUMP_LIMIT + 1);
+
+    /** Offsets of the linearized indices of the neighbors of a square
+     *  from its own. */
+    private static final int[] NEIGHBORS = {
+        neighbor(0, -1, -1), neighbor(0, -1, 0), neighbor(0, -1, 1),
+        neighbor(0, 0, -1), neighbor(0, 0, 1), neighbor(0, 1, -1),
+        neighbor(0, 1, 0), neighbor(0, 1, 1)
+    };
 
     /** Storing all moves. **/
     private Stack<Move> _allMoves = new Stack<>();
@@ -86,6 +101,15 @@ class Board extends Observable {
     /** Saving numJumps in case it gets set to zero. **/
     private Stack<Integer> _savedNumJumps = new Stack<>();
 
+    /** Listeners told of my changes. */
+    private volatile BoardListener[] _listeners = NO_LISTENERS;
+    /** No listeners. */
+    private static final BoardListener[] NO_LISTENERS = {};
+
+    /** Red pieces, blue pieces and blocks (as for BitBoard) when my
+     *  listeners were last told of a change. */
+    private long _toldRed, _toldBlue, _toldBlocks;
+
     /** A new, cleared board at the start of the game. */
     Board() {
         _board = new PieceColor[EXTENDED_SIDE * EXTENDED_SIDE];
@@ -100,7 +124,11 @@ class Board extends Observable {
         _whoseMove = b.whoseMove();
         _numRed = b._numRed;
         _numBlue = b._numBlue;
-
+        Events.BoardCopy event = new Events.BoardCopy();
+        if (event.shouldCommit()) {
+            event.kind = "Board";
+            event.commit();
+        }
     }
 
     /**Style tbh. @param color color **/
@@ -131,6 +159,74 @@ class Board extends Observable {
         }
     }
 
+    /** Tell LISTENER of each change to me from now on, on the thread
+     *  making it.  (To tell it on another, add a BoardDispatcher.) */
+    synchronized void addListener(BoardListener listener) {
+        if (_listeners.length == 0) {
+            _toldRed = mask(RED);
+            _toldBlue = mask(BLUE);
+            _toldBlocks = mask(BLOCKED);
+        }
+        _listeners = Arrays.copyOf(_listeners, _listeners.length + 1);
+        _listeners[_listeners.length - 1] = listener;
+    }
+
+    /** Stop telling LISTENER of my changes. */
+    synchronized void removeListener(BoardListener listener) {
+        for (int i = 0; i < _listeners.length; i += 1) {
+            if (_listeners[i] == listener) {
+                BoardListener[] rest =
+                    Arrays.copyOf(_listeners, _listeners.length - 1);
+                System.arraycopy(_listeners, i + 1, rest, i,
+                                 rest.length - i);
+                _listeners = rest;
+                return;
+            }
+        }
+    }
+
+    /** Tell my listeners, if any, of a change other than a move. */
+    private void announce() {
+        announce(BitBoard.NO_MOVE);
+    }
+
+    /** Tell my listeners, if any, of the change just made by MOVE
+     *  (encoded as for BitBoard, or BitBoard.NO_MOVE if the change was
+     *  not a move). */
+    private void announce(int move) {
+        BoardListener[] listeners = _listeners;
+        if (listeners.length == 0) {
+            return;
+        }
+        long red = mask(RED), blue = mask(BLUE), blocks = mask(BLOCKED);
+        long changed =
+            (red ^ _toldRed) | (blue ^ _toldBlue) | (blocks ^ _toldBlocks);
+        long flipped = 0;
+        if (move != BitBoard.NO_MOVE && move != BitBoard.PASS) {
+            flipped = changed & ~(1L << BitBoard.from(move))
+                & ~(1L << BitBoard.to(move));
+        }
+        _toldRed = red;
+        _toldBlue = blue;
+        _toldBlocks = blocks;
+        MoveDelta delta = new MoveDelta(move, flipped, changed, red, blue,
+                                        blocks, _whoseMove, _numMoves);
+        for (BoardListener listener : listeners) {
+            listener.boardChanged(this, delta);
+        }
+    }
+
+    /** Return the squares (as for BitBoard) holding COLOR. */
+    private long mask(PieceColor color) {
+        long bits = 0;
+        for (int sq = 0; sq < BitBoard.SQUARES; sq += 1) {
+            if (_board[BitBoard.extendedIndex(sq)] == color) {
+                bits |= 1L << sq;
+            }
+        }
+        return bits;
+    }
+
     /** Return the linearized index of square COL ROW. */
     static int index(char col, char row) {
         return (row - '1' + 2) * EXTENDED_SIDE + (col - 'a' + 2);
@@ -176,8 +272,7 @@ class Board extends Observable {
         _numJumps = 0;
         _allMoves = new Stack<>();
         _changedColorArrays = new Stack<>();
-        setChanged();
-        notifyObservers();
+        announce();
     }
 
     /** Return true iff the game is over: i.e., if neither side has
@@ -445,13 +540,9 @@ class Board extends Observable {
     /** Changes all the neighbours of a
      * piece in place SQ to that piece's color. **/
     void changeNeighbors(int sq) {
-        int[] interest = new int[] {
-                neighbor(sq, -1, -1), neighbor(sq, -1, 0), neighbor(sq, -1, 1),
-                        neighbor(sq, 0, -1), neighbor(sq, 0, 1),
-                        neighbor(sq, 1, -1),
-                        neighbor(sq, 1, 0), neighbor(sq, 1, 1)};
         ArrayList<Integer> changed = new ArrayList<>();
-        for (int i: interest) {
+        for (int d : NEIGHBORS) {
+            int i = sq + d;
             if (_board[i] != BLOCKED
                     && _board[i] != EMPTY
                     && _board[i] != whoseMove()) {
@@ -495,8 +586,7 @@ class Board extends Observable {
         _whoseMove = _whoseMove.opposite();
         _allMoves.add(move);
         _numMoves++;
-        setChanged();
-        notifyObservers();
+        announce(BitBoard.encode(move));
     }
 
     /** Update to indicate that the current player passes, assuming it
@@ -504,8 +594,7 @@ class Board extends Observable {
     void pass() {
         assert !canMove(_whoseMove);
         _whoseMove = _whoseMove.opposite();
-        setChanged();
-        notifyObservers();
+        announce(BitBoard.PASS);
     }
 
     /** Undo the last move. */
@@ -523,8 +612,7 @@ class Board extends Observable {
             incrPieces(changebackInto.opposite(), -1);
         }
         _whoseMove = _whoseMove.opposite();
-        setChanged();
-        notifyObservers();
+        announce();
     }
 
     /**Style tbh.
@@ -587,8 +675,7 @@ class Board extends Observable {
         set(finder.charAt("h".charAt(0) - c - 1), r, BLOCKED);
         set(finder.charAt("h".charAt(0) - c - 1),
                 Integer.toString("8".charAt(0) - r).charAt(0), BLOCKED);
-        setChanged();
-        notifyObservers();
+        announce();
     }
 
     /** Place a block at CR. */
@@ -602,6 +689,104 @@ class Board extends Observable {
         return _allMoves;
     }
 
+    /** Write my whole state to OUT: the pieces and blocks (as masks of
+     *  BitBoard squares), whose move it is, the counts of moves and
+     *  jumps, and the history used by undo.  The format is read by
+     *  readFrom. */
+    void writeTo(DataOutput out) throws IOException {
+        BitBoard pos = new BitBoard(this);
+        out.writeLong(pos.red());
+        out.writeLong(pos.blue());
+        out.writeLong(pos.blocks());
+        out.writeBoolean(_whoseMove == BLUE);
+        out.writeInt(_numMoves);
+        out.writeInt(_numJumps);
+        out.writeShort(_allMoves.size());
+        for (int k = 0; k < _allMoves.size(); k += 1) {
+            out.writeShort(BitBoard.encode(_allMoves.get(k)));
+            ArrayList<Integer> changed = _changedColorArrays.get(k);
+            out.writeByte(changed.size());
+            for (int sq : changed) {
+                out.writeByte(sq);
+            }
+        }
+        out.writeShort(_savedNumJumps.size());
+        for (int jumps : _savedNumJumps) {
+            out.writeInt(jumps);
+        }
+    }
+
+    /** Replace my whole state by one written by writeTo and read from
+     *  IN.  The position is set directly, not replayed, so this takes
+     *  time proportional only to the length of the history: every move
+     *  but the passes since the board was cleared, at most MAX_HISTORY.
+     *  Leaves me unchanged if IN does not hold a sensible state. */
+    void readFrom(DataInput in) throws IOException {
+        long red = in.readLong(), blue = in.readLong(),
+            blocks = in.readLong();
+        PieceColor whoseMove = in.readBoolean() ? BLUE : RED;
+        int numMoves = in.readInt(), numJumps = in.readInt();
+        if ((red & blue | red & blocks | blue & blocks) != 0
+            || ((red | blue | blocks) >>> BitBoard.SQUARES) != 0
+            || numMoves < 0 || numJumps < 0 || numJumps > JUMP_LIMIT + 1) {
+            throw error("bad board in snapshot");
+        }
+        Stack<Move> allMoves = new Stack<>();
+        Stack<ArrayList<Integer>> changedColorArrays = new Stack<>();
+        int history = in.readUnsignedShort();
+        if (history > MAX_HISTORY) {
+            throw error("bad board in snapshot");
+        }
+        for (int k = history; k > 0; k -= 1) {
+            int encoded = in.readUnsignedShort();
+            if (BitBoard.from(encoded) >= BitBoard.SQUARES
+                || BitBoard.to(encoded) >= BitBoard.SQUARES) {
+                throw error("bad board in snapshot");
+            }
+            Move move = BitBoard.toMove(encoded);
+            if (move == null || move.isPass()) {
+                throw error("bad board in snapshot");
+            }
+            ArrayList<Integer> changed = new ArrayList<>();
+            for (int n = in.readUnsignedByte(); n > 0; n -= 1) {
+                int sq = in.readUnsignedByte();
+                if (BitBoard.fromExtended(sq) < 0) {
+                    throw error("bad board in snapshot");
+                }
+                changed.add(sq);
+            }
+            allMoves.add(move);
+            changedColorArrays.add(changed);
+        }
+        Stack<Integer> savedNumJumps = new Stack<>();
+        int saved = in.readUnsignedShort();
+        if (saved > history) {
+            throw error("bad board in snapshot");
+        }
+        for (int k = saved; k > 0; k -= 1) {
+            int jumps = in.readInt();
+            if (jumps < 0 || jumps > JUMP_LIMIT + 1) {
+                throw error("bad board in snapshot");
+            }
+            savedNumJumps.add(jumps);
+        }
+        for (int sq = 0; sq < BitBoard.SQUARES; sq += 1) {
+            long b = 1L << sq;
+            _board[BitBoard.extendedIndex(sq)] =
+                (red & b) != 0 ? RED : (blue & b) != 0 ? BLUE
+                : (blocks & b) != 0 ? BLOCKED : EMPTY;
+        }
+        _whoseMove = whoseMove;
+        _numMoves = numMoves;
+        _numJumps = numJumps;
+        _numRed = Long.bitCount(red);
+        _numBlue = Long.bitCount(blue);
+        _allMoves = allMoves;
+        _changedColorArrays = changedColorArrays;
+        _savedNumJumps = savedNumJumps;
+        announce();
+    }
+
     @Override
     public String toString() {
         return toString(false);
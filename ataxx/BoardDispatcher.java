@@ -0,0 +1,106 @@
+package ataxx;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/** A BoardListener that passes the changes it is told of on to another
+ *  listener on another thread, so that the thread changing the board
+ *  never waits on the listener (a spectator's connection, a log, a
+ *  renderer).  Changes told while earlier ones wait to be passed on, or
+ *  are being passed on, are coalesced into one (see MoveDelta.then), so
+ *  that a burst such as a clear followed by blocks arrives as a single
+ *  change, and a slow listener falls behind by at most one change
+ *  rather than by a queue of them.  The listener is told of changes one
+ *  at a time, in order, whatever the executor.
+ *  @author Yevgen Vasylenko
+ */
+class BoardDispatcher implements BoardListener {
+
+    /** A dispatcher telling TARGET of changes on a thread shared by all
+     *  dispatchers so made. */
+    BoardDispatcher(BoardListener target) {
+        this(target, SHARED);
+    }
+
+    /** A dispatcher telling TARGET of changes on threads of EXECUTOR. */
+    BoardDispatcher(BoardListener target, Executor executor) {
+        _target = target;
+        _executor = executor;
+    }
+
+    @Override
+    public void boardChanged(Board board, MoveDelta delta) {
+        boolean schedule;
+        synchronized (this) {
+            _pending = _pending == null ? delta : _pending.then(delta);
+            _board = board;
+            _received += 1;
+            schedule = !_scheduled;
+            _scheduled = true;
+        }
+        if (schedule) {
+            _executor.execute(this::deliver);
+        }
+    }
+
+    /** Return the number of changes told to me. */
+    synchronized long received() {
+        return _received;
+    }
+
+    /** Return the number of changes I have passed on. */
+    synchronized long delivered() {
+        return _delivered;
+    }
+
+    /** Pass the pending change on to my target, and any that arrive
+     *  meanwhile, until there are none. */
+    private void deliver() {
+        while (true) {
+            Board board;
+            MoveDelta delta;
+            synchronized (this) {
+                if (_pending == null) {
+                    _scheduled = false;
+                    return;
+                }
+                delta = _pending;
+                board = _board;
+                _pending = null;
+                _delivered += 1;
+            }
+            try {
+                _target.boardChanged(board, delta);
+            } catch (RuntimeException excp) {
+                synchronized (this) {
+                    _scheduled = false;
+                }
+                throw excp;
+            }
+        }
+    }
+
+    /** Runs dispatchers made without an executor, on one thread that does
+     *  not keep the program running. */
+    private static final Executor SHARED =
+        Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "board-dispatcher");
+            t.setDaemon(true);
+            return t;
+        });
+
+    /** The listener told. */
+    private final BoardListener _target;
+    /** Runs deliveries. */
+    private final Executor _executor;
+    /** Changes not yet passed on, coalesced, or null. */
+    private MoveDelta _pending;
+    /** Board last changed. */
+    private Board _board;
+    /** True iff a delivery is scheduled or under way. */
+    private boolean _scheduled;
+    /** Number of changes told. */
+    private long _received;
+    /** Number of changes passed on. */
+    private long _delivered;
+}
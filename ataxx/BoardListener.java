@@ -0,0 +1,15 @@
+package ataxx;
+
+/** An object told of the changes to a Board (see Board.addListener),
+ *  either on the thread making them or, through a BoardDispatcher, on
+ *  another.
+ *  @author Yevgen Vasylenko
+ */
+interface BoardListener {
+
+    /** Respond to the change to BOARD described by DELTA.  A listener
+     *  told through a BoardDispatcher should rely on DELTA alone, since
+     *  BOARD may have changed again since. */
+    void boardChanged(Board board, MoveDelta delta);
+
+}
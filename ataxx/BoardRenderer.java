@@ -0,0 +1,235 @@
+package ataxx;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.imageio.ImageIO;
+
+import static ataxx.BitBoard.SIDE;
+
+/** Draws Ataxx positions into a BufferedImage that it keeps and reuses,
+ *  for display (see AtaxxBoardWidget), spectating and thumbnails of
+ *  games.  A renderer remembers the position it last drew, and brings
+ *  its image up to a new position by redrawing only the squares that
+ *  differ (after a move, the squares placed, vacated and flipped, as a
+ *  MoveDelta tells), so the cost of following a game grows with its
+ *  changes rather than with the board.  Frames are encoded as PNG on a
+ *  background thread (see png), from a copy of the image, so that
+ *  drawing need not wait on encoding.
+ *
+ *  Renderers use only images in memory, never the screen, and so work
+ *  with java.awt.headless=true.  A renderer is not safe for use by more
+ *  than one thread at a time, but need not be used by only one.
+ *  @author Yevgen Vasylenko
+ */
+class BoardRenderer {
+
+    /** Default length of the side of a square, in pixels. */
+    static final int DEFAULT_SQUARE = 50;
+
+    /** A renderer drawing squares SQUARE pixels on a side. */
+    BoardRenderer(int square) {
+        _square = square;
+        _image = new BufferedImage(square * SIDE, square * SIDE,
+                                   BufferedImage.TYPE_INT_RGB);
+        _g = _image.createGraphics();
+        _g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                            RenderingHints.VALUE_ANTIALIAS_ON);
+        _g.setStroke(new BasicStroke(1.0f));
+    }
+
+    /** Return my image, as last drawn. */
+    BufferedImage image() {
+        return _image;
+    }
+
+    /** Return the length of the side of a square, in pixels. */
+    int square() {
+        return _square;
+    }
+
+    /** Draw the whole of POS. */
+    void draw(BitBoard pos) {
+        update(pos, BitBoard.FULL);
+    }
+
+    /** Bring my image up to POS, redrawing only the squares in which it
+     *  differs from the position last drawn (or all, if none was). */
+    void update(BitBoard pos) {
+        long changed = _drawn ? (_red ^ pos.red()) | (_blue ^ pos.blue())
+            | (_blocks ^ pos.blocks()) : BitBoard.FULL;
+        update(pos, changed);
+    }
+
+    /** Bring my image up to POS, redrawing only the squares in CHANGED,
+     *  which must include every square in which POS differs from the
+     *  position last drawn. */
+    void update(BitBoard pos, long changed) {
+        update(pos.red(), pos.blue(), pos.blocks(), changed);
+    }
+
+    /** Bring my image up to the board left by the change DELTA, which
+     *  follows the position last drawn, redrawing only the squares it
+     *  changed (or all, if no position was drawn). */
+    void update(MoveDelta delta) {
+        update(delta.red(), delta.blue(), delta.blocks(),
+               _drawn ? delta.changed() : BitBoard.FULL);
+    }
+
+    /** Bring my image up to the position with pieces RED and BLUE and
+     *  blocks BLOCKS, redrawing only the squares in CHANGED. */
+    private void update(long red, long blue, long blocks, long changed) {
+        _red = red;
+        _blue = blue;
+        _blocks = blocks;
+        _drawn = true;
+        for (long bits = changed & BitBoard.FULL; bits != 0;
+             bits &= bits - 1) {
+            drawSquare(Long.numberOfTrailingZeros(bits));
+            _squaresDrawn += 1;
+        }
+    }
+
+    /** Return the number of squares drawn so far. */
+    long squaresDrawn() {
+        return _squaresDrawn;
+    }
+
+    /** Return a copy of my image as now drawn. */
+    BufferedImage frame() {
+        return new BufferedImage(_image.getColorModel(),
+                                 _image.copyData(null), false, null);
+    }
+
+    /** Return the PNG encoding of my image as now drawn, which completes
+     *  on a background thread. */
+    CompletableFuture<byte[]> png() {
+        BufferedImage frame = frame();
+        return CompletableFuture.supplyAsync(() -> encode(frame), ENCODER);
+    }
+
+    /** Return the PNG encoding of IMAGE. */
+    static byte[] encode(BufferedImage image) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, "png", out);
+        } catch (IOException excp) {
+            throw new UncheckedIOException(excp);
+        }
+        return out.toByteArray();
+    }
+
+    /** Draw square SQ of the position last given. */
+    private void drawSquare(int sq) {
+        int x = (sq % SIDE) * _square, y = (SIDE - 1 - sq / SIDE) * _square;
+        long bit = 1L << sq;
+        _g.setColor((_blocks & bit) != 0 ? BLOCK_COLOR : BLANK_COLOR);
+        _g.fillRect(x, y, _square, _square);
+        _g.setColor(LINE_COLOR);
+        _g.drawRect(x, y, _square - 1, _square - 1);
+        if (((_red | _blue) & bit) != 0) {
+            int d = 2 * Math.round(_square * PIECE_RATIO);
+            _g.setColor((_red & bit) != 0 ? RED_COLOR : BLUE_COLOR);
+            _g.fillOval(x + (_square - d) / 2, y + (_square - d) / 2, d, d);
+        }
+    }
+
+    /** Write thumbnails of the final positions of the games in the
+     *  game-record file ARGS[0] as PNG files in directory ARGS[1], named
+     *  for the games' numbers, with squares ARGS[2] pixels on a side (by
+     *  default, 8).  Runs headless. */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Usage: java ataxx.BoardRenderer RECORDS DIR"
+                               + " [SQUARE]");
+            System.exit(1);
+        }
+        try {
+            int square = args.length == 3 ? Integer.parseInt(args[2])
+                : THUMBNAIL_SQUARE;
+            BoardRenderer renderer = new BoardRenderer(square);
+            Files.createDirectories(Paths.get(args[1]));
+            long start = System.nanoTime();
+            int n = 0;
+            ArrayList<CompletableFuture<Void>> writes = new ArrayList<>();
+            for (GameRecord game : GameRecordReader.open(args[0])) {
+                renderer.update(game.position());
+                Path file = Paths.get(args[1], String.format("game-%d.png", n));
+                writes.add(renderer.png().thenAccept(png -> {
+                    try {
+                        Files.write(file, png);
+                    } catch (IOException excp) {
+                        throw new UncheckedIOException(excp);
+                    }
+                }));
+                n += 1;
+            }
+            for (CompletableFuture<Void> write : writes) {
+                write.join();
+            }
+            System.out.printf("%d thumbnails (%d squares drawn) in %.1f s.%n",
+                              n, renderer.squaresDrawn(),
+                              (System.nanoTime() - start) * 1e-9);
+        } catch (NumberFormatException excp) {
+            System.err.println("Bad number.");
+            System.exit(1);
+        } catch (GameException | IOException | UncheckedIOException excp) {
+            System.err.println(excp.getMessage());
+            System.exit(1);
+        } catch (CompletionException excp) {
+            System.err.println(excp.getCause().getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Color of red pieces. */
+    static final Color RED_COLOR = Color.RED;
+    /** Color of blue pieces. */
+    static final Color BLUE_COLOR = Color.BLUE;
+    /** Color of blank squares. */
+    static final Color BLANK_COLOR = Color.WHITE;
+    /** Color of blocked squares. */
+    static final Color BLOCK_COLOR = Color.DARK_GRAY;
+    /** Color of the lines between squares. */
+    static final Color LINE_COLOR = Color.BLACK;
+
+    /** Radius of a piece as a fraction of the side of a square. */
+    private static final float PIECE_RATIO = 0.3f;
+    /** Side of a square in thumbnails, in pixels. */
+    private static final int THUMBNAIL_SQUARE = 8;
+    /** Encodes frames, on one thread that does not keep the program
+     *  running. */
+    private static final ExecutorService ENCODER =
+        Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "png-encoder");
+            t.setDaemon(true);
+            return t;
+        });
+
+    /** Side of a square in pixels. */
+    private final int _square;
+    /** The image drawn. */
+    private final BufferedImage _image;
+    /** Draws on _image. */
+    private final Graphics2D _g;
+    /** True once a position has been drawn. */
+    private boolean _drawn;
+    /** Pieces and blocks of the position last drawn. */
+    private long _red, _blue, _blocks;
+    /** Number of squares drawn. */
+    private long _squaresDrawn;
+}
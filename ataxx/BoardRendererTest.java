@@ -0,0 +1,78 @@
+package ataxx;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.*;
+import static ataxx.BitBoard.*;
+
+/** Tests of the offscreen board renderer.
+ *  @author Yevgen Vasylenko
+ */
+public class BoardRendererTest {
+
+    /** Return the RGB of the center of the square in column COL and row
+     *  ROW of the image of R. */
+    private static int center(BoardRenderer r, char col, char row) {
+        int s = r.square();
+        return r.image().getRGB((col - 'a') * s + s / 2,
+                                ('7' - row) * s + s / 2) & 0xFFFFFF;
+    }
+
+    /** Assert that images A and B are the same, pixel for pixel. */
+    private static void assertSameImage(BufferedImage a, BufferedImage b) {
+        assertEquals(a.getWidth(), b.getWidth());
+        assertEquals(a.getHeight(), b.getHeight());
+        for (int y = 0; y < a.getHeight(); y += 1) {
+            for (int x = 0; x < a.getWidth(); x += 1) {
+                assertEquals(a.getRGB(x, y), b.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test public void testDraw() {
+        System.setProperty("java.awt.headless", "true");
+        Board b = new Board();
+        b.setBlock("c3");
+        BoardRenderer r = new BoardRenderer(20);
+        r.draw(new BitBoard(b));
+        assertEquals(SQUARES, r.squaresDrawn());
+        assertEquals(0xFF0000, center(r, 'a', '7'));
+        assertEquals(0x0000FF, center(r, 'a', '1'));
+        assertEquals(0xFFFFFF, center(r, 'd', '4'));
+        assertEquals(BoardRenderer.BLOCK_COLOR.getRGB() & 0xFFFFFF,
+                     center(r, 'c', '3'));
+    }
+
+    @Test public void testIncremental() {
+        BitBoard pos = new BitBoard(new Board());
+        BoardRenderer r = new BoardRenderer(20);
+        r.draw(pos);
+        long drawn = r.squaresDrawn();
+        pos.makeMove(encode(square('a', '7'), square('b', '6')));
+        r.update(pos);
+        assertEquals(drawn + 1, r.squaresDrawn());
+        pos.makeMove(encode(square('a', '1'), square('b', '3')));
+        pos.makeMove(encode(square('b', '6'), square('b', '4')));
+        r.update(pos);
+        assertEquals(drawn + 5, r.squaresDrawn());
+        assertEquals(0xFF0000, center(r, 'b', '3'));
+        assertEquals(0xFFFFFF, center(r, 'b', '6'));
+        BoardRenderer full = new BoardRenderer(20);
+        full.draw(pos);
+        assertSameImage(full.image(), r.image());
+    }
+
+    @Test public void testPng() throws IOException {
+        BoardRenderer r = new BoardRenderer(10);
+        r.draw(new BitBoard(new Board()));
+        byte[] png = r.png().join();
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        assertSameImage(r.image(), image);
+    }
+
+}
@@ -2,7 +2,11 @@ package ataxx;
 
 import org.junit.Test;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
 import static org.junit.Assert.*;
+import static ataxx.BitBoard.*;
 
 /** Tests of the Board class.
  *  @author Yevgen Vasylenko
@@ -46,4 +50,57 @@ public class BoardTest {
         char b = b0.sqtoRow(58);
     }
 
+    @Test public void testListeners() {
+        Board b = new Board();
+        ArrayList<MoveDelta> told = new ArrayList<>();
+        BoardListener listener = (board, delta) -> told.add(delta);
+        b.addListener(listener);
+        b.makeMove('a', '7', 'b', '6');
+        MoveDelta d = told.get(0);
+        assertEquals(encode(square('a', '7'), square('b', '6')), d.move());
+        assertEquals(1L << square('b', '6'), d.changed());
+        assertEquals(0, d.flipped());
+        assertEquals(3, d.numPieces(PieceColor.RED));
+        assertEquals(PieceColor.BLUE, d.whoseMove());
+        b.makeMove('a', '1', 'a', '3');
+        b.makeMove('b', '6', 'b', '4');
+        d = told.get(2);
+        assertEquals(1L << square('a', '3'), d.flipped());
+        assertEquals((1L << square('a', '3')) | (1L << square('b', '4'))
+                     | (1L << square('b', '6')), d.changed());
+        assertEquals(new BitBoard(b).red(), d.red());
+        b.undo();
+        d = told.get(3);
+        assertFalse(d.isMove());
+        assertEquals(told.get(2).changed(), d.changed());
+        b.removeListener(listener);
+        b.clear();
+        assertEquals(4, told.size());
+    }
+
+    @Test public void testDispatcher() {
+        ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        ArrayList<MoveDelta> told = new ArrayList<>();
+        BoardDispatcher dispatcher =
+            new BoardDispatcher((board, delta) -> told.add(delta), tasks::add);
+        Board b = new Board();
+        b.addListener(dispatcher);
+        b.clear();
+        b.setBlock("c3");
+        b.setBlock("d2");
+        assertEquals(1, tasks.size());
+        tasks.poll().run();
+        assertEquals(1, told.size());
+        MoveDelta d = told.get(0);
+        assertFalse(d.isMove());
+        assertEquals(new BitBoard(b).blocks(), d.changed());
+        assertEquals(new BitBoard(b).blocks(), d.blocks());
+        b.makeMove('a', '7', 'b', '6');
+        assertEquals(1, tasks.size());
+        tasks.poll().run();
+        assertTrue(told.get(1).isMove());
+        assertEquals(4, dispatcher.received());
+        assertEquals(2, dispatcher.delivered());
+    }
+
 }
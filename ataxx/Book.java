@@ -0,0 +1,130 @@
+package ataxx;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import static ataxx.GameException.error;
+
+/** A read-only opening book, as written by BookBuilder.  The file is
+ *  memory-mapped and searched in place, so that opening it costs nothing
+ *  and a lookup is a binary search over the page cache.
+ *
+ *  The file consists of a header,
+ *      int MAGIC, int VERSION, long count
+ *  followed by COUNT records sorted by key and then move,
+ *      long key, short move, short score, int weight
+ *  where key is the canonical key of a position (see Symmetry), move is
+ *  an encoded move from its canonical form, weight is the number of games
+ *  in which the move was played, and score is the average outcome of
+ *  those games for the player making the move, in thousandths (1000 for
+ *  all wins, -1000 for all losses).
+ *  All values are big-endian.
+ *  @author Yevgen Vasylenko
+ */
+class Book {
+
+    /** First word of a book file. */
+    static final int MAGIC = 0x4154424b;
+    /** Current version of the file format. */
+    static final int VERSION = 2;
+    /** Size of the header in bytes. */
+    static final int HEADER_SIZE = 16;
+    /** Size of a record in bytes. */
+    static final int RECORD_SIZE = 16;
+
+    /** A book whose contents are in BUF. */
+    private Book(MappedByteBuffer buf) {
+        _buf = buf;
+        if (buf.capacity() < HEADER_SIZE || buf.getInt(0) != MAGIC
+            || buf.getInt(4) != VERSION) {
+            throw error("not an opening book file");
+        }
+        long count = buf.getLong(8);
+        if (count < 0 || HEADER_SIZE + count * RECORD_SIZE > buf.capacity()) {
+            throw error("truncated opening book file");
+        }
+        _count = (int) count;
+    }
+
+    /** Return the book in FILE. */
+    static Book open(String file) {
+        try (FileChannel ch = FileChannel.open(Paths.get(file),
+                                               StandardOpenOption.READ)) {
+            if (ch.size() > Integer.MAX_VALUE) {
+                throw error("opening book %s is too large", file);
+            }
+            return new Book(ch.map(FileChannel.MapMode.READ_ONLY, 0,
+                                   ch.size()));
+        } catch (IOException excp) {
+            throw error("Cannot open opening book %s", file);
+        }
+    }
+
+    /** Return the number of records. */
+    int size() {
+        return _count;
+    }
+
+    /** Return the number of the first record whose key is not less than
+     *  KEY (size() if there is none). */
+    int find(long key) {
+        int lo = 0, hi = _count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (key(mid) < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** Return the key of record I. */
+    long key(int i) {
+        return _buf.getLong(HEADER_SIZE + i * RECORD_SIZE);
+    }
+
+    /** Return the encoded move of record I. */
+    int move(int i) {
+        return _buf.getShort(HEADER_SIZE + i * RECORD_SIZE + 8) & 0xFFFF;
+    }
+
+    /** Return the score of record I. */
+    int score(int i) {
+        return _buf.getShort(HEADER_SIZE + i * RECORD_SIZE + 10);
+    }
+
+    /** Return the weight of record I. */
+    int weight(int i) {
+        return _buf.getInt(HEADER_SIZE + i * RECORD_SIZE + 12);
+    }
+
+    /** Return the encoded book move from POS with the best score
+     *  (breaking ties by weight), or BitBoard.NO_MOVE if POS is not in the
+     *  book. */
+    int bestMove(BitBoard pos) {
+        int t = Symmetry.canonical(pos);
+        long key = Symmetry.key(pos, t);
+        int best = -1;
+        for (int i = find(key); i < _count && key(i) == key; i += 1) {
+            if (best == -1 || score(i) > score(best)
+                || (score(i) == score(best) && weight(i) > weight(best))) {
+                best = i;
+            }
+        }
+        if (best == -1) {
+            return BitBoard.NO_MOVE;
+        }
+        int move = Symmetry.move(move(best), Symmetry.inverse(t));
+        return pos.legal(move) ? move : BitBoard.NO_MOVE;
+    }
+
+    /** The mapped file. */
+    private final MappedByteBuffer _buf;
+    /** Number of records. */
+    private final int _count;
+}
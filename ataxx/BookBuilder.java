@@ -0,0 +1,237 @@
+package ataxx;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+import static ataxx.BitBoard.*;
+
+/** Builds Book files from self-play.  Each game is played to the end by
+ *  a greedy player (one that maximizes its immediate piece margin,
+ *  breaking ties at random, and plays a random move instead with
+ *  probability EXPLORE during the opening).  The first few moves of
+ *  every game are then credited with its outcome, and a move goes into
+ *  the book once it has been played in enough games.  Since the book
+ *  holds only canonical positions, moves from positions equivalent
+ *  under some Symmetry count together.  Games are independent and
+ *  played in parallel; each has its own random generator, derived from
+ *  the seed and its number, so the book depends only on the arguments
+ *  and not on the number of threads.
+ *  @author Yevgen Vasylenko
+ */
+class BookBuilder {
+
+    /** Least number of games in which a move must be played to go into
+     *  the book. */
+    static final int MIN_GAMES = 8;
+    /** Probability of a random move within the book's plies. */
+    static final double EXPLORE = 0.1;
+
+    /** A builder that records the first PLIES moves of its games. */
+    BookBuilder(int plies, long seed) {
+        _plies = plies;
+        _seed = seed;
+    }
+
+    /** Play GAMES games from position START and add their openings to
+     *  my samples. */
+    void play(BitBoard start, int games) {
+        int base = _games;
+        Sample[][] results = IntStream.range(0, games).parallel()
+            .mapToObj(g -> playGame(start, base + g))
+            .toArray(Sample[][]::new);
+        for (Sample[] game : results) {
+            _samples.addAll(Arrays.asList(game));
+        }
+        _games += games;
+    }
+
+    /** Return the number of games played so far. */
+    int games() {
+        return _games;
+    }
+
+    /** Play game number G from START and return the samples from its
+     *  first _plies moves. */
+    private Sample[] playGame(BitBoard start, int g) {
+        SplittableRandom random = Seeds.random(_seed, g);
+        BitBoard pos = new BitBoard(start);
+        ArrayList<Sample> opening = new ArrayList<>();
+        int[] moves = new int[MAX_MOVES];
+        while (!pos.gameOver()) {
+            int n = pos.generateDistinct(moves, 0);
+            int move;
+            if (pos.ply() < _plies && random.nextDouble() < EXPLORE) {
+                move = moves[random.nextInt(n)];
+            } else {
+                move = greedy(pos, moves, n, random);
+            }
+            if (pos.ply() < _plies) {
+                int t = Symmetry.canonical(pos);
+                opening.add(new Sample(Symmetry.key(pos, t),
+                                       Symmetry.move(move, t),
+                                       pos.whoseMove() == PieceColor.RED));
+            }
+            pos.makeMove(move);
+        }
+        int result = Integer.signum(pos.numPieces(PieceColor.RED)
+                                    - pos.numPieces(PieceColor.BLUE));
+        for (Sample s : opening) {
+            s.score = s.red ? result : -result;
+        }
+        return opening.toArray(new Sample[0]);
+    }
+
+    /** Return one of the N MOVES from POS that leaves the player on move
+     *  with the greatest piece margin, chosen at random using RANDOM. */
+    private static int greedy(BitBoard pos, int[] moves, int n,
+                              SplittableRandom random) {
+        int best = Integer.MIN_VALUE, bestMove = NO_MOVE, ties = 0;
+        for (int i = 0; i < n; i += 1) {
+            pos.makeMove(moves[i]);
+            int v = -pos.margin();
+            pos.undo();
+            if (v > best) {
+                best = v;
+                bestMove = moves[i];
+                ties = 1;
+            } else if (v == best) {
+                ties += 1;
+                if (random.nextInt(ties) == 0) {
+                    bestMove = moves[i];
+                }
+            }
+        }
+        return bestMove;
+    }
+
+    /** Write the book made from my samples to FILE, by way of a temporary
+     *  file so that FILE never holds a partial book.  Return the number
+     *  of records written. */
+    int write(String file) throws IOException {
+        Sample[] samples = _samples.toArray(new Sample[0]);
+        Arrays.parallelSort(samples);
+        ArrayList<long[]> records = new ArrayList<>();
+        for (int i = 0, j; i < samples.length; i = j) {
+            long total = 0;
+            for (j = i; j < samples.length
+                     && samples[j].compareTo(samples[i]) == 0; j += 1) {
+                total += samples[j].score;
+            }
+            if (j - i >= MIN_GAMES) {
+                records.add(new long[] { samples[i].key, samples[i].move,
+                                         Math.round(1000.0 * total / (j - i)),
+                                         j - i });
+            }
+        }
+        Path target = Paths.get(file);
+        Path tmp = Paths.get(file + ".tmp");
+        try (DataOutputStream out =
+             new DataOutputStream(new BufferedOutputStream(
+                 new FileOutputStream(tmp.toFile())))) {
+            out.writeInt(Book.MAGIC);
+            out.writeInt(Book.VERSION);
+            out.writeLong(records.size());
+            for (long[] r : records) {
+                out.writeLong(r[0]);
+                out.writeShort((int) r[1]);
+                out.writeShort((int) r[2]);
+                out.writeInt((int) Math.min(r[3], Integer.MAX_VALUE));
+            }
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        return records.size();
+    }
+
+    /** Build an opening book.  ARGS are FILE GAMES PLIES [LAYOUT...],
+     *  where FILE is the output file, GAMES the number of games to play
+     *  from each layout, and PLIES the number of moves of each game to
+     *  record.  Each LAYOUT is '/' followed by squares as for the 'block'
+     *  command; with none, the games start from the empty layout. */
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            System.err.println("Usage: java ataxx.BookBuilder FILE GAMES"
+                               + " PLIES [/ [BLOCK...]]...");
+            System.exit(1);
+        }
+        try {
+            int games = Integer.parseInt(args[1]);
+            BookBuilder builder =
+                new BookBuilder(Integer.parseInt(args[2]), 0);
+            long start = System.nanoTime();
+            ArrayList<Board> layouts = new ArrayList<>();
+            layouts.add(new Board());
+            for (int i = 3; i < args.length; i += 1) {
+                if (args[i].equals("/")) {
+                    if (i > 3) {
+                        layouts.add(new Board());
+                    }
+                } else {
+                    layouts.get(layouts.size() - 1).setBlock(args[i]);
+                }
+            }
+            for (Board layout : layouts) {
+                builder.play(new BitBoard(layout), games);
+            }
+            int n = builder.write(args[0]);
+            System.out.printf("%d records from %d games, %.1f s on %d"
+                              + " threads.%n", n, builder.games(),
+                              (System.nanoTime() - start) * 1e-9,
+                              Runtime.getRuntime().availableProcessors());
+        } catch (NumberFormatException excp) {
+            System.err.println("Bad number.");
+            System.exit(1);
+        } catch (GameException | IOException excp) {
+            System.err.println(excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** A move played from some position in some game, ordered by position
+     *  key and then move. */
+    private static class Sample implements Comparable<Sample> {
+        /** A move MOVE played in a position with key KEY by red iff
+         *  RED. */
+        Sample(long key, int move, boolean red) {
+            this.key = key;
+            this.move = move;
+            this.red = red;
+        }
+
+        @Override
+        public int compareTo(Sample other) {
+            if (key != other.key) {
+                return Long.compare(key, other.key);
+            }
+            return Integer.compare(move, other.move);
+        }
+
+        /** Key of the position. */
+        private final long key;
+        /** Encoded move. */
+        private final int move;
+        /** True iff red made the move. */
+        private final boolean red;
+        /** Outcome of the game for the player making the move: 1, 0,
+         *  or -1. */
+        private int score;
+    }
+
+    /** Number of moves recorded from each game. */
+    private final int _plies;
+    /** Seed from which each game's random generator is derived. */
+    private final long _seed;
+    /** Number of games played. */
+    private int _games;
+    /** Moves sampled from the openings of the games played so far. */
+    private final ArrayList<Sample> _samples = new ArrayList<>();
+}
@@ -0,0 +1,71 @@
+package ataxx;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/** Tests of opening book building and probing.
+ *  @author Yevgen Vasylenko
+ */
+public class BookTest {
+
+    /** Number of games played for each book. */
+    private static final int GAMES = 400;
+
+    /** Return a temporary file holding a book of 4 plies from GAMES games
+     *  with seed SEED. */
+    private static File build(long seed) throws IOException {
+        File file = File.createTempFile("ataxx", ".book");
+        file.deleteOnExit();
+        BookBuilder builder = new BookBuilder(4, seed);
+        builder.play(new BitBoard(), GAMES);
+        builder.write(file.getPath());
+        return file;
+    }
+
+    @Test public void testBuild() throws IOException {
+        File file = build(1);
+        Book book = Book.open(file.getPath());
+        assertTrue("empty book", book.size() > 0);
+        for (int i = 1; i < book.size(); i += 1) {
+            assertTrue("unsorted book", book.key(i - 1) < book.key(i)
+                       || book.key(i - 1) == book.key(i)
+                       && book.move(i - 1) < book.move(i));
+        }
+        for (int i = 0; i < book.size(); i += 1) {
+            assertTrue(book.weight(i) >= BookBuilder.MIN_GAMES);
+            assertTrue(Math.abs(book.score(i)) <= 1000);
+        }
+        assertArrayEquals("book not reproducible",
+                          Files.readAllBytes(file.toPath()),
+                          Files.readAllBytes(build(1).toPath()));
+    }
+
+    @Test public void testProbe() throws IOException {
+        Book book = Book.open(build(2).getPath());
+        BitBoard pos = new BitBoard();
+        int move = book.bestMove(pos);
+        assertTrue("no legal book move", pos.legal(move));
+        int t = Symmetry.canonical(pos);
+        long key = Symmetry.key(pos, t);
+        int total = 0, best = Integer.MIN_VALUE, score = 0;
+        for (int i = book.find(key); i < book.size() && book.key(i) == key;
+             i += 1) {
+            total += book.weight(i);
+            best = Math.max(best, book.score(i));
+            if (Symmetry.move(book.move(i), Symmetry.inverse(t)) == move) {
+                score = book.score(i);
+            }
+        }
+        assertTrue(total <= GAMES);
+        assertEquals("not the best book move", best, score);
+        BitBoard blocked = new BitBoard(pos.red(), pos.blue(),
+                                        BitBoard.bit(3, 3), PieceColor.RED, 0);
+        assertEquals(BitBoard.NO_MOVE, book.bestMove(blocked));
+    }
+
+}
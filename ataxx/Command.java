@@ -1,5 +1,6 @@
 package ataxx;
 
+import java.util.Arrays;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 
@@ -26,7 +27,11 @@ class Command {
         PIECEMOVE("([a-g])([1-7])[-]([a-g])([1-7])"),
         /* Valid at any time. */
         LOAD("(?i)load\\s+([^\\s]*\\.[^\\s]*)"),
-        QUIT, CLEAR, DUMP, HELP,
+        SAVE("(?i)save\\s+([^\\s]+)"),
+        RESTORE("(?i)restore\\s+([^\\s]+)"),
+        PERFT("(?i)perft\\s+([0-9]+)"),
+        ANALYZE("(?i)analyze\\s+([0-9]+)(?:\\s+([0-9]+))?"),
+        QUIT, CLEAR, DUMP, HELP, STATS,
         /* Special "commands" internally generated. */
         /** Syntax error in command. */
         ERROR(".*"),
@@ -69,15 +74,175 @@ class Command {
         return _operands;
     }
 
-    /** Parse COMMAND, returning the command and its operands.
-     *  COMMAND is assumed to be trimmed of all leading and
-     *  trailing whitespace.  */
+    /** Parse COMMAND, returning the command and its operands, or a
+     *  command of type EOF if COMMAND is null.  Leading and trailing
+     *  whitespace is ignored.  The result is that of matching the
+     *  patterns of the Types in turn (see parseWithPatterns), but
+     *  COMMAND is scanned only once: moves and passes are recognized
+     *  by their form, and other commands by their first word.  */
     static Command parseCommand(String command) {
         if (command == null) {
             return new Command(Type.EOF);
         }
         command = command.trim();
-        for (Type type : Type.values()) {
+        int n = command.length();
+        if (n == MOVE_LENGTH && command.charAt(2) == '-') {
+            return parseMove(command);
+        } else if (n == 1 && command.charAt(0) == '-') {
+            return new Command(Type.PASS);
+        }
+        String[] words = words(command);
+        String word = words.length == 0 ? "" : words[0];
+        int args = words.length - 1;
+        Type type;
+        if (keyword(word, "auto") || keyword(word, "manual")) {
+            type = args == 1 && (keyword(words[1], "red")
+                                 || keyword(words[1], "blue"))
+                ? keyword(word, "auto") ? Type.AUTO : Type.MANUAL
+                : Type.ERROR;
+        } else if (keyword(word, "block")) {
+            type = args == 1 && words[1].length() == 2
+                && column((char) (words[1].charAt(0) | ('a' - 'A')))
+                && row(words[1].charAt(1)) ? Type.BLOCK : Type.ERROR;
+        } else if (keyword(word, "seed")) {
+            type = args == 1 && digits(words[1]) ? Type.SEED : Type.ERROR;
+        } else if (keyword(word, "load")) {
+            type = args == 1 && words[1].indexOf('.') != -1
+                ? Type.LOAD : Type.ERROR;
+        } else if (keyword(word, "save")) {
+            type = args == 1 ? Type.SAVE : Type.ERROR;
+        } else if (keyword(word, "restore")) {
+            type = args == 1 ? Type.RESTORE : Type.ERROR;
+        } else if (keyword(word, "perft")) {
+            type = args == 1 && digits(words[1]) ? Type.PERFT : Type.ERROR;
+        } else if (keyword(word, "analyze")) {
+            if ((args == 1 || args == 2) && digits(words[1])
+                && (args == 1 || digits(words[2]))) {
+                return new Command(Type.ANALYZE, words[1],
+                                   args == 2 ? words[2] : null);
+            }
+            type = Type.ERROR;
+        } else if (args != 0) {
+            type = Type.ERROR;
+        } else {
+            switch (word) {
+            case "start":
+                type = Type.START;
+                break;
+            case "pass":
+                type = Type.PASS;
+                break;
+            case "quit":
+                type = Type.QUIT;
+                break;
+            case "clear":
+                type = Type.CLEAR;
+                break;
+            case "dump":
+                type = Type.DUMP;
+                break;
+            case "help":
+                type = Type.HELP;
+                break;
+            case "stats":
+                type = Type.STATS;
+                break;
+            default:
+                type = Type.ERROR;
+                break;
+            }
+        }
+        if (type == Type.ERROR || args == 0) {
+            return new Command(type);
+        }
+        return new Command(type, words[1]);
+    }
+
+    /** Return the command C0R0-C1R1 given by COMMAND, five characters
+     *  with '-' in the middle, or an ERROR command if it is not a move.
+     *  The operands are shared strings. */
+    private static Command parseMove(String command) {
+        char c0 = command.charAt(0), r0 = command.charAt(1),
+            c1 = command.charAt(3), r1 = command.charAt(4);
+        if (!column(c0) || !row(r0) || !column(c1) || !row(r1)) {
+            return new Command(Type.ERROR);
+        }
+        return new Command(Type.PIECEMOVE, CHARS[c0], CHARS[r0],
+                           CHARS[c1], CHARS[r1]);
+    }
+
+    /** Return the words of COMMAND, which has no leading or trailing
+     *  whitespace, as separated by whitespace (as for \s in patterns). */
+    private static String[] words(String command) {
+        int n = command.length(), count = 0;
+        String[] words = new String[2];
+        for (int i = 0; i < n; ) {
+            int start = i;
+            while (i < n && !space(command.charAt(i))) {
+                i += 1;
+            }
+            if (count == words.length) {
+                words = Arrays.copyOf(words, 2 * count);
+            }
+            words[count] = command.substring(start, i);
+            count += 1;
+            while (i < n && space(command.charAt(i))) {
+                i += 1;
+            }
+        }
+        return count == words.length ? words : Arrays.copyOf(words, count);
+    }
+
+    /** Return true iff WORD is KEYWORD (lower case letters) ignoring the
+     *  case of ASCII letters only, as for the (?i) flag in patterns. */
+    private static boolean keyword(String word, String keyword) {
+        if (word.length() != keyword.length()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i += 1) {
+            char c = word.charAt(i), k = keyword.charAt(i);
+            if (c != k && c != k - ('a' - 'A')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return true iff C is a whitespace character, as for \s in
+     *  patterns. */
+    private static boolean space(char c) {
+        return c == ' ' || c >= '\t' && c <= '\r';
+    }
+
+    /** Return true iff WORD is a non-empty string of decimal digits. */
+    private static boolean digits(String word) {
+        for (int i = 0; i < word.length(); i += 1) {
+            if (word.charAt(i) < '0' || word.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return !word.isEmpty();
+    }
+
+    /** Return true iff C is a column letter. */
+    private static boolean column(char c) {
+        return c >= 'a' && c <= 'g';
+    }
+
+    /** Return true iff C is a row number. */
+    private static boolean row(char c) {
+        return c >= '1' && c <= '7';
+    }
+
+    /** Parse COMMAND as parseCommand does, by matching the patterns of
+     *  the Types in turn.  This is the definition of the syntax, against
+     *  which parseCommand is tested. */
+    static Command parseWithPatterns(String command) {
+        if (command == null) {
+            return new Command(Type.EOF);
+        }
+        command = command.trim();
+        for (Type type : TYPES) {
             Matcher mat = type._pattern.matcher(command);
             if (mat.matches()) {
                 String[] operands = new String [mat.groupCount()];
@@ -90,6 +255,23 @@ class Command {
         throw new Error("Internal failure: error command did not match.");
     }
 
+    /** Length of a move command. */
+    private static final int MOVE_LENGTH = 5;
+    /** All Types, in order. */
+    private static final Type[] TYPES = Type.values();
+    /** CHARS[C] is the string containing the character C, for the
+     *  characters of moves. */
+    private static final String[] CHARS = new String['g' + 1];
+
+    static {
+        for (char c = '1'; c <= '7'; c += 1) {
+            CHARS[c] = String.valueOf(c);
+        }
+        for (char c = 'a'; c <= 'g'; c += 1) {
+            CHARS[c] = String.valueOf(c);
+        }
+    }
+
     /** The command name. */
     private final Type _type;
     /** Command arguments. */
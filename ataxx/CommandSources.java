@@ -31,6 +31,12 @@ class CommandSources implements CommandSource {
         return null;
     }
 
+    /** Return the source from which input is now read, or null if
+     *  none. */
+    CommandSource current() {
+        return _inputs.isEmpty() ? null : _inputs.peek();
+    }
+
     /** Make SOURCE the latest input source from which subsequent input
      *  will be read. */
     void addSource(CommandSource source) {
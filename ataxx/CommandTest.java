@@ -69,6 +69,71 @@ public class CommandTest {
         checkError("clear foo");
     }
 
+    @Test public void testSTATS() {
+        check("stats", STATS);
+        checkError("Stats");
+        checkError("stats foo");
+    }
+
+    @Test public void testPERFT() {
+        check("perft 5", PERFT, "5");
+        check("PERFT 12", PERFT, "12");
+        checkError("perft");
+        checkError("perft x");
+    }
+
+    @Test public void testANALYZE() {
+        check("analyze 3", ANALYZE, "3", null);
+        check("Analyze 3 6", ANALYZE, "3", "6");
+        checkError("analyze");
+        checkError("analyze 3 x");
+        checkError("analyze 3 6 9");
+    }
+
+    @Test public void testSAVE() {
+        check("save game.snap", SAVE, "game.snap");
+        check("restore  /tmp/g", RESTORE, "/tmp/g");
+        checkError("save");
+        checkError("restore a b");
+    }
+
+    @Test public void testEOF() {
+        check(null, EOF);
+    }
+
+    /** Words from which testPatterns builds commands. */
+    private static final String[] WORDS = {
+        "auto", "AUTO", "block", "manual", "seed", "start", "Start", "pass",
+        "load", "save", "restore", "perft", "analyze", "quit", "clear",
+        "dump", "help", "stats", "red", "Blue", "green", "b3", "G7", "h1",
+        "12", "x", "x.y", "-", "a1-b2", "g7-a1", "a1b2", "\u212auto",
+        "bloc\u212a", "\u0130", "\u0001",
+    };
+    /** Separators from which testPatterns builds commands. */
+    private static final String[] SEPARATORS = {
+        " ", " ", " ", "  ", "\t", "\u000b", "", "\u00a0", "-", "#",
+    };
+
+    @Test public void testPatterns() {
+        java.util.Random r = new java.util.Random(1);
+        for (int k = 0; k < 50000; k += 1) {
+            StringBuilder cmnd = new StringBuilder();
+            if (r.nextInt(4) == 0) {
+                cmnd.append(' ');
+            }
+            for (int n = r.nextInt(4); n > 0; n -= 1) {
+                cmnd.append(WORDS[r.nextInt(WORDS.length)]);
+                if (n > 1 || r.nextInt(4) == 0) {
+                    cmnd.append(SEPARATORS[r.nextInt(SEPARATORS.length)]);
+                }
+            }
+            Command c = Command.parseCommand(cmnd.toString()),
+                p = Command.parseWithPatterns(cmnd.toString());
+            assertEquals(cmnd.toString(), p.commandType(), c.commandType());
+            assertArrayEquals(cmnd.toString(), p.operands(), c.operands());
+        }
+    }
+
     @Test public void testMOVE() {
         check("a3-b3", PIECEMOVE, "a", "3", "b", "3");
         checkError("a3b3");
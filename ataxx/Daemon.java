@@ -0,0 +1,180 @@
+package ataxx;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static ataxx.GameException.error;
+
+/** A daemon (Main's --daemon mode) that keeps one JVM warm for many
+ *  short sessions, each exactly as if the program had been started
+ *  afresh in text mode: a client connecting to the daemon's Unix-domain
+ *  socket gets a new Game on a new Board, reading commands from the
+ *  connection and writing to it everything the program would write to
+ *  the standard output and error, until it quits or the client closes
+ *  its end.  The first line the client sends is its working directory,
+ *  against which the files named in its commands are found.  A session
+ *  thus costs a connection and a Game rather than a JVM's start-up, its
+ *  class loading and its compiler's warm-up.  The client may be as thin
+ *  as testing/ataxx-client.py, which forwards its standard input and
+ *  output.
+ *
+ *  Each session runs on a thread of its own from a pool that keeps idle
+ *  threads for a while, so that a session following another finds the
+ *  AIs' search tables (which belong to threads; see AI) already
+ *  allocated.  The session clears them, and its thread's search totals,
+ *  before it starts, so that it plays and counts as a fresh run would
+ *  whatever sessions the thread served before.  Sessions share nothing
+ *  else but the book and tablebase, which are never modified.
+ *  @author Yevgen Vasylenko
+ */
+class Daemon implements AutoCloseable {
+
+    /** A daemon listening on the socket SOCKET, replacing the file there
+     *  if no daemon is listening on it. */
+    Daemon(Path socket) {
+        _socket = socket;
+        UnixDomainSocketAddress address = UnixDomainSocketAddress.of(socket);
+        if (Files.exists(socket)) {
+            if (listening(address)) {
+                throw error("A daemon is already listening on %s", socket);
+            }
+            try {
+                Files.delete(socket);
+            } catch (IOException excp) {
+                throw error("Cannot remove %s", socket);
+            }
+        }
+        try {
+            _listener = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            _listener.bind(address);
+        } catch (IOException excp) {
+            throw error("Cannot listen on %s", socket);
+        }
+        AtomicInteger count = new AtomicInteger();
+        _sessions = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "daemon-session-"
+                                  + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Use BOOK (null for none) in the AIs' openings. */
+    void setBook(Book book) {
+        _book = book;
+    }
+
+    /** Use TABLEBASE (null for none) in the AIs' endgames. */
+    void setTablebase(Tablebase tablebase) {
+        _tablebase = tablebase;
+    }
+
+    /** Have the AIs solve endgames with fewer than N empty squares. */
+    void setEndgameThreshold(int n) {
+        _endgame = n;
+    }
+
+    /** Return the number of sessions begun. */
+    int sessions() {
+        return _begun.get();
+    }
+
+    /** Accept connections and start their sessions until closed. */
+    void run() {
+        while (_listener.isOpen()) {
+            SocketChannel channel;
+            try {
+                channel = _listener.accept();
+            } catch (IOException excp) {
+                break;
+            }
+            _begun.incrementAndGet();
+            _sessions.execute(() -> serve(channel));
+        }
+    }
+
+    /** Stop accepting connections, and remove the socket.  Sessions under
+     *  way continue. */
+    @Override
+    public void close() {
+        try {
+            _listener.close();
+            Files.deleteIfExists(_socket);
+        } catch (IOException excp) {
+            /* Ignore. */
+        }
+        _sessions.shutdown();
+    }
+
+    /** Return true iff something accepts connections at ADDRESS. */
+    private static boolean listening(UnixDomainSocketAddress address) {
+        try {
+            SocketChannel.open(address).close();
+            return true;
+        } catch (IOException excp) {
+            return false;
+        }
+    }
+
+    /** Play a session over CHANNEL, and close it when done.  The
+     *  session starts as a fresh run would: with empty search tables and
+     *  search totals on this thread, which may have served other
+     *  sessions. */
+    private void serve(SocketChannel channel) {
+        try (channel) {
+            PrintStream out =
+                new PrintStream(Channels.newOutputStream(channel), true,
+                                StandardCharsets.UTF_8);
+            TextReporter reporter = new TextReporter(out, out);
+            BufferedReader in =
+                new BufferedReader(new InputStreamReader(
+                                       Channels.newInputStream(channel),
+                                       StandardCharsets.UTF_8));
+            String directory = in.readLine();
+            if (directory == null) {
+                return;
+            }
+            Game game = new Game(new Board(), new ReaderSource(in, reporter),
+                                 reporter);
+            AI.clearTables();
+            SearchStats.clearThreadTotals();
+            game.setDirectory(Paths.get(directory));
+            game.setBook(_book);
+            game.setTablebase(_tablebase);
+            game.setEndgameThreshold(_endgame);
+            game.process(false);
+            out.flush();
+        } catch (IOException | RuntimeException excp) {
+            System.err.printf("Session ended: %s%n", excp);
+        }
+    }
+
+    /** Path of the socket. */
+    private final Path _socket;
+    /** The listening socket. */
+    private final ServerSocketChannel _listener;
+    /** Runs the sessions. */
+    private final ExecutorService _sessions;
+    /** Number of sessions begun. */
+    private final AtomicInteger _begun = new AtomicInteger();
+    /** Opening book, or null. */
+    private Book _book;
+    /** Endgame tablebase, or null. */
+    private Tablebase _tablebase;
+    /** Endgame threshold. */
+    private int _endgame = Game.DEFAULT_ENDGAME_THRESHOLD;
+}
@@ -0,0 +1,104 @@
+package ataxx;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+/** Tests of the daemon serving sessions over a Unix-domain socket.
+ *  @author Yevgen Vasylenko
+ */
+public class DaemonTest {
+
+    /** Return a daemon listening on a new socket, serving from a new
+     *  thread. */
+    private static Daemon start() throws IOException {
+        File file = File.createTempFile("ataxx", ".sock");
+        file.delete();
+        Daemon daemon = new Daemon(file.toPath());
+        _socket = file.toPath();
+        Thread t = new Thread(daemon::run, "test-daemon");
+        t.setDaemon(true);
+        t.start();
+        return daemon;
+    }
+
+    /** Return the output of a session over a connection to the daemon
+     *  last started, in this directory, given INPUT. */
+    private static String session(String input) throws IOException {
+        try (SocketChannel s =
+             SocketChannel.open(UnixDomainSocketAddress.of(_socket))) {
+            String text = System.getProperty("user.dir") + "\n" + input;
+            s.write(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+            s.shutdownOutput();
+            BufferedReader in = new BufferedReader(
+                new InputStreamReader(Channels.newInputStream(s),
+                                      StandardCharsets.UTF_8));
+            StringBuilder result = new StringBuilder();
+            for (String line = in.readLine(); line != null;
+                 line = in.readLine()) {
+                result.append(line).append('\n');
+            }
+            return result.toString();
+        }
+    }
+
+    /** Return OUTPUT without the times and speeds that notes report. */
+    private static String untimed(String output) {
+        return output.replaceAll(", [0-9.]+ ms\\)", ")")
+            .replaceAll(" [0-9]+ nps,", "");
+    }
+
+    @Test public void testSessions() throws IOException {
+        try (Daemon daemon = start()) {
+            Board b = new Board();
+            b.setBlock("c3");
+            String out = session("block c3\ndump\nquit\nnot read\n");
+            assertTrue(out.contains(b.toString()));
+            assertFalse(out.contains("not read"));
+            out = session("dump\n");
+            assertTrue(out.contains(new Board().toString()));
+            out = session("auto red\nauto blue\nstart\n");
+            assertTrue(out.matches("(?s).*(Red|Blue) wins.*|(?s).*Draw.*"));
+            assertEquals(3, daemon.sessions());
+        }
+        assertFalse(_socket.toFile().exists());
+    }
+
+    @Test public void testFreshSessions() throws IOException {
+        try (Daemon daemon = start()) {
+            String script = "auto red\nstart\ndump\nquit\n";
+            String first = untimed(session(script));
+            assertTrue(first.contains("==="));
+            assertEquals(first, untimed(session(script)));
+            assertEquals(2, daemon.sessions());
+        }
+    }
+
+    @Test public void testBusy() throws IOException {
+        try (Daemon daemon = start()) {
+            try {
+                new Daemon(_socket);
+                fail("replaced a live daemon");
+            } catch (GameException excp) {
+                /* Expected. */
+            }
+            assertTrue(session("dump\n").contains("==="));
+            /* The second daemon's check that the socket is live counts. */
+            assertEquals(2, daemon.sessions());
+        }
+    }
+
+    /** Socket of the daemon last started. */
+    private static Path _socket;
+}
@@ -0,0 +1,223 @@
+package ataxx;
+
+import java.util.Arrays;
+
+import static ataxx.BitBoard.*;
+
+/** An exact, full-width solver for positions with few empty squares.  It
+ *  either finds the final margin under best play (exact mode) or just
+ *  whether the player on move wins, loses or draws (a null-window search
+ *  around 0, which is much cheaper).  It searches by alpha-beta on
+ *  BitBoards, with its own table of bounds on solved positions, and tries
+ *  moves in the order: table move, extends, jumps, preferring captures and
+ *  squares in regions with an odd number of empty squares (by parity,
+ *  the player who moves first into such a region also moves last in it).
+ *
+ *  Because the 25-jump rule lets the players shuffle pieces for a long
+ *  time without filling the board, a solve may blow up; it therefore
+ *  runs under a node limit and reports failure if it reaches it.
+ *  @author Yevgen Vasylenko
+ */
+class EndgameSolver {
+
+    /** Larger than any margin. */
+    static final int INFTY = SQUARES + 1;
+
+    /** A solver whose table has 2^TABLEBITS entries. */
+    EndgameSolver(int tableBits) {
+        _keys = new long[1 << tableBits];
+        _entries = new int[1 << tableBits];
+        _mask = (1 << tableBits) - 1;
+    }
+
+    /** Use TABLEBASE (null for none) for positions it covers. */
+    void setTablebase(Tablebase tablebase) {
+        _tablebase = tablebase;
+    }
+
+    /** Solve POS, which is not over, exactly iff EXACT, visiting at most
+     *  NODELIMIT nodes.  Returns an encoded best move, or NO_MOVE if the
+     *  node limit was reached. */
+    int solve(BitBoard pos, boolean exact, long nodeLimit) {
+        long start = System.nanoTime();
+        _nodes = 0;
+        _nodeLimit = nodeLimit;
+        _bestMove = NO_MOVE;
+        BitBoard b = new BitBoard(pos);
+        int v = exact ? search(b, -INFTY, INFTY, 0, true)
+            : search(b, -1, 1, 0, true);
+        _nanos = System.nanoTime() - start;
+        if (_nodes > _nodeLimit) {
+            _bestMove = NO_MOVE;
+        } else {
+            _value = v;
+        }
+        return _bestMove;
+    }
+
+    /** Return the value found by the last successful solve: the final
+     *  margin of the player on move if it was exact, and otherwise a
+     *  number with the same sign (positive for a win). */
+    int value() {
+        return _value;
+    }
+
+    /** Return the number of nodes visited by the last solve. */
+    long nodes() {
+        return _nodes;
+    }
+
+    /** Return the duration of the last solve in nanoseconds. */
+    long nanos() {
+        return _nanos;
+    }
+
+    /** Forget all solved positions. */
+    void clear() {
+        Arrays.fill(_keys, 0);
+    }
+
+    /** Return the value of POS, exact if it lies strictly between ALPHA
+     *  and BETA, otherwise a bound on the same side of the window.  Use
+     *  _moves from SP up.  Record the best move iff ROOT. */
+    private int search(BitBoard pos, int alpha, int beta, int sp,
+                       boolean root) {
+        _nodes += 1;
+        if (_nodes > _nodeLimit) {
+            return 0;
+        }
+        if (pos.gameOver()) {
+            return pos.margin();
+        }
+        if (!root && _tablebase != null && _tablebase.covers(pos)) {
+            return _tablebase.margin(pos);
+        }
+        long key = pos.searchKey();
+        int slot = (int) key & _mask;
+        int lo = -INFTY, hi = INFTY, tableMove = NO_MOVE;
+        if (_keys[slot] == key) {
+            int entry = _entries[slot];
+            lo = (entry & 0xFF) - INFTY;
+            hi = ((entry >>> 8) & 0xFF) - INFTY;
+            tableMove = entry >>> 16;
+            if (root) {
+                lo = -INFTY;
+                hi = INFTY;
+            } else if (lo >= beta || lo == hi) {
+                return lo;
+            } else if (hi <= alpha) {
+                return hi;
+            } else {
+                alpha = Math.max(alpha, lo);
+                beta = Math.min(beta, hi);
+            }
+        }
+        int n = order(pos, sp, tableMove);
+        int best = -INFTY, bestMove = _moves[sp];
+        for (int i = sp; i < n && best < beta; i += 1) {
+            pos.makeMove(_moves[i]);
+            int v = -search(pos, -beta, -Math.max(alpha, best), n, false);
+            pos.undo();
+            if (_nodes > _nodeLimit) {
+                return 0;
+            }
+            if (v > best) {
+                best = v;
+                bestMove = _moves[i];
+            }
+        }
+        if (best <= alpha) {
+            hi = best;
+        } else if (best >= beta) {
+            lo = best;
+        } else {
+            lo = hi = best;
+        }
+        _keys[slot] = key;
+        _entries[slot] = (lo + INFTY) | (hi + INFTY) << 8 | bestMove << 16;
+        if (root) {
+            _bestMove = bestMove;
+        }
+        return best;
+    }
+
+    /** Generate the moves from POS into _moves from SP up, best first
+     *  (putting TABLEMOVE first if it is among them), and return the
+     *  index after the last. */
+    private int order(BitBoard pos, int sp, int tableMove) {
+        if (_moves.length < sp + MAX_MOVES) {
+            _moves = Arrays.copyOf(_moves, 2 * (sp + MAX_MOVES));
+            _scores = Arrays.copyOf(_scores, _moves.length);
+        }
+        int n = pos.generateDistinct(_moves, sp);
+        long empty = pos.empty(), opp = pos.opponent();
+        long odd = oddRegions(empty);
+        for (int i = sp; i < n; i += 1) {
+            int move = _moves[i], score;
+            if (move == tableMove) {
+                score = Integer.MAX_VALUE;
+            } else if (move == PASS) {
+                score = 0;
+            } else {
+                int to = to(move);
+                score = 4 * Long.bitCount(ADJACENT[to] & opp)
+                    + ((odd & (1L << to)) != 0 ? 2 : 0)
+                    + (isExtend(move) ? EXTEND_BONUS : 0);
+            }
+            int j = i;
+            while (j > sp && _scores[j - 1] < score) {
+                _moves[j] = _moves[j - 1];
+                _scores[j] = _scores[j - 1];
+                j -= 1;
+            }
+            _moves[j] = move;
+            _scores[j] = score;
+        }
+        return n;
+    }
+
+    /** Return the squares of EMPTY that lie in regions (sets of empty
+     *  squares connected by single steps) of odd size. */
+    static long oddRegions(long empty) {
+        long odd = 0;
+        for (long rest = empty; rest != 0;) {
+            long region = rest & -rest, prev;
+            do {
+                prev = region;
+                region = grow(region) & empty;
+            } while (region != prev);
+            if ((Long.bitCount(region) & 1) != 0) {
+                odd |= region;
+            }
+            rest &= ~region;
+        }
+        return odd;
+    }
+
+    /** Added to the ordering score of extends. */
+    private static final int EXTEND_BONUS = 64;
+
+    /** Keys of the positions in the table. */
+    private final long[] _keys;
+    /** Table entries: lower bound + INFTY in bits 0-7, upper bound + INFTY
+     *  in bits 8-15, and best move in bits 16 up. */
+    private final int[] _entries;
+    /** Mask selecting a table slot from a key. */
+    private final int _mask;
+    /** Tablebase for covered positions, or null. */
+    private Tablebase _tablebase;
+    /** Move stack. */
+    private int[] _moves = new int[0];
+    /** Ordering scores of the moves on _moves. */
+    private int[] _scores = new int[0];
+    /** Nodes visited in the current or last solve. */
+    private long _nodes;
+    /** Node limit of the current solve. */
+    private long _nodeLimit;
+    /** Duration of the last solve. */
+    private long _nanos;
+    /** Best move found by the last solve. */
+    private int _bestMove;
+    /** Value found by the last solve. */
+    private int _value;
+}
@@ -0,0 +1,54 @@
+package ataxx;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/** Tests of the endgame solver.
+ *  @author Yevgen Vasylenko
+ */
+public class EndgameSolverTest {
+
+    /** A layout in which only the squares a1-e1 and a2-e2 are open. */
+    private static final long BLOCKS = BitBoard.FULL & ~0xf9fL;
+
+    @Test public void testOddRegions() {
+        long empty = BitBoard.bit(0, 0) | BitBoard.bit(1, 1)
+            | BitBoard.bit(5, 5);
+        assertEquals(BitBoard.bit(5, 5), EndgameSolver.oddRegions(empty));
+        assertEquals(0, EndgameSolver.oddRegions(0));
+    }
+
+    @Test public void testAgainstTablebase() throws IOException {
+        File file = File.createTempFile("ataxx", ".tb");
+        file.deleteOnExit();
+        TablebaseGenerator gen = new TablebaseGenerator(BLOCKS, 3);
+        gen.solve();
+        gen.write(file.getPath());
+        Tablebase tb = Tablebase.open(file.getPath());
+        Tablebase.Index index = tb.index();
+        EndgameSolver solver = new EndgameSolver(16);
+        for (int e = 1; e <= index.maxEmpty(); e += 1) {
+            for (long i = 0; i < index.layerSize(e); i += 7) {
+                long[] p = index.position(e, i);
+                BitBoard pos = new BitBoard(p[0], p[1], BLOCKS,
+                                            p[2] != 0 ? PieceColor.RED
+                                            : PieceColor.BLUE, 0);
+                if (pos.gameOver()) {
+                    continue;
+                }
+                int margin = tb.margin(pos);
+                int move = solver.solve(pos, true, Long.MAX_VALUE);
+                assertTrue("illegal move", pos.legal(move));
+                assertEquals("wrong margin", margin, solver.value());
+                solver.solve(pos, false, Long.MAX_VALUE);
+                assertEquals("wrong outcome", Integer.signum(margin),
+                             Integer.signum(solver.value()));
+            }
+        }
+    }
+
+}
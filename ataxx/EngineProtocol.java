@@ -0,0 +1,444 @@
+package ataxx;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static ataxx.BitBoard.*;
+
+/** The engine protocol (Main's --engine mode), for tournament managers
+ *  and GUIs.  It is line-oriented, in the style of UCI (as are other
+ *  Ataxx engines' "UAI").  The commands are
+ *      uai (or uci): identify, list options and answer uaiok (uciok);
+ *      isready: answer readyok;
+ *      setoption name Hash value MB: size the search table;
+ *      uainewgame (or ucinewgame): forget all searched positions;
+ *      position (startpos | fen FEN) [moves MOVE...]: set the position,
+ *          where FEN is as for BitBoard.parse;
+ *      go [depth N] [nodes N] [movetime MS] [wtime MS] [btime MS]
+ *          [winc MS] [binc MS] [infinite]: search the position, with the
+ *          given limits (none meaning until stopped), writing a line
+ *          info depth D score cp S nodes N nps N time MS pv MOVE...
+ *          and info string STATS (the counts of SearchStats.summary)
+ *          after each iteration and then bestmove MOVE (as in UAI, red,
+ *          which moves first, has the btime and binc clock);
+ *      stop: end the search at once;
+ *      quit: end the search and the session.
+ *  Moves are written as in UAI: the destination of an extend ("b6"),
+ *  the source and destination of a jump ("a7c5"), or "0000" for a pass.
+ *  Moves in the notation of the move commands ("a7-b6" or "-") are also
+ *  accepted.  Scores are piece margins in hundredths, WIN_VALUE pieces
+ *  beyond the margin if the game ends in the line searched.
+ *
+ *  Unlike the interactive mode, there are no prompts, output is buffered
+ *  and flushed once per response, and moves and commands are decoded by
+ *  hand rather than by regular expressions.  Searches run on a thread of
+ *  their own, one for the session, so that stop and isready are answered
+ *  during them.
+ *  @author Yevgen Vasylenko
+ */
+class EngineProtocol {
+
+    /** Default size of the search table in megabytes. */
+    static final int DEFAULT_HASH = 16;
+    /** Largest size of the search table in megabytes. */
+    static final int MAX_HASH = 4096;
+
+    /** A session reading commands from INPUT and writing responses to
+     *  OUTPUT. */
+    EngineProtocol(Reader input, Writer output) {
+        _input = new BufferedReader(input);
+        _output = new PrintWriter(new BufferedWriter(output), false);
+        _search = new Search(tableBits(DEFAULT_HASH));
+        _searchThread = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "engine-search");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Answer go from BOOK (null for none) when it has a move. */
+    void setBook(Book book) {
+        _book = book;
+    }
+
+    /** Answer go from TABLEBASE (null for none) when it covers the
+     *  position. */
+    void setTablebase(Tablebase tablebase) {
+        _tablebase = tablebase;
+    }
+
+    /** Process commands until quit or the end of the input. */
+    void run() {
+        try {
+            for (String line = _input.readLine(); line != null;
+                 line = _input.readLine()) {
+                String[] words = words(line);
+                if (words.length == 0) {
+                    continue;
+                } else if (words[0].equals("quit")) {
+                    break;
+                }
+                execute(words);
+            }
+        } catch (IOException excp) {
+            /* Treat as the end of the input. */
+        }
+        stopSearch();
+        _searchThread.shutdown();
+    }
+
+    /** Perform the command whose words are WORDS. */
+    private void execute(String[] words) {
+        switch (words[0]) {
+        case "uai":
+        case "uci":
+            send("id name Ataxx\nid author Yevgen Vasylenko\n"
+                 + "option name Hash type spin default %d min 1 max %d\n"
+                 + "%sok", DEFAULT_HASH, MAX_HASH, words[0]);
+            break;
+        case "isready":
+            send("readyok");
+            break;
+        case "setoption":
+            setOption(words);
+            break;
+        case "uainewgame":
+        case "ucinewgame":
+            stopSearch();
+            _search.clear();
+            break;
+        case "position":
+            stopSearch();
+            setPosition(words);
+            break;
+        case "go":
+            stopSearch();
+            go(words);
+            break;
+        case "stop":
+            stopSearch();
+            break;
+        default:
+            send("info string unknown command %s", words[0]);
+            break;
+        }
+    }
+
+    /** Perform 'setoption name NAME value VALUE', given as WORDS. */
+    private void setOption(String[] words) {
+        if (words.length == 5 && words[1].equals("name")
+            && words[2].equalsIgnoreCase("hash")
+            && words[3].equals("value")) {
+            long mb = number(words[4]);
+            if (mb >= 1 && mb <= MAX_HASH) {
+                stopSearch();
+                _search = new Search(tableBits((int) mb));
+                return;
+            }
+        }
+        send("info string bad option");
+    }
+
+    /** Perform the position command WORDS. */
+    private void setPosition(String[] words) {
+        int k = 1;
+        BitBoard pos;
+        try {
+            if (k < words.length && words[k].equals("startpos")) {
+                pos = new BitBoard();
+                k += 1;
+            } else if (k < words.length && words[k].equals("fen")) {
+                StringBuilder fen = new StringBuilder();
+                for (k += 1; k < words.length && !words[k].equals("moves");
+                     k += 1) {
+                    fen.append(words[k]).append(' ');
+                }
+                pos = BitBoard.parse(fen.toString());
+            } else {
+                send("info string bad position command");
+                return;
+            }
+        } catch (GameException excp) {
+            send("info string %s", excp.getMessage());
+            return;
+        }
+        if (k < words.length && words[k].equals("moves")) {
+            for (k += 1; k < words.length; k += 1) {
+                int move = parse(pos, words[k]);
+                if (move == NO_MOVE) {
+                    send("info string illegal move %s", words[k]);
+                    break;
+                }
+                pos.makeMove(move);
+            }
+        }
+        _position = new BitBoard(pos);
+    }
+
+    /** Perform the go command WORDS, starting a search. */
+    private void go(String[] words) {
+        int depth = Search.MAX_DEPTH;
+        long nodes = Long.MAX_VALUE, millis = Long.MAX_VALUE,
+            time = -1, inc = 0;
+        boolean red = _position.whoseMove() == PieceColor.RED;
+        for (int k = 1; k < words.length; k += 1) {
+            String key = words[k];
+            if (key.equals("infinite")) {
+                continue;
+            } else if (k + 1 == words.length) {
+                send("info string bad go command");
+                return;
+            }
+            k += 1;
+            long v = number(words[k]);
+            if (v < 0) {
+                send("info string bad go command");
+                return;
+            }
+            switch (key) {
+            case "depth":
+                depth = (int) Math.max(1, Math.min(v, Search.MAX_DEPTH));
+                break;
+            case "nodes":
+                nodes = v;
+                break;
+            case "movetime":
+                millis = v;
+                break;
+            case "wtime":
+            case "btime":
+                if (key.equals("btime") == red) {
+                    time = v;
+                }
+                break;
+            case "winc":
+            case "binc":
+                if (key.equals("binc") == red) {
+                    inc = v;
+                }
+                break;
+            default:
+                break;
+            }
+        }
+        if (time >= 0) {
+            millis = Math.min(millis, Math.max(1, time / MOVES_TO_GO
+                                               + inc / 2));
+        }
+        BitBoard pos = new BitBoard(_position);
+        if (pos.gameOver()) {
+            send("info string game over\nbestmove 0000");
+            return;
+        }
+        int known = knownMove(pos);
+        if (known != NO_MOVE) {
+            send("bestmove %s", format(known));
+            return;
+        }
+        int maxDepth = depth;
+        long nodeLimit = nodes,
+            nanoLimit = millis >= Long.MAX_VALUE / 1000000 ? Long.MAX_VALUE
+            : millis * 1000000;
+        Search search = _search;
+        search.clearStop();
+        _searcher = _searchThread.submit(() -> {
+            int move = search.search(pos, maxDepth, nodeLimit, nanoLimit,
+                                     this::sendInfo);
+            send("bestmove %s", format(move));
+        });
+    }
+
+    /** Return the move for POS from the book or tablebase, or NO_MOVE if
+     *  there is none. */
+    private int knownMove(BitBoard pos) {
+        int move = NO_MOVE;
+        if (_book != null) {
+            move = _book.bestMove(pos);
+        }
+        if (move == NO_MOVE && _tablebase != null) {
+            move = _tablebase.bestMove(pos);
+        }
+        return move;
+    }
+
+    /** Report the iteration just completed by SEARCH. */
+    private void sendInfo(Search search) {
+        long millis = search.nanos() / 1000000;
+        StringBuilder pv = new StringBuilder();
+        for (int move : search.pv()) {
+            pv.append(' ').append(format(move));
+        }
+        send("info depth %d score cp %d nodes %d nps %d time %d pv%s",
+             search.depth(), 100 * search.value(), search.nodes(),
+             search.nodes() * 1000000000L / Math.max(1, search.nanos()),
+             millis, pv);
+        send("info string %s", search.stats().summary());
+    }
+
+    /** Stop the search in progress, if any, and wait for its bestmove
+     *  to be sent. */
+    private void stopSearch() {
+        if (_searcher != null) {
+            _search.stop();
+            try {
+                _searcher.get();
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException excp) {
+                throw new IllegalStateException(excp.getCause());
+            }
+            _searcher = null;
+        }
+    }
+
+    /** Write the line(s) formed from FORMAT and ARGS as for
+     *  String.format, and flush. */
+    private void send(String format, Object... args) {
+        synchronized (_output) {
+            _output.printf(format, args);
+            _output.print('\n');
+            _output.flush();
+        }
+    }
+
+    /** Return encoded MOVE in UAI notation. */
+    static String format(int move) {
+        if (move == PASS) {
+            return "0000";
+        }
+        String to = squareName(to(move));
+        return isExtend(move) ? to : squareName(from(move)) + to;
+    }
+
+    /** Return the name of square SQ. */
+    private static String squareName(int sq) {
+        return new String(new char[] { (char) ('a' + sq % SIDE),
+                                        (char) ('1' + sq / SIDE) });
+    }
+
+    /** Return the encoding of the legal move from POS denoted by WORD, in
+     *  UAI notation or that of the move commands, or NO_MOVE if it denotes
+     *  no legal move. */
+    static int parse(BitBoard pos, String word) {
+        if (pos.gameOver()) {
+            return NO_MOVE;
+        }
+        int move;
+        switch (word.length()) {
+        case 1:
+            move = word.charAt(0) == '-' ? PASS : NO_MOVE;
+            break;
+        case 2:
+            int to = squareOf(word, 0);
+            if (to < 0) {
+                return NO_MOVE;
+            }
+            long sources = ADJACENT[to] & pos.own();
+            move = encode(Long.numberOfTrailingZeros(sources), to);
+            break;
+        case 4:
+            if (word.equals("0000")) {
+                move = PASS;
+            } else {
+                move = encode(squareOf(word, 0), squareOf(word, 2));
+            }
+            break;
+        case 5:
+            move = word.charAt(2) != '-' ? NO_MOVE
+                : encode(squareOf(word, 0), squareOf(word, 3));
+            break;
+        default:
+            return NO_MOVE;
+        }
+        if (move < 0 || from(move) >= SQUARES && move != PASS
+            || !pos.legal(move)) {
+            return NO_MOVE;
+        }
+        return move;
+    }
+
+    /** Return the square named at position K of WORD, or a negative
+     *  number if there is none. */
+    private static int squareOf(String word, int k) {
+        char c = word.charAt(k), r = word.charAt(k + 1);
+        if (c < 'a' || c > 'g' || r < '1' || r > '7') {
+            return -SQUARES;
+        }
+        return square(c, r);
+    }
+
+    /** Return the words of LINE (separated by blanks). */
+    static String[] words(String line) {
+        ArrayList<String> words = new ArrayList<>();
+        int n = line.length();
+        for (int i = 0; i < n;) {
+            while (i < n && Character.isWhitespace(line.charAt(i))) {
+                i += 1;
+            }
+            int start = i;
+            while (i < n && !Character.isWhitespace(line.charAt(i))) {
+                i += 1;
+            }
+            if (i > start) {
+                words.add(line.substring(start, i));
+            }
+        }
+        return words.toArray(new String[0]);
+    }
+
+    /** Return the value of decimal numeral WORD, or -1 if it is not one
+     *  (or too large). */
+    private static long number(String word) {
+        if (word.isEmpty() || word.length() > 18) {
+            return -1;
+        }
+        long v = 0;
+        for (int i = 0; i < word.length(); i += 1) {
+            char c = word.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            v = 10 * v + c - '0';
+        }
+        return v;
+    }
+
+    /** Return the log2 of the number of search table entries that fit in
+     *  MB megabytes. */
+    private static int tableBits(int mb) {
+        long entries = (long) mb * (1 << 20) / ENTRY_SIZE;
+        return 63 - Long.numberOfLeadingZeros(Math.max(entries, 2));
+    }
+
+    /** Size of a search table entry in bytes. */
+    private static final int ENTRY_SIZE = 12;
+    /** Fraction of the remaining time given to a move, when playing
+     *  against a clock. */
+    private static final int MOVES_TO_GO = 30;
+
+    /** Source of commands. */
+    private final BufferedReader _input;
+    /** Destination of responses. */
+    private final PrintWriter _output;
+    /** My searcher. */
+    private Search _search;
+    /** Runs my searches. */
+    private final ExecutorService _searchThread;
+    /** The search in progress, or null. */
+    private Future<?> _searcher;
+    /** Current position. */
+    private BitBoard _position = new BitBoard();
+    /** Opening book, or null. */
+    private Book _book;
+    /** Endgame tablebase, or null. */
+    private Tablebase _tablebase;
+}
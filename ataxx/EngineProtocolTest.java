@@ -0,0 +1,70 @@
+package ataxx;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+/** Tests of the engine protocol.
+ *  @author Yevgen Vasylenko
+ */
+public class EngineProtocolTest {
+
+    /** Return the output of a session given INPUT. */
+    private static String session(String input) {
+        StringWriter output = new StringWriter();
+        new EngineProtocol(new StringReader(input), output).run();
+        return output.toString();
+    }
+
+    @Test public void testNotation() {
+        BitBoard pos = new BitBoard();
+        int extend = EngineProtocol.parse(pos, "b6");
+        assertEquals(BitBoard.encode(Move.move('a', '7', 'b', '6')), extend);
+        assertEquals(extend, EngineProtocol.parse(pos, "a7-b6"));
+        assertEquals("b6", EngineProtocol.format(extend));
+        int jump = EngineProtocol.parse(pos, "a7c5");
+        assertEquals(BitBoard.encode(Move.move('a', '7', 'c', '5')), jump);
+        assertEquals("a7c5", EngineProtocol.format(jump));
+        assertEquals("0000", EngineProtocol.format(BitBoard.PASS));
+        for (String bad : new String[] { "d4", "a7d4", "0000", "-", "h1",
+                                         "a7+b6", "" }) {
+            assertEquals(bad, BitBoard.NO_MOVE,
+                         EngineProtocol.parse(pos, bad));
+        }
+        assertEquals("go|depth|3",
+                     String.join("|", EngineProtocol.words("  go\tdepth 3 ")));
+    }
+
+    @Test public void testSession() {
+        String out = session("uai\nisready\n"
+                             + "position startpos moves b6 g7e5\n"
+                             + "go depth 3\nisready\n");
+        assertTrue(out.startsWith("id name Ataxx\n"));
+        assertTrue(out.contains("\nuaiok\nreadyok\n"));
+        assertTrue(out.contains("info depth 1 score cp "));
+        int k = out.indexOf("bestmove ");
+        assertTrue("no bestmove", k >= 0);
+        String move = out.substring(k + 9).split("\\s+")[0];
+        BitBoard pos = new BitBoard();
+        pos.makeMove(EngineProtocol.parse(pos, "b6"));
+        pos.makeMove(EngineProtocol.parse(pos, "g7e5"));
+        assertNotEquals("illegal bestmove", BitBoard.NO_MOVE,
+                        EngineProtocol.parse(pos, move));
+    }
+
+    @Test public void testPosition() {
+        String out = session("position fen x5o/7/7/7/7/7/o5x x 0 1"
+                             + " moves a7a5 b6\ngo nodes 1\n");
+        assertTrue(out, out.contains("illegal move b6"));
+        String move = out.substring(out.indexOf("bestmove ") + 9).trim();
+        BitBoard pos = BitBoard.parse("6b/7/r6/7/7/7/b5r b 1");
+        assertNotEquals("illegal bestmove", BitBoard.NO_MOVE,
+                        EngineProtocol.parse(pos, move));
+        out = session("position fen r6/7/7/7/7/7/7 b\ngo\n");
+        assertTrue(out, out.contains("bestmove 0000"));
+    }
+
+}
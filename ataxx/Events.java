@@ -0,0 +1,120 @@
+package ataxx;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Percentage;
+import jdk.jfr.StackTrace;
+
+/** Events of the game for the JDK Flight Recorder, so that a recording
+ *  of the program shows its games, searches and commands alongside the
+ *  collections, safepoints and samples of the JVM.  They are recorded
+ *  only when enabled, for which the settings in ataxx.jfc (in this
+ *  directory) serve:
+ *      java -XX:StartFlightRecording:settings=ataxx/ataxx.jfc,\
+ *          filename=ataxx.jfr ataxx.Main
+ *  and then, for example, jfr print --events ataxx.AIMove ataxx.jfr.
+ *  Otherwise, the events cost no more than the test of whether they are
+ *  enabled.
+ *  @author Yevgen Vasylenko
+ */
+class Events {
+
+    /** Not instantiable. */
+    private Events() {
+    }
+
+    /** The start of play of a game. */
+    @Name("ataxx.GameStart")
+    @Label("Game Start")
+    @Category("Ataxx")
+    static final class GameStart extends Event {
+        /** True iff red is played by an AI. */
+        @Label("Red AI")
+        boolean redAI;
+        /** True iff blue is played by an AI. */
+        @Label("Blue AI")
+        boolean blueAI;
+        /** Number of blocked squares. */
+        @Label("Blocks")
+        int blocks;
+    }
+
+    /** A game, from the start of its play to its end. */
+    @Name("ataxx.GamePlayed")
+    @Label("Game Played")
+    @Description("A game, from the start of play to its end")
+    @Category("Ataxx")
+    static final class GamePlayed extends Event {
+        /** "Red wins.", "Blue wins." or "Draw.". */
+        @Label("Outcome")
+        String outcome;
+        /** Number of moves made, including passes. */
+        @Label("Moves")
+        int moves;
+        /** Number of red pieces at the end. */
+        @Label("Red Pieces")
+        int red;
+        /** Number of blue pieces at the end. */
+        @Label("Blue Pieces")
+        int blue;
+    }
+
+    /** The choice of a move by an AI. */
+    @Name("ataxx.AIMove")
+    @Label("AI Move")
+    @Description("The choice of a move by an AI, and how it was found")
+    @Category("Ataxx")
+    static final class AIMove extends Event {
+        /** "Red" or "Blue". */
+        @Label("Color")
+        String color;
+        /** Where the move came from: "book", "tablebase", "endgame",
+         *  "proof" or "search". */
+        @Label("Source")
+        String source;
+        /** The move chosen. */
+        @Label("Move")
+        String move;
+        /** Depth of the middle-game search, or 0 if none. */
+        @Label("Depth")
+        int depth;
+        /** Nodes visited by the search, solver or prover. */
+        @Label("Nodes")
+        long nodes;
+        /** Value of the move found by the middle-game search, for the
+         *  AI. */
+        @Label("Score")
+        int score;
+        /** Share of the middle-game search's table probes that hit. */
+        @Label("Table Hit Rate")
+        @Percentage
+        double hitRate;
+    }
+
+    /** The parsing of a command. */
+    @Name("ataxx.Command")
+    @Label("Command Parsed")
+    @Category("Ataxx")
+    static final class CommandParsed extends Event {
+        /** Type of the command. */
+        @Label("Type")
+        String type;
+    }
+
+    /** A copy of a Board, or its conversion to a BitBoard, recorded with
+     *  the stack of its caller so that the places copying most often
+     *  stand out. */
+    @Name("ataxx.BoardCopy")
+    @Label("Board Copy")
+    @Category("Ataxx")
+    @StackTrace(true)
+    static final class BoardCopy extends Event {
+        /** "Board" or "BitBoard". */
+        @Label("Copy")
+        String kind;
+    }
+
+}
@@ -0,0 +1,45 @@
+package ataxx;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import static org.junit.Assert.*;
+
+/** Tests of the Flight Recorder events.
+ *  @author Yevgen Vasylenko
+ */
+public class EventsTest {
+
+    @Test public void testBoardCopy() throws IOException {
+        Path file = Files.createTempFile("ataxx", ".jfr");
+        try {
+            Board board = new Board();
+            try (Recording recording = new Recording()) {
+                recording.enable("ataxx.BoardCopy");
+                recording.start();
+                new BitBoard(board);
+                new Board(board);
+                recording.stop();
+                recording.dump(file);
+            }
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            assertEquals(2, events.size());
+            assertEquals("BitBoard", events.get(0).getString("kind"));
+            assertEquals("Board", events.get(1).getString("kind"));
+            assertEquals("testBoardCopy",
+                         events.get(0).getStackTrace().getFrames().get(1)
+                         .getMethod().getName());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+}
@@ -5,10 +5,13 @@ package ataxx;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Random;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Consumer;
 
 import static ataxx.PieceColor.*;
@@ -34,54 +37,77 @@ class Game {
         _reporter = reporter;
     }
 
-    /** Run a session of Ataxx gaming.  Use an AtaxxGUI iff USEGUI. */
+    /** Run a session of Ataxx gaming, until the quit command or the end
+     *  of input.  Use an AtaxxGUI iff USEGUI. */
     void process(boolean useGUI) {
-        Player red, blue;
-
-        red = blue = null;
-
-        GameLoop:
-        while (true) {
-            doClear(null);
-            _state = SETUP;
-            SetupLoop:
-            while (_state == SETUP) {
+        doClear(null);
+        while (!_quit) {
+            if (_state == PLAYING) {
+                play();
+            } else if (!replay()) {
                 doCommand();
             }
-            if (isRedAI) {
-                red = new AI(this, RED);
-            } else {
-                red = new Manual(this, RED);
+        }
+    }
+
+    /** Play the current game until it ends, leaves playing state, or is
+     *  replaced by restoring a snapshot.  Record its start and, if it
+     *  ends, the game as Events. */
+    private void play() {
+        Events.GameStart started = new Events.GameStart();
+        if (started.shouldCommit()) {
+            started.redAI = isRedAI;
+            started.blueAI = isBlueAI;
+            started.blocks = _board.numBlocks();
+            started.commit();
+        }
+        Events.GamePlayed played = new Events.GamePlayed();
+        played.begin();
+        Player red, blue;
+        if (isRedAI) {
+            red = new AI(this, RED);
+        } else {
+            red = new Manual(this, RED);
+        }
+        if (isBlueAI) {
+            blue = new AI(this, BLUE);
+        } else {
+            blue = new Manual(this, BLUE);
+        }
+        _restored = false;
+        while (_state == PLAYING && !_restored && !_board.gameOver()) {
+            if (replay()) {
+                continue;
             }
-            if (isBlueAI) {
-                blue = new AI(this, BLUE);
+            Move move;
+            long start = System.nanoTime();
+            if (_board.whoseMove() == BLUE) {
+                move = blue.myMove();
             } else {
-                blue = new Manual(this, BLUE);
-            }
-            while (_state != SETUP && !_board.gameOver()) {
-                Move move;
-                if (_board.whoseMove() == BLUE) {
-                    move = blue.myMove();
-                } else {
-                    move = red.myMove();
-                }
-                if (_state == PLAYING) {
-                    _board.makeMove(move);
-                }
+                move = red.myMove();
             }
-            if (_state != SETUP) {
-                reportWinner();
+            if (_state == PLAYING && !_restored) {
+                _board.makeMove(move);
+                recordMove(move, System.nanoTime() - start);
             }
-
-            if (_state == PLAYING) {
-                _state = FINISHED;
+        }
+        if (_state == PLAYING && !_restored) {
+            played.end();
+            if (played.shouldCommit()) {
+                played.outcome = outcome();
+                played.moves = _recordMoves.size();
+                played.red = _board.redPieces();
+                played.blue = _board.bluePieces();
+                played.commit();
             }
-
-            while (_state == FINISHED) {
-                doCommand();
+            reportWinner();
+            Metrics.GAMES.increment();
+            if (_searchStats.get(SearchStats.NODES) > 0) {
+                reportNote("Search: %s.", _searchStats.summary());
             }
+            saveRecord();
+            _state = FINISHED;
         }
-
     }
 
     /** Return a view of my game board that should not be modified by
@@ -90,11 +116,60 @@ class Game {
         return _board;
     }
 
+    /** Return the opening book used by my AIs, or null if none. */
+    Book book() {
+        return _book;
+    }
+
+    /** Use BOOK (null for none) in my AIs' openings. */
+    void setBook(Book book) {
+        _book = book;
+    }
+
+    /** Add STATS, the counts of a search by one of my AIs, to those of
+     *  the current game. */
+    void addSearchStats(SearchStats stats) {
+        _searchStats.add(stats);
+    }
+
+    /** Return the endgame tablebase used by my AIs, or null if none. */
+    Tablebase tablebase() {
+        return _tablebase;
+    }
+
+    /** Use TABLEBASE (null for none) in my AIs' endgames. */
+    void setTablebase(Tablebase tablebase) {
+        _tablebase = tablebase;
+    }
+
+    /** Resolve the relative names of files in commands against
+     *  DIRECTORY rather than the working directory of the program. */
+    void setDirectory(Path directory) {
+        _directory = directory;
+    }
+
+    /** Write the record of each game finished to RECORDER (null for
+     *  none). */
+    void setRecorder(GameRecordWriter recorder) {
+        _recorder = recorder;
+    }
+
+    /** Return the number of empty squares below which my AIs solve the
+     *  game exactly. */
+    int endgameThreshold() {
+        return _endgameThreshold;
+    }
+
+    /** Have my AIs solve the game exactly once there are fewer than
+     *  THRESHOLD empty squares (0 never to). */
+    void setEndgameThreshold(int threshold) {
+        _endgameThreshold = threshold;
+    }
+
     /** Perform the next command from our input source. */
     void doCommand() {
         try {
-            Command cmnd =
-                Command.parseCommand(_inputs.getLine("ataxx: "));
+            Command cmnd = parse(_inputs.getLine("ataxx: "));
             _commands.get(cmnd.commandType()).accept(cmnd.operands());
         } catch (GameException excp) {
             _reporter.errMsg(excp.getMessage());
@@ -107,9 +182,9 @@ class Game {
      *  of playing mode. If appropriate to the current input source, use
      *  PROMPT to prompt for input. */
     Command getMoveCmnd(String prompt) {
-        while (_state == PLAYING) {
+        while (_state == PLAYING && !_restored) {
             try {
-                Command cmnd = Command.parseCommand(_inputs.getLine(prompt));
+                Command cmnd = parse(_inputs.getLine(prompt));
                 if (cmnd.commandType() == PIECEMOVE) {
                     if (!_board.legalMove(commandToMove(cmnd))) {
                         reportError("Not a legal move.", cmnd);
@@ -134,9 +209,18 @@ class Game {
         return null;
     }
 
-    /** Return random integer between 0 (inclusive) and MAX>0 (exclusive). */
-    int nextRandom(int max) {
-        return _randoms.nextInt(max);
+    /** Return the command LINE, as for Command.parseCommand, recording
+     *  its parsing as an Events.CommandParsed. */
+    private Command parse(String line) {
+        Events.CommandParsed event = new Events.CommandParsed();
+        event.begin();
+        Command cmnd = Command.parseCommand(line);
+        event.end();
+        if (event.shouldCommit()) {
+            event.type = cmnd.commandType().toString();
+            event.commit();
+        }
+        return cmnd;
     }
 
     /** Report a move, using a message formed from FORMAT and ARGS as
@@ -145,6 +229,12 @@ class Game {
         _reporter.moveMsg(format, args);
     }
 
+    /** Report a diagnostic, using a message formed from FORMAT and ARGS
+     *  as for String.format. */
+    void reportNote(String format, Object... args) {
+        _reporter.noteMsg(format, args);
+    }
+
     /** Report an error, using a message formed from FORMAT and ARGS as
      *  for String.format. */
     void reportError(String format, Object... args) {
@@ -169,10 +259,10 @@ class Game {
         String interest = operands[0].toUpperCase();
         if (interest.equals("RED")) {
             isRedAI = true;
-            System.out.println("Setting Red player to be AI");
+            _reporter.moveMsg("Setting Red player to be AI");
         } else if (interest.equals("BLUE")) {
             isBlueAI = true;
-            System.out.println("Setting Blue player to be AI");
+            _reporter.moveMsg("Setting Blue player to be AI");
         } else {
             reportError("Try again.", operands[0]);
         }
@@ -183,7 +273,7 @@ class Game {
         InputStream helpIn =
             Game.class.getClassLoader().getResourceAsStream("ataxx/help.txt");
         if (helpIn == null) {
-            System.err.println("No help available.");
+            _reporter.noteMsg("No help available.");
         } else {
             try {
                 BufferedReader r
@@ -193,7 +283,7 @@ class Game {
                     if (line == null) {
                         break;
                     }
-                    System.out.println(line);
+                    _reporter.moveMsg("%s", line);
                 }
                 r.close();
             } catch (IOException e) {
@@ -204,13 +294,46 @@ class Game {
 
     /** Perform the command 'load OPERANDS[0]'. */
     void doLoad(String[] operands) {
-        try {
-            FileReader reader = new FileReader(operands[0]);
-            ReaderSource r = new ReaderSource(reader, true);
-            _inputs.addSource(r);
-        } catch (IOException e) {
-            throw error("Cannot open file %s", operands[0]);
+        _inputs.addSource(new MappedSource(file(operands[0]), _reporter));
+    }
+
+    /** Return a snapshot of the whole state of my game. */
+    Snapshot snapshot() {
+        return new Snapshot(_board, _state, isRedAI, isBlueAI,
+                            toArray(_recordMoves), toArray(_recordMillis));
+    }
+
+    /** Replace the whole state of my game by that in SNAPSHOT. */
+    void restore(Snapshot snapshot) {
+        snapshot.board(_board);
+        _state = snapshot.state();
+        isRedAI = snapshot.redAI();
+        isBlueAI = snapshot.blueAI();
+        _recordMoves.clear();
+        _recordMillis.clear();
+        int[] moves = snapshot.moves(), millis = snapshot.millis();
+        for (int k = 0; k < moves.length; k += 1) {
+            _recordMoves.add(moves[k]);
+            _recordMillis.add(millis[k]);
         }
+        _restored = true;
+    }
+
+    /** Perform the command 'save OPERANDS[0]'. */
+    void doSave(String[] operands) {
+        snapshot().save(file(operands[0]));
+    }
+
+    /** Perform the command 'restore OPERANDS[0]'. */
+    void doRestore(String[] operands) {
+        restore(Snapshot.load(file(operands[0])));
+    }
+
+    /** Return the file named NAME in commands, relative to my directory
+     *  if NAME is relative. */
+    private String file(String name) {
+        return _directory == null ? name
+            : _directory.resolve(name).toString();
     }
 
     /** Perform the command 'manual OPERANDS[0]'. */
@@ -221,19 +344,29 @@ class Game {
         } else if (interest.equals("RED")) {
             isRedAI = false;
         } else {
-            System.out.println("Try again.");
+            _reporter.errMsg("Try again.");
         }
     }
 
-    /** Exit the program. */
+    /** End the session, so that process returns. */
     void doQuit(String[] unused) {
-        System.exit(0);
+        if (_recorder != null) {
+            try {
+                _recorder.close();
+            } catch (GameException excp) {
+                _reporter.errMsg(excp.getMessage());
+            }
+        }
+        _reporter.flush();
+        _quit = true;
+        _state = FINISHED;
     }
 
     /** Perform the command 'start'. */
     void doStart(String[] unused) {
         checkState("start", SETUP);
         _state = PLAYING;
+        _searchStats.clear();
     }
 
     /** Perform the move OPERANDS[0]. */
@@ -249,6 +382,7 @@ class Game {
             return;
         } else {
             _board.makeMove(what);
+            recordMove(what, 0);
         }
     }
 
@@ -256,6 +390,7 @@ class Game {
     void doPass(String[] unused) {
         if (!_board.canMove(_board.whoseMove())) {
             _board.pass();
+            recordMove(Move.pass(), 0);
         } else {
             reportError("Illegal pass.");
         }
@@ -265,19 +400,74 @@ class Game {
     void doClear(String[] unused) {
         _board.clear();
         _state = SETUP;
+        _recordMoves.clear();
+        _recordMillis.clear();
+    }
+
+    /** Perform the command 'stats': report the counts of all searches
+     *  so far on this thread, on which my AIs and analyses search. */
+    void doStats(String[] unused) {
+        reportMove("%s", SearchStats.threadTotals());
     }
 
     /** Perform the command 'dump'. */
     void doDump(String[] unused) {
-        System.out.println(_board.toString());
+        _reporter.moveMsg("%s", _board);
     }
 
-    /** Execute 'seed OPERANDS[0]' command, where the operand is a string
-     *  of decimal digits. Silently substitutes another value if
-     *  too large. */
-    void doSeed(String[] operands) {
-        int i = 1;
-        i++;
+    /** Execute 'perft OPERANDS[0]': count and report the leaves of the
+     *  game tree to the given depth below the current position. */
+    void doPerft(String[] operands) {
+        int depth;
+        try {
+            depth = Integer.parseInt(operands[0]);
+        } catch (NumberFormatException excp) {
+            throw error("Depth too large.");
+        }
+        long start = System.nanoTime();
+        long n = Perft.perft(new BitBoard(_board), depth,
+                             ForkJoinPool.commonPool());
+        reportMove("%s", Perft.report(depth, n,
+                                      (System.nanoTime() - start) * 1e-9));
+    }
+
+    /** Execute 'analyze OPERANDS[0] OPERANDS[1]': report the given number
+     *  of best moves from the current position with their values and
+     *  principal variations, searched to the given depth (or to
+     *  Analyzer.DEFAULT_DEPTH if OPERANDS[1] is null).  The best move at
+     *  each depth completed is reported as a diagnostic. */
+    void doAnalyze(String[] operands) {
+        int lines, depth;
+        try {
+            lines = Integer.parseInt(operands[0]);
+            depth = operands[1] == null ? Analyzer.DEFAULT_DEPTH
+                : Integer.parseInt(operands[1]);
+        } catch (NumberFormatException excp) {
+            throw error("Number too large.");
+        }
+        if (lines < 1 || depth < 1 || depth > Search.MAX_DEPTH) {
+            throw error("Bad number of lines or depth.");
+        }
+        if (_analyzer == null) {
+            _analyzer = new Analyzer(Analyzer.DEFAULT_TABLE_BITS);
+        }
+        List<Analyzer.Line> result =
+            _analyzer.analyze(new BitBoard(_board), lines, depth,
+                              found -> reportNote("Depth %d: %s",
+                                                  found.get(0).depth(),
+                                                  found.get(0)));
+        for (int i = 0; i < result.size(); i += 1) {
+            reportMove("%d. %s", i + 1, result.get(i));
+        }
+    }
+
+    /** Execute 'seed OPERANDS[0]' command.  The AIs draw no random
+     *  numbers, so the seed itself changes nothing; but what they play
+     *  depends on what their searchers' tables hold, so this clears the
+     *  tables of this thread, on which my AIs move: a game after a seed
+     *  command then plays as it would in a fresh run. */
+    void doSeed(String[] unused) {
+        AI.clearTables();
     }
 
     /** Execute the command 'block OPERANDS[0]'. */
@@ -296,15 +486,75 @@ class Game {
 
     /** Report the outcome of the current game. */
     void reportWinner() {
-        String msg;
+        _reporter.outcomeMsg(outcome());
+    }
+
+    /** Return the announcement of the outcome of the game. */
+    private String outcome() {
         if (_board.numPieces(RED) > _board.numPieces(BLUE)) {
-            msg = "Red wins.";
+            return "Red wins.";
         } else if (_board.numPieces(RED) < _board.numPieces(BLUE)) {
-            msg = "Blue wins.";
+            return "Blue wins.";
         } else {
-            msg = "Draw.";
+            return "Draw.";
+        }
+    }
+
+    /** Note MOVE, just made and taking NANOS nanoseconds, for the record
+     *  of the current game. */
+    private void recordMove(Move move, long nanos) {
+        _recordMoves.add(BitBoard.encode(move));
+        _recordMillis.add((int) Math.min(nanos / 1000000,
+                                         Integer.MAX_VALUE));
+    }
+
+    /** Write the record of the game just finished, if recording. */
+    private void saveRecord() {
+        if (_recorder != null) {
+            _recorder.write(GameRecord.of(_board, toArray(_recordMoves),
+                                          toArray(_recordMillis)));
         }
-        _reporter.outcomeMsg(msg);
+    }
+
+    /** If my next input is a mapped script (see MappedSource), apply the
+     *  moves with which it continues directly to my board, for as long
+     *  as they are legal and it is a manual player's turn in a game not
+     *  yet over, or I am being set up.  Anything else is left to be read
+     *  as usual, so that errors are reported as usual.  Return true iff
+     *  any moves were applied. */
+    private boolean replay() {
+        if (!(_inputs.current() instanceof MappedSource)) {
+            return false;
+        }
+        MappedSource script = (MappedSource) _inputs.current();
+        BitBoard pos = new BitBoard(_board);
+        int n;
+        for (n = 0; _state == SETUP
+                 || (_state == PLAYING && !pos.gameOver()
+                     && !(pos.whoseMove() == RED ? isRedAI : isBlueAI));
+             n += 1) {
+            int move = script.nextMove();
+            if (move == BitBoard.NO_MOVE || !pos.legal(move)) {
+                break;
+            }
+            script.accept();
+            pos.makeMove(move);
+            if (n == _replayed.length) {
+                _replayed = Arrays.copyOf(_replayed, 2 * n);
+            }
+            _replayed[n] = move;
+        }
+        for (int k = 0; k < n; k += 1) {
+            Move move = BitBoard.toMove(_replayed[k]);
+            _board.makeMove(move);
+            recordMove(move, 0);
+        }
+        return n > 0;
+    }
+
+    /** Return the elements of LIST. */
+    private static int[] toArray(ArrayList<Integer> list) {
+        return list.stream().mapToInt(Integer::intValue).toArray();
     }
 
     /** Check that game is currently in one of the states STATES, assuming
@@ -329,6 +579,9 @@ class Game {
         throw error("'%s' command is not allowed now.", cmnd);
     }
 
+    /** Default value of endgameThreshold(). */
+    static final int DEFAULT_ENDGAME_THRESHOLD = 7;
+
     /** Mapping of command types to methods that process them. */
     private final HashMap<Command.Type, Consumer<String[]>> _commands =
         new HashMap<>();
@@ -339,12 +592,17 @@ class Game {
         _commands.put(CLEAR, this::doClear);
         _commands.put(DUMP, this::doDump);
         _commands.put(HELP, this::doHelp);
+        _commands.put(STATS, this::doStats);
         _commands.put(MANUAL, this::doManual);
         _commands.put(PASS, this::doPass);
         _commands.put(PIECEMOVE, this::doMove);
         _commands.put(SEED, this::doSeed);
         _commands.put(START, this::doStart);
         _commands.put(LOAD, this::doLoad);
+        _commands.put(SAVE, this::doSave);
+        _commands.put(RESTORE, this::doRestore);
+        _commands.put(PERFT, this::doPerft);
+        _commands.put(ANALYZE, this::doAnalyze);
         _commands.put(QUIT, this::doQuit);
         _commands.put(ERROR, this::doError);
         _commands.put(EOF, this::doQuit);
@@ -352,6 +610,10 @@ class Game {
 
     /** Input source. */
     private final CommandSources _inputs = new CommandSources();
+    /** Counts of the searches of my AIs in the current game. */
+    private final SearchStats _searchStats = new SearchStats();
+    /** The moves of a run being replayed (see replay). */
+    private int[] _replayed = new int[64];
 
     /** My board. */
     private Board _board;
@@ -359,8 +621,29 @@ class Game {
     private State _state;
     /** Used to send messages to the user. */
     private Reporter _reporter;
-    /** Source of pseudo-random numbers (used by AIs). */
-    private Random _randoms = new Random();
+    /** Opening book (used by AIs), or null. */
+    private Book _book;
+    /** Endgame tablebase (used by AIs), or null. */
+    private Tablebase _tablebase;
+    /** Number of empty squares below which AIs solve exactly. */
+    private int _endgameThreshold = DEFAULT_ENDGAME_THRESHOLD;
+    /** Analyzer for the analyze command, or null if not yet needed. */
+    private Analyzer _analyzer;
+    /** Writer of game records, or null. */
+    private GameRecordWriter _recorder;
+    /** Directory of relative file names in commands, or null for the
+     *  working directory. */
+    private Path _directory;
+    /** Encoded moves of the current game, for its record. */
+    private final ArrayList<Integer> _recordMoves = new ArrayList<>();
+    /** Time taken by each of _recordMoves in milliseconds. */
+    private final ArrayList<Integer> _recordMillis = new ArrayList<>();
+    /** True iff the game has been replaced by a snapshot since play()
+     *  last started. */
+    private boolean _restored;
+    /** True once the session has been ended by the quit command or the
+     *  end of input. */
+    private boolean _quit;
     /** Ai. **/
     private boolean isRedAI = false;
     /** Ai. **/
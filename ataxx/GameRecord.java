@@ -0,0 +1,375 @@
+package ataxx;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static ataxx.BitBoard.*;
+import static ataxx.GameException.error;
+
+/** The record of a game: its blocked squares, the moves made from the
+ *  initial position (passes included), and, optionally, the time taken
+ *  by each move in milliseconds.  A record is checked by replaying it
+ *  when made, so it always holds a legal game, though not necessarily a
+ *  finished one.
+ *
+ *  Records have two formats.  The text format is one line "blocks"
+ *  followed by the blocked squares, then a line for each move giving the
+ *  move (as for the move commands) and, if the record is timed, its
+ *  time, then a line "result R-B" giving the final numbers of red and
+ *  blue pieces, and then an empty line.  The binary format is a sequence
+ *  of frames, each a varint length followed by that many bytes of
+ *  body:
+ *      varint flags (1 if timed), varint blocks mask, varint move count,
+ *      moves, and (if timed) a varint time for each move.
+ *  A move takes one byte, its destination square, if it is an extend,
+ *  or two, 64 plus its destination and then its source, if it is a jump.
+ *  A pass is the byte 127.  Since all extends to a square have the same
+ *  effect, the binary format does not keep their sources: an extend
+ *  read back comes from the lowest-numbered adjacent piece (as from
+ *  BitBoard.generateDistinct).  Varints are unsigned, seven bits to a
+ *  byte, least significant first, with the high bit of every byte but
+ *  the last set.  A binary file starts with the header int MAGIC, int
+ *  VERSION (big-endian), after which frames may simply be appended.
+ *  @author Yevgen Vasylenko
+ */
+class GameRecord {
+
+    /** First word of a binary game-record file. */
+    static final int MAGIC = 0x41544752;
+    /** Current version of the binary format. */
+    static final int VERSION = 1;
+    /** Size of the header of a binary file in bytes. */
+    static final int HEADER_SIZE = 8;
+
+    /** The record of a game with blocked squares BLOCKS and encoded
+     *  MOVES, taking MILLIS[k] milliseconds for move k (or untimed if
+     *  MILLIS is null). */
+    GameRecord(long blocks, int[] moves, int[] millis) {
+        this(blocks, moves.clone(), millis == null ? null : millis.clone(),
+             replay(blocks, moves, millis));
+    }
+
+    /** The record of a game with blocked squares BLOCKS, encoded MOVES
+     *  and move times MILLIS (or null), ending in position LAST, all of
+     *  which have been checked and are not shared. */
+    private GameRecord(long blocks, int[] moves, int[] millis,
+                       BitBoard last) {
+        _blocks = blocks;
+        _moves = moves;
+        _millis = millis;
+        _last = last;
+    }
+
+    /** Return the position reached by encoded MOVES from the initial
+     *  position with blocked squares BLOCKS, checking that they are legal
+     *  and that MILLIS, if not null, gives a time for each. */
+    private static BitBoard replay(long blocks, int[] moves, int[] millis) {
+        if (millis != null && millis.length != moves.length) {
+            throw error("move times do not match moves");
+        }
+        BitBoard pos = initial(blocks);
+        for (int move : moves) {
+            if (pos.gameOver() || !pos.legal(move)) {
+                throw error("illegal move in game record: %s",
+                            toMove(move));
+            }
+            pos.makeMove(move);
+        }
+        return pos;
+    }
+
+    /** Return the initial position with blocked squares BLOCKS, checking
+     *  that they are squares of the board not holding pieces. */
+    private static BitBoard initial(long blocks) {
+        BitBoard start = new BitBoard();
+        if ((blocks & ~start.empty()) != 0) {
+            throw error("bad blocked squares in game record");
+        }
+        return new BitBoard(start.red(), start.blue(), blocks,
+                            PieceColor.RED, 0);
+    }
+
+    /** Return the record of the game played on B, which was cleared
+     *  before its first move, whose moves were encoded MOVES (one for
+     *  each made, including passes), taking MILLIS[k] milliseconds for
+     *  move k (or untimed if MILLIS is null). */
+    static GameRecord of(Board b, int[] moves, int[] millis) {
+        return new GameRecord(new BitBoard(b).blocks(), moves, millis);
+    }
+
+    /** Return the blocked squares. */
+    long blocks() {
+        return _blocks;
+    }
+
+    /** Return the number of moves. */
+    int length() {
+        return _moves.length;
+    }
+
+    /** Return encoded move K. */
+    int move(int k) {
+        return _moves[k];
+    }
+
+    /** Return true iff my moves are timed. */
+    boolean timed() {
+        return _millis != null;
+    }
+
+    /** Return the time taken by move K in milliseconds (0 if untimed). */
+    int millis(int k) {
+        return _millis == null ? 0 : _millis[k];
+    }
+
+    /** Return the initial position of my game. */
+    BitBoard start() {
+        return initial(_blocks);
+    }
+
+    /** Return the position after my last move. */
+    BitBoard position() {
+        return new BitBoard(_last);
+    }
+
+    /** Return the number of COLOR pieces after my last move. */
+    int numPieces(PieceColor color) {
+        return _last.numPieces(color);
+    }
+
+    /** Return true iff my game was played to the end. */
+    boolean finished() {
+        return _last.gameOver();
+    }
+
+    /** Return me in the text format. */
+    String toText() {
+        StringBuilder out = new StringBuilder("blocks");
+        for (long b = _blocks; b != 0; b &= b - 1) {
+            int sq = Long.numberOfTrailingZeros(b);
+            out.append(' ').append((char) ('a' + sq % SIDE))
+                .append((char) ('1' + sq / SIDE));
+        }
+        out.append('\n');
+        for (int k = 0; k < _moves.length; k += 1) {
+            out.append(toMove(_moves[k]));
+            if (_millis != null) {
+                out.append(' ').append(_millis[k]);
+            }
+            out.append('\n');
+        }
+        out.append(String.format("result %d-%d\n\n",
+                                 numPieces(PieceColor.RED),
+                                 numPieces(PieceColor.BLUE)));
+        return out.toString();
+    }
+
+    /** Return the next record in text format from IN, or null if there
+     *  are no more. */
+    static GameRecord readText(BufferedReader in) throws IOException {
+        String line = in.readLine();
+        while (line != null && line.trim().isEmpty()) {
+            line = in.readLine();
+        }
+        if (line == null) {
+            return null;
+        }
+        String[] words = line.trim().split("\\s+");
+        if (!words[0].equals("blocks")) {
+            throw error("bad game record: %s", line);
+        }
+        long blocks = 0;
+        for (int i = 1; i < words.length; i += 1) {
+            if (!words[i].matches("[a-g][1-7]")) {
+                throw error("bad game record: %s", line);
+            }
+            blocks |= 1L << square(words[i].charAt(0), words[i].charAt(1));
+        }
+        int[] moves = new int[16], millis = new int[16];
+        int n = 0;
+        boolean timed = false;
+        String result = null;
+        for (line = in.readLine(); line != null && !line.trim().isEmpty();
+             line = in.readLine()) {
+            words = line.trim().split("\\s+");
+            if (result != null || words.length > 2) {
+                throw error("bad game record: %s", line);
+            } else if (words[0].equals("result") && words.length == 2) {
+                result = words[1];
+                continue;
+            }
+            if (n == moves.length) {
+                moves = Arrays.copyOf(moves, 2 * n);
+                millis = Arrays.copyOf(millis, 2 * n);
+            }
+            if (words[0].equals("-")) {
+                moves[n] = PASS;
+            } else if (words[0].matches("[a-g][1-7]-[a-g][1-7]")) {
+                moves[n] = encode(square(words[0].charAt(0),
+                                         words[0].charAt(1)),
+                                  square(words[0].charAt(3),
+                                         words[0].charAt(4)));
+            } else {
+                throw error("bad game record: %s", line);
+            }
+            if (n == 0) {
+                timed = words.length == 2;
+            } else if (timed != (words.length == 2)) {
+                throw error("bad game record: %s", line);
+            }
+            if (timed) {
+                if (!words[1].matches("[0-9]{1,9}")) {
+                    throw error("bad game record: %s", line);
+                }
+                millis[n] = Integer.parseInt(words[1]);
+            }
+            n += 1;
+        }
+        GameRecord record =
+            new GameRecord(blocks, Arrays.copyOf(moves, n),
+                           timed ? Arrays.copyOf(millis, n) : null);
+        String expected = String.format("%d-%d",
+                                        record.numPieces(PieceColor.RED),
+                                        record.numPieces(PieceColor.BLUE));
+        if (result == null || !result.equals(expected)) {
+            throw error("game record result does not match its moves");
+        }
+        return record;
+    }
+
+    /** Return me as a frame of the binary format. */
+    byte[] toBytes() {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        putVarint(body, _millis == null ? 0 : 1);
+        putVarint(body, _blocks);
+        putVarint(body, _moves.length);
+        for (int move : _moves) {
+            if (move == PASS) {
+                body.write(PASS_CODE);
+            } else if (isExtend(move)) {
+                body.write(to(move));
+            } else {
+                body.write(JUMP_CODE + to(move));
+                body.write(from(move));
+            }
+        }
+        if (_millis != null) {
+            for (int t : _millis) {
+                putVarint(body, t);
+            }
+        }
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        putVarint(frame, body.size());
+        frame.write(body.toByteArray(), 0, body.size());
+        return frame.toByteArray();
+    }
+
+    /** Return the record in the frame of the binary format at the
+     *  position of BUF, advancing the position past it. */
+    static GameRecord read(ByteBuffer buf) {
+        try {
+            int size = (int) getVarint(buf);
+            int end = buf.position() + size;
+            if (size < 0 || end > buf.limit()) {
+                throw error("truncated game record");
+            }
+            long flags = getVarint(buf);
+            long blocks = getVarint(buf);
+            int n = (int) getVarint(buf);
+            if (flags > 1 || n < 0 || n > size) {
+                throw error("corrupt game record");
+            }
+            int[] moves = new int[n];
+            BitBoard pos = initial(blocks);
+            for (int k = 0; k < n; k += 1) {
+                int b = buf.get() & 0xFF;
+                if (b == PASS_CODE) {
+                    moves[k] = PASS;
+                } else if (b < SQUARES) {
+                    long from = ADJACENT[b] & pos.own();
+                    moves[k] = encode(Long.numberOfTrailingZeros(from), b);
+                } else if (b >= JUMP_CODE && b < JUMP_CODE + SQUARES) {
+                    int from = buf.get() & 0xFF;
+                    if (from >= SQUARES) {
+                        throw error("corrupt game record");
+                    }
+                    moves[k] = encode(from, b - JUMP_CODE);
+                } else {
+                    throw error("corrupt game record");
+                }
+                if (pos.gameOver() || !pos.legal(moves[k])) {
+                    throw error("corrupt game record");
+                }
+                pos.makeMove(moves[k]);
+            }
+            int[] millis = null;
+            if (flags == 1) {
+                millis = new int[n];
+                for (int k = 0; k < n; k += 1) {
+                    millis[k] = (int) getVarint(buf);
+                }
+            }
+            if (buf.position() != end) {
+                throw error("corrupt game record");
+            }
+            return new GameRecord(blocks, moves, millis, pos);
+        } catch (BufferUnderflowException excp) {
+            throw error("truncated game record");
+        }
+    }
+
+    /** Write V to OUT as a varint. */
+    static void putVarint(ByteArrayOutputStream out, long v) {
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) (v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    /** Return the varint at the position of BUF, advancing past it. */
+    static long getVarint(ByteBuffer buf) {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = buf.get();
+            v |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return v;
+            }
+        }
+        throw error("corrupt game record");
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof GameRecord)) {
+            return false;
+        }
+        GameRecord r = (GameRecord) obj;
+        return _blocks == r._blocks && Arrays.equals(_moves, r._moves)
+            && Arrays.equals(_millis, r._millis);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(_blocks) * 31 + Arrays.hashCode(_moves);
+    }
+
+    /** Byte standing for a pass in the binary format. */
+    private static final int PASS_CODE = 127;
+    /** Added to the destination of a jump in the binary format. */
+    private static final int JUMP_CODE = 64;
+
+    /** Blocked squares. */
+    private final long _blocks;
+    /** Encoded moves. */
+    private final int[] _moves;
+    /** Time taken by each move in milliseconds, or null if untimed. */
+    private final int[] _millis;
+    /** Position after the last move. */
+    private final BitBoard _last;
+}
@@ -0,0 +1,68 @@
+package ataxx;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import static ataxx.GameException.error;
+
+/** The records of a binary game-record file (see GameRecord), read in
+ *  place from a memory mapping of the file.  Each iteration decodes the
+ *  records from the start of the file; decoding allocates only the
+ *  records themselves.
+ *  @author Yevgen Vasylenko
+ */
+class GameRecordReader implements Iterable<GameRecord> {
+
+    /** A reader of the records in BUF, which holds a whole binary
+     *  game-record file. */
+    GameRecordReader(ByteBuffer buf) {
+        if (buf.limit() < GameRecord.HEADER_SIZE
+            || buf.getInt(0) != GameRecord.MAGIC
+            || buf.getInt(4) != GameRecord.VERSION) {
+            throw error("not a game record file");
+        }
+        _buf = buf;
+    }
+
+    /** Return a reader of the records in FILE. */
+    static GameRecordReader open(String file) {
+        try (FileChannel ch = FileChannel.open(Paths.get(file),
+                                               StandardOpenOption.READ)) {
+            if (ch.size() > Integer.MAX_VALUE) {
+                throw error("game record file %s is too large", file);
+            }
+            return new GameRecordReader(ch.map(FileChannel.MapMode.READ_ONLY,
+                                               0, ch.size()));
+        } catch (IOException excp) {
+            throw error("Cannot open game record file %s", file);
+        }
+    }
+
+    @Override
+    public Iterator<GameRecord> iterator() {
+        ByteBuffer buf = _buf.duplicate();
+        buf.position(GameRecord.HEADER_SIZE);
+        return new Iterator<GameRecord>() {
+            @Override
+            public boolean hasNext() {
+                return buf.hasRemaining();
+            }
+
+            @Override
+            public GameRecord next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return GameRecord.read(buf);
+            }
+        };
+    }
+
+    /** The contents of the file. */
+    private final ByteBuffer _buf;
+}
@@ -0,0 +1,133 @@
+package ataxx;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.*;
+
+/** Tests of game records and their formats.
+ *  @author Yevgen Vasylenko
+ */
+public class GameRecordTest {
+
+    /** Return the record of a game with a block at c3 played to the end
+     *  with random (distinct) moves chosen by a generator seeded with
+     *  SEED, timed iff TIMED. */
+    private static GameRecord randomGame(long seed, boolean timed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        Board b = new Board();
+        b.setBlock("c3");
+        BitBoard pos = new BitBoard(b);
+        int[] moves = new int[BitBoard.MAX_MOVES];
+        ArrayList<Integer> game = new ArrayList<>();
+        while (!pos.gameOver()) {
+            int n = pos.generateDistinct(moves, 0);
+            game.add(moves[random.nextInt(n)]);
+            pos.makeMove(game.get(game.size() - 1));
+        }
+        int[] played = game.stream().mapToInt(Integer::intValue).toArray();
+        int[] millis = null;
+        if (timed) {
+            millis = new int[played.length];
+            for (int k = 0; k < millis.length; k += 1) {
+                millis[k] = random.nextInt(1000);
+            }
+        }
+        return new GameRecord(pos.blocks(), played, millis);
+    }
+
+    @Test public void testText() throws IOException {
+        GameRecord first = randomGame(1, true), second = randomGame(2, false);
+        assertTrue(first.finished());
+        String text = first.toText() + second.toText();
+        assertTrue(text.startsWith("blocks c3 e3 c5 e5\n"));
+        BufferedReader in = new BufferedReader(new StringReader(text));
+        assertEquals(first, GameRecord.readText(in));
+        assertEquals(second, GameRecord.readText(in));
+        assertNull(GameRecord.readText(in));
+        String bad = second.toText().replace("result ", "result 1");
+        try {
+            GameRecord.readText(new BufferedReader(new StringReader(bad)));
+            fail("accepted wrong result");
+        } catch (GameException excp) {
+            /* Expected. */
+        }
+    }
+
+    @Test public void testIllegal() {
+        try {
+            new GameRecord(0, new int[] { BitBoard.encode(3, 4) }, null);
+            fail("accepted illegal move");
+        } catch (GameException excp) {
+            /* Expected. */
+        }
+    }
+
+    @Test public void testBinary() {
+        GameRecord record = randomGame(3, false);
+        byte[] frame = record.toBytes();
+        assertTrue("too long", frame.length <= 2 * record.length() + 4);
+        ByteBuffer buf = ByteBuffer.wrap(frame);
+        assertEquals(record, GameRecord.read(buf));
+        assertFalse(buf.hasRemaining());
+        try {
+            GameRecord.read(ByteBuffer.wrap(Arrays.copyOf(frame,
+                                                          frame.length - 1)));
+            fail("accepted truncated record");
+        } catch (GameException excp) {
+            /* Expected. */
+        }
+    }
+
+    @Test public void testCorrupt() {
+        Move jump = Move.move('a', '7', 'a', '5');
+        byte[] frame =
+            new GameRecord(0, new int[] { BitBoard.encode(jump) }, null)
+            .toBytes();
+        assertEquals(6, frame.length);
+        int[][] corruptions = {
+            { 4, frame[4] + 128 }, { 4, 64 + 49 }, { 4, 128 }, { 5, 49 },
+            { 5, frame[5] + 128 }
+        };
+        for (int[] c : corruptions) {
+            byte[] bad = frame.clone();
+            bad[c[0]] = (byte) c[1];
+            try {
+                GameRecord.read(ByteBuffer.wrap(bad));
+                fail("accepted move byte " + c[1]);
+            } catch (GameException excp) {
+                /* Expected. */
+            }
+        }
+    }
+
+    @Test public void testWriterAndReader() throws IOException {
+        File file = File.createTempFile("ataxx", ".games");
+        file.delete();
+        file.deleteOnExit();
+        ArrayList<GameRecord> records = new ArrayList<>();
+        for (int pass = 0; pass < 2; pass += 1) {
+            try (GameRecordWriter out = GameRecordWriter.open(file.getPath())) {
+                for (int g = 0; g < 50; g += 1) {
+                    GameRecord r = randomGame(100 * pass + g, g % 2 == 0);
+                    records.add(r);
+                    out.write(r);
+                }
+            }
+        }
+        ArrayList<GameRecord> read = new ArrayList<>();
+        for (GameRecord r : GameRecordReader.open(file.getPath())) {
+            read.add(r);
+        }
+        assertEquals(records, read);
+    }
+
+}
@@ -0,0 +1,168 @@
+package ataxx;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import static ataxx.GameException.error;
+
+/** Appends GameRecords to a file, in the text or binary format, from a
+ *  background thread.  Writing a record only queues it, so the threads
+ *  playing games never wait on the disk (unless the writer falls a whole
+ *  queue behind).  The background thread encodes whatever records are
+ *  queued into a single buffer and writes it with one call, so a burst
+ *  of games costs one write.  Records appear in the file in the order
+ *  queued.  Until closed, a writer may hold records not yet written.
+ *  @author Yevgen Vasylenko
+ */
+class GameRecordWriter implements AutoCloseable {
+
+    /** Largest number of records that may wait to be written. */
+    static final int QUEUE_SIZE = 4096;
+
+    /** A writer appending to FILE, in the text format iff TEXT.  If FILE
+     *  is a binary file, it must have been written by a GameRecordWriter;
+     *  if it does not exist, it is created. */
+    GameRecordWriter(String file, boolean text) {
+        _file = file;
+        _text = text;
+        try {
+            _channel = FileChannel.open(Paths.get(file),
+                                        StandardOpenOption.CREATE,
+                                        StandardOpenOption.READ,
+                                        StandardOpenOption.WRITE);
+            if (!text) {
+                ByteBuffer header =
+                    ByteBuffer.allocate(GameRecord.HEADER_SIZE);
+                if (_channel.size() == 0) {
+                    header.putInt(GameRecord.MAGIC)
+                        .putInt(GameRecord.VERSION).flip();
+                    writeFully(header);
+                } else if (_channel.read(header, 0) != header.capacity()
+                           || header.getInt(0) != GameRecord.MAGIC
+                           || header.getInt(4) != GameRecord.VERSION) {
+                    _channel.close();
+                    throw error("%s is not a game record file", file);
+                }
+            }
+            _channel.position(_channel.size());
+        } catch (IOException excp) {
+            throw error("Cannot open game record file %s", file);
+        }
+        _thread = new Thread(this::drain, "game-record-writer");
+        _thread.setDaemon(true);
+        _thread.start();
+    }
+
+    /** Return a writer appending to FILE, in the text format if its name
+     *  ends in ".txt" and otherwise in the binary format. */
+    static GameRecordWriter open(String file) {
+        return new GameRecordWriter(file, file.endsWith(".txt"));
+    }
+
+    /** Queue RECORD to be written. */
+    void write(GameRecord record) {
+        if (_closed) {
+            throw error("game record file %s is closed", _file);
+        } else if (_failure != null) {
+            throw error("Cannot write game record file %s", _file);
+        }
+        try {
+            _queue.put(record);
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw error("interrupted writing game record file %s", _file);
+        }
+    }
+
+    /** Write all queued records and close my file. */
+    @Override
+    public void close() {
+        if (_closed) {
+            return;
+        }
+        _closed = true;
+        try {
+            _queue.put(END);
+            _thread.join();
+            _channel.close();
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw error("interrupted writing game record file %s", _file);
+        } catch (IOException excp) {
+            _failure = excp;
+        }
+        if (_failure != null) {
+            throw error("Cannot write game record file %s", _file);
+        }
+    }
+
+    /** Write out records as they are queued, until reaching END. */
+    private void drain() {
+        ArrayList<GameRecord> batch = new ArrayList<>();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        boolean done = false;
+        while (!done) {
+            try {
+                batch.add(_queue.take());
+            } catch (InterruptedException excp) {
+                continue;
+            }
+            _queue.drainTo(batch);
+            out.reset();
+            for (GameRecord record : batch) {
+                if (record == END) {
+                    done = true;
+                } else if (_text) {
+                    byte[] text =
+                        record.toText().getBytes(StandardCharsets.UTF_8);
+                    out.write(text, 0, text.length);
+                } else {
+                    byte[] frame = record.toBytes();
+                    out.write(frame, 0, frame.length);
+                }
+            }
+            batch.clear();
+            if (_failure == null) {
+                try {
+                    writeFully(ByteBuffer.wrap(out.toByteArray()));
+                } catch (IOException excp) {
+                    _failure = excp;
+                }
+            }
+        }
+    }
+
+    /** Write all of BUF to my file. */
+    private void writeFully(ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            _channel.write(buf);
+        }
+    }
+
+    /** Queued to mark the end of the records. */
+    private static final GameRecord END = new GameRecord(0, new int[0], null);
+
+    /** Name of my file. */
+    private final String _file;
+    /** True iff writing the text format. */
+    private final boolean _text;
+    /** My file. */
+    private final FileChannel _channel;
+    /** Records waiting to be written. */
+    private final BlockingQueue<GameRecord> _queue =
+        new ArrayBlockingQueue<>(QUEUE_SIZE);
+    /** The thread writing records. */
+    private final Thread _thread;
+    /** True once I have been closed. */
+    private volatile boolean _closed;
+    /** The first error in writing, or null. */
+    private volatile IOException _failure;
+}
@@ -0,0 +1,306 @@
+package ataxx;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static ataxx.BitBoard.*;
+import static ataxx.GameException.error;
+
+/** The history of a game under review: its moves from a starting
+ *  position, the variations branching from them, and a current position
+ *  in one of its lines that can be moved to any ply at once (see goTo),
+ *  as when scrubbing through a long game.
+ *
+ *  The moves form a tree, kept as lines: the main line (line 0) and the
+ *  variations, each of which begins with the moves of the line it
+ *  branches from, up to the ply at which it branches, and holds only
+ *  the moves after, so that lines share their prefixes.  Each line also
+ *  keeps a checkpoint of its position, packed as its pieces, blocks,
+ *  side on move and jumps, at each of its own plies that is a multiple
+ *  of the interval K.  The current position is a BitBoard restored from
+ *  a checkpoint at or before the current ply, whose undo stack holds the
+ *  moves since.  Moving to a ply thus takes at most K makes or undoes,
+ *  after restoring at most one checkpoint, however long the game.
+ *  @author Yevgen Vasylenko
+ */
+class History {
+
+    /** Default interval between checkpoints, in plies. */
+    static final int DEFAULT_INTERVAL = 16;
+
+    /** A history of no moves from START, with checkpoints every
+     *  DEFAULT_INTERVAL plies. */
+    History(BitBoard start) {
+        this(start, DEFAULT_INTERVAL);
+    }
+
+    /** A history of no moves from START, with checkpoints every INTERVAL
+     *  plies. */
+    History(BitBoard start, int interval) {
+        if (interval <= 0) {
+            throw error("bad checkpoint interval: %d", interval);
+        }
+        _interval = interval;
+        _line = new Line(null, 0, 0);
+        _lines.add(_line);
+        _pos = new BitBoard(start);
+        _line.checkpoint(_pos);
+    }
+
+    /** A history of the moves of GAME, with checkpoints every
+     *  DEFAULT_INTERVAL plies, positioned at its end. */
+    History(GameRecord game) {
+        this(game.start());
+        for (int k = 0; k < game.length(); k += 1) {
+            play(game.move(k));
+        }
+    }
+
+    /** Return the current position, which changes as I move through my
+     *  lines, and which must not otherwise be modified. */
+    BitBoard position() {
+        return _pos;
+    }
+
+    /** Return the current ply: the number of moves made from the start to
+     *  reach position(). */
+    int ply() {
+        return _anchor + _pos.ply();
+    }
+
+    /** Return the number of moves in the current line. */
+    int length() {
+        return _line.length();
+    }
+
+    /** Return encoded move K of the current line, 0 <= K < length(). */
+    int move(int k) {
+        if (k < 0 || k >= length()) {
+            throw error("no move %d in this line", k);
+        }
+        return _line.move(k);
+    }
+
+    /** Return the number of the current line. */
+    int line() {
+        return _lines.indexOf(_line);
+    }
+
+    /** Return the number of lines: the main line and its variations. */
+    int lines() {
+        return _lines.size();
+    }
+
+    /** Return the interval between checkpoints, in plies. */
+    int interval() {
+        return _interval;
+    }
+
+    /** Make line K current, at the current ply, or at its end if it is
+     *  shorter. */
+    void select(int k) {
+        if (k < 0 || k >= _lines.size()) {
+            throw error("no line %d", k);
+        }
+        int ply = Math.min(ply(), _lines.get(k).length());
+        _line = _lines.get(k);
+        restore(ply);
+    }
+
+    /** Move to ply PLY of the current line, 0 <= PLY <= length(). */
+    void goTo(int ply) {
+        if (ply < 0 || ply > length()) {
+            throw error("no ply %d in this line", ply);
+        }
+        int now = ply();
+        if (ply < _anchor || Math.abs(ply - now) > ply % _interval) {
+            restore(ply);
+        } else {
+            step(ply);
+        }
+    }
+
+    /** Move back one ply, returning false if at the start. */
+    boolean undo() {
+        if (ply() == 0) {
+            return false;
+        }
+        goTo(ply() - 1);
+        return true;
+    }
+
+    /** Move forward one ply along the current line, returning false if at
+     *  its end. */
+    boolean redo() {
+        if (ply() == length()) {
+            return false;
+        }
+        goTo(ply() + 1);
+        return true;
+    }
+
+    /** Make encoded MOVE from the current position.  If it is the next
+     *  move of the current line, this is redo().  Otherwise, if the
+     *  current line goes on, MOVE starts a variation (see branch). */
+    void play(int move) {
+        int ply = ply();
+        if (ply < length() && _line.move(ply) == move) {
+            redo();
+            return;
+        }
+        if (_pos.gameOver() || !_pos.legal(move)) {
+            throw error("illegal move: %s", toMove(move));
+        }
+        if (ply < length()) {
+            branch();
+        }
+        _pos.makeMove(move);
+        _line.add(move);
+        if (ply() % _interval == 0) {
+            _line.checkpoint(_pos);
+        }
+    }
+
+    /** Start a variation that branches from the current line at the
+     *  current ply, so far with no moves of its own, make it current, and
+     *  return its number. */
+    int branch() {
+        int ply = ply();
+        Line parent = _line;
+        while (ply < parent.base()) {
+            parent = parent.parent();
+        }
+        _line = new Line(parent, ply, ply / _interval + 1);
+        _lines.add(_line);
+        return _lines.size() - 1;
+    }
+
+    /** Move from the current ply to PLY of the current line by making or
+     *  undoing moves, assuming PLY is at least _anchor. */
+    private void step(int ply) {
+        while (ply() > ply) {
+            _pos.undo();
+        }
+        while (ply() < ply) {
+            _pos.makeMove(_line.move(ply()));
+        }
+    }
+
+    /** Move to PLY of the current line by restoring the checkpoint at or
+     *  before it and making the moves after. */
+    private void restore(int ply) {
+        int k = ply / _interval;
+        Line line = _line;
+        while (k < line.firstCheckpoint()) {
+            line = line.parent();
+        }
+        line.restore(k, _pos);
+        _anchor = k * _interval;
+        step(ply);
+    }
+
+    /** A line of the tree of moves: the moves of its parent, if any, up
+     *  to its base ply, followed by moves of its own, with the
+     *  checkpoints of its own plies. */
+    private static class Line {
+
+        /** A line branching from PARENT (null for the main line) at ply
+         *  BASE, whose first checkpoint will be number FIRST. */
+        Line(Line parent, int base, int first) {
+            _parent = parent;
+            _base = base;
+            _first = first;
+        }
+
+        /** Return the line I branch from, or null. */
+        Line parent() {
+            return _parent;
+        }
+
+        /** Return the ply at which I branch from my parent. */
+        int base() {
+            return _base;
+        }
+
+        /** Return the number of my first checkpoint of my own. */
+        int firstCheckpoint() {
+            return _first;
+        }
+
+        /** Return my number of moves. */
+        int length() {
+            return _base + _size;
+        }
+
+        /** Return my encoded move K, 0 <= K < length(). */
+        int move(int k) {
+            Line line = this;
+            while (k < line._base) {
+                line = line._parent;
+            }
+            return line._moves[k - line._base];
+        }
+
+        /** Add encoded MOVE to my end. */
+        void add(int move) {
+            if (_size == _moves.length) {
+                _moves = Arrays.copyOf(_moves, Math.max(16, 2 * _size));
+            }
+            _moves[_size] = move;
+            _size += 1;
+        }
+
+        /** Add POS as my next checkpoint. */
+        void checkpoint(BitBoard pos) {
+            int i = _checkpoints * CHECKPOINT_SIZE;
+            if (i == _packed.length) {
+                _packed = Arrays.copyOf(_packed,
+                                        Math.max(4 * CHECKPOINT_SIZE,
+                                                 2 * i));
+            }
+            _packed[i] = pos.red();
+            _packed[i + 1] = pos.blue();
+            _packed[i + 2] = pos.blocks();
+            _packed[i + 3] = (long) pos.numJumps() << 1
+                | (pos.whoseMove() == PieceColor.RED ? 1 : 0);
+            _checkpoints += 1;
+        }
+
+        /** Set POS to my checkpoint number K, one of my own. */
+        void restore(int k, BitBoard pos) {
+            int i = (k - _first) * CHECKPOINT_SIZE;
+            pos.reset(_packed[i], _packed[i + 1], _packed[i + 2],
+                      (_packed[i + 3] & 1) != 0, (int) (_packed[i + 3] >> 1));
+        }
+
+        /** Number of longs in a packed checkpoint. */
+        private static final int CHECKPOINT_SIZE = 4;
+
+        /** The line I branch from, or null. */
+        private final Line _parent;
+        /** The ply at which I branch from _parent. */
+        private final int _base;
+        /** Number of my first checkpoint: that of ply _first * K. */
+        private final int _first;
+        /** My own moves, in _moves[0 .. _size-1]. */
+        private int[] _moves = new int[0];
+        /** Number of my own moves. */
+        private int _size;
+        /** My checkpoints, packed: red, blue, blocks, and jumps * 2 + 1 if
+         *  red is on move. */
+        private long[] _packed = new long[0];
+        /** Number of my checkpoints. */
+        private int _checkpoints;
+    }
+
+    /** Plies between checkpoints. */
+    private final int _interval;
+    /** All lines, the main line first. */
+    private final ArrayList<Line> _lines = new ArrayList<>();
+    /** The current line. */
+    private Line _line;
+    /** The current position. */
+    private final BitBoard _pos;
+    /** The ply of the checkpoint from which _pos was last restored. */
+    private int _anchor;
+}
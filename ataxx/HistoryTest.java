@@ -0,0 +1,120 @@
+package ataxx;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.*;
+
+/** Tests of checkpointed game histories.
+ *  @author Yevgen Vasylenko
+ */
+public class HistoryTest {
+
+    /** Play random (distinct) moves chosen by RANDOM from the current
+     *  position of H to the end of the game, and return the positions
+     *  reached, the current one first. */
+    private static ArrayList<BitBoard> playOut(History h,
+                                               SplittableRandom random) {
+        ArrayList<BitBoard> positions = new ArrayList<>();
+        int[] moves = new int[BitBoard.MAX_MOVES];
+        positions.add(new BitBoard(h.position()));
+        while (!h.position().gameOver()) {
+            int n = h.position().generateDistinct(moves, 0);
+            h.play(moves[random.nextInt(n)]);
+            positions.add(new BitBoard(h.position()));
+        }
+        return positions;
+    }
+
+    @Test public void testGoTo() {
+        SplittableRandom random = new SplittableRandom(1);
+        History h = new History(new BitBoard(), 4);
+        ArrayList<BitBoard> positions = playOut(h, random);
+        assertEquals(positions.size() - 1, h.length());
+        assertEquals(h.length(), h.ply());
+        for (int i = 0; i < 200; i += 1) {
+            int ply = random.nextInt(h.length() + 1);
+            h.goTo(ply);
+            assertEquals(ply, h.ply());
+            assertEquals(positions.get(ply), h.position());
+        }
+        h.goTo(0);
+        assertFalse(h.undo());
+        for (int ply = 1; ply <= h.length(); ply += 1) {
+            assertTrue(h.redo());
+            assertEquals(positions.get(ply), h.position());
+        }
+        assertFalse(h.redo());
+        for (int ply = h.length() - 1; ply >= 0; ply -= 1) {
+            assertTrue(h.undo());
+            assertEquals(positions.get(ply), h.position());
+        }
+        try {
+            h.goTo(h.length() + 1);
+            fail("went past the end");
+        } catch (GameException excp) {
+            /* Expected. */
+        }
+    }
+
+    @Test public void testVariations() {
+        SplittableRandom random = new SplittableRandom(2);
+        History h = new History(new BitBoard(), 4);
+        ArrayList<BitBoard> main = playOut(h, random);
+        h.goTo(9);
+        h.play(h.move(9));
+        assertEquals(1, h.lines());
+        assertEquals(10, h.ply());
+        h.goTo(9);
+        int[] moves = new int[BitBoard.MAX_MOVES];
+        assertTrue(h.position().generateDistinct(moves, 0) > 1);
+        int other = moves[0] == h.move(9) ? moves[1] : moves[0];
+        h.play(other);
+        assertEquals(2, h.lines());
+        assertEquals(1, h.line());
+        assertEquals(10, h.length());
+        ArrayList<BitBoard> variation = playOut(h, random);
+        for (int ply = 0; ply <= 9; ply += 1) {
+            h.goTo(ply);
+            assertEquals(main.get(ply), h.position());
+        }
+        for (int ply = 10; ply <= h.length(); ply += 1) {
+            h.goTo(ply);
+            assertEquals(variation.get(ply - 10), h.position());
+        }
+        h.goTo(5);
+        assertEquals(2, h.branch());
+        ArrayList<BitBoard> sub = playOut(h, random);
+        h.goTo(h.length());
+        assertEquals(sub.get(sub.size() - 1), h.position());
+        h.goTo(3);
+        assertEquals(main.get(3), h.position());
+        h.select(0);
+        assertEquals(3, h.ply());
+        h.goTo(main.size() - 1);
+        assertEquals(main.get(main.size() - 1), h.position());
+        h.select(1);
+        h.goTo(h.length());
+        assertEquals(variation.get(variation.size() - 1), h.position());
+    }
+
+    @Test public void testRecord() {
+        Board b = new Board();
+        b.setBlock("c3");
+        History h = new History(new BitBoard(b));
+        SplittableRandom random = new SplittableRandom(3);
+        ArrayList<BitBoard> positions = playOut(h, random);
+        int[] moves = new int[h.length()];
+        for (int k = 0; k < moves.length; k += 1) {
+            moves[k] = h.move(k);
+        }
+        History copy = new History(GameRecord.of(b, moves, null));
+        assertEquals(h.length(), copy.length());
+        assertEquals(positions.get(moves.length), copy.position());
+        copy.goTo(moves.length / 2);
+        assertEquals(positions.get(moves.length / 2), copy.position());
+    }
+
+}
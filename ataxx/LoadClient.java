@@ -0,0 +1,255 @@
+package ataxx;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import static ataxx.GameException.error;
+
+/** A load generator for the Server: it opens a number of connections to
+ *  a server on the loopback interface and plays a number of games over
+ *  each, all AI against AI, from a single thread waiting on a Selector.
+ *  Each game is "auto red" (the first only) or "clear", then "start";
+ *  it ends with the server's report of the outcome, after which the
+ *  next game starts or, after the last, the connection is closed by
+ *  "quit".  The client counts the games and AI moves reported and times
+ *  each move from the report of the one before (or from start).
+ *  @author Yevgen Vasylenko
+ */
+class LoadClient {
+
+    /** Default number of connections. */
+    static final int DEFAULT_SESSIONS = 100;
+
+    /** A client playing GAMES games over each of SESSIONS connections to
+     *  the server on PORT of the loopback interface. */
+    LoadClient(int port, int sessions, int games) {
+        _port = port;
+        _sessions = sessions;
+        _games = games;
+    }
+
+    /** Play all the games, taking at most TIMEOUT milliseconds. */
+    void run(long timeout) {
+        long deadline = System.nanoTime() + timeout * 1000000;
+        _start = System.nanoTime();
+        try (Selector selector = Selector.open()) {
+            InetSocketAddress address =
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), _port);
+            for (int i = 0; i < _sessions; i += 1) {
+                SocketChannel channel = SocketChannel.open(address);
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                Client c = new Client(channel);
+                c._key = channel.register(selector, SelectionKey.OP_READ, c);
+                c.send("auto red\nstart\n");
+            }
+            int open = _sessions;
+            while (open > 0) {
+                long left = (deadline - System.nanoTime()) / 1000000;
+                if (left <= 0) {
+                    for (SelectionKey key : selector.keys()) {
+                        key.channel().close();
+                    }
+                    throw error("load test timed out");
+                }
+                selector.select(left);
+                Iterator<SelectionKey> keys =
+                    selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Client c = (Client) key.attachment();
+                    if (key.isValid() && key.isWritable()) {
+                        c.write();
+                    }
+                    if (key.isValid() && key.isReadable() && !c.read()) {
+                        open -= 1;
+                    }
+                }
+            }
+        } catch (IOException excp) {
+            throw error("load test failed: %s", excp.getMessage());
+        }
+        _nanos = System.nanoTime() - _start;
+    }
+
+    /** Return the number of games finished. */
+    int played() {
+        return _played;
+    }
+
+    /** Return the number of AI moves reported. */
+    int moves() {
+        return _numMoves;
+    }
+
+    /** Return the P-quantile (0 <= P <= 1) of the times taken by the AI
+     *  moves, in milliseconds. */
+    double latency(double p) {
+        if (_numMoves == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(_latencies, _numMoves);
+        Arrays.sort(sorted);
+        return sorted[(int) Math.min(_numMoves - 1, p * _numMoves)] * 1e-6;
+    }
+
+    /** Return a summary of the results of run(). */
+    String report() {
+        double seconds = _nanos * 1e-9;
+        return String.format("Sessions        : %d%n"
+                             + "Games           : %d%n"
+                             + "Time (s)        : %.2f%n"
+                             + "Games/second    : %.2f%n"
+                             + "AI replies/s    : %.1f%n"
+                             + "Latency (ms)    : median %.1f, 99%% %.1f,"
+                             + " max %.1f",
+                             _sessions, _played, seconds, _played / seconds,
+                             _numMoves / seconds, latency(0.5),
+                             latency(0.99), latency(1));
+    }
+
+    /** Run a load test against a server on the loopback interface.
+     *  ARGS is PORT [SESSIONS [GAMES]], SESSIONS defaulting to 100 and
+     *  GAMES to 1. */
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 3) {
+            System.err.println("Usage: java ataxx.LoadClient PORT"
+                               + " [SESSIONS [GAMES]]");
+            System.exit(1);
+        }
+        try {
+            LoadClient client =
+                new LoadClient(Integer.parseInt(args[0]),
+                               args.length > 1 ? Integer.parseInt(args[1])
+                               : DEFAULT_SESSIONS,
+                               args.length > 2 ? Integer.parseInt(args[2])
+                               : 1);
+            client.run(TimeUnit.DAYS.toMillis(1));
+            System.out.println(client.report());
+        } catch (NumberFormatException excp) {
+            System.err.println("Bad number.");
+            System.exit(1);
+        } catch (GameException excp) {
+            System.err.println(excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Note that an AI move was reported LATENCY nanoseconds after the
+     *  previous event of its game. */
+    private void recordMove(long latency) {
+        if (_numMoves == _latencies.length) {
+            _latencies = Arrays.copyOf(_latencies, 2 * _numMoves);
+        }
+        _latencies[_numMoves] = latency;
+        _numMoves += 1;
+    }
+
+    /** One connection and the games played over it. */
+    private class Client {
+
+        /** A client of the server over CHANNEL. */
+        Client(SocketChannel channel) {
+            _channel = channel;
+        }
+
+        /** Send COMMANDS, after any output not yet sent. */
+        void send(String commands) throws IOException {
+            ByteBuffer more =
+                ByteBuffer.wrap(commands.getBytes(StandardCharsets.UTF_8));
+            if (_out.hasRemaining()) {
+                _out = ByteBuffer.allocate(_out.remaining()
+                                           + more.remaining())
+                    .put(_out).put(more).flip();
+            } else {
+                _out = more;
+            }
+            _last = System.nanoTime();
+            write();
+        }
+
+        /** Send what I can of my output. */
+        void write() throws IOException {
+            _channel.write(_out);
+            _key.interestOps(_out.hasRemaining()
+                             ? SelectionKey.OP_READ | SelectionKey.OP_WRITE
+                             : SelectionKey.OP_READ);
+        }
+
+        /** Read and act on what has arrived.  Return false iff the server
+         *  has closed the connection. */
+        boolean read() throws IOException {
+            _in.clear();
+            if (_channel.read(_in) < 0) {
+                _channel.close();
+                return false;
+            }
+            _in.flip();
+            while (_in.hasRemaining()) {
+                char c = (char) _in.get();
+                if (c != '\n') {
+                    _line.append(c);
+                    continue;
+                }
+                String line = _line.toString();
+                _line.setLength(0);
+                long now = System.nanoTime();
+                if (line.endsWith(" wins.") || line.equals("Draw.")) {
+                    _played += 1;
+                    _done += 1;
+                    send(_done == _games ? "quit\n" : "clear\nstart\n");
+                } else if (line.startsWith("Red ")
+                           || line.startsWith("Blue ")) {
+                    recordMove(now - _last);
+                    _last = now;
+                }
+            }
+            return true;
+        }
+
+        /** My key in the selector. */
+        private SelectionKey _key;
+        /** My connection. */
+        private final SocketChannel _channel;
+        /** Buffer for reading. */
+        private final ByteBuffer _in = ByteBuffer.allocate(BUFFER_SIZE);
+        /** The line being read. */
+        private final StringBuilder _line = new StringBuilder();
+        /** Output not yet sent. */
+        private ByteBuffer _out = ByteBuffer.allocate(0);
+        /** Time of the last command sent or move reported. */
+        private long _last;
+        /** Number of my games finished. */
+        private int _done;
+    }
+
+    /** Size of the clients' read buffers. */
+    private static final int BUFFER_SIZE = 1024;
+
+    /** Port of the server. */
+    private final int _port;
+    /** Number of connections. */
+    private final int _sessions;
+    /** Number of games played over each. */
+    private final int _games;
+    /** Number of games finished. */
+    private int _played;
+    /** Number of AI moves reported. */
+    private int _numMoves;
+    /** Time taken by each AI move reported (nanoseconds). */
+    private long[] _latencies = new long[1024];
+    /** Start time of run() (System.nanoTime). */
+    private long _start;
+    /** Duration of run() in nanoseconds. */
+    private long _nanos;
+}
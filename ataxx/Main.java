@@ -2,30 +2,189 @@ package ataxx;
 
 import java.io.InputStreamReader;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PipedReader;
 import java.io.PipedWriter;
 import java.awt.HeadlessException;
+import java.nio.file.Paths;
+import java.util.Arrays;
 
 /** The main program for Ataxx.
  *  @author Yevgen Vasylenko
  */
 public class Main {
 
-    /** Run Ataxx game.  Use display if ARGS[k] is '--display'. */
+    /** Run Ataxx game.  Use display if ARGS[k] is '--display', and
+     *  speak the engine protocol (see EngineProtocol) on the standard
+     *  input and output if it is '--engine'.  Serve games over TCP on the
+     *  loopback interface (see Server) if it is '--server PORT', with N
+     *  threads computing moves if '--workers N' is also given (by default
+     *  one for each processor).  Serve text-mode sessions on the
+     *  Unix-domain socket SOCKET (see Daemon) if it is
+     *  '--daemon SOCKET'.  Serve the program's metrics (see
+     *  Metrics) over HTTP on the loopback interface if it is
+     *  '--metrics PORT'.  If ARGS[0] is 'bench', run
+     *  the search benchmark instead, with the remaining ARGS as for
+     *  Bench.main. */
     public static void main(String[] args) {
-        boolean useGUI;
-        useGUI = false;
+        if (args.length > 0 && args[0].equals("bench")) {
+            Bench.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        boolean useGUI, engine;
+        useGUI = engine = false;
+        String book = null;
+        String tablebase = null;
+        String record = null;
+        String daemon = null;
+        int endgame = Game.DEFAULT_ENDGAME_THRESHOLD;
+        int port = -1, metricsPort = -1;
+        int workers = Runtime.getRuntime().availableProcessors();
         for (int i = 0; i < args.length; i += 1) {
             switch (args[i]) {
             case "--display":
                 useGUI = true;
                 break;
+            case "--engine":
+                engine = true;
+                break;
+            case "--book":
+                if (i + 1 == args.length) {
+                    usage();
+                }
+                i += 1;
+                book = args[i];
+                break;
+            case "--tablebase":
+                if (i + 1 == args.length) {
+                    usage();
+                }
+                i += 1;
+                tablebase = args[i];
+                break;
+            case "--record":
+                if (i + 1 == args.length) {
+                    usage();
+                }
+                i += 1;
+                record = args[i];
+                break;
+            case "--daemon":
+                if (i + 1 == args.length) {
+                    usage();
+                }
+                i += 1;
+                daemon = args[i];
+                break;
+            case "--endgame":
+                if (i + 1 == args.length) {
+                    usage();
+                }
+                i += 1;
+                try {
+                    endgame = Integer.parseInt(args[i]);
+                } catch (NumberFormatException excp) {
+                    usage();
+                }
+                break;
+            case "--server":
+            case "--workers":
+            case "--metrics":
+                if (i + 1 == args.length) {
+                    usage();
+                }
+                i += 1;
+                try {
+                    if (args[i - 1].equals("--server")) {
+                        port = Integer.parseInt(args[i]);
+                    } else if (args[i - 1].equals("--metrics")) {
+                        metricsPort = Integer.parseInt(args[i]);
+                    } else {
+                        workers = Integer.parseInt(args[i]);
+                    }
+                } catch (NumberFormatException excp) {
+                    usage();
+                }
+                if (port < -1 || port > MAX_PORT || workers < 1
+                    || metricsPort < -1 || metricsPort > MAX_PORT) {
+                    usage();
+                }
+                break;
             default:
                 usage();
                 break;
             }
         }
 
+        if (metricsPort >= 0) {
+            try {
+                int actual =
+                    Metrics.GLOBAL.serve(metricsPort).getAddress().getPort();
+                System.err.printf("Metrics at http://localhost:%d/metrics.%n",
+                                  actual);
+            } catch (GameException excp) {
+                System.err.printf("%s%n", excp.getMessage());
+                System.exit(1);
+            }
+        }
+
+        if (engine) {
+            EngineProtocol protocol =
+                new EngineProtocol(new InputStreamReader(System.in),
+                                   new OutputStreamWriter(System.out));
+            try {
+                if (book != null) {
+                    protocol.setBook(Book.open(book));
+                }
+                if (tablebase != null) {
+                    protocol.setTablebase(Tablebase.open(tablebase));
+                }
+            } catch (GameException excp) {
+                System.err.printf("%s%n", excp.getMessage());
+                System.exit(1);
+            }
+            protocol.run();
+            System.exit(0);
+        }
+
+        if (port >= 0) {
+            try {
+                Server server = new Server(port, workers);
+                server.setEndgameThreshold(endgame);
+                if (book != null) {
+                    server.setBook(Book.open(book));
+                }
+                if (tablebase != null) {
+                    server.setTablebase(Tablebase.open(tablebase));
+                }
+                System.err.printf("Serving on port %d.%n", server.port());
+                server.run();
+            } catch (GameException excp) {
+                System.err.printf("%s%n", excp.getMessage());
+                System.exit(1);
+            }
+            System.exit(0);
+        }
+
+        if (daemon != null) {
+            try (Daemon d = new Daemon(Paths.get(daemon))) {
+                d.setEndgameThreshold(endgame);
+                if (book != null) {
+                    d.setBook(Book.open(book));
+                }
+                if (tablebase != null) {
+                    d.setTablebase(Tablebase.open(tablebase));
+                }
+                Runtime.getRuntime().addShutdownHook(new Thread(d::close));
+                System.err.printf("Serving on %s.%n", daemon);
+                d.run();
+            } catch (GameException excp) {
+                System.err.printf("%s%n", excp.getMessage());
+                System.exit(1);
+            }
+            System.exit(0);
+        }
+
         Game game;
         Board board = new Board();
 
@@ -39,7 +198,7 @@ public class Main {
                 game = new Game(board,
                                 new ReaderSource(new PipedReader(writer,
                                                                  BUFFER_LEN),
-                                                 false),
+                                                 null),
                                 display);
                 display.display(true);
             } catch (HeadlessException excp) {
@@ -50,21 +209,47 @@ public class Main {
                 System.exit(1);
             }
         } else {
+            AsyncReporter reporter = new AsyncReporter();
             game = new Game(board,
                             new ReaderSource(new InputStreamReader(System.in),
-                                             true),
-                            new TextReporter());
+                                             reporter),
+                            reporter);
+        }
+        game.setEndgameThreshold(endgame);
+        try {
+            if (book != null) {
+                game.setBook(Book.open(book));
+            }
+            if (tablebase != null) {
+                game.setTablebase(Tablebase.open(tablebase));
+            }
+            if (record != null) {
+                game.setRecorder(GameRecordWriter.open(record));
+            }
+        } catch (GameException excp) {
+            System.err.printf("%s%n", excp.getMessage());
+            System.exit(1);
         }
         game.process(false);
+        System.exit(0);
     }
 
     /** Give usage message and exit. */
     static void usage() {
-        System.err.println("Usage: java ataxx.Main [--display] [--timing]"
-                           + " [--strict]");
+        System.err.println("Usage: java ataxx.Main [--display] [--engine]"
+                           + " [--timing]"
+                           + " [--strict] [--book FILE] [--tablebase FILE]"
+                           + " [--endgame N] [--record FILE]"
+                           + " [--server PORT [--workers N]]"
+                           + " [--daemon SOCKET]"
+                           + " [--metrics PORT]");
+        System.err.println("       java ataxx.Main bench [DEPTH [THREADS]]");
         System.exit(1);
     }
 
+    /** Largest TCP port number. */
+    private static final int MAX_PORT = 65535;
+
     /** Size of the buffer for reading commands from a GUI (bytes). */
     private static final int BUFFER_LEN = 128;
 
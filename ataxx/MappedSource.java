@@ -0,0 +1,214 @@
+package ataxx;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import static ataxx.BitBoard.*;
+import static ataxx.GameException.error;
+
+/** Provides command input from a file mapped into memory, for replaying
+ *  long scripts and game logs.  Besides reading lines as a ReaderSource
+ *  does, a MappedSource can scan the move that comes next in the file
+ *  directly from its bytes (see nextMove), so that a Game may apply long
+ *  runs of moves without making a String or Command for any of them.
+ *  Once its last line is read, it reports how many moves were replayed
+ *  that way and how quickly.
+ *  @author Yevgen Vasylenko
+ */
+class MappedSource implements CommandSource {
+
+    /** A new source that reads FILE and reports its prompts and
+     *  statistics to REPORTER (or reports nothing if REPORTER is
+     *  null). */
+    MappedSource(String file, Reporter reporter) {
+        try (FileChannel channel =
+             FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw error("File %s is too large", file);
+            }
+            _buf = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                               channel.size());
+        } catch (IOException excp) {
+            throw error("Cannot open file %s", file);
+        }
+        _file = file;
+        _end = _buf.limit();
+        _reporter = reporter;
+        _start = System.nanoTime();
+    }
+
+    @Override
+    public String getLine(String prompt) {
+        _pending = -1;
+        if (_pos >= _end) {
+            report();
+            return null;
+        }
+        if (_reporter != null) {
+            _reporter.promptMsg(prompt);
+        }
+        int eol = _pos;
+        while (eol < _end && !lineEnd(_buf.get(eol))) {
+            eol += 1;
+        }
+        byte[] bytes = new byte[eol - _pos];
+        _buf.get(_pos, bytes);
+        _pos = skipLineEnd(eol);
+        if (_pos >= _end) {
+            report();
+        }
+        return new String(bytes, Charset.defaultCharset());
+    }
+
+    /** Return the move (encoded as for BitBoard, PASS for a pass) on the
+     *  next line that is not blank or a comment, skipping such lines, or
+     *  NO_MOVE if that line is not simply a move or if there is none.
+     *  A move is read as for the move and pass commands, except that a
+     *  pass must be written '-'.  The move is not consumed until
+     *  accepted. */
+    int nextMove() {
+        while (true) {
+            int p = skipBlanks(_pos);
+            if (p >= _end || lineEnd(_buf.get(p))) {
+                if (p >= _end) {
+                    _pos = p;
+                    return NO_MOVE;
+                }
+                _pos = skipLineEnd(p);
+                continue;
+            }
+            byte b = _buf.get(p);
+            if (b == '#') {
+                while (p < _end && !lineEnd(_buf.get(p))) {
+                    p += 1;
+                }
+                _pos = skipLineEnd(p);
+                continue;
+            }
+            int move;
+            if (b == '-') {
+                move = PASS;
+                p += 1;
+            } else if (p + MOVE_LENGTH <= _end
+                       && column(b) && row(_buf.get(p + 1))
+                       && _buf.get(p + 2) == '-'
+                       && column(_buf.get(p + 3)) && row(_buf.get(p + 4))) {
+                move = encode(square(b, _buf.get(p + 1)),
+                              square(_buf.get(p + 3), _buf.get(p + 4)));
+                p += MOVE_LENGTH;
+            } else {
+                return NO_MOVE;
+            }
+            p = skipBlanks(p);
+            if (p < _end && !lineEnd(_buf.get(p)) && _buf.get(p) != '#') {
+                return NO_MOVE;
+            }
+            while (p < _end && !lineEnd(_buf.get(p))) {
+                p += 1;
+            }
+            _pending = skipLineEnd(p);
+            return move;
+        }
+    }
+
+    /** Consume the move last returned by nextMove. */
+    void accept() {
+        assert _pending >= 0;
+        _pos = _pending;
+        _pending = -1;
+        _replayed += 1;
+    }
+
+    /** Return the number of moves accepted. */
+    long replayed() {
+        return _replayed;
+    }
+
+    /** Report the number of moves accepted and their rate, if any and
+     *  not yet reported. */
+    private void report() {
+        if (_reporter == null || _replayed == 0 || _done) {
+            return;
+        }
+        _done = true;
+        double secs = Math.max(System.nanoTime() - _start, 1) * 1e-9;
+        _reporter.noteMsg("Replayed %d plies from %s in %.3f s"
+                          + " (%.0f per second).", _replayed, _file, secs,
+                          _replayed / secs);
+    }
+
+    /** Return the position of the first character at or after P that is
+     *  not a blank (as for String.trim) or is a line end. */
+    private int skipBlanks(int p) {
+        while (p < _end) {
+            byte b = _buf.get(p);
+            if (b < 0 || b > ' ' || lineEnd(b)) {
+                break;
+            }
+            p += 1;
+        }
+        return p;
+    }
+
+    /** Return the start of the line after the line end at P (or _end, if
+     *  P is at the end), treating "\r\n" as one line end, as
+     *  BufferedReader does. */
+    private int skipLineEnd(int p) {
+        if (p < _end && _buf.get(p) == '\r') {
+            p += 1;
+            if (p < _end && _buf.get(p) == '\n') {
+                p += 1;
+            }
+        } else if (p < _end) {
+            p += 1;
+        }
+        return p;
+    }
+
+    /** Return true iff B ends a line. */
+    private static boolean lineEnd(byte b) {
+        return b == '\n' || b == '\r';
+    }
+
+    /** Return true iff B is a column letter. */
+    private static boolean column(byte b) {
+        return b >= 'a' && b <= 'g';
+    }
+
+    /** Return true iff B is a row number. */
+    private static boolean row(byte b) {
+        return b >= '1' && b <= '7';
+    }
+
+    /** Return the square in column COL and row ROW. */
+    private static int square(byte col, byte row) {
+        return BitBoard.square((char) col, (char) row);
+    }
+
+    /** Length of a move such as "a1-b2". */
+    private static final int MOVE_LENGTH = 5;
+
+    /** Name of the file read. */
+    private final String _file;
+    /** The contents of the file. */
+    private final MappedByteBuffer _buf;
+    /** Length of the file. */
+    private final int _end;
+    /** Reports prompts and statistics, unless null. */
+    private final Reporter _reporter;
+    /** Time of opening (ns). */
+    private final long _start;
+    /** Position of the next line. */
+    private int _pos;
+    /** Position of the line after the move last returned by nextMove,
+     *  or -1 if there is none to be accepted. */
+    private int _pending = -1;
+    /** Number of moves accepted. */
+    private long _replayed;
+    /** True once the statistics are reported. */
+    private boolean _done;
+}
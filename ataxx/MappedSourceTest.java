@@ -0,0 +1,75 @@
+package ataxx;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+import static ataxx.BitBoard.*;
+
+/** Tests of mapped command input.
+ *  @author Yevgen Vasylenko
+ */
+public class MappedSourceTest {
+
+    /** Return a MappedSource reading TEXT, from a file deleted once
+     *  mapped. */
+    private static MappedSource source(String text) throws IOException {
+        File file = File.createTempFile("script", ".txt");
+        try {
+            Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+            return new MappedSource(file.getPath(), null);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test public void testMoves() throws IOException {
+        MappedSource s =
+            source("a7-b6\r\n\n  # comment\n\tg1-f3  # jump\r-\n"
+                   + "a1-a2x\nblock c3\nb2-b3");
+        assertEquals(encode(square('a', '7'), square('b', '6')),
+                     s.nextMove());
+        assertEquals(encode(square('a', '7'), square('b', '6')),
+                     s.nextMove());
+        s.accept();
+        assertEquals(encode(square('g', '1'), square('f', '3')),
+                     s.nextMove());
+        s.accept();
+        assertEquals(PASS, s.nextMove());
+        s.accept();
+        assertEquals(NO_MOVE, s.nextMove());
+        assertEquals("a1-a2x", s.getLine(""));
+        assertEquals(NO_MOVE, s.nextMove());
+        assertEquals("block c3", s.getLine(""));
+        assertEquals(encode(square('b', '2'), square('b', '3')),
+                     s.nextMove());
+        s.accept();
+        assertEquals(NO_MOVE, s.nextMove());
+        assertNull(s.getLine(""));
+        assertEquals(4, s.replayed());
+    }
+
+    @Test public void testLines() throws IOException {
+        MappedSource s = source("start\r\nb7-a6 # x\n\nquit");
+        assertEquals("start", s.getLine(""));
+        assertEquals("b7-a6 # x", s.getLine(""));
+        assertEquals("", s.getLine(""));
+        assertEquals("quit", s.getLine(""));
+        assertNull(s.getLine(""));
+        assertEquals(0, s.replayed());
+    }
+
+    @Test public void testMissing() {
+        try {
+            new MappedSource("/nonexistent/script.txt", null);
+            fail("opened a missing file");
+        } catch (GameException excp) {
+            /* Expected. */
+        }
+    }
+
+}
@@ -0,0 +1,276 @@
+package ataxx;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import static ataxx.GameException.error;
+
+/** A registry of metrics of a long-running process (a server or a
+ *  tournament): counters, gauges and latency histograms, exported in the
+ *  text format of Prometheus, and served over HTTP on a local port (see
+ *  serve) for dashboards to scrape.  The metrics of the program itself
+ *  are in GLOBAL: the time AIs take to move (AI_MOVE), the time from a
+ *  server's receiving a command to its AI's reply (REPLY), the number of
+ *  games finished (GAMES, whose rate is games per second), and gauges
+ *  of the sessions active (registered by Server) and of the fill of the
+ *  AIs' search tables.
+ *
+ *  Counters and histograms may be updated from any thread, and doing so
+ *  allocates nothing, so they may stay on the path of every move.
+ *  @author Yevgen Vasylenko
+ */
+class Metrics {
+
+    /** A count that only increases. */
+    static final class Counter {
+
+        /** Add 1 to me. */
+        void increment() {
+            _count.increment();
+        }
+
+        /** Return my value. */
+        long get() {
+            return _count.sum();
+        }
+
+        /** The count. */
+        private final LongAdder _count = new LongAdder();
+    }
+
+    /** A histogram of durations, in the manner of HdrHistogram: each
+     *  power of two (in nanoseconds) is divided into SUB_BUCKETS buckets
+     *  of equal width, so that every duration is counted within 1 part
+     *  in SUB_BUCKETS of its value, over the whole range of a long, in
+     *  a fixed array of counts. */
+    static final class Histogram {
+
+        /** Number of buckets in each power of two. */
+        static final int SUB_BUCKETS = 8;
+
+        /** Count a duration of NANOS nanoseconds (0 if negative). */
+        void record(long nanos) {
+            nanos = Math.max(0, nanos);
+            _counts.incrementAndGet(bucket(nanos));
+            _count.increment();
+            _sum.add(nanos);
+        }
+
+        /** Return the number of durations counted. */
+        long count() {
+            return _count.sum();
+        }
+
+        /** Return the sum of the durations counted, in nanoseconds. */
+        long sum() {
+            return _sum.sum();
+        }
+
+        /** Return the least bound (in nanoseconds, within 1 part in
+         *  SUB_BUCKETS) such that a fraction Q (0 <= Q <= 1) of the
+         *  durations counted are below it, or 0 if there are none. */
+        long percentile(double q) {
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i += 1) {
+                total += _counts.get(i);
+            }
+            long target = (long) Math.ceil(q * total), seen = 0;
+            for (int i = 0; i < BUCKETS && total > 0; i += 1) {
+                seen += _counts.get(i);
+                if (seen >= target && seen > 0) {
+                    return upper(i);
+                }
+            }
+            return 0;
+        }
+
+        /** Return the number of durations counted that are less than
+         *  2^K nanoseconds (0 <= K < 63). */
+        long below(int k) {
+            long n = 0;
+            for (int i = 0; i < BUCKETS && upper(i) <= 1L << k; i += 1) {
+                n += _counts.get(i);
+            }
+            return n;
+        }
+
+        /** Return the bucket of durations of NANOS >= 0 nanoseconds. */
+        static int bucket(long nanos) {
+            if (nanos < SUB_BUCKETS) {
+                return (int) nanos;
+            }
+            int msb = 63 - Long.numberOfLeadingZeros(nanos);
+            return (msb - SUB_BITS + 1) * SUB_BUCKETS
+                + (int) (nanos >>> (msb - SUB_BITS)) - SUB_BUCKETS;
+        }
+
+        /** Return the least duration in bucket I. */
+        static long lower(int i) {
+            if (i < SUB_BUCKETS) {
+                return i;
+            }
+            return (long) (SUB_BUCKETS + i % SUB_BUCKETS)
+                << (i / SUB_BUCKETS - 1);
+        }
+
+        /** Return the least duration above bucket I. */
+        static long upper(int i) {
+            return i + 1 == BUCKETS ? Long.MAX_VALUE : lower(i + 1);
+        }
+
+        /** Log2 of SUB_BUCKETS. */
+        private static final int SUB_BITS = 3;
+        /** Number of buckets. */
+        private static final int BUCKETS = bucket(Long.MAX_VALUE) + 1;
+
+        /** The counts of the buckets. */
+        private final AtomicLongArray _counts = new AtomicLongArray(BUCKETS);
+        /** The number of durations. */
+        private final LongAdder _count = new LongAdder();
+        /** The sum of the durations. */
+        private final LongAdder _sum = new LongAdder();
+    }
+
+    /** Return a new counter named NAME (which should end in _total),
+     *  described by HELP, replacing any metric of that name. */
+    Counter counter(String name, String help) {
+        Counter counter = new Counter();
+        register(name, help, counter);
+        return counter;
+    }
+
+    /** Return a new histogram of durations named NAME (which should end
+     *  in _seconds), described by HELP, replacing any metric of that
+     *  name. */
+    Histogram histogram(String name, String help) {
+        Histogram histogram = new Histogram();
+        register(name, help, histogram);
+        return histogram;
+    }
+
+    /** Register a gauge named NAME, described by HELP, whose value is
+     *  supplied by VALUE when exported, replacing any metric of that
+     *  name. */
+    void gauge(String name, String help, DoubleSupplier value) {
+        register(name, help, value);
+    }
+
+    /** Return my metrics in the text format of Prometheus, durations in
+     *  seconds.  Histograms have buckets at the powers of two from
+     *  about a microsecond to about a minute. */
+    synchronized String export() {
+        StringBuilder out = new StringBuilder();
+        for (Map.Entry<String, Object> e : _metrics.entrySet()) {
+            String name = e.getKey();
+            Object metric = e.getValue();
+            out.append("# HELP ").append(name).append(' ')
+                .append(_help.get(name)).append('\n');
+            if (metric instanceof Counter) {
+                out.append("# TYPE ").append(name).append(" counter\n");
+                out.append(name).append(' ')
+                    .append(((Counter) metric).get()).append('\n');
+            } else if (metric instanceof Histogram) {
+                Histogram h = (Histogram) metric;
+                out.append("# TYPE ").append(name).append(" histogram\n");
+                for (int k = LEAST_BOUND; k <= GREATEST_BOUND; k += 1) {
+                    out.append(name).append("_bucket{le=\"")
+                        .append((double) (1L << k) * 1e-9).append("\"} ")
+                        .append(h.below(k)).append('\n');
+                }
+                long count = h.count();
+                out.append(name).append("_bucket{le=\"+Inf\"} ")
+                    .append(count).append('\n');
+                out.append(name).append("_sum ").append(h.sum() * 1e-9)
+                    .append('\n');
+                out.append(name).append("_count ").append(count)
+                    .append('\n');
+            } else {
+                out.append("# TYPE ").append(name).append(" gauge\n");
+                out.append(name).append(' ')
+                    .append(((DoubleSupplier) metric).getAsDouble())
+                    .append('\n');
+            }
+        }
+        return out.toString();
+    }
+
+    /** Serve export() at /metrics over HTTP on PORT (0 for any free port)
+     *  of the loopback interface, on a thread of its own, and return the
+     *  server (whose stop method ends it). */
+    HttpServer serve(int port) {
+        try {
+            HttpServer server =
+                HttpServer.create(new InetSocketAddress(
+                                      InetAddress.getLoopbackAddress(),
+                                      port), 0);
+            server.createContext("/metrics", this::handle);
+            server.start();
+            return server;
+        } catch (IOException excp) {
+            throw error("cannot serve metrics on port %d: %s", port,
+                        excp.getMessage());
+        }
+    }
+
+    /** Answer EXCHANGE, a request for my metrics. */
+    private void handle(HttpExchange exchange) throws IOException {
+        byte[] body = export().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders()
+            .set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /** Register METRIC as NAME, described by HELP. */
+    private synchronized void register(String name, String help,
+                                       Object metric) {
+        _metrics.put(name, metric);
+        _help.put(name, help);
+    }
+
+    /** Log2 of the least bucket bound of exported histograms (ns). */
+    private static final int LEAST_BOUND = 10;
+    /** Log2 of the greatest bucket bound of exported histograms (ns). */
+    private static final int GREATEST_BOUND = 36;
+
+    /** The metrics of the program. */
+    static final Metrics GLOBAL = new Metrics();
+    /** Time taken by AIs to choose their moves. */
+    static final Histogram AI_MOVE =
+        GLOBAL.histogram("ataxx_ai_move_seconds",
+                         "Time taken by an AI to choose a move.");
+    /** Time from a server's receiving a command to its AI's reply. */
+    static final Histogram REPLY =
+        GLOBAL.histogram("ataxx_reply_seconds",
+                         "Time from receiving a command to making the"
+                         + " AI's reply.");
+    /** Games finished. */
+    static final Counter GAMES =
+        GLOBAL.counter("ataxx_games_total", "Games finished.");
+
+    static {
+        GLOBAL.gauge("ataxx_search_table_fill_ratio",
+                     "Fraction of the AIs' search tables in use.",
+                     AI::tableFill);
+    }
+
+    /** My metrics by name, in order of registration. */
+    private final LinkedHashMap<String, Object> _metrics =
+        new LinkedHashMap<>();
+    /** Descriptions of my metrics. */
+    private final LinkedHashMap<String, String> _help =
+        new LinkedHashMap<>();
+}
@@ -0,0 +1,85 @@
+package ataxx;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import com.sun.net.httpserver.HttpServer;
+
+import static org.junit.Assert.*;
+
+/** Tests of the metrics registry.
+ *  @author Yevgen Vasylenko
+ */
+public class MetricsTest {
+
+    @Test public void testBuckets() {
+        for (long n : new long[] { 0, 1, 7, 8, 9, 15, 16, 1000, 123456789,
+                                   Long.MAX_VALUE / 3, Long.MAX_VALUE }) {
+            int b = Metrics.Histogram.bucket(n);
+            assertTrue(Metrics.Histogram.lower(b) <= n);
+            assertTrue(n < Metrics.Histogram.upper(b)
+                       || n == Long.MAX_VALUE);
+        }
+        for (int i = 0; i < 100; i += 1) {
+            assertEquals(i, Metrics.Histogram.bucket(
+                             Metrics.Histogram.lower(i)));
+        }
+    }
+
+    @Test public void testPercentiles() {
+        Metrics.Histogram h = new Metrics.Histogram();
+        assertEquals(0, h.percentile(0.5));
+        for (int k = 1; k <= 1000; k += 1) {
+            h.record(k * 1000L);
+        }
+        assertEquals(1000, h.count());
+        assertEquals(500500000L, h.sum());
+        long median = h.percentile(0.5);
+        assertTrue(median >= 500000 && median <= 500000 * 9 / 8);
+        long p99 = h.percentile(0.99);
+        assertTrue(p99 >= 990000 && p99 <= 990000 * 9 / 8);
+        assertEquals(0, h.below(9));
+        assertEquals(1, h.below(10));
+        assertEquals(1000, h.below(20));
+    }
+
+    @Test public void testExport() {
+        Metrics m = new Metrics();
+        Metrics.Counter c = m.counter("test_total", "A count.");
+        c.increment();
+        c.increment();
+        m.histogram("test_seconds", "A time.").record(2000);
+        m.gauge("test_ratio", "A ratio.", () -> 0.25);
+        String text = m.export();
+        assertTrue(text.contains("# TYPE test_total counter\ntest_total 2\n"));
+        assertTrue(text.contains("# TYPE test_seconds histogram\n"));
+        assertTrue(text.contains("test_seconds_bucket{le=\"+Inf\"} 1\n"));
+        assertTrue(text.contains("test_seconds_count 1\n"));
+        assertTrue(text.contains("# TYPE test_ratio gauge\ntest_ratio 0.25\n"));
+    }
+
+    @Test public void testServe() throws IOException {
+        Metrics m = new Metrics();
+        m.counter("test_total", "A count.").increment();
+        HttpServer server = m.serve(0);
+        try {
+            URL url = new URL("http://localhost:"
+                              + server.getAddress().getPort() + "/metrics");
+            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+            assertEquals(200, conn.getResponseCode());
+            try (InputStream in = conn.getInputStream()) {
+                String body =
+                    new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                assertEquals(m.export(), body);
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+
+}
@@ -0,0 +1,109 @@
+package ataxx;
+
+import static ataxx.BitBoard.NO_MOVE;
+import static ataxx.PieceColor.*;
+
+/** A change to a Board, as told to its BoardListeners: the move made, if
+ *  the change was a move, the squares that it flipped, all the squares
+ *  that changed, and the pieces, blocks, side to move and number of moves
+ *  after it.  A listener can thus follow the board (to draw it, say)
+ *  without reading it, which matters when the listener is told later, on
+ *  another thread.  Squares are as for BitBoard, and deltas are
+ *  immutable.
+ *  @author Yevgen Vasylenko
+ */
+final class MoveDelta {
+
+    /** The change MOVE (encoded as for BitBoard, or NO_MOVE if the change
+     *  was not one move), which flipped the squares FLIPPED and changed
+     *  the squares CHANGED, leaving pieces RED and BLUE, blocks BLOCKS,
+     *  WHOSEMOVE on move and PLY moves made. */
+    MoveDelta(int move, long flipped, long changed, long red, long blue,
+              long blocks, PieceColor whoseMove, int ply) {
+        _move = move;
+        _flipped = flipped;
+        _changed = changed;
+        _red = red;
+        _blue = blue;
+        _blocks = blocks;
+        _whoseMove = whoseMove;
+        _ply = ply;
+    }
+
+    /** Return the change made by me followed by LATER, as one: a change
+     *  that is not one move, of the squares changed by either, leaving
+     *  the board as LATER does. */
+    MoveDelta then(MoveDelta later) {
+        return new MoveDelta(NO_MOVE, 0, _changed | later._changed,
+                             later._red, later._blue, later._blocks,
+                             later._whoseMove, later._ply);
+    }
+
+    /** Return true iff I am one move (perhaps a pass). */
+    boolean isMove() {
+        return _move != NO_MOVE;
+    }
+
+    /** Return the move, encoded as for BitBoard, or NO_MOVE if I am not
+     *  one move. */
+    int move() {
+        return _move;
+    }
+
+    /** Return the squares flipped by my move (0 if I am not one). */
+    long flipped() {
+        return _flipped;
+    }
+
+    /** Return the squares that changed (perhaps more, if I am several
+     *  changes coalesced). */
+    long changed() {
+        return _changed;
+    }
+
+    /** Return the red pieces after the change. */
+    long red() {
+        return _red;
+    }
+
+    /** Return the blue pieces after the change. */
+    long blue() {
+        return _blue;
+    }
+
+    /** Return the blocked squares after the change. */
+    long blocks() {
+        return _blocks;
+    }
+
+    /** Return the number of COLOR pieces after the change. */
+    int numPieces(PieceColor color) {
+        return Long.bitCount(color == RED ? _red : _blue);
+    }
+
+    /** Return the side on move after the change. */
+    PieceColor whoseMove() {
+        return _whoseMove;
+    }
+
+    /** Return the number of moves made after the change. */
+    int ply() {
+        return _ply;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d red, %d blue, %s to move",
+                             isMove() ? BitBoard.toMove(_move) : "change",
+                             numPieces(RED), numPieces(BLUE), _whoseMove);
+    }
+
+    /** The move, or NO_MOVE. */
+    private final int _move;
+    /** Squares flipped, changed, red, blue and blocked. */
+    private final long _flipped, _changed, _red, _blue, _blocks;
+    /** Side on move. */
+    private final PieceColor _whoseMove;
+    /** Number of moves made. */
+    private final int _ply;
+}
@@ -0,0 +1,187 @@
+package ataxx;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import static ataxx.BitBoard.*;
+
+/** Move-path enumeration (perft): counting the leaves of the game tree to
+ *  a fixed depth, as a check on move generation and a measure of its
+ *  speed.  Moves are counted as distinct positions reached, so that an
+ *  extend to a square counts once however many pieces could make it,
+ *  and a pass counts as a move when it is the only one.  Games that end
+ *  before the given depth contribute no leaves.  With these conventions
+ *  the counts from the start position are 16, 256, 6460, 155888 and
+ *  4752668 at depths 1 to 5, as for other Ataxx programs.
+ *
+ *  The counts are made on BitBoards, with make and undo, counting the
+ *  moves at the last ply without making them ("bulk counting"), and the
+ *  subtrees of the root moves are counted in parallel.  A much slower
+ *  count on Boards serves to cross-check the two representations.
+ *  @author Yevgen Vasylenko
+ */
+class Perft {
+
+    /** Return the number of leaves DEPTH plies below POS. */
+    static long perft(BitBoard pos, int depth) {
+        if (depth == 0) {
+            return 1;
+        } else if (pos.gameOver()) {
+            return 0;
+        } else if (depth == 1) {
+            return countMoves(pos);
+        }
+        int[] moves = new int[MAX_MOVES];
+        int n = pos.generateDistinct(moves, 0);
+        long total = 0;
+        for (int i = 0; i < n; i += 1) {
+            pos.makeMove(moves[i]);
+            total += perft(pos, depth - 1);
+            pos.undo();
+        }
+        return total;
+    }
+
+    /** Return the number of leaves DEPTH plies below POS, counting the
+     *  subtrees of the moves from POS in parallel in POOL. */
+    static long perft(BitBoard pos, int depth, ForkJoinPool pool) {
+        if (depth <= 1 || pos.gameOver()) {
+            return perft(new BitBoard(pos), depth);
+        }
+        return pool.invoke(new RecursiveTask<Long>() {
+            @Override
+            protected Long compute() {
+                int[] moves = new int[MAX_MOVES];
+                int n = pos.generateDistinct(moves, 0);
+                ArrayList<RecursiveTask<Long>> tasks = new ArrayList<>();
+                for (int i = 0; i < n; i += 1) {
+                    BitBoard child = new BitBoard(pos);
+                    child.makeMove(moves[i]);
+                    tasks.add(new RecursiveTask<Long>() {
+                        @Override
+                        protected Long compute() {
+                            return perft(child, depth - 1);
+                        }
+                    });
+                }
+                long total = 0;
+                for (RecursiveTask<Long> task : invokeAll(tasks)) {
+                    total += task.join();
+                }
+                return total;
+            }
+        });
+    }
+
+    /** Return the number of distinct moves from POS, which is not over. */
+    static int countMoves(BitBoard pos) {
+        long own = pos.own(), empty = pos.empty();
+        int n = Long.bitCount(grow(own) & empty);
+        for (long from = own; from != 0; from &= from - 1) {
+            n += Long.bitCount(JUMPS[Long.numberOfTrailingZeros(from)]
+                               & empty);
+        }
+        return n == 0 ? 1 : n;
+    }
+
+    /** Return the number of leaves DEPTH plies below B, counted with
+     *  Board's own move generation. */
+    static long perft(Board b, int depth) {
+        if (depth == 0) {
+            return 1;
+        } else if (b.gameOver()) {
+            return 0;
+        } else if (!b.canMove(b.whoseMove())) {
+            PieceColor player = b.whoseMove();
+            b.pass();
+            long n = perft(b, depth - 1);
+            b.changeWhoseMoveTo(player);
+            return n;
+        }
+        long total = 0;
+        HashSet<Integer> extended = new HashSet<>();
+        for (int from : b.piecesOfColor(b.whoseMove())) {
+            ArrayList<Integer> targets = new ArrayList<>();
+            for (int to : b.availableExtendNeighbours(from)) {
+                if (extended.add(to)) {
+                    targets.add(to);
+                }
+            }
+            targets.addAll(b.availableJumpNeighbours(from));
+            for (int to : targets) {
+                b.makeMove(Move.move(b.sqtoCol(from), b.sqtoRow(from),
+                                     b.sqtoCol(to), b.sqtoRow(to)));
+                total += perft(b, depth - 1);
+                b.undo();
+            }
+        }
+        return total;
+    }
+
+    /** Count leaves to a given depth, and report the counts and speed.
+     *  ARGS are [--threads N] [--check] DEPTH [BLOCK...], where the
+     *  BLOCKs are squares as for the 'block' command.  With --check,
+     *  also count on Boards and compare. */
+    public static void main(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean check = false;
+        int k = 0;
+        try {
+            for (; k < args.length && args[k].startsWith("--"); k += 1) {
+                if (args[k].equals("--threads")) {
+                    k += 1;
+                    threads = Integer.parseInt(args[k]);
+                } else if (args[k].equals("--check")) {
+                    check = true;
+                } else {
+                    usage();
+                }
+            }
+            if (k == args.length || threads < 1) {
+                usage();
+            }
+            int depth = Integer.parseInt(args[k]);
+            Board b = new Board();
+            for (k += 1; k < args.length; k += 1) {
+                b.setBlock(args[k]);
+            }
+            BitBoard pos = new BitBoard(b);
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            for (int d = 1; d <= depth; d += 1) {
+                long start = System.nanoTime();
+                long n = perft(pos, d, pool);
+                double secs = (System.nanoTime() - start) * 1e-9;
+                System.out.println(report(d, n, secs));
+                if (check) {
+                    long m = perft(new Board(b), d);
+                    if (m != n) {
+                        System.out.printf("Board counts %d.%n", m);
+                        System.exit(1);
+                    }
+                }
+            }
+            pool.shutdown();
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            usage();
+        } catch (GameException excp) {
+            System.err.println(excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Return the report of a count of N leaves at depth DEPTH taking
+     *  SECS seconds. */
+    static String report(int depth, long n, double secs) {
+        return String.format("perft %d: %d nodes, %.3f s, %.1f M nodes/s",
+                             depth, n, secs, n / Math.max(secs, 1e-9) * 1e-6);
+    }
+
+    /** Give usage message and exit. */
+    private static void usage() {
+        System.err.println("Usage: java ataxx.Perft [--threads N] [--check]"
+                           + " DEPTH [BLOCK...]");
+        System.exit(1);
+    }
+}
@@ -0,0 +1,48 @@
+package ataxx;
+
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/** Tests of move generation by perft counts.
+ *  @author Yevgen Vasylenko
+ */
+public class PerftTest {
+
+    /** Return the start position with blocks at BLOCKS. */
+    private static Board layout(String... blocks) {
+        Board b = new Board();
+        for (String sq : blocks) {
+            b.setBlock(sq);
+        }
+        return b;
+    }
+
+    @Test public void testReference() {
+        long[] start = { 1, 16, 256, 6460, 155888, 4752668 };
+        long[] c3 = { 1, 14, 196, 4184, 86528, 2266352 };
+        for (int d = 0; d < start.length; d += 1) {
+            assertEquals(start[d], Perft.perft(new BitBoard(), d));
+            assertEquals(c3[d], Perft.perft(new BitBoard(layout("c3")), d));
+        }
+    }
+
+    @Test public void testParallel() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        BitBoard pos = new BitBoard(layout("b2", "d1"));
+        assertEquals(Perft.perft(pos, 4), Perft.perft(pos, 4, pool));
+        pool.shutdown();
+    }
+
+    @Test public void testAgainstBoard() {
+        String[][] layouts = { {}, { "c3" }, { "b2", "c4" }, { "a4", "d2" } };
+        for (String[] blocks : layouts) {
+            Board b = layout(blocks);
+            assertEquals("counts differ", Perft.perft(new BitBoard(b), 3),
+                         Perft.perft(b, 3));
+        }
+    }
+
+}
@@ -0,0 +1,301 @@
+package ataxx;
+
+import java.util.Arrays;
+
+import static ataxx.BitBoard.*;
+
+/** A depth-first proof-number (df-pn) search, which proves or disproves
+ *  that the player on move can force a goal: winning the game, or
+ *  eliminating all of the opponent's pieces.  Unlike alpha-beta, it does
+ *  not refine scores; it grows the tree where a proof (or disproof) looks
+ *  cheapest, as measured by proof and disproof numbers, and so settles
+ *  lopsided positions quickly.
+ *
+ *  The numbers are kept in the phi/delta form: for a node whose player
+ *  on move is X, phi is the number of leaves that must be proved to show
+ *  that X gets its way (the goal, if X is the attacker, or preventing it
+ *  otherwise) and delta the number needed to show that X does not.
+ *  Then phi of a node is the least delta of its children and delta is
+ *  the sum of their phis.  The positions form a directed acyclic graph
+ *  (each move either adds a piece or adds a jump), so there are no
+ *  cycles to worry about.  Numbers are kept in a fixed-size table that
+ *  replaces the entries representing the least work when full, and the
+ *  search stops at a node limit.
+ *  @author Yevgen Vasylenko
+ */
+class ProofSearch {
+
+    /** The goals that may be proved. */
+    enum Goal {
+        /** Finishing with more pieces than the opponent. */
+        WIN,
+        /** Leaving the opponent with no pieces. */
+        ELIMINATION
+    }
+
+    /** The possible results of a search. */
+    enum Result {
+        /** The player on move can force the goal. */
+        PROVEN,
+        /** The player on move cannot force the goal. */
+        DISPROVEN,
+        /** The node limit was reached first. */
+        UNKNOWN
+    }
+
+    /** Larger than any proof or disproof number. */
+    static final int INFTY = 1 << 28;
+    /** Largest number of moves returned by sequence(). */
+    static final int MAX_SEQUENCE = 500;
+
+    /** A searcher whose table has 2^TABLEBITS entries. */
+    ProofSearch(int tableBits) {
+        _keys = new long[1 << tableBits];
+        _phi = new int[1 << tableBits];
+        _delta = new int[1 << tableBits];
+        _work = new int[1 << tableBits];
+        _mask = (1 << tableBits) - 1;
+    }
+
+    /** Try to prove that the player on move in POS can force GOAL,
+     *  expanding at most NODELIMIT nodes, and return the result. */
+    Result prove(BitBoard pos, Goal goal, long nodeLimit) {
+        long start = System.nanoTime();
+        _goal = goal;
+        _attacker = pos.whoseMove();
+        _goalKey = (goal == Goal.ELIMINATION ? ELIMINATION_KEY : 0)
+            ^ (_attacker == PieceColor.BLUE ? BLUE_KEY : 0);
+        _nodes = 0;
+        _nodeLimit = nodeLimit;
+        BitBoard b = new BitBoard(pos);
+        _sequence = new int[0];
+        int phi, delta;
+        if (b.gameOver()) {
+            phi = achieved(b) ? 0 : INFTY;
+            delta = INFTY - phi;
+        } else {
+            mid(b, INFTY, INFTY, 0);
+            phi = _phiOut;
+            delta = _deltaOut;
+        }
+        _nanos = System.nanoTime() - start;
+        if (phi == 0) {
+            _sequence = extract(b);
+            return Result.PROVEN;
+        } else if (delta == 0) {
+            return Result.DISPROVEN;
+        } else {
+            return Result.UNKNOWN;
+        }
+    }
+
+    /** Return the encoded moves of a proof found by the last search (the
+     *  attacker's moves against one line of defense, ending when the goal
+     *  is reached), or an empty array if it proved nothing.  The sequence
+     *  may stop short if parts of the proof were lost from the table. */
+    int[] sequence() {
+        return _sequence;
+    }
+
+    /** Return the number of nodes expanded by the last search. */
+    long nodes() {
+        return _nodes;
+    }
+
+    /** Return the duration of the last search in nanoseconds. */
+    long nanos() {
+        return _nanos;
+    }
+
+    /** Forget all searched positions. */
+    void clear() {
+        Arrays.fill(_keys, 0);
+    }
+
+    /** Expand POS until its phi reaches THPHI or its delta reaches
+     *  THDELTA, or the node limit is reached, and set _phiOut and
+     *  _deltaOut to its final numbers.  Use _moves from SP up.  The
+     *  numbers of the children are read from the table once, and then
+     *  updated only from the searches of the children themselves, so
+     *  that entries lost from the table cannot send it round in
+     *  circles. */
+    private void mid(BitBoard pos, int thPhi, int thDelta, int sp) {
+        long key = key(pos);
+        long start = _nodes;
+        _nodes += 1;
+        if (_moves.length < sp + MAX_MOVES) {
+            _moves = Arrays.copyOf(_moves, 2 * (sp + MAX_MOVES));
+            _childPhi = Arrays.copyOf(_childPhi, _moves.length);
+            _childDelta = Arrays.copyOf(_childDelta, _moves.length);
+        }
+        int n = pos.generateDistinct(_moves, sp);
+        for (int i = sp; i < n; i += 1) {
+            pos.makeMove(_moves[i]);
+            evaluate(pos, i);
+            pos.undo();
+        }
+        while (true) {
+            int phi = INFTY, delta = 0, delta2 = INFTY, best = sp;
+            for (int i = sp; i < n; i += 1) {
+                delta = Math.min(INFTY, delta + _childPhi[i]);
+                if (_childDelta[i] < phi) {
+                    delta2 = phi;
+                    phi = _childDelta[i];
+                    best = i;
+                } else if (_childDelta[i] < delta2) {
+                    delta2 = _childDelta[i];
+                }
+            }
+            if (phi >= thPhi || delta >= thDelta || _nodes >= _nodeLimit) {
+                store(key, phi, delta, _nodes - start);
+                _phiOut = phi;
+                _deltaOut = delta;
+                return;
+            }
+            int childThPhi = thDelta - (delta - _childPhi[best]);
+            int childThDelta = Math.min(thPhi, delta2 + 1);
+            pos.makeMove(_moves[best]);
+            mid(pos, childThPhi, childThDelta, n);
+            pos.undo();
+            _childPhi[best] = _phiOut;
+            _childDelta[best] = _deltaOut;
+        }
+    }
+
+    /** Set _childPhi[I] and _childDelta[I] to the numbers of POS. */
+    private void evaluate(BitBoard pos, int i) {
+        if (pos.gameOver()) {
+            boolean mine = pos.whoseMove() == _attacker;
+            _childPhi[i] = achieved(pos) == mine ? 0 : INFTY;
+            _childDelta[i] = INFTY - _childPhi[i];
+            return;
+        }
+        int k = find(key(pos));
+        if (k < 0) {
+            _childPhi[i] = _childDelta[i] = 1;
+        } else {
+            _childPhi[i] = _phi[k];
+            _childDelta[i] = _delta[k];
+        }
+    }
+
+    /** Return true iff the goal has been reached in POS, whose game is
+     *  over. */
+    private boolean achieved(BitBoard pos) {
+        int mine = pos.numPieces(_attacker),
+            theirs = pos.numPieces(_attacker.opposite());
+        return _goal == Goal.ELIMINATION ? theirs == 0 : mine > theirs;
+    }
+
+    /** Return the moves of a proof starting at POS, which has been
+     *  proved. */
+    private int[] extract(BitBoard pos) {
+        int[] moves = new int[MAX_MOVES], seq = new int[MAX_SEQUENCE];
+        int len = 0;
+        while (len < MAX_SEQUENCE && !pos.gameOver()) {
+            boolean attacking = pos.whoseMove() == _attacker;
+            int n = pos.generateDistinct(moves, 0), choice = NO_MOVE;
+            long most = -1;
+            for (int i = 0; i < n; i += 1) {
+                if (attacking && choice != NO_MOVE) {
+                    break;
+                }
+                pos.makeMove(moves[i]);
+                if (pos.gameOver()) {
+                    if (achieved(pos) && most < 0) {
+                        choice = moves[i];
+                        most = 0;
+                    }
+                } else {
+                    int k = find(key(pos));
+                    if (k >= 0 && (attacking ? _delta[k] == 0
+                                   : _phi[k] == 0 && _work[k] > most)) {
+                        choice = moves[i];
+                        most = _work[k];
+                    }
+                }
+                pos.undo();
+            }
+            if (choice == NO_MOVE) {
+                break;
+            }
+            pos.makeMove(choice);
+            seq[len] = choice;
+            len += 1;
+        }
+        return Arrays.copyOf(seq, len);
+    }
+
+    /** Return the table key of POS in the current search. */
+    private long key(BitBoard pos) {
+        return pos.searchKey() ^ _goalKey;
+    }
+
+    /** Return the table slot holding KEY, or -1 if there is none. */
+    private int find(long key) {
+        int slot = (int) key & _mask;
+        if (_keys[slot] == key) {
+            return slot;
+        } else if (_keys[slot ^ 1] == key) {
+            return slot ^ 1;
+        }
+        return -1;
+    }
+
+    /** Record PHI and DELTA for KEY, whose subtree took WORK nodes,
+     *  replacing the entry for the same key or else that of the two
+     *  candidate slots representing less work. */
+    private void store(long key, int phi, int delta, long work) {
+        int slot = find(key);
+        if (slot < 0) {
+            slot = (int) key & _mask;
+            if (_work[slot ^ 1] < _work[slot]) {
+                slot ^= 1;
+            }
+        }
+        _keys[slot] = key;
+        _phi[slot] = phi;
+        _delta[slot] = delta;
+        _work[slot] = (int) Math.min(work, Integer.MAX_VALUE);
+    }
+
+    /** Added into keys when proving eliminations. */
+    private static final long ELIMINATION_KEY = 0x6a09e667f3bcc909L;
+    /** Added into keys when blue is the attacker. */
+    private static final long BLUE_KEY = 0xbb67ae8584caa73bL;
+
+    /** Keys of the positions in the table. */
+    private final long[] _keys;
+    /** Phi of each position in the table. */
+    private final int[] _phi;
+    /** Delta of each position in the table. */
+    private final int[] _delta;
+    /** Nodes spent on each position in the table. */
+    private final int[] _work;
+    /** Mask selecting a table slot from a key. */
+    private final int _mask;
+    /** Goal of the current search. */
+    private Goal _goal;
+    /** Player trying to reach _goal. */
+    private PieceColor _attacker;
+    /** Added into the keys of the current search. */
+    private long _goalKey;
+    /** Move stack. */
+    private int[] _moves = new int[0];
+    /** Phis of the children reached by _moves. */
+    private int[] _childPhi = new int[0];
+    /** Deltas of the children reached by _moves. */
+    private int[] _childDelta = new int[0];
+    /** Phi of the node last searched by mid. */
+    private int _phiOut;
+    /** Delta of the node last searched by mid. */
+    private int _deltaOut;
+    /** Nodes expanded in the current or last search. */
+    private long _nodes;
+    /** Node limit of the current search. */
+    private long _nodeLimit;
+    /** Duration of the last search. */
+    private long _nanos;
+    /** Proof found by the last search. */
+    private int[] _sequence = new int[0];
+}
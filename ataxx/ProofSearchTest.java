@@ -0,0 +1,88 @@
+package ataxx;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/** Tests of the proof-number search.
+ *  @author Yevgen Vasylenko
+ */
+public class ProofSearchTest {
+
+    /** A layout in which only the squares a1-e1 and a2-e2 are open. */
+    private static final long BLOCKS = BitBoard.FULL & ~0xf9fL;
+
+    /** Check that SEQ is a sequence of legal moves from POS that reaches
+     *  or keeps GOAL for the player on move in POS, when it ends the
+     *  game. */
+    private static void checkSequence(BitBoard pos, int[] seq,
+                                      ProofSearch.Goal goal) {
+        BitBoard b = new BitBoard(pos);
+        PieceColor attacker = b.whoseMove();
+        for (int move : seq) {
+            assertTrue("illegal move in proof", b.legal(move));
+            b.makeMove(move);
+        }
+        if (b.gameOver()) {
+            int mine = b.numPieces(attacker),
+                theirs = b.numPieces(attacker.opposite());
+            assertTrue("proof does not reach goal",
+                       goal == ProofSearch.Goal.WIN ? mine > theirs
+                       : theirs == 0);
+        }
+    }
+
+    @Test public void testAgainstTablebase() throws IOException {
+        File file = File.createTempFile("ataxx", ".tb");
+        file.deleteOnExit();
+        TablebaseGenerator gen = new TablebaseGenerator(BLOCKS, 3);
+        gen.solve();
+        gen.write(file.getPath());
+        Tablebase tb = Tablebase.open(file.getPath());
+        Tablebase.Index index = tb.index();
+        ProofSearch prover = new ProofSearch(16);
+        int proofs = 0;
+        for (int e = 1; e <= index.maxEmpty(); e += 1) {
+            for (long i = 0; i < index.layerSize(e); i += 11) {
+                long[] p = index.position(e, i);
+                BitBoard pos = new BitBoard(p[0], p[1], BLOCKS,
+                                            p[2] != 0 ? PieceColor.RED
+                                            : PieceColor.BLUE, 0);
+                ProofSearch.Result r =
+                    prover.prove(pos, ProofSearch.Goal.WIN, Long.MAX_VALUE);
+                assertEquals("wrong result",
+                             tb.margin(pos) > 0 ? ProofSearch.Result.PROVEN
+                             : ProofSearch.Result.DISPROVEN, r);
+                if (r == ProofSearch.Result.PROVEN) {
+                    proofs += 1;
+                    checkSequence(pos, prover.sequence(),
+                                  ProofSearch.Goal.WIN);
+                }
+                if (prover.prove(pos, ProofSearch.Goal.ELIMINATION,
+                                 Long.MAX_VALUE)
+                    == ProofSearch.Result.PROVEN) {
+                    checkSequence(pos, prover.sequence(),
+                                  ProofSearch.Goal.ELIMINATION);
+                }
+            }
+        }
+        assertTrue("no wins proved", proofs > 0);
+    }
+
+    @Test public void testElimination() {
+        BitBoard pos = new BitBoard(BitBoard.bit(0, 0) | BitBoard.bit(1, 0),
+                                    BitBoard.bit(2, 1), 0,
+                                    PieceColor.RED, 0);
+        ProofSearch prover = new ProofSearch(16);
+        assertEquals(ProofSearch.Result.PROVEN,
+                     prover.prove(pos, ProofSearch.Goal.ELIMINATION, 1000));
+        assertEquals(1, prover.sequence().length);
+        checkSequence(pos, prover.sequence(), ProofSearch.Goal.ELIMINATION);
+        assertEquals(ProofSearch.Result.UNKNOWN,
+                     prover.prove(new BitBoard(), ProofSearch.Goal.WIN, 100));
+    }
+
+}
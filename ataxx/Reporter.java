@@ -17,4 +17,18 @@ interface Reporter {
      *  formed from FORMAT and OPERANDS as for String.format. */
     void moveMsg(String format, Object... operands);
 
+    /** Display a diagnostic message (such as the statistics of a search)
+     *  formed from FORMAT and OPERANDS as for String.format. */
+    void noteMsg(String format, Object... operands);
+
+    /** Display PROMPT, a request for input, leaving the cursor after it.
+     *  By default, prompts are not displayed. */
+    default void promptMsg(String prompt) {
+    }
+
+    /** Wait until all messages reported so far have been displayed.  By
+     *  default, they are displayed as reported. */
+    default void flush() {
+    }
+
 }
@@ -0,0 +1,402 @@
+package ataxx;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import static ataxx.BitBoard.*;
+
+/** A fixed-depth alpha-beta search for the middle game, on BitBoards.
+ *  It deepens iteratively from depth 1, keeping in a table the best move
+ *  and a bound on the value of each position searched, so that each
+ *  iteration tries first the moves that were best in the last.  Other
+ *  moves are tried in order of the piece margin they gain.  Positions
+ *  are valued by their piece margin for the player on move, or, if the
+ *  game is over, by the margin plus or minus WIN_VALUE.
+ *
+ *  The search is deterministic: from an empty table, the same position
+ *  and depth always yield the same move, value and number of nodes, so
+ *  the number of nodes serves as a signature of its behavior (see
+ *  Bench).  It may also be limited by nodes or time, or stopped from
+ *  another thread, in which case it returns the result of the last
+ *  iteration completed; the first iteration always completes.  Each
+ *  search counts what it does in a SearchStats (see stats()), which it
+ *  adds to the totals of its thread when done.
+ *  @author Yevgen Vasylenko
+ */
+class Search {
+
+    /** Added to the margin of a won final position. */
+    static final int WIN_VALUE = 1000;
+    /** Larger than any value. */
+    static final int INFTY = 2 * WIN_VALUE;
+    /** Largest depth that may be searched. */
+    static final int MAX_DEPTH = 63;
+
+    /** A searcher whose table has 2^TABLEBITS entries. */
+    Search(int tableBits) {
+        _keys = new long[1 << tableBits];
+        _entries = new int[1 << tableBits];
+        _mask = (1 << tableBits) - 1;
+    }
+
+    /** Search POS, which is not over, to DEPTH plies (1 <= DEPTH <=
+     *  MAX_DEPTH), and return an encoded best move. */
+    int search(BitBoard pos, int depth) {
+        return search(pos, depth, Long.MAX_VALUE, Long.MAX_VALUE, null);
+    }
+
+    /** Search POS, which is not over, to at most DEPTH plies (1 <= DEPTH
+     *  <= MAX_DEPTH), stopping early after NODELIMIT nodes or NANOLIMIT
+     *  nanoseconds, or when stopped, and return an encoded best move.
+     *  Pass me to INFO (unless null) after each iteration completed. */
+    int search(BitBoard pos, int depth, long nodeLimit, long nanoLimit,
+               Consumer<Search> info) {
+        start(pos, false);
+        BitBoard b = new BitBoard(pos);
+        for (int d = 1; d <= depth; d += 1) {
+            _rootDepth = d;
+            int v = search(b, d, -INFTY, INFTY, 0, true);
+            _nanos = System.nanoTime() - _start;
+            if (_aborted) {
+                break;
+            }
+            _value = v;
+            _bestMove = _rootMove;
+            _depth = d;
+            if (info != null) {
+                info.accept(this);
+            }
+            _nodeLimit = nodeLimit;
+            _nanoLimit = nanoLimit;
+            _interruptible = true;
+        }
+        finish();
+        return _bestMove;
+    }
+
+    /** Search POS, which is not over, to exactly DEPTH plies (1 <= DEPTH
+     *  <= MAX_DEPTH), considering only the moves from POS that are not in
+     *  EXCLUDED, and return the best of them, encoded, or NO_MOVE if
+     *  there are none or the search is stopped (which it may be only if
+     *  INTERRUPTIBLE).  The value is exact; it, the move and its
+     *  principal variation are then given by value(), pv() and depth(),
+     *  as for an iteration of a full search. */
+    int search(BitBoard pos, int depth, int[] excluded,
+               boolean interruptible) {
+        start(pos, interruptible);
+        int[] moves = new int[MAX_MOVES];
+        int n = pos.generateDistinct(moves, 0), left = n;
+        for (int i = 0; i < n; i += 1) {
+            for (int move : excluded) {
+                if (move == moves[i]) {
+                    left -= 1;
+                    break;
+                }
+            }
+        }
+        if (left == 0) {
+            finish();
+            return NO_MOVE;
+        }
+        _excluded = excluded;
+        _rootDepth = depth;
+        int v = search(new BitBoard(pos), depth, -INFTY, INFTY, 0, true);
+        _excluded = NONE;
+        finish();
+        if (_aborted) {
+            return NO_MOVE;
+        }
+        _value = v;
+        _bestMove = _rootMove;
+        _depth = depth;
+        return _bestMove;
+    }
+
+    /** Prepare to search from POS, allowing stops iff INTERRUPTIBLE. */
+    private void start(BitBoard pos, boolean interruptible) {
+        _start = System.nanoTime();
+        _nodes = 0;
+        _nodeLimit = Long.MAX_VALUE;
+        _nanoLimit = Long.MAX_VALUE;
+        _aborted = false;
+        _interruptible = interruptible;
+        _root = new BitBoard(pos);
+        _stats.clear();
+    }
+
+    /** Complete the counts of the search just ended and add them to the
+     *  totals of this thread. */
+    private void finish() {
+        _nanos = System.nanoTime() - _start;
+        _stats.set(SearchStats.NODES, _nodes);
+        _stats.set(SearchStats.NANOS, _nanos);
+        _stats.addToTotals();
+    }
+
+    /** Cause the current search (from any thread) and all later ones to
+     *  stop as soon as they have completed their first iteration, until
+     *  clearStop() is called. */
+    void stop() {
+        _stopped = true;
+    }
+
+    /** Allow searches to proceed after stop(). */
+    void clearStop() {
+        _stopped = false;
+    }
+
+    /** Return the depth of the last iteration completed by the last
+     *  search. */
+    int depth() {
+        return _depth;
+    }
+
+    /** Return the principal variation found by the last search: its best
+     *  move followed by the best replies found in the table, at most
+     *  depth() moves in all. */
+    int[] pv() {
+        BitBoard pos = new BitBoard(_root);
+        int[] pv = new int[_depth];
+        int n = 0;
+        for (int move = _bestMove; n < _depth; n += 1) {
+            pv[n] = move;
+            pos.makeMove(move);
+            if (n + 1 == _depth || pos.gameOver()) {
+                n += 1;
+                break;
+            }
+            long key = pos.searchKey();
+            int slot = (int) key & _mask;
+            move = _entries[slot] >>> 20;
+            if (_keys[slot] != key || !pos.legal(move)) {
+                n += 1;
+                break;
+            }
+        }
+        return Arrays.copyOf(pv, n);
+    }
+
+    /** Return the value found by the last search, for the player on
+     *  move. */
+    int value() {
+        return _value;
+    }
+
+    /** Return the number of nodes visited by the last search. */
+    long nodes() {
+        return _nodes;
+    }
+
+    /** Return the duration of the last search in nanoseconds. */
+    long nanos() {
+        return _nanos;
+    }
+
+    /** Return the counts of the last search (or of the current one,
+     *  so far, timed to the end of its last iteration completed). */
+    SearchStats stats() {
+        SearchStats result = new SearchStats(_stats);
+        result.set(SearchStats.NODES, _nodes);
+        result.set(SearchStats.NANOS, _nanos);
+        return result;
+    }
+
+    /** Return the fraction of the first FILL_SAMPLE slots of my table (or
+     *  of all of them, if fewer) that are in use.  May be called from any
+     *  thread, during a search. */
+    double fill() {
+        int n = Math.min(FILL_SAMPLE, _keys.length), used = 0;
+        for (int i = 0; i < n; i += 1) {
+            if (_keys[i] != 0) {
+                used += 1;
+            }
+        }
+        return (double) used / n;
+    }
+
+    /** Forget all searched positions. */
+    void clear() {
+        Arrays.fill(_keys, 0);
+    }
+
+    /** Return the value of POS searched to DEPTH plies, exact if it lies
+     *  strictly between ALPHA and BETA, otherwise a bound on the same
+     *  side of the window.  Use _moves from SP up.  Iff ROOT, record the
+     *  best move and skip the moves in _excluded. */
+    private int search(BitBoard pos, int depth, int alpha, int beta,
+                       int sp, boolean root) {
+        _nodes += 1;
+        if (_nodes >= _nodeLimit
+            || (_nodes & CHECK_INTERVAL) == 0
+               && (_stopped && _interruptible
+                   || System.nanoTime() - _start >= _nanoLimit)) {
+            _aborted = true;
+        }
+        if (_aborted) {
+            return 0;
+        } else if (pos.gameOver()) {
+            _stats.count(SearchStats.LEAVES);
+            int margin = pos.margin();
+            return margin + Integer.signum(margin) * WIN_VALUE;
+        } else if (depth == 0) {
+            _stats.count(SearchStats.LEAVES);
+            return pos.margin();
+        }
+        long key = pos.searchKey();
+        int slot = (int) key & _mask;
+        int tableMove = NO_MOVE;
+        _stats.count(SearchStats.PROBES);
+        if (_keys[slot] == key) {
+            _stats.count(SearchStats.HITS);
+            int entry = _entries[slot];
+            int v = (entry & 0xFFF) - VALUE_BIAS,
+                bound = (entry >>> 12) & 3;
+            tableMove = entry >>> 20;
+            if (!root && ((entry >>> 14) & 0x3F) >= depth
+                && (bound == EXACT || bound == LOWER && v >= beta
+                    || bound == UPPER && v <= alpha)) {
+                return v;
+            }
+        }
+        int n = order(pos, sp, tableMove);
+        int best = -INFTY, bestMove = _moves[sp], searched = 0;
+        for (int i = sp; i < n && best < beta; i += 1) {
+            if (root && excluded(_moves[i])) {
+                continue;
+            }
+            searched += 1;
+            pos.makeMove(_moves[i]);
+            int v = -search(pos, depth - 1, -beta, -Math.max(alpha, best),
+                            n, false);
+            pos.undo();
+            if (_aborted) {
+                return 0;
+            }
+            if (v > best) {
+                best = v;
+                bestMove = _moves[i];
+            }
+        }
+        _stats.expand(_rootDepth - depth, searched);
+        if (best >= beta) {
+            _stats.count(SearchStats.CUTOFFS);
+            if (searched == 1) {
+                _stats.count(SearchStats.FIRST_CUTOFFS);
+            }
+        }
+        if (!root || _excluded.length == 0) {
+            int bound = best <= alpha ? UPPER : best >= beta ? LOWER : EXACT;
+            _keys[slot] = key;
+            _entries[slot] = (best + VALUE_BIAS) | bound << 12 | depth << 14
+                | bestMove << 20;
+        }
+        if (root) {
+            _rootMove = bestMove;
+        }
+        return best;
+    }
+
+    /** Return true iff MOVE is in _excluded. */
+    private boolean excluded(int move) {
+        for (int m : _excluded) {
+            if (m == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Generate the moves from POS into _moves from SP up, best first
+     *  (putting TABLEMOVE first if it is among them), and return the
+     *  index after the last. */
+    private int order(BitBoard pos, int sp, int tableMove) {
+        if (_moves.length < sp + MAX_MOVES) {
+            _moves = Arrays.copyOf(_moves, 2 * (sp + MAX_MOVES));
+            _scores = Arrays.copyOf(_scores, _moves.length);
+        }
+        int n = pos.generateDistinct(_moves, sp);
+        long opp = pos.opponent();
+        for (int i = sp; i < n; i += 1) {
+            int move = _moves[i], score;
+            if (move == tableMove) {
+                score = Integer.MAX_VALUE;
+            } else if (move == PASS) {
+                score = 0;
+            } else {
+                score = 2 * Long.bitCount(ADJACENT[to(move)] & opp)
+                    + (isExtend(move) ? 1 : 0);
+            }
+            int j = i;
+            while (j > sp && _scores[j - 1] < score) {
+                _moves[j] = _moves[j - 1];
+                _scores[j] = _scores[j - 1];
+                j -= 1;
+            }
+            _moves[j] = move;
+            _scores[j] = score;
+        }
+        return n;
+    }
+
+    /** Bound type of a table entry holding an exact value. */
+    private static final int EXACT = 0;
+    /** Bound type of a table entry holding a lower bound. */
+    private static final int LOWER = 1;
+    /** Bound type of a table entry holding an upper bound. */
+    private static final int UPPER = 2;
+    /** Added to values stored in table entries. */
+    private static final int VALUE_BIAS = 2048;
+    /** Stops and time limits are checked once in CHECK_INTERVAL + 1
+     *  nodes. */
+    private static final long CHECK_INTERVAL = 1023;
+
+    /** Number of slots sampled by fill(). */
+    private static final int FILL_SAMPLE = 1000;
+
+    /** An empty list of moves. */
+    private static final int[] NONE = new int[0];
+
+    /** Keys of the positions in the table. */
+    private final long[] _keys;
+    /** Table entries: value + VALUE_BIAS in bits 0-11, bound type in
+     *  bits 12-13, depth in bits 14-19, and best move in bits 20 up. */
+    private final int[] _entries;
+    /** Mask selecting a table slot from a key. */
+    private final int _mask;
+    /** Move stack. */
+    private int[] _moves = new int[0];
+    /** Ordering scores of the moves on _moves. */
+    private int[] _scores = new int[0];
+    /** Nodes visited in the current or last search. */
+    private long _nodes;
+    /** Node limit of the current iteration. */
+    private long _nodeLimit;
+    /** Time limit of the current iteration in nanoseconds. */
+    private long _nanoLimit;
+    /** Start time of the current or last search (System.nanoTime). */
+    private long _start;
+    /** Duration of the last search. */
+    private long _nanos;
+    /** True iff stop() has been called since the last clearStop(). */
+    private volatile boolean _stopped;
+    /** True iff the current search may be stopped. */
+    private boolean _interruptible;
+    /** Moves from the root not to be considered. */
+    private int[] _excluded = NONE;
+    /** True iff the current iteration has been cut short. */
+    private boolean _aborted;
+    /** Position searched by the current or last search. */
+    private BitBoard _root = new BitBoard();
+    /** Best move found by the current iteration. */
+    private int _rootMove;
+    /** Best move found by the last search. */
+    private int _bestMove;
+    /** Depth of the current iteration. */
+    private int _rootDepth;
+    /** Counts of the current or last search. */
+    private final SearchStats _stats = new SearchStats();
+    /** Depth of the last iteration completed. */
+    private int _depth;
+    /** Value found by the last search. */
+    private int _value;
+}
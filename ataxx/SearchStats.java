@@ -0,0 +1,285 @@
+package ataxx;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/** Counts of what middle-game searches (see Search) do: nodes visited
+ *  and the time taken, leaves evaluated, beta cutoffs (and how many came
+ *  from the first move tried), table probes and hits, and for each ply
+ *  from the root, the nodes expanded there and the moves they searched,
+ *  whose ratio is the average branching factor at that ply.  A position
+ *  that takes far longer than others to search shows why here: poor
+ *  ordering as a low first-move cutoff rate and high branching, a
+ *  table too small as a low hit rate.
+ *
+ *  Each Search counts into its own SearchStats, for its current search,
+ *  and adds them when done to the totals of its thread, which are kept
+ *  apart from those of other threads (and padded, so that no two
+ *  threads' counts share a cache line).  Counting thus costs a few
+ *  increments of fields of an object no other thread writes, and the
+ *  counts stay on in play.  totals() sums the totals of all threads on
+ *  demand.  When a thread starts counting, the totals of the threads
+ *  that have ended are folded into one sum and forgotten, so that
+ *  threads that come and go (one for each engine search or each
+ *  session) leave no more behind than their counts.
+ *  @author Yevgen Vasylenko
+ */
+class SearchStats {
+
+    /** Kind of count: nodes visited. */
+    static final int NODES = 0;
+    /** Kind of count: leaves (final positions and the positions at the
+     *  depth searched) evaluated. */
+    static final int LEAVES = 1;
+    /** Kind of count: beta cutoffs. */
+    static final int CUTOFFS = 2;
+    /** Kind of count: beta cutoffs by the first move searched. */
+    static final int FIRST_CUTOFFS = 3;
+    /** Kind of count: table probes. */
+    static final int PROBES = 4;
+    /** Kind of count: table probes that found their position. */
+    static final int HITS = 5;
+    /** Kind of count: nanoseconds searching. */
+    static final int NANOS = 6;
+    /** Number of plies from the root at which expansions are counted. */
+    static final int PLIES = Search.MAX_DEPTH + 1;
+
+    /** New, zero counts. */
+    SearchStats() {
+        _counts = new long[SIZE];
+    }
+
+    /** A copy of STATS. */
+    SearchStats(SearchStats stats) {
+        _counts = stats._counts.clone();
+    }
+
+    /** Return my sum of the totals of all threads.  Counts still being
+     *  added by other threads may or may not be included. */
+    static SearchStats totals() {
+        SearchStats result = new SearchStats();
+        synchronized (TOTALS) {
+            result.add(RETIRED);
+            for (ThreadTotals totals : TOTALS) {
+                for (int k = 0; k < SIZE; k += 1) {
+                    result._counts[k] += totals.counts[PAD + k];
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Clear the totals of all threads. */
+    static void clearTotals() {
+        synchronized (TOTALS) {
+            RETIRED.clear();
+            for (ThreadTotals totals : TOTALS) {
+                for (int k = 0; k < SIZE; k += 1) {
+                    totals.counts[PAD + k] = 0;
+                }
+            }
+        }
+    }
+
+    /** Return new totals for the current thread, after folding those of
+     *  threads that have ended into RETIRED. */
+    private static long[] register() {
+        long[] counts = new long[PAD + SIZE + PAD];
+        synchronized (TOTALS) {
+            for (Iterator<ThreadTotals> i = TOTALS.iterator(); i.hasNext();) {
+                ThreadTotals totals = i.next();
+                Thread thread = totals.thread.get();
+                if (thread == null || !thread.isAlive()) {
+                    for (int k = 0; k < SIZE; k += 1) {
+                        RETIRED._counts[k] += totals.counts[PAD + k];
+                    }
+                    i.remove();
+                }
+            }
+            TOTALS.add(new ThreadTotals(Thread.currentThread(), counts));
+        }
+        return counts;
+    }
+
+    /** Return the number of threads whose totals are kept apart. */
+    static int threads() {
+        synchronized (TOTALS) {
+            return TOTALS.size();
+        }
+    }
+
+    /** Return the totals of the current thread. */
+    static SearchStats threadTotals() {
+        long[] totals = THREAD_TOTALS.get();
+        SearchStats result = new SearchStats();
+        for (int k = 0; k < SIZE; k += 1) {
+            result._counts[k] = totals[PAD + k];
+        }
+        return result;
+    }
+
+    /** Clear the totals of the current thread. */
+    static void clearThreadTotals() {
+        long[] totals = THREAD_TOTALS.get();
+        for (int k = 0; k < SIZE; k += 1) {
+            totals[PAD + k] = 0;
+        }
+    }
+
+    /** Add me to the totals of the current thread. */
+    void addToTotals() {
+        long[] totals = THREAD_TOTALS.get();
+        for (int k = 0; k < SIZE; k += 1) {
+            totals[PAD + k] += _counts[k];
+        }
+    }
+
+    /** Add STATS to me. */
+    void add(SearchStats stats) {
+        for (int k = 0; k < SIZE; k += 1) {
+            _counts[k] += stats._counts[k];
+        }
+    }
+
+    /** Set all my counts to 0. */
+    void clear() {
+        for (int k = 0; k < SIZE; k += 1) {
+            _counts[k] = 0;
+        }
+    }
+
+    /** Add 1 to my count of KIND. */
+    void count(int kind) {
+        _counts[kind] += 1;
+    }
+
+    /** Set my count of KIND to N. */
+    void set(int kind, long n) {
+        _counts[kind] = n;
+    }
+
+    /** Count the expansion of a node PLY plies from the root, in which
+     *  MOVES moves were searched. */
+    void expand(int ply, int moves) {
+        _counts[EXPANDED + ply] += 1;
+        _counts[SEARCHED + ply] += moves;
+    }
+
+    /** Return my count of KIND. */
+    long get(int kind) {
+        return _counts[kind];
+    }
+
+    /** Return the number of nodes visited per second. */
+    long nps() {
+        return _counts[NODES] * 1000000000L / Math.max(1, _counts[NANOS]);
+    }
+
+    /** Return the fraction of beta cutoffs made by the first move
+     *  searched (0 if there were none). */
+    double firstCutoffRate() {
+        return ratio(_counts[FIRST_CUTOFFS], _counts[CUTOFFS]);
+    }
+
+    /** Return the fraction of table probes that hit (0 if there were
+     *  none). */
+    double hitRate() {
+        return ratio(_counts[HITS], _counts[PROBES]);
+    }
+
+    /** Return the average number of moves searched by the nodes expanded
+     *  PLY plies from the root (0 if there were none). */
+    double branching(int ply) {
+        return ratio(_counts[SEARCHED + ply], _counts[EXPANDED + ply]);
+    }
+
+    /** Return the number of plies from the root at which nodes were
+     *  expanded. */
+    int plies() {
+        int n = PLIES;
+        while (n > 0 && _counts[EXPANDED + n - 1] == 0) {
+            n -= 1;
+        }
+        return n;
+    }
+
+    /** Return my counts on one line. */
+    String summary() {
+        return String.format("%d nodes, %d nps, %d leaves, %d cutoffs"
+                             + " (%.1f%% first), %d probes (%.1f%% hits),"
+                             + " branching%s",
+                             _counts[NODES], nps(), _counts[LEAVES],
+                             _counts[CUTOFFS], 100 * firstCutoffRate(),
+                             _counts[PROBES], 100 * hitRate(),
+                             branchings());
+    }
+
+    /** Return my counts as a table, one count on each line. */
+    @Override
+    public String toString() {
+        return String.format("Nodes           : %d%n"
+                             + "Time (ms)       : %d%n"
+                             + "Nodes/second    : %d%n"
+                             + "Leaves          : %d%n"
+                             + "Beta cutoffs    : %d (%.1f%% first)%n"
+                             + "Table probes    : %d (%.1f%% hits)%n"
+                             + "Branching/ply   :%s",
+                             _counts[NODES], _counts[NANOS] / 1000000,
+                             nps(), _counts[LEAVES], _counts[CUTOFFS],
+                             100 * firstCutoffRate(), _counts[PROBES],
+                             100 * hitRate(), branchings());
+    }
+
+    /** Return the average branching factors at each ply, each preceded
+     *  by a blank. */
+    private String branchings() {
+        StringBuilder result = new StringBuilder();
+        for (int p = 0; p < plies(); p += 1) {
+            result.append(String.format(" %.1f", branching(p)));
+        }
+        return result.toString();
+    }
+
+    /** Return A / B, or 0 if B is 0. */
+    private static double ratio(long a, long b) {
+        return b == 0 ? 0.0 : (double) a / b;
+    }
+
+    /** Index of the counts of nodes expanded at each ply. */
+    private static final int EXPANDED = NANOS + 1;
+    /** Index of the counts of moves searched at each ply. */
+    private static final int SEARCHED = EXPANDED + PLIES;
+    /** Number of counts. */
+    private static final int SIZE = SEARCHED + PLIES;
+    /** Number of unused longs before and after the totals of each
+     *  thread: enough to fill a cache line. */
+    private static final int PAD = 8;
+
+    /** The totals of a thread. */
+    private static class ThreadTotals {
+        /** The totals COUNTS of THREAD. */
+        ThreadTotals(Thread thread, long[] counts) {
+            this.thread = new WeakReference<>(thread);
+            this.counts = counts;
+        }
+
+        /** The thread, until it is collected. */
+        final WeakReference<Thread> thread;
+        /** Its totals, from PAD on. */
+        final long[] counts;
+    }
+
+    /** The totals of the threads that may still be counting.  Guards
+     *  itself and RETIRED. */
+    private static final ArrayList<ThreadTotals> TOTALS = new ArrayList<>();
+    /** The sum of the totals of the threads that have ended. */
+    private static final SearchStats RETIRED = new SearchStats();
+    /** The totals of each thread, from PAD on. */
+    private static final ThreadLocal<long[]> THREAD_TOTALS =
+        ThreadLocal.withInitial(SearchStats::register);
+
+    /** My counts: one of each kind, then the counts of nodes expanded
+     *  at each ply, then those of the moves they searched. */
+    private final long[] _counts;
+}
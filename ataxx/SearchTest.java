@@ -0,0 +1,106 @@
+package ataxx;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/** Tests of the middle-game search and the benchmark built on it.
+ *  @author Yevgen Vasylenko
+ */
+public class SearchTest {
+
+    @Test public void testCapture() {
+        BitBoard pos = BitBoard.parse("7/7/7/7/bbb4/b1br3/bbb4 r");
+        Search search = new Search(12);
+        int move = search.search(pos, 3);
+        assertEquals("missed elimination",
+                     BitBoard.encode(Move.move('d', '2', 'b', '2')), move);
+        assertEquals(Search.WIN_VALUE + 9, search.value());
+    }
+
+    @Test public void testDepthOne() {
+        BitBoard pos = BitBoard.parse(Bench.POSITIONS[12]);
+        int[] moves = new int[BitBoard.MAX_MOVES];
+        int n = pos.generateDistinct(moves, 0), best = -Search.INFTY;
+        for (int i = 0; i < n; i += 1) {
+            pos.makeMove(moves[i]);
+            best = Math.max(best, -pos.margin());
+            pos.undo();
+        }
+        Search search = new Search(12);
+        assertTrue(pos.legal(search.search(pos, 1)));
+        assertEquals(best, search.value());
+        assertEquals(n + 1, search.nodes());
+    }
+
+    @Test public void testStats() {
+        BitBoard pos = BitBoard.parse(Bench.POSITIONS[12]);
+        int n = pos.generateDistinct(new int[BitBoard.MAX_MOVES], 0);
+        Search search = new Search(12);
+        search.search(pos, 1);
+        SearchStats stats = search.stats();
+        assertEquals(n + 1, stats.get(SearchStats.NODES));
+        assertEquals(n, stats.get(SearchStats.LEAVES));
+        assertEquals(1, stats.plies());
+        assertEquals(n, stats.branching(0), 1e-9);
+        assertEquals(0, stats.get(SearchStats.CUTOFFS));
+
+        long before = SearchStats.totals().get(SearchStats.NODES);
+        search.search(pos, 4);
+        stats = search.stats();
+        assertEquals(search.nodes(), stats.get(SearchStats.NODES));
+        assertEquals(before + search.nodes(),
+                     SearchStats.totals().get(SearchStats.NODES));
+        assertEquals(4, stats.plies());
+        assertTrue(stats.get(SearchStats.CUTOFFS)
+                   >= stats.get(SearchStats.FIRST_CUTOFFS));
+        assertTrue(stats.get(SearchStats.FIRST_CUTOFFS) > 0);
+        assertTrue(stats.get(SearchStats.HITS) > 0);
+        assertTrue(stats.get(SearchStats.HITS)
+                   <= stats.get(SearchStats.PROBES));
+        assertTrue(stats.get(SearchStats.LEAVES)
+                   < stats.get(SearchStats.NODES));
+    }
+
+    @Test public void testEndedThreads() throws InterruptedException {
+        long before = SearchStats.totals().get(SearchStats.NODES);
+        int threads = SearchStats.threads();
+        long[] nodes = new long[1];
+        for (int k = 0; k < 20; k += 1) {
+            Thread t = new Thread(() -> {
+                Search search = new Search(10);
+                search.search(new BitBoard(), 2);
+                nodes[0] += search.nodes();
+            });
+            t.start();
+            t.join();
+        }
+        assertEquals(before + nodes[0],
+                     SearchStats.totals().get(SearchStats.NODES));
+        assertTrue(SearchStats.threads() <= threads + 1);
+    }
+
+    @Test public void testEndedSearchers() throws InterruptedException {
+        int searchers = AI.searchers();
+        for (int k = 0; k < 5; k += 1) {
+            Thread t = new Thread(AI::clearTables);
+            t.start();
+            t.join();
+        }
+        assertTrue(AI.searchers() <= searchers);
+    }
+
+    @Test public void testSignature() {
+        long[] one = Bench.run(3, 1), three = Bench.run(3, 3);
+        assertEquals(Bench.POSITIONS.length, one.length);
+        for (int i = 0; i < one.length; i += 1) {
+            assertTrue("no nodes", one[i] > 0);
+            assertEquals("nodes depend on threads", one[i], three[i]);
+        }
+        Search search = new Search(Bench.TABLE_BITS);
+        BitBoard pos = BitBoard.parse(Bench.POSITIONS[30]);
+        search.search(pos, 3);
+        assertEquals("nodes depend on the table", one[30], search.nodes());
+    }
+
+}
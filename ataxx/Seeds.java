@@ -0,0 +1,44 @@
+package ataxx;
+
+import java.util.SplittableRandom;
+
+/** The seeds of the program's random numbers.  Each user of random
+ *  numbers draws them from streams of a seed of its own, numbered so
+ *  that each game gets its own stream (as BookBuilder's games and
+ *  Tournament's openings do), and what a game draws depends only on the
+ *  seed and its number, however the games are spread over threads.
+ *  Without a seed, users take the root, which is drawn from the clock.
+ *  The AIs draw no random numbers: their moves depend only on the
+ *  position and on what their searchers' tables hold, which is why a
+ *  seeded Tournament and the seed command clear them (see
+ *  AI.clearTables).
+ *  @author Yevgen Vasylenko
+ */
+class Seeds {
+
+    /** Not instantiable. */
+    private Seeds() {
+    }
+
+    /** Return the root seed. */
+    static long root() {
+        return ROOT;
+    }
+
+    /** Return the seed of stream number N of SEED. */
+    static long stream(long seed, long n) {
+        return new SplittableRandom(seed + n * GOLDEN_GAMMA).nextLong();
+    }
+
+    /** Return a new random generator for stream number N of SEED. */
+    static SplittableRandom random(long seed, long n) {
+        return new SplittableRandom(seed + n * GOLDEN_GAMMA);
+    }
+
+    /** Spacing of the seeds of successive streams (2^64 divided by the
+     *  golden ratio). */
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    /** The root seed. */
+    private static final long ROOT = System.nanoTime();
+}
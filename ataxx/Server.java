@@ -0,0 +1,339 @@
+package ataxx;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static ataxx.GameException.error;
+
+/** A server (Main's --server mode) hosting many games at once, each
+ *  played over its own TCP connection to the loopback interface in the
+ *  text command language (see Session).  Connections are served by a
+ *  single thread waiting on a Selector, which reads commands, runs them,
+ *  and writes responses without ever blocking, so that an idle game costs
+ *  only its buffers and board.  The AIs' moves run on a fixed pool of
+ *  worker threads whose queue is first in, first out; each session has
+ *  at most one move waiting, so the pool divides its time fairly among
+ *  the games.  Finished moves are passed back to the selector thread,
+ *  which makes them and sends their reports.  While a session's move is
+ *  being computed, its connection is not read, so a client that sends
+ *  commands faster than they are processed is held back by TCP rather
+ *  than by the server's memory.  The AIs' search tables belong to the
+ *  worker threads (see AI), so their number does not grow with the
+ *  number of games.
+ *  @author Yevgen Vasylenko
+ */
+class Server {
+
+    /** Largest number of connections served at once; connections beyond
+     *  it are closed at once. */
+    static final int MAX_SESSIONS = 10000;
+    /** Longest command line accepted, in bytes. */
+    static final int MAX_LINE = 256;
+
+    /** A server listening on PORT (0 for any free port) of the loopback
+     *  interface, with WORKERS threads computing moves. */
+    Server(int port, int workers) {
+        try {
+            _selector = Selector.open();
+            _listener = ServerSocketChannel.open();
+            _listener.bind(new InetSocketAddress(
+                               InetAddress.getLoopbackAddress(), port));
+            _listener.configureBlocking(false);
+            _listener.register(_selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException excp) {
+            throw error("Cannot listen on port %d", port);
+        }
+        AtomicInteger count = new AtomicInteger();
+        _workers =
+            new ThreadPoolExecutor(workers, workers, 0, TimeUnit.SECONDS,
+                                   new LinkedBlockingQueue<>(),
+                                   r -> {
+                                       Thread t = new Thread(r,
+                                           "server-worker-"
+                                           + count.incrementAndGet());
+                                       t.setDaemon(true);
+                                       return t;
+                                   });
+        Metrics.GLOBAL.gauge("ataxx_sessions_active",
+                             "Sessions connected to the server.",
+                             this::sessions);
+    }
+
+    /** Return the port I listen on. */
+    int port() {
+        return _listener.socket().getLocalPort();
+    }
+
+    /** Give the AIs of new games the opening book BOOK (null for none). */
+    void setBook(Book book) {
+        _book = book;
+    }
+
+    /** Give the AIs of new games the endgame tablebase TABLEBASE (null
+     *  for none). */
+    void setTablebase(Tablebase tablebase) {
+        _tablebase = tablebase;
+    }
+
+    /** Have the AIs of new games solve exactly below THRESHOLD empty
+     *  squares (see Game.setEndgameThreshold). */
+    void setEndgameThreshold(int threshold) {
+        _endgameThreshold = threshold;
+    }
+
+    /** Return the number of connections being served. */
+    int sessions() {
+        return _sessions;
+    }
+
+    /** Serve connections until stop() is called, then close them all. */
+    void run() {
+        try {
+            while (!_stopped) {
+                _selector.select();
+                for (Connection c = _ready.poll(); c != null;
+                     c = _ready.poll()) {
+                    c.moveReady();
+                }
+                Iterator<SelectionKey> keys =
+                    _selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    } else if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Connection c = (Connection) key.attachment();
+                        try {
+                            if (key.isWritable()) {
+                                c.write();
+                            }
+                            if (key.isValid() && key.isReadable()) {
+                                c.read();
+                            }
+                        } catch (RuntimeException excp) {
+                            System.err.printf("session failed: %s%n", excp);
+                            c.close();
+                        }
+                    }
+                }
+            }
+        } catch (IOException excp) {
+            throw error("server failed: %s", excp.getMessage());
+        } finally {
+            shutDown();
+        }
+    }
+
+    /** Cause run() to return (from any thread). */
+    void stop() {
+        _stopped = true;
+        _selector.wakeup();
+    }
+
+    /** Accept a waiting connection, if any. */
+    private void accept() throws IOException {
+        SocketChannel channel = _listener.accept();
+        if (channel == null) {
+            return;
+        } else if (_sessions >= MAX_SESSIONS) {
+            channel.close();
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Connection c = new Connection(channel);
+        c._key = channel.register(_selector, SelectionKey.OP_READ, c);
+        _sessions += 1;
+    }
+
+    /** Stop the workers and close all connections and the listener. */
+    private void shutDown() {
+        _workers.shutdownNow();
+        for (SelectionKey key : _selector.keys()) {
+            if (key.attachment() instanceof Connection) {
+                ((Connection) key.attachment()).close();
+            }
+        }
+        try {
+            _listener.close();
+            _selector.close();
+        } catch (IOException excp) {
+            /* Ignore IOException */
+        }
+    }
+
+    /** A connection and its session. */
+    private class Connection {
+
+        /** A connection over CHANNEL, with a new session. */
+        Connection(SocketChannel channel) {
+            _channel = channel;
+            _session = new Session(_workers, s -> {
+                _ready.add(this);
+                _selector.wakeup();
+            });
+            _session.game().setBook(_book);
+            _session.game().setTablebase(_tablebase);
+            _session.game().setEndgameThreshold(_endgameThreshold);
+        }
+
+        /** Read what has arrived and pass the complete lines to my
+         *  session.  A line longer than MAX_LINE is reported once and
+         *  dropped, up to and including its newline. */
+        void read() {
+            int n;
+            try {
+                n = _channel.read(_in);
+            } catch (IOException excp) {
+                n = -1;
+            }
+            if (n < 0) {
+                _session.input(null);
+            } else {
+                _in.flip();
+                int start = 0;
+                for (int i = 0; i < _in.limit(); i += 1) {
+                    if (_in.get(i) == '\n') {
+                        if (_discarding) {
+                            _discarding = false;
+                        } else {
+                            _session.input(new String(_in.array(), start,
+                                                      i - start,
+                                                      StandardCharsets.UTF_8));
+                        }
+                        start = i + 1;
+                    }
+                }
+                _in.position(start);
+                _in.compact();
+                if (!_in.hasRemaining()) {
+                    _in.clear();
+                    if (!_discarding) {
+                        _session.errMsg("Line too long.");
+                        _discarding = true;
+                    }
+                }
+            }
+            flush();
+        }
+
+        /** Make my session's move, just computed. */
+        void moveReady() {
+            if (_key.isValid()) {
+                _session.moveReady();
+                flush();
+            }
+        }
+
+        /** Send what I can of my pending output. */
+        void write() {
+            try {
+                while (!_out.isEmpty()) {
+                    _channel.write(_out.peek());
+                    if (_out.peek().hasRemaining()) {
+                        break;
+                    }
+                    _out.remove();
+                }
+            } catch (IOException excp) {
+                close();
+                return;
+            }
+            update();
+        }
+
+        /** Queue my session's new output, send what I can, and close me
+         *  if my session is over and all its output sent. */
+        void flush() {
+            String output = _session.output();
+            if (!output.isEmpty()) {
+                _out.add(ByteBuffer.wrap(
+                             output.getBytes(StandardCharsets.UTF_8)));
+            }
+            write();
+        }
+
+        /** Set the events I wait for: writing while I have output, and
+         *  reading while my session can take input.  Close me if my
+         *  session is over and has nothing left to send. */
+        private void update() {
+            if (!_key.isValid()) {
+                return;
+            } else if (_session.closed() && _out.isEmpty()) {
+                close();
+                return;
+            }
+            int ops = 0;
+            if (!_out.isEmpty()) {
+                ops |= SelectionKey.OP_WRITE;
+            }
+            if (!_session.busy() && !_session.closed()) {
+                ops |= SelectionKey.OP_READ;
+            }
+            _key.interestOps(ops);
+        }
+
+        /** Close my connection. */
+        void close() {
+            if (_key.isValid()) {
+                _key.cancel();
+                _sessions -= 1;
+            }
+            try {
+                _channel.close();
+            } catch (IOException excp) {
+                /* Ignore IOException */
+            }
+        }
+
+        /** My key in the selector. */
+        private SelectionKey _key;
+        /** My connection. */
+        private final SocketChannel _channel;
+        /** The game played over it. */
+        private final Session _session;
+        /** Bytes read but not yet part of a complete line. */
+        private final ByteBuffer _in = ByteBuffer.allocate(MAX_LINE);
+        /** Output waiting to be sent. */
+        private final ArrayDeque<ByteBuffer> _out = new ArrayDeque<>();
+        /** True iff dropping the rest of a line that was too long. */
+        private boolean _discarding;
+    }
+
+    /** Waits for connections. */
+    private final ServerSocketChannel _listener;
+    /** Waits for events on the listener and connections. */
+    private final Selector _selector;
+    /** Computes the AIs' moves. */
+    private final ThreadPoolExecutor _workers;
+    /** Connections whose moves have been computed. */
+    private final ConcurrentLinkedQueue<Connection> _ready =
+        new ConcurrentLinkedQueue<>();
+    /** Number of connections open. */
+    private volatile int _sessions;
+    /** True once stop() has been called. */
+    private volatile boolean _stopped;
+    /** Opening book for new games' AIs, or null. */
+    private Book _book;
+    /** Endgame tablebase for new games' AIs, or null. */
+    private Tablebase _tablebase;
+    /** Endgame threshold for new games' AIs. */
+    private int _endgameThreshold = Game.DEFAULT_ENDGAME_THRESHOLD;
+}
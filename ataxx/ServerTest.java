@@ -0,0 +1,118 @@
+package ataxx;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/** Tests of the game server and its load generator, over the loopback
+ *  interface.
+ *  @author Yevgen Vasylenko
+ */
+public class ServerTest {
+
+    /** Return a server on a free port, serving from a new thread. */
+    private static Server start() {
+        Server server = new Server(0, 2);
+        Thread t = new Thread(server::run, "test-server");
+        t.setDaemon(true);
+        t.start();
+        return server;
+    }
+
+    /** Return the output of a session over a connection to SERVER, given
+     *  INPUT, which ends the session. */
+    private static String session(Server server, String input)
+        throws IOException {
+        try (Socket s = new Socket(InetAddress.getLoopbackAddress(),
+                                   server.port())) {
+            s.setSoTimeout(TIMEOUT);
+            PrintWriter out = new PrintWriter(
+                new OutputStreamWriter(s.getOutputStream(),
+                                       StandardCharsets.UTF_8), true);
+            out.print(input);
+            out.flush();
+            BufferedReader in = new BufferedReader(
+                new InputStreamReader(s.getInputStream(),
+                                      StandardCharsets.UTF_8));
+            StringBuilder result = new StringBuilder();
+            for (String line = in.readLine(); line != null;
+                 line = in.readLine()) {
+                result.append(line).append('\n');
+            }
+            return result.toString();
+        }
+    }
+
+    @Test public void testCommands() throws IOException {
+        Server server = start();
+        try {
+            Board b = new Board();
+            b.setBlock("c3");
+            String dump = b.toString() + "\n";
+            assertEquals("Illegal move.\n" + dump,
+                         session(server, "block c3\n# comment\n\n"
+                                 + "a7-a4\na7-b6\na1-b2\nclear\n"
+                                 + "block c3\ndump\nquit\ndump\n"));
+            assertEquals("Command not understood\n"
+                         + "'load' command is not available on the server.\n"
+                         + "Not a legal move.\n"
+                         + "Can only set blocks during setup.\n",
+                         session(server, "bogus\nload x.txt\nmanual blue\n"
+                                 + "start\na1-a2\nblock c3\nquit\n"));
+            assertEquals(0, server.sessions());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test public void testLongLine() throws IOException {
+        Server server = start();
+        try {
+            Board b = new Board();
+            b.setBlock("c3");
+            String junk = "x".repeat(3 * Server.MAX_LINE);
+            assertEquals("Line too long.\n" + b + "\n",
+                         session(server, "block c3\nbogus " + junk
+                                 + "\ndump\nquit\n"));
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test public void testAIReply() throws IOException {
+        Server server = start();
+        try {
+            String output = session(server, "start\na7-b6\nquit\n");
+            assertTrue(output, output.startsWith("Blue moves "));
+            assertEquals(1, output.split("\n").length);
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test public void testLoad() {
+        Server server = start();
+        try {
+            LoadClient client = new LoadClient(server.port(), 3, 1);
+            client.run(TIMEOUT);
+            assertEquals(3, client.played());
+            assertTrue(client.moves() > 3 * 2);
+            assertTrue(client.latency(0.5) <= client.latency(1));
+        } finally {
+            server.stop();
+        }
+    }
+
+    /** Most milliseconds a test may wait for the server. */
+    private static final int TIMEOUT = 120000;
+
+}
@@ -0,0 +1,392 @@
+package ataxx;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+import static ataxx.PieceColor.*;
+import static ataxx.Game.State.*;
+import static ataxx.GameException.error;
+
+/** A game played by the commands of the text language (as for Game),
+ *  which arrive a line at a time and whose responses are collected for
+ *  the caller to send on: one session of the Server.  Unlike Game, a
+ *  session never waits for input.  Each move of an AI is computed as a
+ *  job on a pool of worker threads shared with other sessions; commands
+ *  arriving meanwhile are held until the move is made.  A session has at
+ *  most one job outstanding, so a pool that runs its jobs in the order
+ *  submitted serves all sessions fairly: none waits behind more than one
+ *  move of each of the others.
+ *
+ *  There are no prompts, and the commands load, save and restore (which
+ *  would use the server's files), perft and analyze (which would occupy
+ *  the server for as long as they liked) are refused; a server moves
+ *  sessions with snapshot() and restore() instead.  All methods but the
+ *  job itself are called from one thread, or at least one at a time.
+ *  @author Yevgen Vasylenko
+ */
+class Session implements Reporter {
+
+    /** A new session in setup state, with a manual red and an AI blue
+     *  (as for Game), whose AIs' moves run on WORKERS.  Once a move
+     *  computed on WORKERS is ready, the worker passes me to READY, after
+     *  which moveReady() must be called. */
+    Session(Executor workers, Consumer<Session> ready) {
+        _workers = workers;
+        _ready = ready;
+        _game = new Game(_board, null, this);
+        _state = SETUP;
+    }
+
+    /** Return the Game holding my settings for AIs (book, tablebase and
+     *  endgame threshold). */
+    Game game() {
+        return _game;
+    }
+
+    /** Process LINE, a line of input, or hold it until my AI has moved.
+     *  Comments (from '#') and surrounding whitespace are removed, and
+     *  blank lines are ignored.  A null LINE ends the session. */
+    void input(String line) {
+        if (line == null) {
+            _closed = true;
+            return;
+        }
+        if (line.indexOf('#') != -1) {
+            line = line.substring(0, line.indexOf('#'));
+        }
+        line = line.trim();
+        if (line.isEmpty() || _closed) {
+            return;
+        } else if (busy() || !_held.isEmpty()) {
+            _held.add(line);
+        } else {
+            _received = System.nanoTime();
+            execute(line);
+        }
+    }
+
+    /** Return true iff an AI's move is being computed. */
+    boolean busy() {
+        return _job != null;
+    }
+
+    /** Return true iff the session has ended (by quit or the end of its
+     *  input). */
+    boolean closed() {
+        return _closed;
+    }
+
+    /** Return the number of commands held until my AI has moved. */
+    int held() {
+        return _held.size();
+    }
+
+    /** Make the move just computed by my AI, continue the game, and then
+     *  process the commands held meanwhile (until another AI move is
+     *  needed). */
+    void moveReady() {
+        Job job = _job;
+        _job = null;
+        if (job.failure != null) {
+            _state = FINISHED;
+            errMsg("Internal error: %s", job.failure);
+        } else if (!_closed) {
+            _board.makeMove(job.move);
+            if (job.received >= 0) {
+                Metrics.REPLY.record(System.nanoTime() - job.received);
+            }
+            _received = -1;
+            advance();
+        }
+        while (!busy() && !_held.isEmpty()) {
+            _received = System.nanoTime();
+            execute(_held.remove());
+        }
+    }
+
+    /** Return a snapshot of my game, from which restore() resumes it, in
+     *  this process or another.  Must not be called while busy().  Held
+     *  commands and output not yet taken are not included. */
+    Snapshot snapshot() {
+        return new Snapshot(_board, _state, _redAI, _blueAI, new int[0],
+                            new int[0]);
+    }
+
+    /** Replace my game by the one in SNAPSHOT, continuing play (with the
+     *  AIs it gives) if it was being played.  Must not be called while
+     *  busy(). */
+    void restore(Snapshot snapshot) {
+        snapshot.board(_board);
+        _redAI = snapshot.redAI();
+        _blueAI = snapshot.blueAI();
+        _state = snapshot.state();
+        if (_state == PLAYING) {
+            start();
+        }
+    }
+
+    /** Return and forget the output produced since the last call. */
+    String output() {
+        synchronized (_output) {
+            String result = _output.toString();
+            _output.setLength(0);
+            return result;
+        }
+    }
+
+    @Override
+    public void errMsg(String format, Object... args) {
+        append(format, args);
+    }
+
+    @Override
+    public void outcomeMsg(String format, Object... args) {
+        append(format, args);
+    }
+
+    @Override
+    public void moveMsg(String format, Object... args) {
+        append(format, args);
+    }
+
+    @Override
+    public void noteMsg(String format, Object... args) {
+        /* Diagnostics of thousands of games would be noise. */
+    }
+
+    /** Add a line formed from FORMAT and ARGS as for String.format to my
+     *  output.  Called from workers as well. */
+    private void append(String format, Object... args) {
+        String line = String.format(format, args);
+        synchronized (_output) {
+            _output.append(line).append('\n');
+        }
+    }
+
+    /** Perform the command LINE. */
+    private void execute(String line) {
+        try {
+            Command cmnd = Command.parseCommand(line);
+            String[] operands = cmnd.operands();
+            switch (cmnd.commandType()) {
+            case AUTO:
+            case MANUAL:
+                setPlayer(cmnd.commandType() == Command.Type.AUTO,
+                          operands[0]);
+                break;
+            case BLOCK:
+                if (_state == SETUP) {
+                    _board.setBlock(operands[0]);
+                } else {
+                    errMsg("Can only set blocks during setup.");
+                }
+                break;
+            case START:
+                if (_state != SETUP) {
+                    throw error("'start' command is not allowed now.");
+                }
+                start();
+                break;
+            case PIECEMOVE:
+                doMove(_game.commandToMove(cmnd));
+                break;
+            case PASS:
+                doMove(Move.pass());
+                break;
+            case CLEAR:
+                _board.clear();
+                _state = SETUP;
+                break;
+            case DUMP:
+                moveMsg("%s", _board);
+                break;
+            case HELP:
+                doHelp();
+                break;
+            case STATS:
+                moveMsg("%s", SearchStats.totals());
+                break;
+            case SEED:
+                _clearTables = true;
+                break;
+            case LOAD:
+            case SAVE:
+            case RESTORE:
+            case PERFT:
+            case ANALYZE:
+                throw error("'%s' command is not available on the server.",
+                            cmnd.commandType().toString().toLowerCase());
+            case QUIT:
+            case EOF:
+                _closed = true;
+                break;
+            default:
+                throw error("Command not understood");
+            }
+        } catch (GameException excp) {
+            errMsg("%s", excp.getMessage());
+        }
+    }
+
+    /** Make the player of color NAME (red or blue, in any case) an AI
+     *  iff AUTO, from the next game on. */
+    private void setPlayer(boolean auto, String name) {
+        if (name.equalsIgnoreCase("red")) {
+            _redAI = auto;
+        } else {
+            _blueAI = auto;
+        }
+        if (auto) {
+            moveMsg("Setting %s player to be AI",
+                    name.equalsIgnoreCase("red") ? "Red" : "Blue");
+        }
+    }
+
+    /** Start play from the current position. */
+    private void start() {
+        _state = PLAYING;
+        _red = _redAI ? new AI(_game, RED) : null;
+        _blue = _blueAI ? new AI(_game, BLUE) : null;
+        advance();
+    }
+
+    /** Make MOVE (Move.PASS for a pass, or null if malformed) for the side
+     *  on move, as a manual player's move during play, or as a setup move
+     *  otherwise. */
+    private void doMove(Move move) {
+        if (_state != PLAYING) {
+            if (!_board.legalMove(move)) {
+                errMsg(move == Move.PASS ? "Illegal pass." : "Illegal move.");
+            } else {
+                _board.makeMove(move);
+            }
+        } else if (!_board.legalMove(move)) {
+            errMsg(move == Move.PASS ? "Unable to pass."
+                   : "Not a legal move.");
+        } else {
+            _board.makeMove(move);
+            advance();
+        }
+    }
+
+    /** Continue play after a move or start: report the outcome if the
+     *  game is over, and otherwise, if an AI is on move, submit its move
+     *  to my workers. */
+    private void advance() {
+        if (_state != PLAYING) {
+            return;
+        } else if (_board.gameOver()) {
+            _game.reportWinner();
+            Metrics.GAMES.increment();
+            _state = FINISHED;
+            return;
+        }
+        AI ai = _board.whoseMove() == RED ? _red : _blue;
+        if (ai != null) {
+            Job job = new Job(ai, _received, _clearTables);
+            _clearTables = false;
+            _job = job;
+            try {
+                _workers.execute(job);
+            } catch (RejectedExecutionException excp) {
+                _job = null;
+                _state = FINISHED;
+                errMsg("Server is shutting down.");
+            }
+        }
+    }
+
+    /** Perform a 'help' command. */
+    private void doHelp() {
+        InputStream helpIn =
+            Game.class.getClassLoader().getResourceAsStream("ataxx/help.txt");
+        if (helpIn == null) {
+            errMsg("No help available.");
+            return;
+        }
+        try (BufferedReader r =
+             new BufferedReader(new InputStreamReader(helpIn))) {
+            for (String line = r.readLine(); line != null;
+                 line = r.readLine()) {
+                moveMsg("%s", line);
+            }
+        } catch (IOException e) {
+            /* Ignore IOException */
+        }
+    }
+
+    /** The computation of a move by an AI on a worker thread. */
+    private class Job implements Runnable {
+
+        /** A job finding the move of AI, in reply to a command received
+         *  at RECEIVED (System.nanoTime), or to none if RECEIVED < 0.
+         *  If CLEAR, the job first clears the search tables of the worker
+         *  thread that runs it. */
+        Job(AI ai, long received, boolean clear) {
+            _ai = ai;
+            this.received = received;
+            _clear = clear;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (_clear) {
+                    AI.clearTables();
+                }
+                move = _ai.myMove();
+            } catch (RuntimeException excp) {
+                failure = excp;
+            }
+            _ready.accept(Session.this);
+        }
+
+        /** The AI moving. */
+        private final AI _ai;
+        /** True iff I clear the worker's search tables before moving. */
+        private final boolean _clear;
+        /** Time of receipt of the command replied to, or -1. */
+        private final long received;
+        /** The move found, once run. */
+        private Move move;
+        /** What went wrong in finding the move, or null. */
+        private RuntimeException failure;
+    }
+
+    /** Runs my AIs' moves. */
+    private final Executor _workers;
+    /** Called when a move is ready. */
+    private final Consumer<Session> _ready;
+    /** My board. */
+    private final Board _board = new Board();
+    /** Holds the AIs' settings and receives their reports. */
+    private final Game _game;
+    /** Output not yet taken. */
+    private final StringBuilder _output = new StringBuilder();
+    /** Commands held until the current job is done. */
+    private final ArrayDeque<String> _held = new ArrayDeque<>();
+    /** Current game state. */
+    private Game.State _state;
+    /** True iff red (blue) is an AI in the next game started. */
+    private boolean _redAI, _blueAI = true;
+    /** The AIs of the current game, or null for manual players. */
+    private AI _red, _blue;
+    /** Time of receipt of the command being executed (System.nanoTime),
+     *  or -1 if none (as when an AI replies to an AI).  Commands held
+     *  while an AI moves count as received when taken up. */
+    private long _received = -1;
+    /** True iff a 'seed' command has asked that the search tables be
+     *  cleared, which the next job does on its worker thread, since the
+     *  tables belong to the thread that searches (see AI). */
+    private boolean _clearTables;
+    /** The outstanding job, or null. */
+    private volatile Job _job;
+    /** True once the session has ended. */
+    private boolean _closed;
+}
@@ -0,0 +1,203 @@
+package ataxx;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import static ataxx.GameException.error;
+
+/** A snapshot of the whole state of a game, from which it may be resumed
+ *  at once, without replaying its moves: the board with its undo history
+ *  (see Board.writeTo), the state of play, which players are AIs, and
+ *  the moves and times noted so far for the game's record.  The AIs'
+ *  search tables are not included; they belong to threads rather than
+ *  games (see AI) and hold only facts about positions, which remain true
+ *  in any game.
+ *
+ *  The binary form is the int MAGIC, the int VERSION, a byte giving the
+ *  state of play, a byte of flags (1 if red is an AI, 2 if blue is), an
+ *  int count of recorded moves, and that many encoded moves and times
+ *  (ints), followed by the board.  All are big-endian.  Files
+ *  are replaced atomically, so that a reader (or a crash) never sees a
+ *  partly written snapshot.
+ *  @author Yevgen Vasylenko
+ */
+class Snapshot {
+
+    /** First word of a snapshot. */
+    static final int MAGIC = 0x4154534E;
+    /** Current version of the format. */
+    static final int VERSION = 2;
+
+    /** A snapshot of a game played on BOARD, in state STATE, with red
+     *  and blue AIs iff REDAI and BLUEAI, which has noted MOVES
+     *  (encoded), taking MILLIS milliseconds, for its record. */
+    Snapshot(Board board, Game.State state, boolean redAI, boolean blueAI,
+             int[] moves, int[] millis) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeByte(state.ordinal());
+            out.writeByte((redAI ? 1 : 0) | (blueAI ? 2 : 0));
+            out.writeInt(moves.length);
+            for (int k = 0; k < moves.length; k += 1) {
+                out.writeShort(moves[k]);
+                out.writeInt(millis[k]);
+            }
+            _boardStart = out.size();
+            board.writeTo(out);
+        } catch (IOException excp) {
+            throw new Error("unexpected I/O error", excp);
+        }
+        _bytes = bytes.toByteArray();
+        _state = state;
+        _redAI = redAI;
+        _blueAI = blueAI;
+        _moves = moves.clone();
+        _millis = millis.clone();
+    }
+
+    /** The snapshot whose binary form is BYTES. */
+    Snapshot(byte[] bytes) {
+        _bytes = bytes.clone();
+        DataInputStream in =
+            new DataInputStream(new ByteArrayInputStream(_bytes));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw error("not a snapshot");
+            }
+            int state = in.readUnsignedByte(), flags = in.readUnsignedByte();
+            if (state >= Game.State.values().length || flags > 3) {
+                throw error("bad snapshot");
+            }
+            _state = Game.State.values()[state];
+            _redAI = (flags & 1) != 0;
+            _blueAI = (flags & 2) != 0;
+            int n = in.readInt();
+            if (n < 0 || n > _bytes.length) {
+                throw error("bad snapshot");
+            }
+            _moves = new int[n];
+            _millis = new int[n];
+            for (int k = 0; k < n; k += 1) {
+                _moves[k] = in.readUnsignedShort();
+                _millis[k] = in.readInt();
+            }
+            _boardStart = _bytes.length - in.available();
+            board(new Board());
+        } catch (IOException excp) {
+            throw error("truncated snapshot");
+        }
+    }
+
+    /** Return the snapshot in FILE. */
+    static Snapshot load(String file) {
+        try {
+            return new Snapshot(Files.readAllBytes(Paths.get(file)));
+        } catch (IOException excp) {
+            throw error("Cannot read snapshot %s", file);
+        }
+    }
+
+    /** Replace FILE by my binary form, atomically: the new contents are
+     *  written and forced to a temporary file in the same directory,
+     *  which is then renamed to FILE. */
+    void save(String file) {
+        Path path = Paths.get(file).toAbsolutePath();
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(path.getParent(),
+                                        path.getFileName().toString(),
+                                        ".tmp");
+            try (FileChannel ch =
+                 FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer buf = ByteBuffer.wrap(_bytes);
+                while (buf.hasRemaining()) {
+                    ch.write(buf);
+                }
+                ch.force(true);
+            }
+            try {
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE,
+                           StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException excp) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException excp) {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException excp2) {
+                    /* Ignore IOException */
+                }
+            }
+            throw error("Cannot write snapshot %s", file);
+        }
+    }
+
+    /** Return my binary form. */
+    byte[] toBytes() {
+        return _bytes.clone();
+    }
+
+    /** Set the whole state of BOARD to that of my board. */
+    void board(Board board) {
+        try {
+            board.readFrom(new DataInputStream(
+                new ByteArrayInputStream(_bytes, _boardStart,
+                                         _bytes.length - _boardStart)));
+        } catch (IOException excp) {
+            throw error("truncated snapshot");
+        }
+    }
+
+    /** Return the state of play. */
+    Game.State state() {
+        return _state;
+    }
+
+    /** Return true iff red is an AI. */
+    boolean redAI() {
+        return _redAI;
+    }
+
+    /** Return true iff blue is an AI. */
+    boolean blueAI() {
+        return _blueAI;
+    }
+
+    /** Return the encoded moves noted for the game's record. */
+    int[] moves() {
+        return _moves.clone();
+    }
+
+    /** Return the time taken by each of moves() in milliseconds. */
+    int[] millis() {
+        return _millis.clone();
+    }
+
+    /** My binary form. */
+    private final byte[] _bytes;
+    /** Offset of the board in _bytes. */
+    private final int _boardStart;
+    /** State of play. */
+    private final Game.State _state;
+    /** True iff red (blue) is an AI. */
+    private final boolean _redAI, _blueAI;
+    /** Encoded moves noted for the record. */
+    private final int[] _moves;
+    /** Time taken by each of _moves in milliseconds. */
+    private final int[] _millis;
+}
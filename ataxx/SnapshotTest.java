@@ -0,0 +1,159 @@
+package ataxx;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/** Tests of game snapshots.
+ *  @author Yevgen Vasylenko
+ */
+public class SnapshotTest {
+
+    /** Return a board after a few moves, with blocks. */
+    private static Board played() {
+        Board b = new Board();
+        b.setBlock("c3");
+        b.makeMove(Move.move('a', '7', 'b', '6'));
+        b.makeMove(Move.move('a', '1', 'a', '3'));
+        b.makeMove(Move.move('g', '1', 'e', '2'));
+        b.makeMove(Move.move('g', '7', 'f', '6'));
+        b.makeMove(Move.move('b', '6', 'b', '4'));
+        return b;
+    }
+
+    /** Assert that A and B have the same state. */
+    private static void assertSame(Board a, Board b) {
+        assertEquals(a, b);
+        assertEquals(a.whoseMove(), b.whoseMove());
+        assertEquals(a.numMoves(), b.numMoves());
+        assertEquals(a.numJumps(), b.numJumps());
+        assertEquals(a.redPieces(), b.redPieces());
+        assertEquals(a.bluePieces(), b.bluePieces());
+        assertEquals(a.allMoves(), b.allMoves());
+    }
+
+    @Test public void testRoundTrip() {
+        Board b = played();
+        int[] moves = { 1, 2, 3 }, millis = { 10, 20, 30 };
+        Snapshot s =
+            new Snapshot(new Snapshot(b, Game.State.PLAYING, false, true,
+                                      moves, millis).toBytes());
+        assertEquals(Game.State.PLAYING, s.state());
+        assertFalse(s.redAI());
+        assertTrue(s.blueAI());
+        assertTrue(Arrays.equals(moves, s.moves()));
+        assertTrue(Arrays.equals(millis, s.millis()));
+        Board r = new Board();
+        s.board(r);
+        assertSame(b, r);
+        while (!b.allMoves().isEmpty()) {
+            b.undo();
+            r.undo();
+            assertSame(b, r);
+        }
+    }
+
+    @Test public void testBad() {
+        byte[] good = new Snapshot(played(), Game.State.SETUP, false, true,
+                                   new int[0], new int[0]).toBytes();
+        byte[] bad = good.clone();
+        bad[0] += 1;
+        for (byte[] bytes : new byte[][] {
+                bad, Arrays.copyOf(good, good.length - 1),
+                Arrays.copyOf(good, 12) }) {
+            try {
+                new Snapshot(bytes);
+                fail("accepted a bad snapshot");
+            } catch (GameException excp) {
+                /* Expected. */
+            }
+        }
+    }
+
+    @Test public void testJumpLimit() throws IOException {
+        Board b = new Board();
+        Move[] shuttle = {
+            Move.move('a', '7', 'a', '5'), Move.move('g', '7', 'g', '5'),
+            Move.move('a', '5', 'a', '7'), Move.move('g', '5', 'g', '7')
+        };
+        for (int k = 0; !b.gameOver(); k += 1) {
+            b.makeMove(shuttle[k % shuttle.length]);
+        }
+        assertEquals(Board.JUMP_LIMIT + 1, b.numJumps());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        b.writeTo(new DataOutputStream(bytes));
+        Board r = new Board();
+        r.readFrom(new DataInputStream(
+                       new ByteArrayInputStream(bytes.toByteArray())));
+        assertSame(b, r);
+        assertTrue(r.gameOver());
+    }
+
+    @Test public void testCorruptMove() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        played().writeTo(new DataOutputStream(bytes));
+        byte[] data = bytes.toByteArray();
+        data[FIRST_MOVE] = (byte) 0xFF;
+        data[FIRST_MOVE + 1] = (byte) 0x3F;
+        Board b = new Board();
+        try {
+            b.readFrom(new DataInputStream(new ByteArrayInputStream(data)));
+            fail("accepted a bad move");
+        } catch (GameException excp) {
+            assertEquals("bad board in snapshot", excp.getMessage());
+        }
+        assertSame(new Board(), b);
+    }
+
+    @Test public void testSave() throws IOException {
+        File dir = Files.createTempDirectory("snapshot").toFile();
+        String file = new File(dir, "game.snap").getPath();
+        try {
+            new Snapshot(new Board(), Game.State.SETUP, true, true,
+                         new int[0], new int[0]).save(file);
+            Board b = played();
+            new Snapshot(b, Game.State.FINISHED, false, false,
+                         new int[0], new int[0]).save(file);
+            assertEquals(1, dir.list().length);
+            Snapshot s = Snapshot.load(file);
+            assertEquals(Game.State.FINISHED, s.state());
+            Board r = new Board();
+            s.board(r);
+            assertSame(b, r);
+        } finally {
+            for (File f : dir.listFiles()) {
+                f.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    @Test public void testSession() {
+        Session a = new Session(Runnable::run, s -> { });
+        a.input("block c3");
+        a.input("a7-b6");
+        a.input("manual blue");
+        Session b = new Session(Runnable::run, s -> { });
+        b.restore(a.snapshot());
+        a.input("dump");
+        b.input("dump");
+        assertEquals(a.output(), b.output());
+        b.input("start");
+        b.input("a1-a2");
+        assertEquals("", b.output());
+    }
+
+    /** Offset of the first history move in the state written by
+     *  Board.writeTo: after three masks, the side on move, two counts
+     *  and the number of moves. */
+    private static final int FIRST_MOVE = 3 * 8 + 1 + 2 * 4 + 2;
+}
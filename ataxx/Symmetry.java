@@ -0,0 +1,140 @@
+package ataxx;
+
+import static ataxx.BitBoard.*;
+
+/** The 8 symmetries of the board (its dihedral group), acting on squares,
+ *  bit masks, encoded moves and BitBoards.  Symmetry T (0 <= T < 8) first
+ *  transposes the board (exchanging rows and columns) if T & 4 is set,
+ *  then mirrors each row (column c to column 6 - c) if T & 1 is set, and
+ *  then mirrors each column (row r to row 6 - r) if T & 2 is set.  So
+ *  symmetry 0 is the identity, 1-3 are the mirror images preserved by
+ *  Board.setBlock, and 4-7 involve a transposition.
+ *
+ *  Equivalent positions have equal values and corresponding best moves,
+ *  so a table may store just one of them, the canonical one: that whose
+ *  key is least.  To probe, one transforms the position by its canonical
+ *  symmetry, looks it up, and maps the move found back by the inverse.
+ *  @author Yevgen Vasylenko
+ */
+class Symmetry {
+
+    /** Number of symmetries. */
+    static final int COUNT = 8;
+
+    /** Return BITS, a mask of squares, transformed by symmetry T. */
+    static long transform(long bits, int t) {
+        if ((t & 4) != 0) {
+            for (int k = 1; k < SIDE; k += 1) {
+                bits = swap(bits, DIAGONALS[k], (SIDE - 1) * k);
+            }
+        }
+        if ((t & 1) != 0) {
+            for (int c = 0; c < SIDE / 2; c += 1) {
+                bits = swap(bits, COL_A << c, SIDE - 1 - 2 * c);
+            }
+        }
+        if ((t & 2) != 0) {
+            for (int r = 0; r < SIDE / 2; r += 1) {
+                bits = swap(bits, ROW_1 << (SIDE * r),
+                            SIDE * (SIDE - 1 - 2 * r));
+            }
+        }
+        return bits;
+    }
+
+    /** Return BITS with the bits in MASK exchanged with those DELTA
+     *  places above them. */
+    private static long swap(long bits, long mask, int delta) {
+        long t = ((bits >>> delta) ^ bits) & mask;
+        return bits ^ t ^ (t << delta);
+    }
+
+    /** Return square SQ transformed by symmetry T. */
+    static int square(int sq, int t) {
+        return SQUARE[t][sq];
+    }
+
+    /** Return encoded MOVE transformed by symmetry T. */
+    static int move(int move, int t) {
+        if (move == PASS || move == NO_MOVE) {
+            return move;
+        }
+        return encode(SQUARE[t][from(move)], SQUARE[t][to(move)]);
+    }
+
+    /** Return the inverse of symmetry T. */
+    static int inverse(int t) {
+        return INVERSE[t];
+    }
+
+    /** Return POS transformed by symmetry T, with none of its history. */
+    static BitBoard transform(BitBoard pos, int t) {
+        return new BitBoard(transform(pos.red(), t), transform(pos.blue(), t),
+                            transform(pos.blocks(), t), pos.whoseMove(),
+                            pos.numJumps());
+    }
+
+    /** Return the key of POS transformed by symmetry T. */
+    static long key(BitBoard pos, int t) {
+        return BitBoard.key(transform(pos.red(), t), transform(pos.blue(), t),
+                            transform(pos.blocks(), t),
+                            pos.whoseMove() == PieceColor.RED);
+    }
+
+    /** Return the symmetry taking POS to its canonical form: the one
+     *  giving the least key (the first such, if several do). */
+    static int canonical(BitBoard pos) {
+        int best = 0;
+        long bestKey = pos.key();
+        for (int t = 1; t < COUNT; t += 1) {
+            long k = key(pos, t);
+            if (k < bestKey) {
+                best = t;
+                bestKey = k;
+            }
+        }
+        return best;
+    }
+
+    /** Return the key of the canonical form of POS. */
+    static long canonicalKey(BitBoard pos) {
+        return key(pos, canonical(pos));
+    }
+
+    /** Mask of row 1. */
+    private static final long ROW_1 = (1L << SIDE) - 1;
+    /** DIAGONALS[K] is the mask of the squares in column C and row R with
+     *  C - R == K. */
+    private static final long[] DIAGONALS = new long[SIDE];
+    /** SQUARE[T][SQ] is square SQ transformed by symmetry T. */
+    private static final int[][] SQUARE = new int[COUNT][SQUARES];
+    /** INVERSE[T] is the inverse of symmetry T. */
+    private static final int[] INVERSE = new int[COUNT];
+
+    static {
+        for (int r = 0; r < SIDE; r += 1) {
+            for (int c = r; c < SIDE; c += 1) {
+                DIAGONALS[c - r] |= bit(c, r);
+            }
+        }
+        for (int t = 0; t < COUNT; t += 1) {
+            for (int sq = 0; sq < SQUARES; sq += 1) {
+                SQUARE[t][sq] =
+                    Long.numberOfTrailingZeros(transform(1L << sq, t));
+            }
+        }
+        for (int t = 0; t < COUNT; t += 1) {
+            for (int u = 0; u < COUNT; u += 1) {
+                int sq;
+                for (sq = 0; sq < SQUARES; sq += 1) {
+                    if (SQUARE[u][SQUARE[t][sq]] != sq) {
+                        break;
+                    }
+                }
+                if (sq == SQUARES) {
+                    INVERSE[t] = u;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package ataxx;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/** Tests of board symmetries.
+ *  @author Yevgen Vasylenko
+ */
+public class SymmetryTest {
+
+    @Test public void testGroup() {
+        for (int t = 0; t < Symmetry.COUNT; t += 1) {
+            int u = Symmetry.inverse(t);
+            for (int sq = 0; sq < BitBoard.SQUARES; sq += 1) {
+                assertEquals(sq, Symmetry.square(Symmetry.square(sq, t), u));
+                assertEquals(1L << Symmetry.square(sq, t),
+                             Symmetry.transform(1L << sq, t));
+            }
+            assertEquals(BitBoard.FULL,
+                         Symmetry.transform(BitBoard.FULL, t));
+        }
+        assertEquals(BitBoard.square('g', '1'),
+                     Symmetry.square(BitBoard.square('a', '1'), 1));
+        assertEquals(BitBoard.square('a', '7'),
+                     Symmetry.square(BitBoard.square('a', '1'), 2));
+        assertEquals(BitBoard.square('c', '2'),
+                     Symmetry.square(BitBoard.square('b', '3'), 4));
+    }
+
+    @Test public void testLayouts() {
+        Board b = new Board();
+        b.setBlock("b3");
+        BitBoard pos = new BitBoard(b);
+        for (int t = 0; t < 4; t += 1) {
+            assertEquals("layout not symmetric", pos.blocks(),
+                         Symmetry.transform(pos.blocks(), t));
+        }
+        assertTrue(pos.blocks() != Symmetry.transform(pos.blocks(), 4));
+        BitBoard start = new BitBoard();
+        for (int t : new int[] { 0, 3, 4, 7 }) {
+            assertEquals("start not symmetric", start,
+                         Symmetry.transform(start, t));
+        }
+        assertEquals(start.red(), Symmetry.transform(start.blue(), 1));
+    }
+
+    @Test public void testPositions() {
+        Random rand = new Random(7);
+        int[] moves = new int[BitBoard.MAX_MOVES];
+        int[] images = new int[BitBoard.MAX_MOVES];
+        BitBoard pos = new BitBoard();
+        while (!pos.gameOver()) {
+            long key = Symmetry.canonicalKey(pos);
+            int n = pos.generate(moves, 0);
+            for (int t = 0; t < Symmetry.COUNT; t += 1) {
+                BitBoard image = Symmetry.transform(pos, t);
+                assertEquals("canonical keys differ", key,
+                             Symmetry.canonicalKey(image));
+                assertEquals(n, image.generate(images, 0));
+                assertEquals(pos.margin(), image.margin());
+                for (int i = 0; i < n; i += 1) {
+                    assertTrue("move image illegal",
+                               image.legal(Symmetry.move(moves[i], t)));
+                }
+            }
+            int c = Symmetry.canonical(pos);
+            assertEquals(key, Symmetry.transform(pos, c).key());
+            pos.makeMove(moves[rand.nextInt(n)]);
+        }
+    }
+
+}
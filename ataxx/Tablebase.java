@@ -0,0 +1,263 @@
+package ataxx;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import static ataxx.PieceColor.*;
+import static ataxx.GameException.error;
+
+/** A read-only endgame tablebase, as written by TablebaseGenerator.  It
+ *  gives the exact final margin and a best move for every position with
+ *  one block layout (or an image of it under a Symmetry), at most
+ *  maxEmpty() empty squares, and no jumps since the last extend.  The
+ *  file is memory-mapped, so that probing it costs one read from the page
+ *  cache and takes no heap.
+ *
+ *  The file consists of a header,
+ *      int MAGIC, int VERSION, int maxEmpty, int 0, long blocks, long size
+ *  followed by SIZE records, one int each, in the order given by Index.
+ *  Each record is (margin << 16) | move, where move is an encoded best
+ *  move, and margin is the final piece count of the player on move minus
+ *  that of the opponent under best play by both sides.  All values are
+ *  big-endian.
+ *  @author Yevgen Vasylenko
+ */
+class Tablebase {
+
+    /** First word of a tablebase file. */
+    static final int MAGIC = 0x41545442;
+    /** Current version of the file format. */
+    static final int VERSION = 1;
+    /** Size of the header in bytes. */
+    static final int HEADER_SIZE = 32;
+    /** Size of a record in bytes. */
+    static final int RECORD_SIZE = 4;
+
+    /** A tablebase whose contents are in BUF. */
+    private Tablebase(MappedByteBuffer buf) {
+        _buf = buf;
+        if (buf.capacity() < HEADER_SIZE || buf.getInt(0) != MAGIC
+            || buf.getInt(4) != VERSION) {
+            throw error("not a tablebase file");
+        }
+        _index = new Index(buf.getLong(16), buf.getInt(8));
+        if (buf.getLong(24) != _index.size()
+            || HEADER_SIZE + _index.size() * RECORD_SIZE > buf.capacity()) {
+            throw error("truncated tablebase file");
+        }
+        for (int t = 0; t < Symmetry.COUNT; t += 1) {
+            _layouts[t] = Symmetry.transform(_index.blocks(),
+                                             Symmetry.inverse(t));
+        }
+    }
+
+    /** Return the tablebase in FILE. */
+    static Tablebase open(String file) {
+        try (FileChannel ch = FileChannel.open(Paths.get(file),
+                                               StandardOpenOption.READ)) {
+            if (ch.size() > Integer.MAX_VALUE) {
+                throw error("tablebase %s is too large", file);
+            }
+            return new Tablebase(ch.map(FileChannel.MapMode.READ_ONLY, 0,
+                                        ch.size()));
+        } catch (IOException excp) {
+            throw error("Cannot open tablebase %s", file);
+        }
+    }
+
+    /** Return the layout and indexing of my positions. */
+    Index index() {
+        return _index;
+    }
+
+    /** Return true iff POS is in this tablebase. */
+    boolean covers(BitBoard pos) {
+        return pos.numJumps() == 0 && pos.numEmpty() <= _index.maxEmpty()
+            && symmetry(pos) >= 0;
+    }
+
+    /** Return the first symmetry taking the layout of POS to mine, or -1
+     *  if there is none. */
+    private int symmetry(BitBoard pos) {
+        for (int t = 0; t < Symmetry.COUNT; t += 1) {
+            if (_layouts[t] == pos.blocks()) {
+                return t;
+            }
+        }
+        return -1;
+    }
+
+    /** Return the record for POS, which must be covered, when transformed
+     *  by symmetry T. */
+    private int record(BitBoard pos, int t) {
+        long i = _index.index(Symmetry.transform(pos.red(), t),
+                              Symmetry.transform(pos.blue(), t),
+                              pos.whoseMove() == RED);
+        return _buf.getInt(HEADER_SIZE + (int) i * RECORD_SIZE);
+    }
+
+    /** Return an encoded best move from POS, or BitBoard.NO_MOVE if POS is
+     *  not covered. */
+    int bestMove(BitBoard pos) {
+        if (!covers(pos)) {
+            return BitBoard.NO_MOVE;
+        }
+        int t = symmetry(pos);
+        return Symmetry.move(record(pos, t) & 0xFFFF, Symmetry.inverse(t));
+    }
+
+    /** Return the final margin of POS for the player on move under best
+     *  play, assuming that POS is covered. */
+    int margin(BitBoard pos) {
+        return record(pos, symmetry(pos)) >> 16;
+    }
+
+    /** The arrangement of the positions of one block layout having at
+     *  most a given number of empty squares into consecutive records.
+     *  The positions with E empty squares (layer E) follow those of
+     *  layer E-1.  Within a layer, a position's index is
+     *      ((S << (N - E)) + C) * 2 + (0 if red is on move, else 1),
+     *  where N is the number of open (unblocked) squares, S is the rank
+     *  of the set of empty squares among all E-element subsets of open
+     *  squares (in the combinatorial number system), and C has bit K set
+     *  iff the Kth occupied square is red. */
+    static class Index {
+
+        /** The index for layout BLOCKS and up to MAXEMPTY empty squares. */
+        Index(long blocks, int maxEmpty) {
+            _blocks = blocks;
+            _open = BitBoard.FULL & ~blocks;
+            _numOpen = Long.bitCount(_open);
+            _maxEmpty = Math.min(maxEmpty, _numOpen);
+            _layerStart = new long[_maxEmpty + 2];
+            for (int e = 0; e <= _maxEmpty; e += 1) {
+                _layerStart[e + 1] = _layerStart[e] + layerSize(e);
+            }
+        }
+
+        /** Return the blocked squares. */
+        long blocks() {
+            return _blocks;
+        }
+
+        /** Return the largest number of empty squares. */
+        int maxEmpty() {
+            return _maxEmpty;
+        }
+
+        /** Return the total number of positions. */
+        long size() {
+            return _layerStart[_maxEmpty + 1];
+        }
+
+        /** Return the number of positions in layer E, or -1 if it is too
+         *  large for a long. */
+        long layerSize(int e) {
+            double n = 2.0 * CHOOSE[_numOpen][e] * Math.pow(2, _numOpen - e);
+            return n >= Long.MAX_VALUE ? -1 : (long) n;
+        }
+
+        /** Return the index of the first position in layer E. */
+        long layerStart(int e) {
+            return _layerStart[e];
+        }
+
+        /** Return the index of the position with RED and BLUE pieces,
+         *  red on move iff REDTOMOVE. */
+        long index(long red, long blue, boolean redToMove) {
+            long empty = _open & ~(red | blue);
+            int e = Long.bitCount(empty);
+            long rank = 0;
+            int k = 1;
+            for (long s = compress(empty, _open); s != 0; s &= s - 1) {
+                rank += CHOOSE[Long.numberOfTrailingZeros(s)][k];
+                k += 1;
+            }
+            long colors = compress(red, _open & ~empty);
+            return _layerStart[e]
+                + ((rank << (_numOpen - e)) + colors) * 2
+                + (redToMove ? 0 : 1);
+        }
+
+        /** Return the position with index I in layer E (which must be
+         *  the position's layer) as {red, blue, 1 iff red is on move}. */
+        long[] position(int e, long i) {
+            boolean redToMove = (i & 1) == 0;
+            i >>>= 1;
+            long colors = i & ((1L << (_numOpen - e)) - 1);
+            long rank = i >>> (_numOpen - e);
+            long subset = 0;
+            for (int k = e, p = _numOpen - 1; k > 0; k -= 1) {
+                while (CHOOSE[p][k] > rank) {
+                    p -= 1;
+                }
+                subset |= 1L << p;
+                rank -= CHOOSE[p][k];
+                p -= 1;
+            }
+            long occupied = _open & ~deposit(subset, _open);
+            long red = deposit(colors, occupied);
+            return new long[] { red, occupied & ~red, redToMove ? 1 : 0 };
+        }
+
+        /** Blocked squares. */
+        private final long _blocks;
+        /** Unblocked squares. */
+        private final long _open;
+        /** Number of unblocked squares. */
+        private final int _numOpen;
+        /** Largest number of empty squares. */
+        private final int _maxEmpty;
+        /** _layerStart[E] is the index of the first position in layer E. */
+        private final long[] _layerStart;
+    }
+
+    /** Return the bits of BITS selected by MASK, packed into the low-order
+     *  bits of the result in the same order. */
+    static long compress(long bits, long mask) {
+        long result = 0;
+        int k = 0;
+        for (long m = mask; m != 0; m &= m - 1, k += 1) {
+            if ((bits & m & -m) != 0) {
+                result |= 1L << k;
+            }
+        }
+        return result;
+    }
+
+    /** Return the result of depositing the low-order bits of BITS into
+     *  the positions of the 1 bits of MASK, from the bottom up (the
+     *  inverse of compress). */
+    static long deposit(long bits, long mask) {
+        long result = 0;
+        for (long m = mask; m != 0 && bits != 0; m &= m - 1, bits >>>= 1) {
+            if ((bits & 1) != 0) {
+                result |= m & -m;
+            }
+        }
+        return result;
+    }
+
+    /** CHOOSE[N][K] is the binomial coefficient N choose K (0 if K > N). */
+    private static final long[][] CHOOSE =
+        new long[BitBoard.SQUARES + 1][BitBoard.SQUARES + 2];
+
+    static {
+        for (int n = 0; n <= BitBoard.SQUARES; n += 1) {
+            CHOOSE[n][0] = 1;
+            for (int k = 1; k <= n; k += 1) {
+                CHOOSE[n][k] = CHOOSE[n - 1][k - 1] + CHOOSE[n - 1][k];
+            }
+        }
+    }
+
+    /** _LAYOUTS[T] is the layout that symmetry T takes to mine. */
+    private final long[] _layouts = new long[Symmetry.COUNT];
+    /** The mapped file. */
+    private final MappedByteBuffer _buf;
+    /** The layout and indexing of my positions. */
+    private final Index _index;
+}
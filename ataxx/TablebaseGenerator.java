@@ -0,0 +1,238 @@
+package ataxx;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import static ataxx.BitBoard.*;
+import static ataxx.GameException.error;
+
+/** Builds Tablebase files by retrograde analysis.
+ *
+ *  Positions are grouped into layers by their number of empty squares.
+ *  An extend always moves a position into the next lower layer and resets
+ *  the jump count, while jumps and passes stay within a layer.  We
+ *  therefore solve layer 0 (full boards) first and work upward.  Within
+ *  a layer, let V[J] be the values of its positions after J consecutive
+ *  jumps.  V[26] is just the piece margin, since the game is then over,
+ *  and V[J] follows from V[J + 1] (for jumps) and the V[0] of the layer
+ *  below (for extends).  The same step takes each V[J + 1] to V[J], so
+ *  as soon as two successive arrays agree, all the rest do too.  Each
+ *  step does all positions of the layer in parallel.
+ *
+ *  Every position of the layout is enumerated, so this is practical only
+ *  for layouts with few open squares: a layer of the open 7x7 board has
+ *  some 2^45 colorings of its occupied squares.
+ *  @author Yevgen Vasylenko
+ */
+class TablebaseGenerator {
+
+    /** Largest number of positions we are willing to generate. */
+    static final long SIZE_LIMIT = 1L << 25;
+
+    /** A generator for positions having blocked squares BLOCKS and no
+     *  more than MAXEMPTY empty squares. */
+    TablebaseGenerator(long blocks, int maxEmpty) {
+        _index = new Tablebase.Index(blocks, maxEmpty);
+        for (int e = 0; e <= _index.maxEmpty(); e += 1) {
+            long n = _index.layerSize(e);
+            if (n < 0 || _index.layerStart(e) + n > SIZE_LIMIT) {
+                throw error("too many positions with %d empty squares;"
+                            + " use more blocks or fewer empty squares",
+                            maxEmpty);
+            }
+        }
+        _blocks = blocks;
+    }
+
+    /** Return the layout and indexing of my positions. */
+    Tablebase.Index index() {
+        return _index;
+    }
+
+    /** Solve all positions and return the number of retrograde steps
+     *  taken. */
+    int solve() {
+        _results = new int[(int) _index.size()];
+        byte[] lower = null;
+        int steps = 0;
+        for (int e = 0; e <= _index.maxEmpty(); e += 1) {
+            int n = (int) _index.layerSize(e), layer = e;
+            byte[] margins = new byte[n];
+            IntStream.range(0, n).parallel().forEach(i -> {
+                long[] p = _index.position(layer, i);
+                margins[i] = (byte) margin(p[0], p[1], p[2] != 0);
+            });
+            byte[] next = margins, cur = new byte[n];
+            for (int j = Board.JUMP_LIMIT; j >= 0; j -= 1) {
+                step(e, lower, next, cur);
+                steps += 1;
+                byte[] t = next;
+                next = cur;
+                cur = t;
+                if (Arrays.equals(cur, next)) {
+                    break;
+                }
+            }
+            lower = next;
+        }
+        return steps;
+    }
+
+    /** Set CUR to V[J] for the positions of layer E, given that NEXT is
+     *  V[J + 1] and LOWER is V[0] of layer E - 1.  Also record the best
+     *  moves. */
+    private void step(int e, byte[] lower, byte[] next, byte[] cur) {
+        int start = (int) _index.layerStart(e);
+        IntStream.range(0, cur.length).parallel().forEach(i -> {
+            int r = solve(_index.position(e, i), lower, next, e);
+            _results[start + i] = r;
+            if (r != MUST_PASS) {
+                cur[i] = (byte) (r >> 16);
+            }
+        });
+        IntStream.range(0, cur.length).parallel().forEach(i -> {
+            if (_results[start + i] == MUST_PASS) {
+                cur[i] = (byte) -cur[i ^ 1];
+                _results[start + i] = cur[i] << 16 | PASS;
+            }
+        });
+    }
+
+    /** Return (margin << 16) | move for the position P = {red, blue,
+     *  1 iff red to move} in layer E, given the values LOWER of the layer
+     *  below and NEXT of this layer after one more jump, or MUST_PASS if
+     *  the player on move must pass.  The move is PASS if the game is
+     *  over. */
+    private int solve(long[] p, byte[] lower, byte[] next, int e) {
+        boolean redToMove = p[2] != 0;
+        long own = redToMove ? p[0] : p[1], opp = redToMove ? p[1] : p[0];
+        long empty = FULL & ~(own | opp | _blocks);
+        if (own == 0 || opp == 0 || (grow(grow(own | opp)) & empty) == 0) {
+            return margin(p[0], p[1], redToMove) << 16 | PASS;
+        } else if ((grow(grow(own)) & empty) == 0) {
+            return MUST_PASS;
+        }
+        int best = Integer.MIN_VALUE, bestMove = PASS;
+        long lowerStart = e == 0 ? 0 : _index.layerStart(e - 1);
+        long start = _index.layerStart(e);
+        for (long to = grow(own) & empty; to != 0; to &= to - 1) {
+            int sq = Long.numberOfTrailingZeros(to);
+            long flips = ADJACENT[sq] & opp;
+            long i = child(own | (to & -to) | flips, opp ^ flips, redToMove);
+            int v = -lower[(int) (i - lowerStart)];
+            if (v > best) {
+                best = v;
+                bestMove = encode(Long.numberOfTrailingZeros(ADJACENT[sq]
+                                                             & own), sq);
+            }
+        }
+        for (long from = own; from != 0; from &= from - 1) {
+            int fsq = Long.numberOfTrailingZeros(from);
+            for (long to = JUMPS[fsq] & empty; to != 0; to &= to - 1) {
+                int sq = Long.numberOfTrailingZeros(to);
+                long flips = ADJACENT[sq] & opp;
+                long i = child((own ^ (from & -from)) | (to & -to) | flips,
+                               opp ^ flips, redToMove);
+                int v = -next[(int) (i - start)];
+                if (v > best) {
+                    best = v;
+                    bestMove = encode(fsq, sq);
+                }
+            }
+        }
+        return best << 16 | bestMove;
+    }
+
+    /** Return the index of the position after the player on move (red
+     *  iff REDTOMOVE) moves, leaving the mover with pieces MOVER and the
+     *  other player with OTHER. */
+    private long child(long mover, long other, boolean redToMove) {
+        if (redToMove) {
+            return _index.index(mover, other, false);
+        } else {
+            return _index.index(other, mover, true);
+        }
+    }
+
+    /** Return the piece margin of the player on move (red iff REDTOMOVE)
+     *  when RED and BLUE are occupied. */
+    private static int margin(long red, long blue, boolean redToMove) {
+        int m = Long.bitCount(red) - Long.bitCount(blue);
+        return redToMove ? m : -m;
+    }
+
+    /** Write the solved positions to FILE in Tablebase format, by way of
+     *  a temporary file so that FILE never holds a partial table. */
+    void write(String file) throws IOException {
+        Path target = Paths.get(file);
+        Path tmp = Paths.get(file + ".tmp");
+        try (DataOutputStream out =
+             new DataOutputStream(new BufferedOutputStream(
+                 new FileOutputStream(tmp.toFile())))) {
+            out.writeInt(Tablebase.MAGIC);
+            out.writeInt(Tablebase.VERSION);
+            out.writeInt(_index.maxEmpty());
+            out.writeInt(0);
+            out.writeLong(_index.blocks());
+            out.writeLong(_index.size());
+            for (int r : _results) {
+                out.writeInt(r);
+            }
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /** Generate a tablebase.  ARGS are FILE MAXEMPTY [BLOCK...], where
+     *  FILE is the output file, MAXEMPTY the largest number of empty
+     *  squares, and each BLOCK is a square as for the 'block' command. */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: java ataxx.TablebaseGenerator FILE"
+                               + " MAXEMPTY [BLOCK...]");
+            System.exit(1);
+        }
+        try {
+            int maxEmpty = Integer.parseInt(args[1]);
+            Board layout = new Board();
+            for (int i = 2; i < args.length; i += 1) {
+                layout.setBlock(args[i]);
+            }
+            long start = System.nanoTime();
+            TablebaseGenerator gen =
+                new TablebaseGenerator(new BitBoard(layout).blocks(),
+                                       maxEmpty);
+            int steps = gen.solve();
+            gen.write(args[0]);
+            System.out.printf("%d positions with up to %d empty squares"
+                              + " in %d steps, %.1f s on %d threads.%n",
+                              gen.index().size(), gen.index().maxEmpty(),
+                              steps, (System.nanoTime() - start) * 1e-9,
+                              Runtime.getRuntime().availableProcessors());
+        } catch (NumberFormatException excp) {
+            System.err.println("Bad number.");
+            System.exit(1);
+        } catch (GameException | IOException excp) {
+            System.err.println(excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Marks a position whose player must pass, whose value is that of
+     *  the same position with the other player on move. */
+    private static final int MUST_PASS = Integer.MIN_VALUE;
+
+    /** Layout and indexing of positions. */
+    private final Tablebase.Index _index;
+    /** Blocked squares. */
+    private final long _blocks;
+    /** (margin << 16) | best move for each position, by index. */
+    private int[] _results;
+}
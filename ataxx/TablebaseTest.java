@@ -0,0 +1,97 @@
+package ataxx;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+
+import static org.junit.Assert.*;
+
+/** Tests of tablebase generation and probing.
+ *  @author Yevgen Vasylenko
+ */
+public class TablebaseTest {
+
+    /** A layout in which only the squares a1-d1 and a2-d2 are open. */
+    private static final long BLOCKS = BitBoard.FULL & ~0x3c0fL;
+
+    /** Return the exact value of POS for the player on move, by plain
+     *  minimax, remembering values in MEMO. */
+    private static int value(BitBoard pos, HashMap<String, Integer> memo) {
+        if (pos.gameOver()) {
+            return pos.margin();
+        }
+        String key = pos.red() + " " + pos.blue() + " " + pos.whoseMove()
+            + " " + pos.numJumps();
+        Integer v = memo.get(key);
+        if (v == null) {
+            int[] moves = new int[BitBoard.MAX_MOVES];
+            int n = pos.generate(moves, 0);
+            v = Integer.MIN_VALUE;
+            for (int i = 0; i < n; i += 1) {
+                pos.makeMove(moves[i]);
+                v = Math.max(v, -value(pos, memo));
+                pos.undo();
+            }
+            memo.put(key, v);
+        }
+        return v;
+    }
+
+    /** Return a tablebase for BLOCKS with up to 3 empty squares. */
+    private static Tablebase generate() throws IOException {
+        File file = File.createTempFile("ataxx", ".tb");
+        file.deleteOnExit();
+        TablebaseGenerator gen = new TablebaseGenerator(BLOCKS, 3);
+        gen.solve();
+        gen.write(file.getPath());
+        return Tablebase.open(file.getPath());
+    }
+
+    @Test public void testAgainstMinimax() throws IOException {
+        Tablebase tb = generate();
+        Tablebase.Index index = tb.index();
+        HashMap<String, Integer> memo = new HashMap<>();
+        for (int e = 0; e <= index.maxEmpty(); e += 1) {
+            for (long i = 0; i < index.layerSize(e); i += 1) {
+                long[] p = index.position(e, i);
+                assertEquals("bad index", index.layerStart(e) + i,
+                             index.index(p[0], p[1], p[2] != 0));
+                BitBoard pos = new BitBoard(p[0], p[1], BLOCKS,
+                                            p[2] != 0 ? PieceColor.RED
+                                            : PieceColor.BLUE, 0);
+                assertTrue(tb.covers(pos));
+                int v = value(pos, memo);
+                assertEquals("wrong value", v, tb.margin(pos));
+                int move = tb.bestMove(pos);
+                if (!pos.gameOver()) {
+                    assertTrue("illegal move", pos.legal(move));
+                    pos.makeMove(move);
+                    assertEquals("move not best", v, -value(pos, memo));
+                }
+            }
+        }
+    }
+
+    @Test public void testSymmetry() throws IOException {
+        Tablebase tb = generate();
+        Tablebase.Index index = tb.index();
+        for (int e = 1; e <= index.maxEmpty(); e += 1) {
+            for (long i = 0; i < index.layerSize(e); i += 1) {
+                long[] p = index.position(e, i);
+                BitBoard pos = new BitBoard(p[0], p[1], BLOCKS,
+                                            p[2] != 0 ? PieceColor.RED
+                                            : PieceColor.BLUE, 0);
+                for (int t = 1; t < Symmetry.COUNT; t += 1) {
+                    BitBoard image = Symmetry.transform(pos, t);
+                    assertTrue("image not covered", tb.covers(image));
+                    assertEquals(tb.margin(pos), tb.margin(image));
+                    assertEquals(Symmetry.move(tb.bestMove(pos), t),
+                                 tb.bestMove(image));
+                }
+            }
+        }
+    }
+
+}
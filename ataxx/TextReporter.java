@@ -1,27 +1,62 @@
 package ataxx;
 
-/** A Reporter that uses System.out for messages.
+import java.io.PrintStream;
+
+/** A Reporter that uses System.out for messages, and System.err for
+ *  diagnostics, or other streams given to it.
  *  @author P. N. Hilfinger
  */
 class TextReporter implements Reporter {
 
+    /** A reporter using the standard output and standard error. */
+    TextReporter() {
+        this(System.out, System.err);
+    }
+
+    /** A reporter writing messages to OUT and diagnostics to ERR. */
+    TextReporter(PrintStream out, PrintStream err) {
+        _out = out;
+        _err = err;
+    }
+
     @Override
     public void errMsg(String format, Object... args) {
-        System.out.printf(format, args);
-        System.out.println();
+        _out.printf(format, args);
+        _out.println();
     }
 
     @Override
     public void outcomeMsg(String format, Object... args) {
-        System.out.printf(format, args);
-        System.out.println();
+        _out.printf(format, args);
+        _out.println();
     }
 
     @Override
     public void moveMsg(String format, Object... args) {
-        System.out.printf(format, args);
-        System.out.println();
+        _out.printf(format, args);
+        _out.println();
     }
 
-}
+    @Override
+    public void noteMsg(String format, Object... args) {
+        _err.printf(format, args);
+        _err.println();
+    }
 
+    @Override
+    public void promptMsg(String prompt) {
+        _out.print(prompt);
+        _out.flush();
+    }
+
+    @Override
+    public void flush() {
+        _out.flush();
+        _err.flush();
+    }
+
+    /** Stream for messages. */
+    private final PrintStream _out;
+    /** Stream for diagnostics. */
+    private final PrintStream _err;
+}
@@ -0,0 +1,552 @@
+package ataxx;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static ataxx.PieceColor.*;
+import static ataxx.GameException.error;
+
+/** A headless match between two AI configurations (engines), used to
+ *  tell whether a change to the AI makes it stronger.  Games run
+ *  concurrently on a pool of threads; each has its own Board and AIs
+ *  (each AI with its own Game holding its engine's settings), so games
+ *  share nothing mutable but the result counters, which are LongAdders.
+ *
+ *  Games are played in pairs from each opening, the engines exchanging
+ *  colors, so that neither profits from a lopsided opening.  Since the
+ *  AIs are deterministic, games from the same opening repeat, so without
+ *  a list of openings each pair starts from RANDOM_PLIES random moves of
+ *  its own (see randomOpening), drawn from the pair's stream of the seed
+ *  (see Seeds).  The result
+ *  is reported as an Elo difference (first engine minus second) with a
+ *  95% confidence interval.  The match may also run as a sequential
+ *  probability ratio test (SPRT) of the hypotheses that the difference
+ *  is ELO0 or ELO1, in which case it stops as soon as the test accepts
+ *  one of them.
+ *  @author Yevgen Vasylenko
+ */
+class Tournament {
+
+    /** The settings of an AI taking part in a tournament. */
+    static class Engine {
+
+        /** An engine described by SPEC, which is "default" or a
+         *  comma-separated list of settings book=FILE, tablebase=FILE and
+         *  endgame=N. */
+        Engine(String spec) {
+            _name = spec;
+            if (spec.equals("default")) {
+                return;
+            }
+            for (String setting : spec.split(",")) {
+                String[] kv = setting.split("=", 2);
+                if (kv.length != 2) {
+                    throw error("bad engine setting: %s", setting);
+                }
+                switch (kv[0]) {
+                case "book":
+                    _book = Book.open(kv[1]);
+                    break;
+                case "tablebase":
+                    _tablebase = Tablebase.open(kv[1]);
+                    break;
+                case "endgame":
+                    try {
+                        _endgame = Integer.parseInt(kv[1]);
+                    } catch (NumberFormatException excp) {
+                        throw error("bad endgame threshold: %s", kv[1]);
+                    }
+                    break;
+                default:
+                    throw error("unknown engine setting: %s", kv[0]);
+                }
+            }
+        }
+
+        /** Return a new AI with my settings playing COLOR on BOARD. */
+        Player player(Board board, PieceColor color) {
+            Game game = new Game(board,
+                                 new ReaderSource(new StringReader(""),
+                                                  null),
+                                 QUIET);
+            game.setBook(_book);
+            game.setTablebase(_tablebase);
+            game.setEndgameThreshold(_endgame);
+            return new AI(game, color);
+        }
+
+        @Override
+        public String toString() {
+            return _name;
+        }
+
+        /** My description. */
+        private final String _name;
+        /** Opening book, or null. */
+        private Book _book;
+        /** Endgame tablebase, or null. */
+        private Tablebase _tablebase;
+        /** Endgame threshold. */
+        private int _endgame = Game.DEFAULT_ENDGAME_THRESHOLD;
+    }
+
+    /** A tournament between engines FIRST and SECOND, starting games from
+     *  OPENINGS (see setUp), or from random openings if it is empty, and
+     *  running them on THREADS threads. */
+    Tournament(Engine first, Engine second, List<String[]> openings,
+               int threads) {
+        _first = first;
+        _second = second;
+        _openings = new ArrayList<>(openings);
+        _threads = threads;
+    }
+
+    /** Test the hypotheses that the Elo difference is ELO0 and ELO1,
+     *  with probabilities ALPHA and BETA of accepting ELO1 when ELO0 is
+     *  true and vice versa. */
+    void setSprt(double elo0, double elo1, double alpha, double beta) {
+        _sprt = true;
+        _elo0 = elo0;
+        _elo1 = elo1;
+        _lowerBound = Math.log(beta / (1 - alpha));
+        _upperBound = Math.log((1 - beta) / alpha);
+    }
+
+    /** Print a progress report every N games (never if N <= 0), from the
+     *  thread running the tournament, which checks the count of games
+     *  played every POLL_MILLIS milliseconds. */
+    void setReportInterval(int n) {
+        _reportInterval = n;
+    }
+
+    /** Play reproducibly from SEED: random openings are drawn from SEED
+     *  rather than from the root seed, and each game starts with the
+     *  search tables of its thread cleared, so that the results do not
+     *  depend on the number of threads or on which games share one. */
+    void setSeed(long seed) {
+        _seed = seed;
+        _seeded = true;
+    }
+
+    /** Write the record of each game played to RECORDER (null for
+     *  none). */
+    void setRecorder(GameRecordWriter recorder) {
+        _recorder = recorder;
+    }
+
+    /** Play up to GAMES games (rounded up to an even number), stopping
+     *  early if the SPRT, if any, reaches a decision. */
+    void run(int games) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(_threads);
+        for (int g = 0; g < games + games % 2; g += 1) {
+            int n = g;
+            pool.execute(() -> {
+                if (!_stopped.get()) {
+                    playGame(n);
+                }
+            });
+        }
+        pool.shutdown();
+        int reported = 0;
+        boolean done = false;
+        while (!done) {
+            done = pool.awaitTermination(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            int played = _played.get();
+            if (_reportInterval > 0
+                && played / _reportInterval > reported / _reportInterval) {
+                System.out.println(status());
+                reported = played;
+            }
+        }
+    }
+
+    /** Play game number G and record its result.  Pairs of games share
+     *  an opening, the first engine playing red in the even one. */
+    private void playGame(int g) {
+        Board board = new Board();
+        String[] opening =
+            _openings.isEmpty() ? randomOpening(Seeds.random(_seed, g / 2))
+            : _openings.get((g / 2) % _openings.size());
+        setUp(board, opening);
+        boolean firstIsRed = g % 2 == 0;
+        if (_seeded) {
+            AI.clearTables();
+        }
+        Player red = (firstIsRed ? _first : _second).player(board, RED);
+        Player blue = (firstIsRed ? _second : _first).player(board, BLUE);
+        ArrayList<Integer> moves = new ArrayList<>(),
+            millis = new ArrayList<>();
+        for (String token : opening) {
+            if (!token.matches("[a-g][1-7]")) {
+                moves.add(token.equals("-") ? BitBoard.PASS
+                          : BitBoard.encode(Move.move(token.charAt(0),
+                                                      token.charAt(1),
+                                                      token.charAt(3),
+                                                      token.charAt(4))));
+                millis.add(0);
+            }
+        }
+        while (!board.gameOver()) {
+            long start = System.nanoTime();
+            Move move = (board.whoseMove() == RED ? red : blue).myMove();
+            board.makeMove(move);
+            moves.add(BitBoard.encode(move));
+            millis.add((int) ((System.nanoTime() - start) / 1000000));
+        }
+        if (_recorder != null) {
+            _recorder.write(GameRecord.of(board, toArray(moves),
+                                          toArray(millis)));
+        }
+        int margin = board.redPieces() - board.bluePieces();
+        if (margin == 0) {
+            _draws.increment();
+        } else if ((margin > 0) == firstIsRed) {
+            _wins.increment();
+        } else {
+            _losses.increment();
+        }
+        Metrics.GAMES.increment();
+        _played.incrementAndGet();
+        if (_sprt && !_stopped.get()) {
+            double llr = llr();
+            if (llr <= _lowerBound || llr >= _upperBound) {
+                _stopped.set(true);
+            }
+        }
+    }
+
+    /** Return the elements of LIST. */
+    private static int[] toArray(ArrayList<Integer> list) {
+        return list.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /** Set up BOARD according to OPENING, whose elements are squares to
+     *  block (as for the 'block' command), moves such as "a7-b6", or "-"
+     *  for a pass. */
+    static void setUp(Board board, String[] opening) {
+        for (String token : opening) {
+            if (token.matches("[a-g][1-7]")) {
+                board.setBlock(token);
+            } else if (token.equals("-")) {
+                if (board.canMove(board.whoseMove())) {
+                    throw error("illegal pass in opening");
+                }
+                board.pass();
+            } else if (token.matches("[a-g][1-7]-[a-g][1-7]")) {
+                Move move = Move.move(token.charAt(0), token.charAt(1),
+                                      token.charAt(3), token.charAt(4));
+                if (!board.legalMove(move)) {
+                    throw error("illegal move in opening: %s", token);
+                }
+                board.makeMove(move);
+            } else {
+                throw error("bad opening: %s", token);
+            }
+        }
+        if (board.gameOver()) {
+            throw error("opening ends the game");
+        }
+    }
+
+    /** Return an opening of RANDOM_PLIES moves from the initial position,
+     *  each chosen by RANDOM from the distinct legal moves, in the form
+     *  taken by setUp.  So few moves cannot end the game. */
+    static String[] randomOpening(SplittableRandom random) {
+        BitBoard pos = new BitBoard();
+        int[] moves = new int[BitBoard.MAX_MOVES];
+        String[] opening = new String[RANDOM_PLIES];
+        for (int i = 0; i < RANDOM_PLIES; i += 1) {
+            int move = moves[random.nextInt(pos.generateDistinct(moves, 0))];
+            opening[i] = BitBoard.toMove(move).toString();
+            pos.makeMove(move);
+        }
+        return opening;
+    }
+
+    /** Return the openings in FILE, one per line, ignoring blank lines
+     *  and those starting with '#'. */
+    static List<String[]> readOpenings(String file) throws IOException {
+        ArrayList<String[]> openings = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            for (String line = in.readLine(); line != null;
+                 line = in.readLine()) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    String[] opening = line.split("\\s+");
+                    setUp(new Board(), opening);
+                    openings.add(opening);
+                }
+            }
+        }
+        return openings;
+    }
+
+    /** Return the number of games played. */
+    int played() {
+        return _played.get();
+    }
+
+    /** Return the first engine's numbers of wins, draws and losses. */
+    long[] results() {
+        return new long[] { _wins.sum(), _draws.sum(), _losses.sum() };
+    }
+
+    /** Return the log-likelihood ratio of the SPRT so far. */
+    double llr() {
+        long[] r = results();
+        return llr(r[0], r[1], r[2], _elo0, _elo1);
+    }
+
+    /** Return a description of the results so far. */
+    String status() {
+        long[] r = results();
+        double[] elo = elo(r[0], r[1], r[2]);
+        String s = String.format("%s vs %s: %d games, +%d =%d -%d,"
+                                 + " Elo %.1f [%.1f, %.1f]", _first,
+                                 _second, r[0] + r[1] + r[2], r[0], r[1],
+                                 r[2], elo[0], elo[1], elo[2]);
+        if (_sprt) {
+            double llr = llr();
+            s += String.format(", LLR %.2f [%.2f, %.2f]%s", llr,
+                               _lowerBound, _upperBound,
+                               llr >= _upperBound ? " H1 accepted"
+                               : llr <= _lowerBound ? " H0 accepted" : "");
+        }
+        return s;
+    }
+
+    /** Return the expected score of a player ELO points stronger than its
+     *  opponent. */
+    static double score(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    /** Return the Elo difference corresponding to expected score S. */
+    static double elo(double s) {
+        return -400 * Math.log10(1 / s - 1);
+    }
+
+    /** Return the Elo difference implied by WINS, DRAWS and LOSSES, and
+     *  the bounds of its 95% confidence interval, as {elo, low, high}.
+     *  Infinite values stand for one-sided results. */
+    static double[] elo(long wins, long draws, long losses) {
+        double n = wins + draws + losses;
+        if (n == 0) {
+            return new double[] { 0, Double.NEGATIVE_INFINITY,
+                                  Double.POSITIVE_INFINITY };
+        }
+        double s = (wins + draws / 2.0) / n;
+        double var = (wins * (1 - s) * (1 - s) + draws * (0.5 - s) * (0.5 - s)
+                      + losses * s * s) / n;
+        double margin = Z95 * Math.sqrt(var / n);
+        return new double[] { elo(s), elo(Math.max(0, s - margin)),
+                              elo(Math.min(1, s + margin)) };
+    }
+
+    /** Return the log-likelihood ratio of the hypotheses that the Elo
+     *  difference is ELO1 rather than ELO0 after WINS, DRAWS and LOSSES,
+     *  using the usual normal approximation to the trinomial model. */
+    static double llr(long wins, long draws, long losses,
+                      double elo0, double elo1) {
+        double n = wins + draws + losses;
+        if (n == 0) {
+            return 0;
+        }
+        double s = (wins + draws / 2.0) / n;
+        double var = (wins * (1 - s) * (1 - s) + draws * (0.5 - s) * (0.5 - s)
+                      + losses * s * s) / n;
+        if (var == 0) {
+            return 0;
+        }
+        double s0 = score(elo0), s1 = score(elo1);
+        return (s1 - s0) * (2 * s - s0 - s1) * n / (2 * var);
+    }
+
+    /** Run a tournament.  ARGS are [--threads N] [--games N]
+     *  [--openings FILE] [--report N] [--record FILE] [--metrics PORT]
+     *  [--seed N] [--sprt ELO0,ELO1[,ALPHA,BETA]] ENGINE1 ENGINE2, where
+     *  the ENGINEs are as for Engine, FILE receives the records of the
+     *  games (see GameRecordWriter.open), the metrics of the program are
+     *  served on PORT (see Metrics), and N makes the games reproducible
+     *  (see setSeed).  Without --openings, games start from random
+     *  openings. */
+    public static void main(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        int games = DEFAULT_GAMES, report = DEFAULT_REPORT;
+        String openings = null, record = null;
+        int metrics = -1;
+        Long seed = null;
+        double[] sprt = null;
+        ArrayList<String> engines = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i += 1) {
+                switch (args[i]) {
+                case "--threads":
+                    i += 1;
+                    threads = Integer.parseInt(args[i]);
+                    break;
+                case "--games":
+                    i += 1;
+                    games = Integer.parseInt(args[i]);
+                    break;
+                case "--report":
+                    i += 1;
+                    report = Integer.parseInt(args[i]);
+                    break;
+                case "--record":
+                    i += 1;
+                    record = args[i];
+                    break;
+                case "--metrics":
+                    i += 1;
+                    metrics = Integer.parseInt(args[i]);
+                    break;
+                case "--seed":
+                    i += 1;
+                    seed = Long.valueOf(args[i]);
+                    break;
+                case "--openings":
+                    i += 1;
+                    openings = args[i];
+                    break;
+                case "--sprt":
+                    i += 1;
+                    String[] params = args[i].split(",");
+                    if (params.length != 2 && params.length != 4) {
+                        usage();
+                    }
+                    sprt = new double[] { 0, 0, DEFAULT_ALPHA, DEFAULT_BETA };
+                    for (int k = 0; k < params.length; k += 1) {
+                        sprt[k] = Double.parseDouble(params[k]);
+                    }
+                    break;
+                default:
+                    engines.add(args[i]);
+                    break;
+                }
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            usage();
+        }
+        if (engines.size() != 2 || threads < 1) {
+            usage();
+        }
+        try {
+            Tournament t =
+                new Tournament(new Engine(engines.get(0)),
+                               new Engine(engines.get(1)),
+                               openings == null ? new ArrayList<>()
+                               : readOpenings(openings), threads);
+            if (sprt != null) {
+                t.setSprt(sprt[0], sprt[1], sprt[2], sprt[3]);
+            }
+            t.setReportInterval(report);
+            if (seed != null) {
+                t.setSeed(seed);
+            }
+            if (metrics >= 0) {
+                Metrics.GLOBAL.serve(metrics);
+            }
+            GameRecordWriter recorder =
+                record == null ? null : GameRecordWriter.open(record);
+            t.setRecorder(recorder);
+            long start = System.nanoTime();
+            t.run(games);
+            if (recorder != null) {
+                recorder.close();
+            }
+            System.out.println(t.status());
+            System.out.printf("%.1f s on %d threads.%n",
+                              (System.nanoTime() - start) * 1e-9, threads);
+        } catch (GameException | IOException excp) {
+            System.err.println(excp.getMessage());
+            System.exit(1);
+        } catch (InterruptedException excp) {
+            System.exit(1);
+        }
+    }
+
+    /** Give usage message and exit. */
+    private static void usage() {
+        System.err.println("Usage: java ataxx.Tournament [--threads N]"
+                           + " [--games N] [--openings FILE] [--report N]"
+                           + " [--record FILE] [--metrics PORT] [--seed N]"
+                           + " [--sprt ELO0,ELO1[,ALPHA,BETA]]"
+                           + " ENGINE1 ENGINE2");
+        System.exit(1);
+    }
+
+    /** Normal quantile for a two-sided 95% interval. */
+    static final double Z95 = 1.959964;
+    /** Number of moves in a random opening. */
+    static final int RANDOM_PLIES = 4;
+    /** Default number of games. */
+    static final int DEFAULT_GAMES = 1000;
+    /** Default number of games between progress reports. */
+    static final int DEFAULT_REPORT = 100;
+    /** Default probability of accepting ELO1 when ELO0 holds. */
+    static final double DEFAULT_ALPHA = 0.05;
+    /** Default probability of accepting ELO0 when ELO1 holds. */
+    static final double DEFAULT_BETA = 0.05;
+
+    /** Milliseconds between checks for progress to report. */
+    private static final long POLL_MILLIS = 200;
+
+    /** A Reporter that discards everything. */
+    private static final Reporter QUIET = new Reporter() {
+        @Override
+        public void errMsg(String format, Object... operands) {
+        }
+
+        @Override
+        public void outcomeMsg(String format, Object... operands) {
+        }
+
+        @Override
+        public void moveMsg(String format, Object... operands) {
+        }
+
+        @Override
+        public void noteMsg(String format, Object... operands) {
+        }
+    };
+
+    /** The engines. */
+    private final Engine _first, _second;
+    /** Openings from which games start. */
+    private final ArrayList<String[]> _openings;
+    /** Number of threads. */
+    private final int _threads;
+    /** Wins, draws and losses of _first. */
+    private final LongAdder _wins = new LongAdder(),
+        _draws = new LongAdder(), _losses = new LongAdder();
+    /** Number of games finished. */
+    private final AtomicInteger _played = new AtomicInteger();
+    /** True once the SPRT has reached a decision. */
+    private final AtomicBoolean _stopped = new AtomicBoolean();
+    /** True iff running an SPRT. */
+    private boolean _sprt;
+    /** SPRT hypotheses. */
+    private double _elo0, _elo1;
+    /** SPRT bounds on the log-likelihood ratio. */
+    private double _lowerBound, _upperBound;
+    /** Writer of game records, or null. */
+    private GameRecordWriter _recorder;
+    /** Games between progress reports. */
+    private int _reportInterval;
+    /** True iff playing reproducibly from _seed. */
+    private boolean _seeded;
+    /** Seed of the random openings: the root seed unless _seeded. */
+    private long _seed = Seeds.root();
+}
@@ -0,0 +1,124 @@
+package ataxx;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+/** Tests of the tournament runner and its statistics.
+ *  @author Yevgen Vasylenko
+ */
+public class TournamentTest {
+
+    /** Tolerance for floating-point comparisons. */
+    private static final double EPS = 1e-9;
+
+    @Test public void testElo() {
+        assertEquals(0.5, Tournament.score(0), EPS);
+        assertEquals(100, Tournament.elo(Tournament.score(100)), 1e-6);
+        double[] even = Tournament.elo(30, 40, 30);
+        assertEquals(0, even[0], EPS);
+        assertEquals(-even[1], even[2], 1e-6);
+        assertTrue(even[1] < 0);
+        double[] ahead = Tournament.elo(60, 20, 20);
+        assertTrue(ahead[1] > 0 && ahead[0] > ahead[1] && ahead[2] > ahead[0]);
+    }
+
+    @Test public void testLlr() {
+        assertTrue(Tournament.llr(600, 200, 200, 0, 10) > 0);
+        assertTrue(Tournament.llr(200, 200, 600, 0, 10) < 0);
+        assertEquals(0, Tournament.llr(0, 10, 0, 0, 10), EPS);
+    }
+
+    @Test public void testSetUp() {
+        Board b = new Board();
+        Tournament.setUp(b, new String[] { "c3", "a7-b6", "a1-a3" });
+        assertEquals(PieceColor.BLOCKED, b.get('c', '3'));
+        assertEquals(PieceColor.BLOCKED, b.get('e', '5'));
+        assertEquals(PieceColor.RED, b.get('b', '6'));
+        assertEquals(PieceColor.BLUE, b.get('a', '3'));
+        assertEquals(PieceColor.EMPTY, b.get('a', '1'));
+        try {
+            Tournament.setUp(new Board(), new String[] { "a1-a2" });
+            fail("accepted a move by the wrong side");
+        } catch (GameException excp) {
+            /* Expected. */
+        }
+    }
+
+    @Test public void testRun() throws InterruptedException {
+        ArrayList<String[]> openings = new ArrayList<>();
+        openings.add(new String[] { "b2", "a7-b7" });
+        Tournament t = new Tournament(new Tournament.Engine("default"),
+                                      new Tournament.Engine("endgame=0"),
+                                      openings, 2);
+        t.run(1);
+        assertEquals(2, t.played());
+        long[] r = t.results();
+        assertEquals(2, r[0] + r[1] + r[2]);
+    }
+
+    @Test public void testRandomOpenings() {
+        HashSet<String> distinct = new HashSet<>();
+        for (int n = 0; n < 8; n += 1) {
+            String[] opening = Tournament.randomOpening(Seeds.random(5, n));
+            assertEquals(Tournament.RANDOM_PLIES, opening.length);
+            assertArrayEquals(opening,
+                              Tournament.randomOpening(Seeds.random(5, n)));
+            Tournament.setUp(new Board(), opening);
+            distinct.add(String.join(" ", opening));
+        }
+        assertEquals(8, distinct.size());
+    }
+
+    @Test public void testSeeds() {
+        assertEquals(Seeds.stream(42, 3), Seeds.stream(42, 3));
+        assertNotEquals(Seeds.stream(42, 3), Seeds.stream(42, 4));
+        assertNotEquals(Seeds.stream(42, 3), Seeds.stream(43, 3));
+        assertEquals(Seeds.random(42, 3).nextLong(),
+                     Seeds.random(42, 3).nextLong());
+    }
+
+    /** Return what a game run in text mode on this thread writes to the
+     *  standard output, given the commands INPUT. */
+    private static String run(String input) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TextReporter reporter =
+            new TextReporter(new PrintStream(out, true),
+                             new PrintStream(OutputStream.nullOutputStream()));
+        Game game = new Game(new Board(),
+                             new ReaderSource(new StringReader(input),
+                                              reporter),
+                             reporter);
+        game.process(false);
+        return out.toString();
+    }
+
+    @Test public void testSeededGame() {
+        String script = "seed 3\nauto red\nauto blue\nstart\ndump\nquit\n";
+        String first = run(script);
+        assertTrue(first.contains("==="));
+        assertEquals(first, run(script));
+    }
+
+    @Test public void testSeeded() throws InterruptedException {
+        long[][] results = new long[2][];
+        for (int threads = 1; threads <= 2; threads += 1) {
+            Tournament t =
+                new Tournament(new Tournament.Engine("default"),
+                               new Tournament.Engine("endgame=0"),
+                               new ArrayList<>(), threads);
+            t.setSeed(7);
+            t.run(2);
+            results[threads - 1] = t.results();
+        }
+        assertArrayEquals(results[0], results[1]);
+    }
+
+}
@@ -11,7 +11,17 @@ public class UnitTest {
      *  the arguments of runClasses to run other JUnit tests. */
     public static void main(String[] ignored) {
         textui.runClasses(CommandTest.class, MoveTest.class,
-                          BoardTest.class);
+                          BoardTest.class, BitBoardTest.class,
+                          TablebaseTest.class, EndgameSolverTest.class,
+                          BookTest.class, SymmetryTest.class,
+                          ProofSearchTest.class, TournamentTest.class,
+                          PerftTest.class, SearchTest.class,
+                          GameRecordTest.class, EngineProtocolTest.class,
+                          ServerTest.class, SnapshotTest.class,
+                          AnalyzerTest.class, AsyncReporterTest.class,
+                          MappedSourceTest.class, EventsTest.class,
+                          DaemonTest.class, BoardRendererTest.class,
+                          MetricsTest.class, HistoryTest.class);
     }
 
 }
@@ -0,0 +1,64 @@
+package ataxx;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of the AI's moves and of its middle-game search on stored
+ *  positions.
+ *  @author Yevgen Vasylenko
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AIBench {
+
+    /** Name of the position, as for BenchPositions. */
+    @Param({ BenchPositions.OPENING, BenchPositions.BLOCKED,
+             BenchPositions.MIDDLEGAME, BenchPositions.ENDGAME })
+    public String position;
+
+    /** Set up the position and an AI for the player on move. */
+    @Setup
+    public void setUp() {
+        _board = BenchPositions.board(position);
+        _ai = (AI) new Tournament.Engine("default")
+            .player(_board, _board.whoseMove());
+        _search = new Search(Bench.TABLE_BITS);
+    }
+
+    /** Choose the AI's move, as in a game, from empty tables. */
+    @Benchmark
+    public Move myMove() {
+        AI.clearTables();
+        return _ai.myMove();
+    }
+
+    /** Search the position to the AI's depth with the middle-game
+     *  Search, from an empty table. */
+    @Benchmark
+    public int search() {
+        _search.clear();
+        return _search.search(new BitBoard(_board), AI.SEARCH_DEPTH);
+    }
+
+    /** The position searched. */
+    private Board _board;
+    /** The AI searching it. */
+    private AI _ai;
+    /** The Search searching it. */
+    private Search _search;
+}
@@ -0,0 +1,48 @@
+package ataxx;
+
+/** The positions on which the benchmarks run: an opening, a block layout,
+ *  a middlegame and a near-endgame, each given as for Tournament.setUp.
+ *  @author Yevgen Vasylenko
+ */
+class BenchPositions {
+
+    /** Names of the positions, for @Param. */
+    static final String OPENING = "opening", BLOCKED = "blocked",
+        MIDDLEGAME = "middlegame", ENDGAME = "endgame";
+
+    /** Return a new Board set up as the position called NAME. */
+    static Board board(String name) {
+        Board b = new Board();
+        switch (name) {
+        case OPENING:
+            Tournament.setUp(b, new String[] { "a7-b6", "a1-b2" });
+            break;
+        case BLOCKED:
+            Tournament.setUp(b, new String[] { "c3", "b3", "a7-b6" });
+            break;
+        case MIDDLEGAME:
+        case ENDGAME:
+            play(b, name.equals(MIDDLEGAME) ? 24 : 8);
+            break;
+        default:
+            throw new IllegalArgumentException(name);
+        }
+        return b;
+    }
+
+    /** Make moves on B until EMPTY squares are left or the game ends,
+     *  choosing among the extends (or else the first move) by a fixed
+     *  rule, so that the position is the same on every run. */
+    private static void play(Board b, int empty) {
+        int[] moves = new int[BitBoard.MAX_MOVES];
+        while (b.numEmpty() > empty && !b.gameOver()) {
+            BitBoard pos = new BitBoard(b);
+            int n = pos.generateDistinct(moves, 0), numExtends = 0;
+            while (numExtends < n && BitBoard.isExtend(moves[numExtends])) {
+                numExtends += 1;
+            }
+            int k = (b.numEmpty() * 7) % Math.max(numExtends, 1);
+            b.makeMove(BitBoard.toMove(moves[k]));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package ataxx;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of the basic Board operations.
+ *  @author Yevgen Vasylenko
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBench {
+
+    /** Name of the position, as for BenchPositions. */
+    @Param({ BenchPositions.OPENING, BenchPositions.BLOCKED,
+             BenchPositions.MIDDLEGAME, BenchPositions.ENDGAME })
+    public String position;
+
+    /** Set up the board and a legal move on it. */
+    @Setup
+    public void setUp() {
+        _board = BenchPositions.board(position);
+        int[] moves = new int[BitBoard.MAX_MOVES];
+        new BitBoard(_board).generate(moves, 0);
+        _move = BitBoard.toMove(moves[0]);
+    }
+
+    /** Make a move and take it back. */
+    @Benchmark
+    public Board makeUndo() {
+        _board.makeMove(_move);
+        _board.undo();
+        return _board;
+    }
+
+    /** Ask whether the player on move can move. */
+    @Benchmark
+    public boolean canMove() {
+        return _board.canMove(_board.whoseMove());
+    }
+
+    /** Ask whether the game is over. */
+    @Benchmark
+    public boolean gameOver() {
+        return _board.gameOver();
+    }
+
+    /** List the pieces of the player on move. */
+    @Benchmark
+    public Object piecesOfColor() {
+        return _board.piecesOfColor(_board.whoseMove());
+    }
+
+    /** Copy the board. */
+    @Benchmark
+    public Board copy() {
+        return new Board(_board);
+    }
+
+    /** The board. */
+    private Board _board;
+    /** A legal move on _board. */
+    private Move _move;
+}
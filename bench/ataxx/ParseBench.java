@@ -0,0 +1,42 @@
+package ataxx;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of Move lookup and command parsing.
+ *  @author Yevgen Vasylenko
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBench {
+
+    /** A command to parse. */
+    @Param({ "c3-d4", "-", "block b3", "auto red", "nonsense" })
+    public String command;
+
+    /** Look up a move. */
+    @Benchmark
+    public Move moveLookup() {
+        return Move.move('c', '3', 'e', '5');
+    }
+
+    /** Parse a command. */
+    @Benchmark
+    public Command parseCommand() {
+        return Command.parseCommand(command);
+    }
+}
@@ -0,0 +1,46 @@
+# Thin client for an ataxx daemon (java ataxx.Main --daemon SOCKET):
+# connects to SOCKET, sends the current directory (against which the
+# session finds the files named in commands), forwards the standard input
+# to the session and the session's output to the standard output, and
+# exits when the session ends.  Each run is one fresh session, as if the
+# program had been started anew, without the cost of starting a JVM.
+#
+# Usage: python3 ataxx-client.py SOCKET
+
+import os, socket, sys
+from threading import Thread
+
+def forward_input(sock):
+    try:
+        for line in sys.stdin.buffer:
+            sock.sendall(line)
+    except OSError:
+        pass
+    try:
+        sock.shutdown(socket.SHUT_WR)
+    except OSError:
+        pass
+
+def main():
+    if len(sys.argv) != 2:
+        print("Usage: python3 ataxx-client.py SOCKET", file=sys.stderr)
+        sys.exit(1)
+    sock = socket.socket(socket.AF_UNIX, socket.SOCK_STREAM)
+    try:
+        sock.connect(sys.argv[1])
+    except OSError as excp:
+        print("Cannot connect to {}: {}".format(sys.argv[1], excp),
+              file=sys.stderr)
+        sys.exit(1)
+    sock.sendall((os.getcwd() + "\n").encode())
+    Thread(target=forward_input, args=(sock,), daemon=True).start()
+    out = sys.stdout.buffer
+    while True:
+        data = sock.recv(65536)
+        if not data:
+            break
+        out.write(data)
+        out.flush()
+    sock.close()
+
+main()
@@ -5,7 +5,7 @@ from threading import Thread
 from queue import Queue, Empty, Full
 from getopt import getopt, GetoptError
 from io import StringIO
-from os.path import basename
+from os.path import basename, dirname, join
 
 EOF = object()
 
@@ -48,6 +48,17 @@ def prog_runner(prog, msg_queue, script_start):
     msg_queue.put(end_msg)
     prog.log("T {}", str(end_msg))
         
+def daemon_command(words):
+    """Return WORDS, a command starting the ataxx program, or if testing
+    against a daemon (--daemon=SOCKET) and WORDS start the program in
+    plain text mode, a command starting a session of the daemon."""
+    if (daemon_socket is not None and words and words[0] == "java"
+        and words[-1] == "ataxx.Main"
+        and all(map(lambda w: w.startswith("-"), words[1:-1]))):
+        return [sys.executable, join(dirname(__file__), "ataxx-client.py"),
+                daemon_socket]
+    return words
+
 class program:
     def __init__(self, title, script_input, terminate_msgs,
                  script_start_line):
@@ -64,7 +75,8 @@ class program:
         if command is None:
             terminate_msgs.put((title, "FAIL", "No command found",
                                 script_start + self.k))
-        self.proc = Popen(re.split(r'\s+', command), universal_newlines=True,
+        self.proc = Popen(daemon_command(re.split(r'\s+', command)),
+                          universal_newlines=True,
                           stdin=PIPE, stdout=PIPE, stderr=STDOUT)
         self.input, _ = get_input_queue(title+"-in", self.proc.stdin)
         self.output, _ = get_output_queue(title+"-out", self.proc.stdout)
@@ -449,17 +461,21 @@ def run_test(text):
         return "ERROR", '/'.join(map(make_msg, msgs))
         
 try:
-    opts, args = getopt(sys.argv[1:], 'v', ['verbose'])
+    opts, args = getopt(sys.argv[1:], 'v', ['verbose', 'daemon='])
 except GetoptError:
-    print("Usage: python3 test-ataxx.py [ --verbose | -v ] SCRIPT ...",
+    print("Usage: python3 test-ataxx.py [ --verbose | -v ]"
+          " [ --daemon=SOCKET ] SCRIPT ...",
           file=sys.stderr)
     sys.exit(1)
 
 
 verbose= False
+daemon_socket = None
 for opt, val in opts:
     if opt == '-v' or opt == '--verbose':
         verbose = True
+    elif opt == '--daemon':
+        daemon_socket = val
 
 test_count = len(args)
 err_count = 0